@@ -1,6 +1,5 @@
 package com.jstarcraft.core.cache.transience;
 
-import java.time.Instant;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -11,9 +10,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
-import com.jstarcraft.core.utility.DelayElement;
-import com.jstarcraft.core.utility.SensitivityQueue;
+import com.jstarcraft.core.utility.TimingWheel;
 
 /**
  * 到期哈希映射
@@ -29,36 +28,8 @@ import com.jstarcraft.core.utility.SensitivityQueue;
  */
 public class DelayedHashMap<K, V> implements Map<K, V> {
 
-    /** 修复时间间隔 */
-    private static final long FIX_TIME = 1000;
-    /** 定时队列 */
-    private static final SensitivityQueue<DelayElement<DelayedHashMap<?, ?>>> QUEUE = new SensitivityQueue<>(FIX_TIME);
     /** 任务线程 */
     private static final ExecutorService EXECUTORS = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-    /** 清理线程 */
-    private static final Thread CLEANER = new Thread(new Runnable() {
-
-        public void run() {
-            try {
-                while (true) {
-                    DelayElement<DelayedHashMap<?, ?>> element = QUEUE.take();
-                    DelayedHashMap<?, ?> content = element.getContent();
-                    content.clean();
-                    Instant now = Instant.now();
-                    Instant expire = now.plusMillis(content.waitTime);
-                    element = new DelayElement<>(content, expire);
-                    QUEUE.put(element);
-                }
-            } catch (InterruptedException exception) {
-            }
-        }
-
-    });
-
-    static {
-        CLEANER.setDaemon(true);
-        CLEANER.start();
-    }
 
     // 将数据分成多个桶,用链表是因为在头尾的增减操作时O(1)
     private ConcurrentLinkedDeque<ConcurrentHashMap<K, V>> segments;
@@ -79,6 +50,16 @@ public class DelayedHashMap<K, V> implements Map<K, V> {
         this.waitTime = expire * 1000 / segment;
     }
 
+    /**
+     * 调度下一次清理(使用共享时间轮,不需要独占清理线程)
+     */
+    private void schedule() {
+        TimingWheel.getDefault().schedule(() -> {
+            clean();
+            schedule();
+        }, waitTime, TimeUnit.MILLISECONDS);
+    }
+
     private void clean() {
         // 从尾部删除一个桶,到头部加一个桶.最后一个桶的数据是最旧的;
         final Map<K, V> clean = segments.removeLast();
@@ -219,9 +200,7 @@ public class DelayedHashMap<K, V> implements Map<K, V> {
 
     public static DelayedHashMap instanceOf(int expire, int segment, TransienceMonitor listener) {
         DelayedHashMap<?, ?> instance = new DelayedHashMap<>(expire, segment, listener);
-        Instant instant = Instant.now().plusMillis(instance.waitTime);
-        DelayElement<DelayedHashMap<?, ?>> element = new DelayElement(instance, instant);
-        QUEUE.put(element);
+        instance.schedule();
         return instance;
     }
 
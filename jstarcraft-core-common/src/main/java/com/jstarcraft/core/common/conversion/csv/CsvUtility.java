@@ -1,12 +1,10 @@
 package com.jstarcraft.core.common.conversion.csv;
 
-import java.io.IOException;
 import java.io.StringReader;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.GenericArrayType;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
@@ -15,9 +13,9 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -46,334 +44,449 @@ public class CsvUtility {
 
     private static final CSVFormat FORMAT = CSVFormat.DEFAULT;
 
-    private static final HashMap<Class<?>, CsvInformation> INFORMATIONS = new HashMap<>();
+    /** 流式输出的格式(与日志文件一致,以换行分隔记录) */
+    private static final CSVFormat STREAM_FORMAT = FORMAT.withRecordSeparator('\n');
 
-    private static final CsvInformation getInformation(Class<?> clazz) {
-        synchronized (clazz) {
-            CsvInformation information = INFORMATIONS.get(clazz);
+    /** 类型信息(ClassValue并发安全,而且查找不需要锁) */
+    private static final ClassValue<CsvInformation> INFORMATIONS = new ClassValue<CsvInformation>() {
+
+        @Override
+        protected CsvInformation computeValue(Class<?> clazz) {
+            CsvConfiguration configuration = clazz.getAnnotation(CsvConfiguration.class);
+            if (configuration == null || configuration.value().length == 0) {
+                return null;
+            }
             try {
-                if (information == null) {
-                    CsvConfiguration configuration = clazz.getAnnotation(CsvConfiguration.class);
-                    if (configuration == null || configuration.value().length == 0) {
-                        return null;
-                    }
-                    Constructor<?> constructor = clazz.getDeclaredConstructor();
-                    ReflectionUtility.makeAccessible(constructor);
-                    String[] names = configuration.value();
-                    LinkedList<Field> fields = new LinkedList<>();
-                    for (String name : names) {
-                        Field field = clazz.getDeclaredField(name);
-                        field.setAccessible(true);
-                        fields.add(field);
-                    }
-                    information = new CsvInformation(constructor, fields.toArray(new Field[fields.size()]));
-                    INFORMATIONS.put(clazz, information);
+                Constructor<?> constructor = clazz.getDeclaredConstructor();
+                ReflectionUtility.makeAccessible(constructor);
+                String[] names = configuration.value();
+                Field[] fields = new Field[names.length];
+                for (int index = 0; index < names.length; index++) {
+                    Field field = clazz.getDeclaredField(names[index]);
+                    field.setAccessible(true);
+                    fields[index] = field;
                 }
+                return new CsvInformation(constructor, fields);
             } catch (Exception exception) {
                 throw new RuntimeException(exception);
             }
-            return information;
         }
+
+    };
+
+    /** 类型计划 */
+    private static final ConcurrentHashMap<Type, CsvPlan> PLANS = new ConcurrentHashMap<>();
+
+    private static final CsvInformation getInformation(Class<?> clazz) {
+        return INFORMATIONS.get(clazz);
     }
 
-    private static void writeValue(Object object, Type type, CSVPrinter output) {
-        try {
-            Class<?> clazz = TypeUtility.getRawType(type, null);
-            // 处理枚举/字符串/原始类型
-            if (clazz.isEnum() || String.class == clazz || ClassUtility.isPrimitiveOrWrapper(clazz)) {
-                if (object == null) {
-                    output.print(StringUtility.EMPTY);
-                    return;
-                }
-                Object value = object.toString();
-                if (String.class == clazz) {
-                    value = value + StringUtility.SEMICOLON;
-                }
-                output.print(value);
+    /**
+     * CSV计划
+     * 
+     * <pre>
+     * 每个类型只判断一次属于哪种转换,转换时直接调用对应的计划.
+     * </pre>
+     * 
+     * @author Birdy
+     *
+     */
+    private static abstract class CsvPlan {
+
+        abstract void write(Object object, CSVPrinter output) throws Exception;
+
+        abstract Object read(Iterator<String> input) throws Exception;
+
+    }
+
+    /**
+     * 枚举/原始类型计划
+     * 
+     * @author Birdy
+     *
+     */
+    private static class ValuePlan extends CsvPlan {
+
+        private final Class<?> clazz;
+
+        private ValuePlan(Class<?> clazz) {
+            this.clazz = clazz;
+        }
+
+        @Override
+        void write(Object object, CSVPrinter output) throws Exception {
+            if (object == null) {
+                output.print(StringUtility.EMPTY);
                 return;
             }
-            // 处理日期类型
-            if (Date.class.isAssignableFrom(clazz)) {
-                if (object == null) {
-                    output.print(StringUtility.EMPTY);
-                    return;
-                }
-                Object value = String.valueOf(Date.class.cast(object).getTime());
-                output.print(value);
-                return;
+            output.print(object.toString());
+        }
+
+        @Override
+        Object read(Iterator<String> input) throws Exception {
+            String element = input.next();
+            if (StringUtility.isEmpty(element)) {
+                return null;
             }
-            if (Instant.class.isAssignableFrom(clazz)) {
-                if (object == null) {
-                    output.print(StringUtility.EMPTY);
-                    return;
-                }
-                Object value = String.valueOf(Instant.class.cast(object).toEpochMilli());
-                output.print(value);
+            return ConversionUtility.convert(element, clazz);
+        }
+
+    }
+
+    /** 字符串计划(以分号结束) */
+    private static final CsvPlan STRING_PLAN = new CsvPlan() {
+
+        @Override
+        void write(Object object, CSVPrinter output) throws Exception {
+            if (object == null) {
+                output.print(StringUtility.EMPTY);
                 return;
             }
-            // 处理数组类型
-            if (clazz.isArray()) {
-                if (object == null) {
-                    output.print(StringUtility.EMPTY);
-                    return;
-                }
-                Class<?> componentClass = null;
-                Type componentType = null;
-                if (type instanceof GenericArrayType) {
-                    GenericArrayType genericArrayType = GenericArrayType.class.cast(type);
-                    componentType = genericArrayType.getGenericComponentType();
-                    componentClass = TypeUtility.getRawType(componentType, null);
-                } else {
-                    componentType = clazz.getComponentType();
-                    componentClass = clazz.getComponentType();
-                }
-                CsvInformation information = CsvUtility.getInformation(componentClass);
-                int length = Array.getLength(object);
-                output.print(length);
-                for (int index = 0; index < length; index++) {
-                    Object element = Array.get(object, index);
-                    if (information == null) {
-                        writeValue(element, componentType, output);
-                    } else {
-                        writeValue(element, componentType, componentClass, information, output);
-                    }
-                }
+            output.print(object.toString() + StringUtility.SEMICOLON);
+        }
+
+        @Override
+        Object read(Iterator<String> input) throws Exception {
+            String element = input.next();
+            if (StringUtility.isEmpty(element)) {
+                return null;
+            }
+            return element.substring(0, element.length() - 1);
+        }
+
+    };
+
+    /** 日期计划 */
+    private static final CsvPlan DATE_PLAN = new CsvPlan() {
+
+        @Override
+        void write(Object object, CSVPrinter output) throws Exception {
+            if (object == null) {
+                output.print(StringUtility.EMPTY);
                 return;
             }
-            // 处理集合类型
-            if (Collection.class.isAssignableFrom(clazz)) {
-                if (object == null) {
-                    output.print(StringUtility.EMPTY);
-                    return;
-                }
-                ParameterizedType parameterizedType = ParameterizedType.class.cast(type);
-                Type[] types = parameterizedType.getActualTypeArguments();
-                CsvInformation information = CsvUtility.getInformation(TypeUtility.getRawType(types[0], null));
-                Collection<?> collection = Collection.class.cast(object);
-                output.print(collection.size());
-                for (Object element : collection) {
-                    if (information == null) {
-                        writeValue(element, types[0], output);
-                    } else {
-                        writeValue(element, types[0], TypeUtility.getRawType(types[0], null), information, output);
-                    }
-                }
+            output.print(String.valueOf(Date.class.cast(object).getTime()));
+        }
+
+        @Override
+        Object read(Iterator<String> input) throws Exception {
+            String element = input.next();
+            if (StringUtility.isEmpty(element)) {
+                return null;
+            }
+            return new Date(Long.valueOf(element));
+        }
+
+    };
+
+    /** 瞬间计划 */
+    private static final CsvPlan INSTANT_PLAN = new CsvPlan() {
+
+        @Override
+        void write(Object object, CSVPrinter output) throws Exception {
+            if (object == null) {
+                output.print(StringUtility.EMPTY);
                 return;
             }
-            // 处理映射类型
-            if (Map.class.isAssignableFrom(clazz)) {
-                if (object == null) {
-                    output.print(StringUtility.EMPTY);
-                    return;
-                }
-                ParameterizedType parameterizedType = ParameterizedType.class.cast(type);
-                Type[] types = parameterizedType.getActualTypeArguments();
-                CsvInformation keyInformation = CsvUtility.getInformation(TypeUtility.getRawType(types[0], null));
-                CsvInformation valueInformation = CsvUtility.getInformation(TypeUtility.getRawType(types[1], null));
-                Map<Object, Object> map = Map.class.cast(object);
-                output.print(map.size());
-                for (Entry<Object, Object> keyValue : map.entrySet()) {
-                    Object key = keyValue.getKey();
-                    if (keyInformation == null) {
-                        writeValue(key, types[0], output);
-                    } else {
-                        writeValue(key, types[0], TypeUtility.getRawType(types[0], null), keyInformation, output);
-                    }
-                    Object value = keyValue.getValue();
-                    if (valueInformation == null) {
-                        writeValue(value, types[1], output);
-                    } else {
-                        writeValue(value, types[1], TypeUtility.getRawType(types[1], null), valueInformation, output);
-                    }
-                }
+            output.print(String.valueOf(Instant.class.cast(object).toEpochMilli()));
+        }
+
+        @Override
+        Object read(Iterator<String> input) throws Exception {
+            String element = input.next();
+            if (StringUtility.isEmpty(element)) {
+                return null;
+            }
+            return Instant.ofEpochMilli(Long.valueOf(element));
+        }
+
+    };
+
+    /**
+     * 数组计划
+     * 
+     * @author Birdy
+     *
+     */
+    private static class ArrayPlan extends CsvPlan {
+
+        private final Class<?> componentClass;
+
+        private final CsvPlan componentPlan;
+
+        private ArrayPlan(Class<?> componentClass, CsvPlan componentPlan) {
+            this.componentClass = componentClass;
+            this.componentPlan = componentPlan;
+        }
+
+        @Override
+        void write(Object object, CSVPrinter output) throws Exception {
+            if (object == null) {
+                output.print(StringUtility.EMPTY);
                 return;
             }
-            // 处理对象类型
-            CsvInformation information = CsvUtility.getInformation(clazz);
-            writeValue(object, type, clazz, information, output);
-        } catch (Exception exception) {
-            throw new RuntimeException(exception);
+            int length = Array.getLength(object);
+            output.print(length);
+            for (int index = 0; index < length; index++) {
+                componentPlan.write(Array.get(object, index), output);
+            }
         }
+
+        @Override
+        Object read(Iterator<String> input) throws Exception {
+            String check = input.next();
+            if (StringUtility.isEmpty(check)) {
+                return null;
+            }
+            int length = Integer.valueOf(check);
+            Object array = Array.newInstance(componentClass, length);
+            for (int index = 0; index < length; index++) {
+                Array.set(array, index, componentPlan.read(input));
+            }
+            return array;
+        }
+
     }
 
-    private static void writeValue(Object object, Type type, Class<?> clazz, CsvInformation information, CSVPrinter output) throws IllegalArgumentException, IllegalAccessException, IOException {
-        if (object == null) {
-            output.print(StringUtility.EMPTY);
-            return;
-        } else {
-            output.print(information.getFields().length);
-        }
-        // TODO 此处代码需要优化
-        HashMap<String, Type> types = new HashMap<>();
-        TypeVariable<?>[] typeVariables = clazz.getTypeParameters();
-        if (typeVariables.length > 0) {
-            ParameterizedType parameterizedType = ParameterizedType.class.cast(type);
-            for (int index = 0; index < typeVariables.length; index++) {
-                types.put(typeVariables[index].getName(), parameterizedType.getActualTypeArguments()[index]);
+    /**
+     * 集合计划
+     * 
+     * @author Birdy
+     *
+     */
+    private static class CollectionPlan extends CsvPlan {
+
+        private final Class<?> clazz;
+
+        private final CsvPlan elementPlan;
+
+        private CollectionPlan(Class<?> clazz, CsvPlan elementPlan) {
+            this.clazz = clazz;
+            this.elementPlan = elementPlan;
+        }
+
+        @Override
+        void write(Object object, CSVPrinter output) throws Exception {
+            if (object == null) {
+                output.print(StringUtility.EMPTY);
+                return;
+            }
+            Collection<?> collection = Collection.class.cast(object);
+            output.print(collection.size());
+            for (Object element : collection) {
+                elementPlan.write(element, output);
             }
         }
-        for (Field field : information.getFields()) {
-            Object value = field.get(object);
-            type = field.getGenericType();
-            if (type instanceof TypeVariable) {
-                TypeVariable<?> typeVariable = TypeVariable.class.cast(type);
-                writeValue(value, types.get(typeVariable.getName()), output);
-            } else {
-                writeValue(value, type, output);
+
+        @Override
+        Object read(Iterator<String> input) throws Exception {
+            String check = input.next();
+            if (StringUtility.isEmpty(check)) {
+                return null;
+            }
+            int length = Integer.valueOf(check);
+            Collection<Object> collection = Collection.class.cast(clazz.newInstance());
+            for (int index = 0; index < length; index++) {
+                collection.add(elementPlan.read(input));
             }
+            return collection;
         }
+
     }
 
-    private static Object readValue(Type type, Iterator<String> input) {
-        try {
-            Class<?> clazz = TypeUtility.getRawType(type, null);
-            // 处理枚举/字符串/原始类型
-            if (clazz.isEnum() || String.class == clazz || ClassUtility.isPrimitiveOrWrapper(clazz)) {
-                String element = input.next();
-                if (StringUtility.isEmpty(element)) {
-                    return null;
-                }
-                if (String.class == clazz) {
-                    element = element.substring(0, element.length() - 1);
-                }
-                Object value = ConversionUtility.convert(element, clazz);
-                return value;
+    /**
+     * 映射计划
+     * 
+     * @author Birdy
+     *
+     */
+    private static class MapPlan extends CsvPlan {
+
+        private final Class<?> clazz;
+
+        private final CsvPlan keyPlan;
+
+        private final CsvPlan valuePlan;
+
+        private MapPlan(Class<?> clazz, CsvPlan keyPlan, CsvPlan valuePlan) {
+            this.clazz = clazz;
+            this.keyPlan = keyPlan;
+            this.valuePlan = valuePlan;
+        }
+
+        @Override
+        void write(Object object, CSVPrinter output) throws Exception {
+            if (object == null) {
+                output.print(StringUtility.EMPTY);
+                return;
             }
-            // 处理日期类型
-            if (Date.class.isAssignableFrom(clazz)) {
-                String element = input.next();
-                if (StringUtility.isEmpty(element)) {
-                    return null;
-                }
-                Object value = new Date(Long.valueOf(element));
-                return value;
+            Map<Object, Object> map = Map.class.cast(object);
+            output.print(map.size());
+            for (Entry<Object, Object> keyValue : map.entrySet()) {
+                keyPlan.write(keyValue.getKey(), output);
+                valuePlan.write(keyValue.getValue(), output);
             }
-            if (Instant.class.isAssignableFrom(clazz)) {
-                String element = input.next();
-                if (StringUtility.isEmpty(element)) {
-                    return null;
-                }
-                Object value = Instant.ofEpochMilli(Long.valueOf(element));
-                return value;
+        }
+
+        @Override
+        Object read(Iterator<String> input) throws Exception {
+            String check = input.next();
+            if (StringUtility.isEmpty(check)) {
+                return null;
             }
-            // 处理数组类型
-            if (clazz.isArray()) {
-                String check = input.next();
-                if (StringUtility.isEmpty(check)) {
-                    return null;
-                }
-                int length = Integer.valueOf(check);
-                Class<?> componentClass = null;
-                Type componentType = null;
-                if (type instanceof GenericArrayType) {
-                    GenericArrayType genericArrayType = GenericArrayType.class.cast(type);
-                    componentType = genericArrayType.getGenericComponentType();
-                    componentClass = TypeUtility.getRawType(componentType, null);
-                } else {
-                    componentType = clazz.getComponentType();
-                    componentClass = clazz.getComponentType();
-                }
-                CsvInformation information = getInformation(componentClass);
-                Object array = Array.newInstance(componentClass, length);
-                for (int index = 0; index < length; index++) {
-                    Object element = null;
-                    if (information == null) {
-                        element = readValue(componentType, input);
-                    } else {
-                        element = readValue(componentType, componentClass, information, input);
-                    }
-                    Array.set(array, index, element);
-                }
-                return array;
+            int length = Integer.valueOf(check);
+            Map<Object, Object> map = Map.class.cast(clazz.newInstance());
+            for (int index = 0; index < length; index++) {
+                Object key = keyPlan.read(input);
+                Object value = valuePlan.read(input);
+                map.put(key, value);
             }
-            // 处理集合类型
-            if (Collection.class.isAssignableFrom(clazz)) {
-                String check = input.next();
-                if (StringUtility.isEmpty(check)) {
-                    return null;
-                }
-                int length = Integer.valueOf(check);
-                ParameterizedType parameterizedType = ParameterizedType.class.cast(type);
-                Type[] types = parameterizedType.getActualTypeArguments();
-                CsvInformation information = getInformation(TypeUtility.getRawType(types[0], null));
-                Collection<Object> collection = Collection.class.cast(clazz.newInstance());
-                for (int index = 0; index < length; index++) {
-                    Object element = null;
-                    if (information == null) {
-                        element = readValue(types[0], input);
-                    } else {
-                        element = readValue(types[0], TypeUtility.getRawType(types[0], null), information, input);
+            return map;
+        }
+
+    }
+
+    /**
+     * 对象计划
+     * 
+     * <pre>
+     * 属性计划在第一次使用时编译,以支持引用自身的类型.
+     * </pre>
+     * 
+     * @author Birdy
+     *
+     */
+    private static class ObjectPlan extends CsvPlan {
+
+        private final Type type;
+
+        private final Class<?> clazz;
+
+        private final CsvInformation information;
+
+        private volatile CsvPlan[] plans;
+
+        private ObjectPlan(Type type, Class<?> clazz, CsvInformation information) {
+            this.type = type;
+            this.clazz = clazz;
+            this.information = information;
+        }
+
+        private CsvPlan[] getPlans() {
+            CsvPlan[] plans = this.plans;
+            if (plans == null) {
+                // 将类型变量替换为实际类型
+                HashMap<String, Type> types = new HashMap<>();
+                TypeVariable<?>[] typeVariables = clazz.getTypeParameters();
+                if (typeVariables.length > 0) {
+                    ParameterizedType parameterizedType = ParameterizedType.class.cast(type);
+                    for (int index = 0; index < typeVariables.length; index++) {
+                        types.put(typeVariables[index].getName(), parameterizedType.getActualTypeArguments()[index]);
                     }
-                    collection.add(element);
-                }
-                return collection;
-            }
-            // 处理映射类型
-            if (Map.class.isAssignableFrom(clazz)) {
-                String check = input.next();
-                if (StringUtility.isEmpty(check)) {
-                    return null;
                 }
-                int length = Integer.valueOf(check);
-                ParameterizedType parameterizedType = ParameterizedType.class.cast(type);
-                Type[] types = parameterizedType.getActualTypeArguments();
-                CsvInformation keyInformation = getInformation(TypeUtility.getRawType(types[0], null));
-                CsvInformation valueInformation = getInformation(TypeUtility.getRawType(types[1], null));
-                Map<Object, Object> map = Map.class.cast(clazz.newInstance());
-                for (int index = 0; index < length; index++) {
-                    Object key = null;
-                    if (keyInformation == null) {
-                        key = readValue(types[0], input);
-                    } else {
-                        key = readValue(types[0], TypeUtility.getRawType(types[0], null), keyInformation, input);
+                Field[] fields = information.getFields();
+                plans = new CsvPlan[fields.length];
+                for (int index = 0; index < fields.length; index++) {
+                    Type type = fields[index].getGenericType();
+                    if (type instanceof TypeVariable) {
+                        TypeVariable<?> typeVariable = TypeVariable.class.cast(type);
+                        type = types.get(typeVariable.getName());
                     }
-                    Object value = null;
-                    if (valueInformation == null) {
-                        value = readValue(types[1], input);
-                    } else {
-                        value = readValue(types[1], TypeUtility.getRawType(types[1], null), valueInformation, input);
-                    }
-                    map.put(key, value);
+                    plans[index] = getPlan(type);
                 }
-                return map;
+                this.plans = plans;
+            }
+            return plans;
+        }
+
+        @Override
+        void write(Object object, CSVPrinter output) throws Exception {
+            if (object == null) {
+                output.print(StringUtility.EMPTY);
+                return;
+            }
+            Field[] fields = information.getFields();
+            CsvPlan[] plans = getPlans();
+            output.print(fields.length);
+            for (int index = 0; index < fields.length; index++) {
+                plans[index].write(fields[index].get(object), output);
+            }
+        }
+
+        @Override
+        Object read(Iterator<String> input) throws Exception {
+            String check = input.next();
+            if (StringUtility.isEmpty(check)) {
+                return null;
+            }
+            Object object = information.getConstructor().newInstance();
+            Field[] fields = information.getFields();
+            CsvPlan[] plans = getPlans();
+            for (int index = 0; index < fields.length; index++) {
+                fields[index].set(object, plans[index].read(input));
             }
-            // 处理对象类型
-            CsvInformation information = CsvUtility.getInformation(clazz);
-            Object object = readValue(type, clazz, information, input);
             return object;
-        } catch (Exception exception) {
-            throw new RuntimeException(exception);
         }
+
     }
 
-    private static Object readValue(Type type, Class<?> clazz, CsvInformation information, Iterator<String> input) throws IllegalArgumentException, IllegalAccessException, InstantiationException, InvocationTargetException {
-        String check = input.next();
-        if (StringUtility.isEmpty(check)) {
-            return null;
+    private static CsvPlan compile(Type type) {
+        Class<?> clazz = TypeUtility.getRawType(type, null);
+        // 处理枚举/字符串/原始类型
+        if (String.class == clazz) {
+            return STRING_PLAN;
         }
-        Constructor<?> constructor = information.getConstructor();
-        Object object = constructor.newInstance();
-        // TODO 此处代码需要优化
-        HashMap<String, Type> types = new HashMap<>();
-        TypeVariable<?>[] typeVariables = clazz.getTypeParameters();
-        if (typeVariables.length > 0) {
-            ParameterizedType parameterizedType = ParameterizedType.class.cast(type);
-            for (int index = 0; index < typeVariables.length; index++) {
-                types.put(typeVariables[index].getName(), parameterizedType.getActualTypeArguments()[index]);
-            }
+        if (clazz.isEnum() || ClassUtility.isPrimitiveOrWrapper(clazz)) {
+            return new ValuePlan(clazz);
+        }
+        // 处理日期类型
+        if (Date.class.isAssignableFrom(clazz)) {
+            return DATE_PLAN;
         }
-        for (Field field : information.getFields()) {
-            Object value;
-            type = field.getGenericType();
-            if (type instanceof TypeVariable) {
-                TypeVariable<?> typeVariable = TypeVariable.class.cast(type);
-                value = readValue(types.get(typeVariable.getName()), input);
+        if (Instant.class.isAssignableFrom(clazz)) {
+            return INSTANT_PLAN;
+        }
+        // 处理数组类型
+        if (clazz.isArray()) {
+            Class<?> componentClass = null;
+            Type componentType = null;
+            if (type instanceof GenericArrayType) {
+                GenericArrayType genericArrayType = GenericArrayType.class.cast(type);
+                componentType = genericArrayType.getGenericComponentType();
+                componentClass = TypeUtility.getRawType(componentType, null);
             } else {
-                value = readValue(type, input);
+                componentType = clazz.getComponentType();
+                componentClass = clazz.getComponentType();
+            }
+            return new ArrayPlan(componentClass, getPlan(componentType));
+        }
+        // 处理集合类型
+        if (Collection.class.isAssignableFrom(clazz)) {
+            ParameterizedType parameterizedType = ParameterizedType.class.cast(type);
+            Type[] types = parameterizedType.getActualTypeArguments();
+            return new CollectionPlan(clazz, getPlan(types[0]));
+        }
+        // 处理映射类型
+        if (Map.class.isAssignableFrom(clazz)) {
+            ParameterizedType parameterizedType = ParameterizedType.class.cast(type);
+            Type[] types = parameterizedType.getActualTypeArguments();
+            return new MapPlan(clazz, getPlan(types[0]), getPlan(types[1]));
+        }
+        // 处理对象类型
+        return new ObjectPlan(type, clazz, getInformation(clazz));
+    }
+
+    private static CsvPlan getPlan(Type type) {
+        CsvPlan plan = PLANS.get(type);
+        if (plan == null) {
+            // 不使用computeIfAbsent,因为编译会递归获取其它类型的计划
+            plan = compile(type);
+            CsvPlan current = PLANS.putIfAbsent(type, plan);
+            if (current != null) {
+                plan = current;
             }
-            field.set(object, value);
         }
-        return object;
+        return plan;
     }
 
     /**
@@ -385,13 +498,60 @@ public class CsvUtility {
     public static String object2String(Object instance, Type type) {
         StringBuilder buffer = new StringBuilder();
         try (CSVPrinter output = new CSVPrinter(buffer, FORMAT)) {
-            writeValue(instance, type, output);
+            getPlan(type).write(instance, output);
         } catch (Exception exception) {
             throw new RuntimeException(exception);
         }
         return buffer.toString();
     }
 
+    /**
+     * 将对象以CSV写到输出(不换行)
+     * 
+     * <pre>
+     * 不构造中间字符串,也不关闭输出.
+     * </pre>
+     * 
+     * @param instance
+     * @param type
+     * @param output
+     */
+    public static void object2Appendable(Object instance, Type type, Appendable output) {
+        try {
+            CSVPrinter printer = new CSVPrinter(output, FORMAT);
+            getPlan(type).write(instance, printer);
+            printer.flush();
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * 将多个对象以CSV写到输出(每个对象一行,以换行分隔)
+     * 
+     * <pre>
+     * 所有对象共用一个CSVPrinter,不构造每行的字符串,也不关闭输出.
+     * 通道可以使用Channels.newWriter包装为Appendable.
+     * </pre>
+     * 
+     * @param instances
+     * @param type
+     * @param output
+     */
+    public static void objects2Appendable(Iterable<?> instances, Type type, Appendable output) {
+        CsvPlan plan = getPlan(type);
+        try {
+            CSVPrinter printer = new CSVPrinter(output, STREAM_FORMAT);
+            for (Object instance : instances) {
+                plan.write(instance, printer);
+                printer.println();
+            }
+            printer.flush();
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
     /**
      * 将CSV转换为对象(TODO 测试发现csv转换为json转换2倍时间)
      * 
@@ -405,7 +565,7 @@ public class CsvUtility {
             Iterator<CSVRecord> iterator = input.iterator();
             if (iterator.hasNext()) {
                 CSVRecord values = iterator.next();
-                return (T) readValue(type, values.iterator());
+                return (T) getPlan(type).read(values.iterator());
             }
             return null;
         } catch (Exception exception) {
@@ -0,0 +1,384 @@
+package com.jstarcraft.core.common.conversion.csv.query;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.jstarcraft.core.utility.StringUtility;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * AWK执行器
+ * 
+ * <pre>
+ * 在进程内执行{@link AwkCommand}构建的条件,不需要外部的gawk.
+ * 文件以内存映射读取,按照行对齐切分为多个分块,由ForkJoinPool并行扫描;
+ * 每行只解析条件需要的字段并直接比较字节,只有匹配的行才会构造字符串.
+ * 查询时每个分块完成以后立即按照顺序回调,并且释放分块的映射与匹配列表.
+ * 
+ * 比较语义与AWK一致:数值条件在字段是数值时按照数值比较,否则按照字符串比较;字符串条件按照字符串比较.
+ * 字段按照RFC 4180解码(与CsvUtility一致),所以字符串条件不需要包含引号.
+ * 与AWK一样以换行分隔记录.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class AwkExecutor {
+
+    /** 分块大小 */
+    private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /** 分块映射的额外长度(用于跨越分块结束位置的行,不足时会加倍) */
+    private static final int OVERFLOW_SIZE = 64 * 1024;
+
+    private static final byte LINE = '\n';
+
+    private static final byte RETURN = '\r';
+
+    /** 分隔符 */
+    private final byte delimiter;
+
+    /** 引号 */
+    private final byte quoter;
+
+    private final ForkJoinPool pool;
+
+    /** 每个线程的行(复用字段边界数组) */
+    private final ThreadLocal<AwkRow> rows;
+
+    public AwkExecutor(char delimiter, char quoter) {
+        this(delimiter, quoter, ForkJoinPool.commonPool());
+    }
+
+    public AwkExecutor(char delimiter, char quoter, ForkJoinPool pool) {
+        // 只支持单字节的分隔符与引号
+        if (delimiter > 0x7F || quoter > 0x7F) {
+            throw new IllegalArgumentException();
+        }
+        this.delimiter = (byte) delimiter;
+        this.quoter = (byte) quoter;
+        this.pool = pool;
+        this.rows = ThreadLocal.withInitial(() -> new AwkRow(this.delimiter, this.quoter));
+    }
+
+    /**
+     * 分块
+     * 
+     * @author Birdy
+     *
+     */
+    private class AwkChunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+
+        /** 分块的开始位置(行从此位置以后开始) */
+        private final long from;
+
+        /** 分块的结束位置(行在此位置之前开始) */
+        private final long to;
+
+        private final Predicate<AwkRow> matcher;
+
+        /** 是否记录匹配的行 */
+        private final boolean record;
+
+        private ByteBuffer buffer;
+
+        private long count;
+
+        /** 匹配的行(开始位置与结束位置) */
+        private IntArrayList lines;
+
+        private AwkChunk(FileChannel channel, long from, long to, Predicate<AwkRow> matcher, boolean record) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+            this.matcher = matcher;
+            this.record = record;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                long size = channel.size();
+                // 从前一个字节开始映射,用于判断分块是否刚好从行首开始
+                long base = from == 0L ? 0L : from - 1L;
+                long maximum = Math.min(size - base, Integer.MAX_VALUE);
+                long length = Math.min(to - base + OVERFLOW_SIZE, maximum);
+                MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, base, length);
+                this.lines = record ? new IntArrayList() : null;
+                int limit = buffer.limit();
+                int end = (int) (to - base);
+                int position = 0;
+                if (from != 0L) {
+                    while (position < limit && buffer.get(position) != LINE) {
+                        position++;
+                    }
+                    position++;
+                }
+                AwkRow row = rows.get();
+                while (position < end) {
+                    int next = position;
+                    while (true) {
+                        while (next < limit && buffer.get(next) != LINE) {
+                            next++;
+                        }
+                        if (next < limit || limit == maximum) {
+                            break;
+                        }
+                        // 行超出映射范围,扩大映射
+                        length = Math.min(length * 2L, maximum);
+                        buffer = channel.map(MapMode.READ_ONLY, base, length);
+                        limit = buffer.limit();
+                    }
+                    int last = next;
+                    if (last > position && buffer.get(last - 1) == RETURN) {
+                        last--;
+                    }
+                    if (last > position) {
+                        row.reset(buffer, position, last);
+                        if (matcher.test(row)) {
+                            count++;
+                            if (record) {
+                                lines.add(position);
+                                lines.add(last);
+                            }
+                        }
+                    }
+                    position = next + 1;
+                }
+                if (record) {
+                    this.buffer = buffer;
+                }
+            } catch (IOException exception) {
+                throw new IllegalStateException(exception);
+            }
+        }
+
+    }
+
+    private static class AwkValue {
+
+        /** 字符串形式的字节 */
+        private final byte[] bytes;
+
+        /** 数值形式(NaN表示字符串条件) */
+        private final double number;
+
+        private AwkValue(Object value) {
+            this.bytes = String.valueOf(value).getBytes(StringUtility.CHARSET);
+            this.number = value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+        }
+
+        private int compare(AwkRow row, int index) {
+            if (!Double.isNaN(number)) {
+                double field = row.getNumber(index);
+                if (!Double.isNaN(field)) {
+                    return field < number ? -1 : (field > number ? 1 : 0);
+                }
+            }
+            return row.compare(index, bytes);
+        }
+
+    }
+
+    private Predicate<AwkRow> compile(AwkOperator operator, int index, Object value) {
+        AwkValue awk = new AwkValue(value);
+        switch (operator) {
+        case EQUAL:
+            return (row) -> awk.compare(row, index) == 0;
+        case NOT:
+            return (row) -> awk.compare(row, index) != 0;
+        case GREATER_EQUAL:
+            return (row) -> awk.compare(row, index) >= 0;
+        case GREATER_THAN:
+            return (row) -> awk.compare(row, index) > 0;
+        case LESS_EQUAL:
+            return (row) -> awk.compare(row, index) <= 0;
+        case LESS_THAN:
+            return (row) -> awk.compare(row, index) < 0;
+        default:
+            throw new IllegalArgumentException(StringUtility.format("不支持的运算符[{}]", operator));
+        }
+    }
+
+    /**
+     * 将条件树编译为匹配器
+     * 
+     * @param condition
+     * @return
+     */
+    private Predicate<AwkRow> compile(AwkCondition condition) {
+        if (condition instanceof ComplexCondition) {
+            ComplexCondition complex = (ComplexCondition) condition;
+            Predicate<AwkRow> left = compile(complex.getLeft());
+            Predicate<AwkRow> right = compile(complex.getRight());
+            switch (complex.getOperator()) {
+            case AND:
+                return left.and(right);
+            case OR:
+                return left.or(right);
+            default:
+                throw new IllegalArgumentException(StringUtility.format("不支持的运算符[{}]", complex.getOperator()));
+            }
+        }
+        if (condition instanceof SimpleCondition) {
+            SimpleCondition simple = (SimpleCondition) condition;
+            // AWK的字段从1开始
+            int index = simple.getIndex() - 1;
+            Object value = simple.getValue();
+            if (simple.getOperator() == AwkOperator.IN) {
+                int length = Array.getLength(value);
+                AwkValue[] values = new AwkValue[length];
+                for (int position = 0; position < length; position++) {
+                    values[position] = new AwkValue(Array.get(value, position));
+                }
+                return (row) -> {
+                    for (AwkValue element : values) {
+                        if (element.compare(row, index) == 0) {
+                            return true;
+                        }
+                    }
+                    return false;
+                };
+            }
+            return compile(simple.getOperator(), index, value);
+        }
+        throw new IllegalArgumentException(StringUtility.format("不支持的条件[{}]", condition));
+    }
+
+    private List<AwkChunk> split(AwkCondition condition, boolean record, List<FileChannel> channels, String... paths) throws IOException {
+        Predicate<AwkRow> matcher = compile(condition);
+        List<AwkChunk> chunks = new ArrayList<>();
+        for (String path : paths) {
+            FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+            channels.add(channel);
+            long size = channel.size();
+            for (long from = 0L; from < size; from += CHUNK_SIZE) {
+                chunks.add(new AwkChunk(channel, from, Math.min(from + CHUNK_SIZE, size), matcher, record));
+            }
+        }
+        return chunks;
+    }
+
+    private void close(List<FileChannel> channels) {
+        for (FileChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException exception) {
+            }
+        }
+    }
+
+    /**
+     * 统计匹配的行数
+     * 
+     * @param condition
+     * @param paths
+     * @return
+     */
+    public long count(AwkCondition condition, String... paths) {
+        List<FileChannel> channels = new ArrayList<>(paths.length);
+        try {
+            List<AwkChunk> chunks = split(condition, false, channels, paths);
+            pool.invoke(new RecursiveAction() {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(chunks);
+                }
+
+            });
+            long count = 0L;
+            for (AwkChunk chunk : chunks) {
+                count += chunk.count;
+            }
+            return count;
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        } finally {
+            close(channels);
+        }
+    }
+
+    /**
+     * 查询匹配的行
+     * 
+     * <pre>
+     * 按照文件与行的顺序在调用线程回调,所以回调不需要线程安全.
+     * 所有分块并行扫描,调用线程按照顺序等待每个分块完成,立即回调它的匹配行并且释放它的映射,
+     * 不需要等待所有分块扫描完成.
+     * </pre>
+     * 
+     * @param condition
+     * @param consumer
+     * @param paths
+     * @return 匹配的行数
+     */
+    public long query(AwkCondition condition, Consumer<String> consumer, String... paths) {
+        List<FileChannel> channels = new ArrayList<>(paths.length);
+        List<AwkChunk> chunks = null;
+        try {
+            chunks = split(condition, true, channels, paths);
+            for (AwkChunk chunk : chunks) {
+                pool.execute(chunk);
+            }
+            long count = 0L;
+            byte[] bytes = new byte[256];
+            for (int cursor = 0, number = chunks.size(); cursor < number; cursor++) {
+                AwkChunk chunk = chunks.get(cursor);
+                chunk.join();
+                ByteBuffer buffer = chunk.buffer;
+                IntArrayList lines = chunk.lines;
+                for (int index = 0, size = lines.size(); index < size; index += 2) {
+                    int from = lines.getInt(index);
+                    int length = lines.getInt(index + 1) - from;
+                    if (bytes.length < length) {
+                        bytes = new byte[Math.max(length, bytes.length * 2)];
+                    }
+                    for (int position = 0; position < length; position++) {
+                        bytes[position] = buffer.get(from + position);
+                    }
+                    consumer.accept(new String(bytes, 0, length, StringUtility.CHARSET));
+                }
+                count += chunk.count;
+                // 已经回调的分块不再持有映射与匹配列表
+                chunk.buffer = null;
+                chunk.lines = null;
+                chunks.set(cursor, null);
+            }
+            return count;
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        } finally {
+            if (chunks != null) {
+                // 异常时取消未开始的分块
+                for (AwkChunk chunk : chunks) {
+                    if (chunk != null) {
+                        chunk.cancel(false);
+                    }
+                }
+            }
+            close(channels);
+        }
+    }
+
+}
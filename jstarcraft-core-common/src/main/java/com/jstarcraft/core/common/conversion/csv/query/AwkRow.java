@@ -0,0 +1,216 @@
+package com.jstarcraft.core.common.conversion.csv.query;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * AWK行
+ * 
+ * <pre>
+ * 直接在(内存映射的)字节缓冲上按需解析字段,只记录字段的边界,不构造字符串.
+ * 字段以分隔符分割,以引号开始的字段直到单独的引号结束,两个连续引号表示一个引号(RFC 4180).
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+class AwkRow {
+
+    private final byte delimiter;
+
+    private final byte quoter;
+
+    private ByteBuffer buffer;
+
+    /** 行的结束位置(不包含) */
+    private int to;
+
+    /** 解析游标(大于to表示已经解析完毕) */
+    private int cursor;
+
+    /** 已经解析的字段数量 */
+    private int size;
+
+    /** 字段的开始位置 */
+    private int[] starts = new int[16];
+
+    /** 字段的结束位置(不包含) */
+    private int[] ends = new int[16];
+
+    /** 字段是否有引号 */
+    private boolean[] quotes = new boolean[16];
+
+    AwkRow(byte delimiter, byte quoter) {
+        this.delimiter = delimiter;
+        this.quoter = quoter;
+    }
+
+    void reset(ByteBuffer buffer, int from, int to) {
+        this.buffer = buffer;
+        this.to = to;
+        this.cursor = from;
+        this.size = 0;
+    }
+
+    /**
+     * 解析到指定的字段
+     * 
+     * @param index
+     *            从0开始
+     * @return 字段是否存在
+     */
+    private boolean parse(int index) {
+        while (size <= index) {
+            if (cursor > to) {
+                return false;
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                quotes = Arrays.copyOf(quotes, size * 2);
+            }
+            int position = cursor;
+            if (position < to && buffer.get(position) == quoter) {
+                int start = ++position;
+                while (position < to) {
+                    if (buffer.get(position) == quoter) {
+                        if (position + 1 < to && buffer.get(position + 1) == quoter) {
+                            position += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    position++;
+                }
+                starts[size] = start;
+                ends[size] = position;
+                quotes[size] = true;
+                // 跳过结束引号以后直到分隔符的内容
+                while (position < to && buffer.get(position) != delimiter) {
+                    position++;
+                }
+            } else {
+                int start = position;
+                while (position < to && buffer.get(position) != delimiter) {
+                    position++;
+                }
+                starts[size] = start;
+                ends[size] = position;
+                quotes[size] = false;
+            }
+            size++;
+            cursor = position + 1;
+        }
+        return true;
+    }
+
+    /**
+     * 获取字段的数值
+     * 
+     * @param index
+     * @return 非数值的字段返回NaN
+     */
+    double getNumber(int index) {
+        if (!parse(index) || quotes[index]) {
+            return Double.NaN;
+        }
+        int position = starts[index];
+        int end = ends[index];
+        while (position < end && buffer.get(position) == ' ') {
+            position++;
+        }
+        while (end > position && buffer.get(end - 1) == ' ') {
+            end--;
+        }
+        if (position == end) {
+            return Double.NaN;
+        }
+        boolean negative = false;
+        byte character = buffer.get(position);
+        if (character == '-' || character == '+') {
+            negative = character == '-';
+            position++;
+        }
+        long mantissa = 0L;
+        boolean number = false;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; position < end; position++) {
+            character = buffer.get(position);
+            if (character >= '0' && character <= '9') {
+                number = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10L + (character - '0');
+                    digits += mantissa == 0L ? 0 : 1;
+                    if (point) {
+                        scale++;
+                    }
+                } else if (!point) {
+                    scale--;
+                }
+            } else if (character == '.' && !point) {
+                point = true;
+            } else {
+                // 指数等少见格式交给标准实现
+                return getNumber(starts[index], ends[index]);
+            }
+        }
+        if (!number) {
+            return Double.NaN;
+        }
+        double value = mantissa;
+        if (scale > 0) {
+            value /= Math.pow(10D, scale);
+        } else if (scale < 0) {
+            value *= Math.pow(10D, -scale);
+        }
+        return negative ? -value : value;
+    }
+
+    private double getNumber(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int index = 0; index < bytes.length; index++) {
+            bytes[index] = buffer.get(from + index);
+        }
+        try {
+            return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException exception) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * 按照字节比较字段与指定的值(UTF-8的字节序与码点顺序一致)
+     * 
+     * @param index
+     * @param value
+     * @return
+     */
+    int compare(int index, byte[] value) {
+        if (!parse(index)) {
+            return value.length == 0 ? 0 : -1;
+        }
+        int position = starts[index];
+        int end = ends[index];
+        boolean quote = quotes[index];
+        int cursor = 0;
+        while (position < end && cursor < value.length) {
+            byte character = buffer.get(position++);
+            if (quote && character == quoter) {
+                // 两个连续引号表示一个引号
+                position++;
+            }
+            int difference = (character & 0xFF) - (value[cursor++] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        if (position < end) {
+            return 1;
+        }
+        return cursor < value.length ? -1 : 0;
+    }
+
+}
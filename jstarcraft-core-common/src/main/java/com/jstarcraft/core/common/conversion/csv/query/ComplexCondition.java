@@ -20,6 +20,18 @@ public class ComplexCondition implements AwkCondition {
         this.operator = operator;
     }
 
+    AwkOperator getOperator() {
+        return operator;
+    }
+
+    AwkCondition getLeft() {
+        return left;
+    }
+
+    AwkCondition getRight() {
+        return right;
+    }
+
     @Override
     public String getBeginContent() {
         return left.getBeginContent() + right.getBeginContent();
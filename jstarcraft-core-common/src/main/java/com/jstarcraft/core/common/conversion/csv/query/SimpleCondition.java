@@ -29,6 +29,23 @@ public class SimpleCondition implements AwkCondition {
         this.value = value;
     }
 
+    /**
+     * 获取属性位置(从1开始)
+     * 
+     * @return
+     */
+    int getIndex() {
+        return index;
+    }
+
+    AwkOperator getOperator() {
+        return operator;
+    }
+
+    Object getValue() {
+        return value;
+    }
+
     @Override
     public String getBeginContent() {
         if (AwkOperator.IN.equals(operator)) {
@@ -0,0 +1,87 @@
+package com.jstarcraft.core.common.hash;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 哈希访问器
+ * 
+ * <pre>
+ * 按照小端序读取字节数组/字节缓冲(包括堆外缓冲),使同一个哈希算法可以直接作用于不同的输入,不需要复制.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ * @param <T>
+ */
+abstract class HashAccess<T> {
+
+    static final HashAccess<byte[]> BYTES = new HashAccess<byte[]>() {
+
+        @Override
+        long getLong(byte[] data, int index) {
+            return (data[index] & 0xFFL) | (data[index + 1] & 0xFFL) << 8 | (data[index + 2] & 0xFFL) << 16 | (data[index + 3] & 0xFFL) << 24 | (data[index + 4] & 0xFFL) << 32 | (data[index + 5] & 0xFFL) << 40 | (data[index + 6] & 0xFFL) << 48 | (data[index + 7] & 0xFFL) << 56;
+        }
+
+        @Override
+        int getInt(byte[] data, int index) {
+            return (data[index] & 0xFF) | (data[index + 1] & 0xFF) << 8 | (data[index + 2] & 0xFF) << 16 | (data[index + 3] & 0xFF) << 24;
+        }
+
+        @Override
+        int getByte(byte[] data, int index) {
+            return data[index] & 0xFF;
+        }
+
+    };
+
+    static final HashAccess<ByteBuffer> BUFFER = new HashAccess<ByteBuffer>() {
+
+        @Override
+        long getLong(ByteBuffer data, int index) {
+            // 使用绝对位置读取,不修改缓冲的位置与字节序
+            long value = data.getLong(index);
+            return data.order() == ByteOrder.LITTLE_ENDIAN ? value : Long.reverseBytes(value);
+        }
+
+        @Override
+        int getInt(ByteBuffer data, int index) {
+            int value = data.getInt(index);
+            return data.order() == ByteOrder.LITTLE_ENDIAN ? value : Integer.reverseBytes(value);
+        }
+
+        @Override
+        int getByte(ByteBuffer data, int index) {
+            return data.get(index) & 0xFF;
+        }
+
+    };
+
+    /**
+     * 读取小端序的8个字节
+     * 
+     * @param data
+     * @param index
+     * @return
+     */
+    abstract long getLong(T data, int index);
+
+    /**
+     * 读取小端序的4个字节
+     * 
+     * @param data
+     * @param index
+     * @return
+     */
+    abstract int getInt(T data, int index);
+
+    /**
+     * 读取无符号的1个字节
+     * 
+     * @param data
+     * @param index
+     * @return
+     */
+    abstract int getByte(T data, int index);
+
+}
@@ -1,5 +1,7 @@
 package com.jstarcraft.core.common.hash;
 
+import java.nio.ByteBuffer;
+
 import com.jstarcraft.core.utility.StringUtility;
 
 /**
@@ -103,6 +105,51 @@ public class HashUtility {
         return data;
     }
 
+    /**
+     * MurmurHash3 64位混合函数(fmix64), by Austin Appleby
+     * 
+     * @param data
+     * @return
+     */
+    public static long murmur3NumberHash64(long data) {
+        data ^= data >>> 33;
+        data *= 0xff51afd7ed558ccdL;
+        data ^= data >>> 33;
+        data *= 0xc4ceb9fe1a85ec53L;
+        data ^= data >>> 33;
+        return data;
+    }
+
+    /**
+     * MurmurHash3 64位组合哈希(用于复合键,不需要装箱或者构造数组)
+     * 
+     * @param left
+     * @param right
+     * @return
+     */
+    public static long murmur3NumberHash64(long left, long right) {
+        long hash = murmur3NumberHash64(left);
+        hash ^= right + 0x9e3779b97f4a7c15L + (hash << 6) + (hash >>> 2);
+        return murmur3NumberHash64(hash);
+    }
+
+    /**
+     * xxHash64, by Yann Collet
+     * 
+     * <pre>
+     * 等价于对小端序的8个字节计算xxBytesHash64
+     * </pre>
+     * 
+     * @param data
+     * @return
+     */
+    public static long xxNumberHash64(long data) {
+        long hash = XX_PRIME5 + 8L;
+        hash ^= xxRound(0L, data);
+        hash = Long.rotateLeft(hash, 27) * XX_PRIME1 + XX_PRIME4;
+        return xxAvalanche(hash);
+    }
+
     // 字符串哈希部分
 
     /**
@@ -1284,4 +1331,499 @@ public class HashUtility {
         return hash;
     }
 
+    // 字节哈希部分
+
+    static final long XX_PRIME1 = 0x9E3779B185EBCA87L;
+    static final long XX_PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    static final long XX_PRIME3 = 0x165667B19E3779F9L;
+    static final long XX_PRIME4 = 0x85EBCA77C2B2AE63L;
+    static final long XX_PRIME5 = 0x27D4EB2F165667C5L;
+
+    /** wyhash默认密钥 */
+    private static final long WY_SECRET0 = 0xa0761d6478bd642fL;
+    private static final long WY_SECRET1 = 0xe7037ed1a0b428dbL;
+    private static final long WY_SECRET2 = 0x8ebc6af09c88c6e3L;
+    private static final long WY_SECRET3 = 0x589965cc75374cc3L;
+
+    private static <T> int murmur3Hash32(HashAccess<T> access, T data, int offset, int length, int seed) {
+        int c1 = 0xcc9e2d51;
+        int c2 = 0x1b873593;
+
+        int hash = seed;
+        int end = offset + (length & ~3);
+        for (int index = offset; index < end; index += 4) {
+            int k = access.getInt(data, index);
+            k *= c1;
+            k = Integer.rotateLeft(k, 15);
+            k *= c2;
+            hash ^= k;
+            hash = Integer.rotateLeft(hash, 13);
+            hash = hash * 5 + 0xe6546b64;
+        }
+
+        int k = 0;
+        switch (length & 3) {
+        case 3:
+            k ^= access.getByte(data, end + 2) << 16;
+        case 2:
+            k ^= access.getByte(data, end + 1) << 8;
+        case 1:
+            k ^= access.getByte(data, end);
+            k *= c1;
+            k = Integer.rotateLeft(k, 15);
+            k *= c2;
+            hash ^= k;
+        }
+
+        hash ^= length;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * MurmurHash3 x86_32, by Austin Appleby
+     * 
+     * <pre>
+     * 对UTF-8编码的字节计算时与murmur3StringHash32一致
+     * </pre>
+     * 
+     * @param data
+     * @return
+     */
+    public static int murmur3BytesHash32(byte[] data) {
+        return murmur3Hash32(HashAccess.BYTES, data, 0, data.length, 0);
+    }
+
+    /**
+     * MurmurHash3 x86_32, by Austin Appleby
+     * 
+     * @param seed
+     * @param data
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static int murmur3BytesHash32(int seed, byte[] data, int offset, int length) {
+        checkRange(data.length, offset, length);
+        return murmur3Hash32(HashAccess.BYTES, data, offset, length, seed);
+    }
+
+    /**
+     * MurmurHash3 x86_32, by Austin Appleby
+     * 
+     * <pre>
+     * 计算position到limit之间的字节,不修改缓冲的位置.
+     * </pre>
+     * 
+     * @param seed
+     * @param data
+     * @return
+     */
+    public static int murmur3BytesHash32(int seed, ByteBuffer data) {
+        return murmur3Hash32(HashAccess.BUFFER, data, data.position(), data.remaining(), seed);
+    }
+
+    /**
+     * 
+     * @param hash
+     *            用于保存128位的结果(null表示只需要低64位)
+     * @return 低64位
+     */
+    private static <T> long murmur3Hash128(HashAccess<T> access, T data, int offset, int length, long seed, long[] hash) {
+        long c1 = 0x87c37b91114253d5L;
+        long c2 = 0x4cf5ad432745937fL;
+
+        long h1 = seed;
+        long h2 = seed;
+        int end = offset + (length & ~15);
+        for (int index = offset; index < end; index += 16) {
+            long k1 = access.getLong(data, index);
+            long k2 = access.getLong(data, index + 8);
+
+            k1 *= c1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= c2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= c2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= c1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0L;
+        long k2 = 0L;
+        switch (length & 15) {
+        case 15:
+            k2 ^= ((long) access.getByte(data, end + 14)) << 48;
+        case 14:
+            k2 ^= ((long) access.getByte(data, end + 13)) << 40;
+        case 13:
+            k2 ^= ((long) access.getByte(data, end + 12)) << 32;
+        case 12:
+            k2 ^= ((long) access.getByte(data, end + 11)) << 24;
+        case 11:
+            k2 ^= ((long) access.getByte(data, end + 10)) << 16;
+        case 10:
+            k2 ^= ((long) access.getByte(data, end + 9)) << 8;
+        case 9:
+            k2 ^= access.getByte(data, end + 8);
+            k2 *= c2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= c1;
+            h2 ^= k2;
+        case 8:
+            k1 ^= ((long) access.getByte(data, end + 7)) << 56;
+        case 7:
+            k1 ^= ((long) access.getByte(data, end + 6)) << 48;
+        case 6:
+            k1 ^= ((long) access.getByte(data, end + 5)) << 40;
+        case 5:
+            k1 ^= ((long) access.getByte(data, end + 4)) << 32;
+        case 4:
+            k1 ^= ((long) access.getByte(data, end + 3)) << 24;
+        case 3:
+            k1 ^= ((long) access.getByte(data, end + 2)) << 16;
+        case 2:
+            k1 ^= ((long) access.getByte(data, end + 1)) << 8;
+        case 1:
+            k1 ^= access.getByte(data, end);
+            k1 *= c1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= c2;
+            h1 ^= k1;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = murmur3NumberHash64(h1);
+        h2 = murmur3NumberHash64(h2);
+        h1 += h2;
+        h2 += h1;
+        if (hash != null) {
+            hash[0] = h1;
+            hash[1] = h2;
+        }
+        return h1;
+    }
+
+    /**
+     * MurmurHash3 x64_128的低64位, by Austin Appleby
+     * 
+     * @param data
+     * @return
+     */
+    public static long murmur3BytesHash64(byte[] data) {
+        return murmur3Hash128(HashAccess.BYTES, data, 0, data.length, 0L, null);
+    }
+
+    /**
+     * MurmurHash3 x64_128的低64位, by Austin Appleby
+     * 
+     * @param seed
+     * @param data
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static long murmur3BytesHash64(long seed, byte[] data, int offset, int length) {
+        checkRange(data.length, offset, length);
+        return murmur3Hash128(HashAccess.BYTES, data, offset, length, seed, null);
+    }
+
+    /**
+     * MurmurHash3 x64_128的低64位, by Austin Appleby
+     * 
+     * <pre>
+     * 计算position到limit之间的字节,不修改缓冲的位置.
+     * </pre>
+     * 
+     * @param seed
+     * @param data
+     * @return
+     */
+    public static long murmur3BytesHash64(long seed, ByteBuffer data) {
+        return murmur3Hash128(HashAccess.BUFFER, data, data.position(), data.remaining(), seed, null);
+    }
+
+    /**
+     * MurmurHash3 x64_128, by Austin Appleby
+     * 
+     * <pre>
+     * https://github.com/aappleby/smhasher/blob/master/src/MurmurHash3.cpp
+     * 结果按照h1,h2的顺序保存到调用者提供的数组,不需要分配对象.
+     * </pre>
+     * 
+     * @param seed
+     * @param data
+     * @param offset
+     * @param length
+     * @param hash
+     *            长度至少为2
+     * @return
+     */
+    public static long[] murmur3BytesHash128(long seed, byte[] data, int offset, int length, long[] hash) {
+        checkRange(data.length, offset, length);
+        murmur3Hash128(HashAccess.BYTES, data, offset, length, seed, hash);
+        return hash;
+    }
+
+    /**
+     * MurmurHash3 x64_128, by Austin Appleby
+     * 
+     * @param seed
+     * @param data
+     * @param hash
+     *            长度至少为2
+     * @return
+     */
+    public static long[] murmur3BytesHash128(long seed, ByteBuffer data, long[] hash) {
+        murmur3Hash128(HashAccess.BUFFER, data, data.position(), data.remaining(), seed, hash);
+        return hash;
+    }
+
+    static long xxRound(long accumulator, long input) {
+        accumulator += input * XX_PRIME2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        accumulator *= XX_PRIME1;
+        return accumulator;
+    }
+
+    static long xxMerge(long hash, long accumulator) {
+        hash ^= xxRound(0L, accumulator);
+        hash = hash * XX_PRIME1 + XX_PRIME4;
+        return hash;
+    }
+
+    static long xxAvalanche(long hash) {
+        hash ^= hash >>> 33;
+        hash *= XX_PRIME2;
+        hash ^= hash >>> 29;
+        hash *= XX_PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    /**
+     * 处理剩余不足32个字节的部分
+     */
+    static <T> long xxFinish(HashAccess<T> access, T data, int offset, int length, long hash) {
+        int index = offset;
+        int end = offset + length;
+        while (index + 8 <= end) {
+            hash ^= xxRound(0L, access.getLong(data, index));
+            hash = Long.rotateLeft(hash, 27) * XX_PRIME1 + XX_PRIME4;
+            index += 8;
+        }
+        if (index + 4 <= end) {
+            hash ^= (access.getInt(data, index) & 0xFFFFFFFFL) * XX_PRIME1;
+            hash = Long.rotateLeft(hash, 23) * XX_PRIME2 + XX_PRIME3;
+            index += 4;
+        }
+        while (index < end) {
+            hash ^= access.getByte(data, index) * XX_PRIME5;
+            hash = Long.rotateLeft(hash, 11) * XX_PRIME1;
+            index++;
+        }
+        return xxAvalanche(hash);
+    }
+
+    private static <T> long xxHash64(HashAccess<T> access, T data, int offset, int length, long seed) {
+        long hash;
+        int index = offset;
+        if (length >= 32) {
+            long v1 = seed + XX_PRIME1 + XX_PRIME2;
+            long v2 = seed + XX_PRIME2;
+            long v3 = seed;
+            long v4 = seed - XX_PRIME1;
+            int limit = offset + length - 32;
+            do {
+                v1 = xxRound(v1, access.getLong(data, index));
+                v2 = xxRound(v2, access.getLong(data, index + 8));
+                v3 = xxRound(v3, access.getLong(data, index + 16));
+                v4 = xxRound(v4, access.getLong(data, index + 24));
+                index += 32;
+            } while (index <= limit);
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = xxMerge(hash, v1);
+            hash = xxMerge(hash, v2);
+            hash = xxMerge(hash, v3);
+            hash = xxMerge(hash, v4);
+        } else {
+            hash = seed + XX_PRIME5;
+        }
+        hash += length;
+        return xxFinish(access, data, index, offset + length - index, hash);
+    }
+
+    /**
+     * xxHash64, by Yann Collet
+     * 
+     * <pre>
+     * https://github.com/Cyan4973/xxHash
+     * 大量数据需要分段计算时使用{@link XxHash64Hasher}
+     * </pre>
+     * 
+     * @param data
+     * @return
+     */
+    public static long xxBytesHash64(byte[] data) {
+        return xxHash64(HashAccess.BYTES, data, 0, data.length, 0L);
+    }
+
+    /**
+     * xxHash64, by Yann Collet
+     * 
+     * @param seed
+     * @param data
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static long xxBytesHash64(long seed, byte[] data, int offset, int length) {
+        checkRange(data.length, offset, length);
+        return xxHash64(HashAccess.BYTES, data, offset, length, seed);
+    }
+
+    /**
+     * xxHash64, by Yann Collet
+     * 
+     * <pre>
+     * 计算position到limit之间的字节,不修改缓冲的位置.
+     * </pre>
+     * 
+     * @param seed
+     * @param data
+     * @return
+     */
+    public static long xxBytesHash64(long seed, ByteBuffer data) {
+        return xxHash64(HashAccess.BUFFER, data, data.position(), data.remaining(), seed);
+    }
+
+    /**
+     * 无符号64位乘法的高64位(Java 8没有Math.multiplyHigh)
+     */
+    private static long multiplyHigh(long left, long right) {
+        long leftHigh = left >>> 32;
+        long leftLow = left & 0xFFFFFFFFL;
+        long rightHigh = right >>> 32;
+        long rightLow = right & 0xFFFFFFFFL;
+        long low = leftLow * rightLow;
+        long middle = leftHigh * rightLow + (low >>> 32);
+        long carry = leftLow * rightHigh + (middle & 0xFFFFFFFFL);
+        return leftHigh * rightHigh + (middle >>> 32) + (carry >>> 32);
+    }
+
+    private static long wyMix(long left, long right) {
+        return (left * right) ^ multiplyHigh(left, right);
+    }
+
+    private static <T> long wyHash64(HashAccess<T> access, T data, int offset, int length, long seed) {
+        seed ^= wyMix(seed ^ WY_SECRET0, WY_SECRET1);
+        long a;
+        long b;
+        if (length <= 16) {
+            if (length >= 4) {
+                int shift = (length >>> 3) << 2;
+                a = ((access.getInt(data, offset) & 0xFFFFFFFFL) << 32) | (access.getInt(data, offset + shift) & 0xFFFFFFFFL);
+                b = ((access.getInt(data, offset + length - 4) & 0xFFFFFFFFL) << 32) | (access.getInt(data, offset + length - 4 - shift) & 0xFFFFFFFFL);
+            } else if (length > 0) {
+                a = ((long) access.getByte(data, offset) << 16) | ((long) access.getByte(data, offset + (length >>> 1)) << 8) | access.getByte(data, offset + length - 1);
+                b = 0L;
+            } else {
+                a = 0L;
+                b = 0L;
+            }
+        } else {
+            int index = offset;
+            int remain = length;
+            if (remain > 48) {
+                long see1 = seed;
+                long see2 = seed;
+                do {
+                    seed = wyMix(access.getLong(data, index) ^ WY_SECRET1, access.getLong(data, index + 8) ^ seed);
+                    see1 = wyMix(access.getLong(data, index + 16) ^ WY_SECRET2, access.getLong(data, index + 24) ^ see1);
+                    see2 = wyMix(access.getLong(data, index + 32) ^ WY_SECRET3, access.getLong(data, index + 40) ^ see2);
+                    index += 48;
+                    remain -= 48;
+                } while (remain > 48);
+                seed ^= see1 ^ see2;
+            }
+            while (remain > 16) {
+                seed = wyMix(access.getLong(data, index) ^ WY_SECRET1, access.getLong(data, index + 8) ^ seed);
+                index += 16;
+                remain -= 16;
+            }
+            a = access.getLong(data, index + remain - 16);
+            b = access.getLong(data, index + remain - 8);
+        }
+        a ^= WY_SECRET1;
+        b ^= seed;
+        long low = a * b;
+        long high = multiplyHigh(a, b);
+        return wyMix(low ^ WY_SECRET0 ^ length, high ^ WY_SECRET1);
+    }
+
+    /**
+     * wyhash(final4), by Wang Yi
+     * 
+     * <pre>
+     * https://github.com/wangyi-fudan/wyhash
+     * 使用默认密钥
+     * </pre>
+     * 
+     * @param data
+     * @return
+     */
+    public static long wyBytesHash64(byte[] data) {
+        return wyHash64(HashAccess.BYTES, data, 0, data.length, 0L);
+    }
+
+    /**
+     * wyhash(final4), by Wang Yi
+     * 
+     * @param seed
+     * @param data
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static long wyBytesHash64(long seed, byte[] data, int offset, int length) {
+        checkRange(data.length, offset, length);
+        return wyHash64(HashAccess.BYTES, data, offset, length, seed);
+    }
+
+    /**
+     * wyhash(final4), by Wang Yi
+     * 
+     * <pre>
+     * 计算position到limit之间的字节,不修改缓冲的位置.
+     * </pre>
+     * 
+     * @param seed
+     * @param data
+     * @return
+     */
+    public static long wyBytesHash64(long seed, ByteBuffer data) {
+        return wyHash64(HashAccess.BUFFER, data, data.position(), data.remaining(), seed);
+    }
+
+    private static void checkRange(int size, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > size - length) {
+            throw new IndexOutOfBoundsException(StringUtility.format("偏移[{}]与长度[{}]超出范围[{}]", offset, length, size));
+        }
+    }
+
 }
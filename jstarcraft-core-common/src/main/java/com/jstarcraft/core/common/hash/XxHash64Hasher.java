@@ -0,0 +1,154 @@
+package com.jstarcraft.core.common.hash;
+
+import java.nio.ByteBuffer;
+
+/**
+ * xxHash64增量哈希器
+ * 
+ * <pre>
+ * 用于分段计算大量数据(例如流式读取的消息体),结果与{@link HashUtility#xxBytesHash64(long, byte[], int, int)}一致.
+ * 每次只缓存不足32字节的尾部,内存占用是常量.
+ * 非线程安全.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class XxHash64Hasher {
+
+    private final long seed;
+
+    private long v1;
+
+    private long v2;
+
+    private long v3;
+
+    private long v4;
+
+    /** 不足32字节的尾部 */
+    private final byte[] buffer = new byte[32];
+
+    /** 尾部的长度 */
+    private int size;
+
+    /** 已经处理的总长度 */
+    private long length;
+
+    public XxHash64Hasher() {
+        this(0L);
+    }
+
+    public XxHash64Hasher(long seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    /**
+     * 重置状态
+     * 
+     * @return
+     */
+    public XxHash64Hasher reset() {
+        v1 = seed + HashUtility.XX_PRIME1 + HashUtility.XX_PRIME2;
+        v2 = seed + HashUtility.XX_PRIME2;
+        v3 = seed;
+        v4 = seed - HashUtility.XX_PRIME1;
+        size = 0;
+        length = 0L;
+        return this;
+    }
+
+    private <T> void process(HashAccess<T> access, T data, int index) {
+        v1 = HashUtility.xxRound(v1, access.getLong(data, index));
+        v2 = HashUtility.xxRound(v2, access.getLong(data, index + 8));
+        v3 = HashUtility.xxRound(v3, access.getLong(data, index + 16));
+        v4 = HashUtility.xxRound(v4, access.getLong(data, index + 24));
+    }
+
+    public XxHash64Hasher update(byte[] data) {
+        return update(data, 0, data.length);
+    }
+
+    public XxHash64Hasher update(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.length += length;
+        int end = offset + length;
+        if (size > 0) {
+            int copy = Math.min(32 - size, length);
+            System.arraycopy(data, offset, buffer, size, copy);
+            size += copy;
+            offset += copy;
+            if (size < 32) {
+                return this;
+            }
+            process(HashAccess.BYTES, buffer, 0);
+            size = 0;
+        }
+        while (offset + 32 <= end) {
+            process(HashAccess.BYTES, data, offset);
+            offset += 32;
+        }
+        if (offset < end) {
+            size = end - offset;
+            System.arraycopy(data, offset, buffer, 0, size);
+        }
+        return this;
+    }
+
+    /**
+     * 处理position到limit之间的字节,处理以后position等于limit.
+     * 
+     * @param data
+     * @return
+     */
+    public XxHash64Hasher update(ByteBuffer data) {
+        int offset = data.position();
+        int end = data.limit();
+        this.length += end - offset;
+        if (size > 0) {
+            int copy = Math.min(32 - size, end - offset);
+            for (int index = 0; index < copy; index++) {
+                buffer[size++] = data.get(offset++);
+            }
+            if (size < 32) {
+                data.position(end);
+                return this;
+            }
+            process(HashAccess.BYTES, buffer, 0);
+            size = 0;
+        }
+        while (offset + 32 <= end) {
+            process(HashAccess.BUFFER, data, offset);
+            offset += 32;
+        }
+        while (offset < end) {
+            buffer[size++] = data.get(offset++);
+        }
+        data.position(end);
+        return this;
+    }
+
+    /**
+     * 获取当前的哈希(不影响后续更新)
+     * 
+     * @return
+     */
+    public long getHash() {
+        long hash;
+        if (length >= 32) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = HashUtility.xxMerge(hash, v1);
+            hash = HashUtility.xxMerge(hash, v2);
+            hash = HashUtility.xxMerge(hash, v3);
+            hash = HashUtility.xxMerge(hash, v4);
+        } else {
+            hash = seed + HashUtility.XX_PRIME5;
+        }
+        hash += length;
+        return HashUtility.xxFinish(HashAccess.BYTES, buffer, 0, size, hash);
+    }
+
+}
@@ -3,20 +3,70 @@ package com.jstarcraft.core.common.instant;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 /**
  * 日期时间表达式
  * 
+ * <pre>
+ * 缓存最近一次计算的窗口(相邻的两个日期时间),
+ * 指定日期时间在窗口以内时,上一次/下一次日期时间不需要重新计算.
+ * 适合单调递增的调用(例如每个周期或者每条日志计算一次).
+ * 
+ * 注意:子类需要实现calculatePreviousDateTime/calculateNextDateTime(不使用缓存的计算),
+ * getPreviousDateTime/getNextDateTime不再是抽象方法,不应该再被覆盖,否则窗口缓存会失效.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
 abstract public class DateTimeExpression {
 
+    /**
+     * 日期时间窗口
+     * 
+     * <pre>
+     * lower与upper之间没有其它日期时间,所以:
+     * lower <= 指定日期时间 < upper,下一次日期时间为next(next为null表示未知);
+     * lower < 指定日期时间 <= upper,上一次日期时间为previous(previous为null表示未知).
+     * 已知previous时lower为previous,已知next时upper为next.
+     * </pre>
+     * 
+     * @author Birdy
+     *
+     */
+    private static class DateTimeWindow {
+
+        private final ZoneId zone;
+
+        private final ZonedDateTime previous;
+
+        private final Instant lower;
+
+        private final ZonedDateTime next;
+
+        private final Instant upper;
+
+        private DateTimeWindow(ZoneId zone, ZonedDateTime previous, Instant lower, ZonedDateTime next, Instant upper) {
+            this.zone = zone;
+            this.previous = previous;
+            this.lower = lower;
+            this.next = next;
+            this.upper = upper;
+        }
+
+    }
+
     /** 表达式 */
     protected final String expression;
 
+    /** 最近一次计算的窗口 */
+    private volatile DateTimeWindow window;
+
     protected DateTimeExpression(String expression) {
         this.expression = expression;
     }
@@ -25,13 +75,42 @@ abstract public class DateTimeExpression {
         return expression;
     }
 
+    /**
+     * 根据指定日期时间计算上一次日期时间(不使用缓存)
+     * 
+     * @param dateTime
+     * @return
+     */
+    abstract protected ZonedDateTime calculatePreviousDateTime(ZonedDateTime dateTime);
+
+    /**
+     * 根据指定日期时间计算下一次日期时间(不使用缓存)
+     * 
+     * @param dateTime
+     * @return
+     */
+    abstract protected ZonedDateTime calculateNextDateTime(ZonedDateTime dateTime);
+
     /**
      * 根据指定日期时间获取上一次日期时间
      * 
      * @param dateTime
      * @return
      */
-    abstract public ZonedDateTime getPreviousDateTime(ZonedDateTime dateTime);
+    public ZonedDateTime getPreviousDateTime(ZonedDateTime dateTime) {
+        ZoneId zone = dateTime.getZone();
+        Instant instant = dateTime.toInstant();
+        DateTimeWindow current = window;
+        if (current != null && current.previous != null && current.zone.equals(zone) && current.lower.isBefore(instant) && !current.upper.isBefore(instant)) {
+            return current.previous;
+        }
+        ZonedDateTime previous = calculatePreviousDateTime(dateTime);
+        if (previous != null) {
+            // 下一次日期时间暂时未知,由getNextDateTime在需要时补充
+            window = new DateTimeWindow(zone, previous, previous.toInstant(), null, instant);
+        }
+        return previous;
+    }
 
     /**
      * 根据指定日期时间获取下一次日期时间
@@ -39,7 +118,53 @@ abstract public class DateTimeExpression {
      * @param dateTime
      * @return
      */
-    abstract public ZonedDateTime getNextDateTime(ZonedDateTime dateTime);
+    public ZonedDateTime getNextDateTime(ZonedDateTime dateTime) {
+        ZoneId zone = dateTime.getZone();
+        Instant instant = dateTime.toInstant();
+        DateTimeWindow current = window;
+        if (current != null && current.zone.equals(zone) && !instant.isBefore(current.lower) && instant.isBefore(current.upper)) {
+            if (current.next != null) {
+                return current.next;
+            }
+            // 窗口以内没有其它日期时间,上一次日期时间的下一次日期时间就是下一次日期时间
+            ZonedDateTime next = calculateNextDateTime(current.previous);
+            if (next != null) {
+                window = new DateTimeWindow(zone, current.previous, current.lower, next, next.toInstant());
+            }
+            return next;
+        }
+        ZonedDateTime next = calculateNextDateTime(dateTime);
+        if (next != null) {
+            // 从上一个窗口的下一次日期时间开始时,上一次日期时间是已知的
+            ZonedDateTime previous = current != null && current.next != null && current.zone.equals(zone) && current.upper.equals(instant) ? current.next : null;
+            window = new DateTimeWindow(zone, previous, instant, next, next.toInstant());
+        }
+        return next;
+    }
+
+    /**
+     * 根据指定日期时间获取之后的多次日期时间
+     * 
+     * <pre>
+     * 不使用也不改变窗口缓存,没有更多日期时间时提前结束.
+     * </pre>
+     * 
+     * @param dateTime
+     * @param size
+     *            数量
+     * @return
+     */
+    public List<ZonedDateTime> getNextDateTimes(ZonedDateTime dateTime, int size) {
+        List<ZonedDateTime> dateTimes = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            dateTime = calculateNextDateTime(dateTime);
+            if (dateTime == null) {
+                break;
+            }
+            dateTimes.add(dateTime);
+        }
+        return dateTimes;
+    }
 
     /**
      * 判断指定日期时间是否匹配
@@ -103,6 +228,23 @@ abstract public class DateTimeExpression {
         return instant == null ? null : instant.toInstant();
     }
 
+    /**
+     * 根据指定日期时间获取之后的多次日期时间
+     * 
+     * @param dateTime
+     * @param size
+     *            数量
+     * @return
+     */
+    public List<Instant> getNextDateTimes(Instant dateTime, int size) {
+        List<ZonedDateTime> instants = getNextDateTimes(ZonedDateTime.ofInstant(dateTime, ZoneOffset.UTC), size);
+        List<Instant> dateTimes = new ArrayList<>(instants.size());
+        for (ZonedDateTime instant : instants) {
+            dateTimes.add(instant.toInstant());
+        }
+        return dateTimes;
+    }
+
     /**
      * 判断指定日期时间是否匹配
      * 
@@ -1,5 +1,6 @@
 package com.jstarcraft.core.common.instant;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
@@ -40,27 +41,19 @@ public class IntervalExpression extends DateTimeExpression {
     }
 
     @Override
-    public ZonedDateTime getPreviousDateTime(ZonedDateTime dateTime) {
-        long duration = ChronoUnit.SECONDS.between(reference, dateTime.toLocalDateTime());
-        if (duration > 0) {
-            long shift = (duration - 1) / iterval * iterval;
-            return reference.plusSeconds(shift).atZone(dateTime.getZone());
-        } else {
-            long shift = (duration / iterval - 1) * iterval;
-            return reference.plusSeconds(shift).atZone(dateTime.getZone());
-        }
+    protected ZonedDateTime calculatePreviousDateTime(ZonedDateTime dateTime) {
+        // 秒数向下取整,不足一秒的部分单独判断(否则参考日期时间之前的日期时间会向零取整)
+        Duration duration = Duration.between(reference, dateTime.toLocalDateTime());
+        long seconds = duration.getNano() == 0 ? duration.getSeconds() - 1 : duration.getSeconds();
+        long shift = Math.floorDiv(seconds, iterval) * iterval;
+        return reference.plusSeconds(shift).atZone(dateTime.getZone());
     }
 
     @Override
-    public ZonedDateTime getNextDateTime(ZonedDateTime dateTime) {
-        long duration = ChronoUnit.SECONDS.between(reference, dateTime.toLocalDateTime());
-        if (duration < 0) {
-            long shift = (duration + 1) / iterval * iterval;
-            return reference.plusSeconds(shift).atZone(dateTime.getZone());
-        } else {
-            long shift = (duration / iterval + 1) * iterval;
-            return reference.plusSeconds(shift).atZone(dateTime.getZone());
-        }
+    protected ZonedDateTime calculateNextDateTime(ZonedDateTime dateTime) {
+        Duration duration = Duration.between(reference, dateTime.toLocalDateTime());
+        long shift = (Math.floorDiv(duration.getSeconds(), iterval) + 1) * iterval;
+        return reference.plusSeconds(shift).atZone(dateTime.getZone());
     }
 
     @Override
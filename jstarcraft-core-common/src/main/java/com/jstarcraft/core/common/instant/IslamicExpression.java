@@ -177,7 +177,7 @@ public class IslamicExpression extends DateTimeExpression {
     }
 
     @Override
-    public ZonedDateTime getPreviousDateTime(ZonedDateTime dateTime) {
+    protected ZonedDateTime calculatePreviousDateTime(ZonedDateTime dateTime) {
         IslamicDate islamic = new IslamicDate(dateTime.toLocalDate());
         int year = islamic.getYear();
         int month = islamic.getMonth();
@@ -239,7 +239,7 @@ public class IslamicExpression extends DateTimeExpression {
     }
 
     @Override
-    public ZonedDateTime getNextDateTime(ZonedDateTime dateTime) {
+    protected ZonedDateTime calculateNextDateTime(ZonedDateTime dateTime) {
         IslamicDate islamic = new IslamicDate(dateTime.toLocalDate());
         int year = islamic.getYear();
         int month = islamic.getMonth();
@@ -177,7 +177,7 @@ public class LunarExpression extends DateTimeExpression {
     }
 
     @Override
-    public ZonedDateTime getPreviousDateTime(ZonedDateTime dateTime) {
+    protected ZonedDateTime calculatePreviousDateTime(ZonedDateTime dateTime) {
         LunarDate lunar = new LunarDate(dateTime.toLocalDate());
         int year = lunar.getYear();
         boolean leap = lunar.isLeap();
@@ -252,7 +252,7 @@ public class LunarExpression extends DateTimeExpression {
     }
 
     @Override
-    public ZonedDateTime getNextDateTime(ZonedDateTime dateTime) {
+    protected ZonedDateTime calculateNextDateTime(ZonedDateTime dateTime) {
         LunarDate lunar = new LunarDate(dateTime.toLocalDate());
         int year = lunar.getYear();
         boolean leap = lunar.isLeap();
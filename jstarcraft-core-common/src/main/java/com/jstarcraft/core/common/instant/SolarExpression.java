@@ -54,13 +54,13 @@ public class SolarExpression extends DateTimeExpression {
     }
 
     @Override
-    public ZonedDateTime getPreviousDateTime(ZonedDateTime dateTime) {
+    protected ZonedDateTime calculatePreviousDateTime(ZonedDateTime dateTime) {
         dateTime = execution.lastExecution(dateTime).orElse(null);
         return dateTime;
     }
 
     @Override
-    public ZonedDateTime getNextDateTime(ZonedDateTime dateTime) {
+    protected ZonedDateTime calculateNextDateTime(ZonedDateTime dateTime) {
         dateTime = execution.nextExecution(dateTime).orElse(null);
         return dateTime;
     }
@@ -143,7 +143,7 @@ public class TermExpression extends DateTimeExpression {
     }
 
     @Override
-    public ZonedDateTime getPreviousDateTime(ZonedDateTime dateTime) {
+    protected ZonedDateTime calculatePreviousDateTime(ZonedDateTime dateTime) {
         int year = dateTime.getYear();
         int month = dateTime.getMonthValue();
         int term = (month - 1) * 2 + 1;
@@ -206,7 +206,7 @@ public class TermExpression extends DateTimeExpression {
     }
 
     @Override
-    public ZonedDateTime getNextDateTime(ZonedDateTime dateTime) {
+    protected ZonedDateTime calculateNextDateTime(ZonedDateTime dateTime) {
         int year = dateTime.getYear();
         int month = dateTime.getMonthValue();
         int term = (month - 1) * 2;
@@ -1,32 +1,28 @@
 package com.jstarcraft.core.common.lockable;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Iterator;
-import java.util.TreeMap;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.locks.Lock;
 
 /**
  * 链锁
  * 
+ * <pre>
+ * 单个对象直接使用实例锁,不需要排序;
+ * 多个对象使用线程独立的临时数组排序,只为结果分配一个数组.
+ * </pre>
+ * 
  * @author Birdy
  */
 public class ChainLockable implements Lockable {
 
-    private static final Comparator CLASS_COMPARATOR = new Comparator<Class>() {
-
-        @Override
-        public int compare(Class left, Class right) {
-            return left.getName().compareTo(right.getName());
-        }
-
-    };
+    /** 线程独立的临时数组(用于排序实例锁) */
+    private static final ThreadLocal<CompareLock[]> SCRATCHES = ThreadLocal.withInitial(() -> new CompareLock[16]);
 
     /** 锁 */
-    private final ArrayList<? extends Lock> locks;
+    private final Lock[] locks;
 
-    private ChainLockable(ArrayList<? extends Lock> locks) {
+    private ChainLockable(Lock[] locks) {
         this.locks = locks;
     }
 
@@ -50,43 +46,84 @@ public class ChainLockable implements Lockable {
         }
     }
 
+    private static CompareLock getInstanceLock(Comparable object) {
+        CompareLockManager manager = CompareLockManager.getManager(object.getClass());
+        return manager.getInstanceLock(object);
+    }
+
     /**
      * 按照规则排序锁
      * 
      * @param objects
+     * @param size
      * @return
      */
-    static ArrayList<Lock> sortLocks(Comparable... objects) {
-        if (objects.length == 0) {
+    static Lock[] sortLocks(Comparable[] objects, int size) {
+        if (size == 0) {
             throw new IllegalArgumentException();
         }
+        if (size == 1) {
+            return new Lock[] { getInstanceLock(objects[0]) };
+        }
         // 获取实例的锁
-        ArrayList<CompareLock> instanceLocks = new ArrayList<>(objects.length);
-        for (Comparable object : objects) {
-            CompareLockManager manager = CompareLockManager.getManager(object.getClass());
-            CompareLock lock = manager.getInstanceLock(object);
-            instanceLocks.add(lock);
+        CompareLock[] instanceLocks = SCRATCHES.get();
+        if (instanceLocks.length < size) {
+            instanceLocks = new CompareLock[Math.max(size, instanceLocks.length * 2)];
+            SCRATCHES.set(instanceLocks);
         }
-        Collections.sort(instanceLocks);
-        // 获取类型的锁
-        TreeMap<Class, Lock> classLocks = new TreeMap<>(CLASS_COMPARATOR);
-        Iterator<CompareLock> iterator = instanceLocks.iterator();
-        CompareLock left = iterator.next();
-        while (iterator.hasNext()) {
-            CompareLock right = iterator.next();
-            if (left.equals(right)) {
-                Class clazz = left.getClazz();
-                CompareLockManager manager = CompareLockManager.getManager(clazz);
-                classLocks.put(clazz, manager.getClassLock());
+        try {
+            for (int index = 0; index < size; index++) {
+                instanceLocks[index] = getInstanceLock(objects[index]);
+            }
+            Arrays.sort(instanceLocks, 0, size);
+            // 获取类型的锁(实例锁按照类型名称排序,所以相同类型是连续的,类型锁也是有序的)
+            int classSize = 0;
+            Class last = null;
+            for (int index = 1; index < size; index++) {
+                CompareLock left = instanceLocks[index - 1];
+                if (left.getClazz() != last && left.equals(instanceLocks[index])) {
+                    last = left.getClazz();
+                    classSize++;
+                }
+            }
+            Lock[] locks = new Lock[classSize + size];
+            if (classSize > 0) {
+                classSize = 0;
+                last = null;
+                for (int index = 1; index < size; index++) {
+                    CompareLock left = instanceLocks[index - 1];
+                    if (left.getClazz() != last && left.equals(instanceLocks[index])) {
+                        last = left.getClazz();
+                        locks[classSize++] = CompareLockManager.getManager(last).getClassLock();
+                    }
+                }
             }
-            left = right;
+            System.arraycopy(instanceLocks, 0, locks, classSize, size);
+            return locks;
+        } finally {
+            // 临时数组不能持有锁,否则锁无法被回收
+            Arrays.fill(instanceLocks, 0, size, null);
         }
+    }
 
-        ArrayList<Lock> locks = new ArrayList<>(classLocks.size() + instanceLocks.size());
-        locks.addAll(classLocks.values());
-        locks.addAll(instanceLocks);
+    /**
+     * 按照规则排序锁
+     * 
+     * @param objects
+     * @return
+     */
+    static List<Lock> sortLocks(Comparable... objects) {
+        return Arrays.asList(sortLocks(objects, objects.length));
+    }
 
-        return locks;
+    /**
+     * 
+     * @param objects
+     * @param size
+     * @return
+     */
+    static ChainLockable instanceOf(Comparable[] objects, int size) {
+        return new ChainLockable(sortLocks(objects, size));
     }
 
     /**
@@ -95,8 +132,7 @@ public class ChainLockable implements Lockable {
      * @return
      */
     public static ChainLockable instanceOf(Comparable... objects) {
-        ArrayList<? extends Lock> locks = sortLocks(objects);
-        return new ChainLockable(locks);
+        return new ChainLockable(sortLocks(objects, objects.length));
     }
 
 }
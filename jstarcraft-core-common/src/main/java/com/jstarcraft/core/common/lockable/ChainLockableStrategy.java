@@ -3,8 +3,8 @@ package com.jstarcraft.core.common.lockable;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -22,9 +22,15 @@ public class ChainLockableStrategy implements LockableStrategy {
 
     private static final Logger logger = LoggerFactory.getLogger(ChainLockableStrategy.class);
 
+    /** 线程独立的临时数组(用于收集对象) */
+    private static final ThreadLocal<Comparable[]> SCRATCHES = ThreadLocal.withInitial(() -> new Comparable[16]);
+
     /** 参数位置与锁形式(true为锁参数;false为锁元素;) */
     private Int2BooleanMap configurations;
 
+    /** 唯一的锁参数位置(-1表示不是单参数的情况) */
+    private int single = -1;
+
     public ChainLockableStrategy(Method method) {
         this.configurations = new Int2BooleanOpenHashMap();
         Annotation[][] annotations = method.getParameterAnnotations();
@@ -41,6 +47,21 @@ public class ChainLockableStrategy implements LockableStrategy {
                 }
             }
         }
+        if (this.configurations.size() == 1) {
+            Int2BooleanMap.Entry keyValue = this.configurations.int2BooleanEntrySet().iterator().next();
+            if (keyValue.getBooleanValue()) {
+                this.single = keyValue.getIntKey();
+            }
+        }
+    }
+
+    private static Comparable[] add(Comparable[] chain, int size, Object element) {
+        if (size == chain.length) {
+            chain = Arrays.copyOf(chain, size * 2);
+            SCRATCHES.set(chain);
+        }
+        chain[size] = (Comparable) element;
+        return chain;
     }
 
     /**
@@ -51,47 +72,61 @@ public class ChainLockableStrategy implements LockableStrategy {
      */
     @Override
     public ChainLockable getLock(Object... arguments) {
-        LinkedList<Comparable> chain = new LinkedList<>();
-        for (Int2BooleanMap.Entry keyValue : configurations.int2BooleanEntrySet()) {
-            Object argument = arguments[keyValue.getIntKey()];
+        if (single != -1) {
+            // 单参数不需要收集与排序
+            Object argument = arguments[single];
             if (argument == null) {
-                continue;
+                throw new IllegalArgumentException();
             }
-            if (keyValue.getBooleanValue()) {
-                chain.add((Comparable) argument);
-                continue;
-            }
-            if (argument.getClass().isArray()) {
-                for (int index = 0; index < Array.getLength(argument); index++) {
-                    Object element = Array.get(argument, index);
-                    if (element == null) {
-                        continue;
+            return ChainLockable.instanceOf((Comparable) argument);
+        }
+        Comparable[] chain = SCRATCHES.get();
+        int size = 0;
+        try {
+            for (Int2BooleanMap.Entry keyValue : configurations.int2BooleanEntrySet()) {
+                Object argument = arguments[keyValue.getIntKey()];
+                if (argument == null) {
+                    continue;
+                }
+                if (keyValue.getBooleanValue()) {
+                    chain = add(chain, size++, argument);
+                    continue;
+                }
+                if (argument.getClass().isArray()) {
+                    for (int index = 0; index < Array.getLength(argument); index++) {
+                        Object element = Array.get(argument, index);
+                        if (element == null) {
+                            continue;
+                        }
+                        chain = add(chain, size++, element);
                     }
-                    chain.add((Comparable) element);
+                    continue;
                 }
-                continue;
-            }
-            if (argument instanceof Collection) {
-                for (Object element : (Collection) argument) {
-                    if (element == null) {
-                        continue;
+                if (argument instanceof Collection) {
+                    for (Object element : (Collection) argument) {
+                        if (element == null) {
+                            continue;
+                        }
+                        chain = add(chain, size++, element);
                     }
-                    chain.add((Comparable) element);
+                    continue;
                 }
-                continue;
-            }
-            if (argument instanceof Map) {
-                for (Object element : ((Map) argument).values()) {
-                    if (element == null) {
-                        continue;
+                if (argument instanceof Map) {
+                    for (Object element : ((Map) argument).values()) {
+                        if (element == null) {
+                            continue;
+                        }
+                        chain = add(chain, size++, element);
                     }
-                    chain.add((Comparable) element);
+                    continue;
                 }
-                continue;
+                logger.error("不支持的类型[{}]", argument.getClass().getName());
             }
-            logger.error("不支持的类型[{}]", argument.getClass().getName());
+            return ChainLockable.instanceOf(chain, size);
+        } finally {
+            // 临时数组不能持有对象
+            Arrays.fill(chain, 0, size, null);
         }
-        return ChainLockable.instanceOf(chain.toArray(new Comparable[chain.size()]));
     }
 
 }
@@ -1,6 +1,7 @@
 package com.jstarcraft.core.common.lockable;
 
-import java.util.WeakHashMap;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -8,17 +9,42 @@ import java.util.concurrent.locks.ReentrantLock;
 /**
  * 排序锁管理器
  * 
+ * <pre>
+ * 实例锁保存在并发映射中,值为弱引用:
+ * 只要锁仍然被某个链锁引用,相同的实例就会获取到相同的锁;
+ * 没有任何引用的锁会被回收,并且在下次获取时清理对应的键.
+ * </pre>
+ * 
  * @author Birdy
  */
 @SuppressWarnings("rawtypes")
 public class CompareLockManager {
 
+    /**
+     * 实例锁引用(保存键用于清理)
+     * 
+     * @author Birdy
+     *
+     */
+    private static class LockReference extends WeakReference<CompareLock> {
+
+        private final Object key;
+
+        private LockReference(Object key, CompareLock lock, ReferenceQueue<CompareLock> queue) {
+            super(lock, queue);
+            this.key = key;
+        }
+
+    }
+
     /** 排序锁管理器 */
     private static final ConcurrentHashMap<Class, CompareLockManager> sortLockManagers = new ConcurrentHashMap<Class, CompareLockManager>();
     /** 类型锁 */
     private final Lock clazzLock = new ReentrantLock();
     /** 实例锁(使用弱引用缓存) */
-    private final WeakHashMap<Object, CompareLock> instanceLocks = new WeakHashMap<Object, CompareLock>();
+    private final ConcurrentHashMap<Object, LockReference> instanceLocks = new ConcurrentHashMap<Object, LockReference>();
+    /** 已经回收的实例锁 */
+    private final ReferenceQueue<CompareLock> references = new ReferenceQueue<CompareLock>();
 
     private CompareLockManager() {
     }
@@ -32,6 +58,16 @@ public class CompareLockManager {
         return clazzLock;
     }
 
+    /**
+     * 清理已经回收的实例锁
+     */
+    private void expunge() {
+        LockReference reference;
+        while ((reference = (LockReference) references.poll()) != null) {
+            instanceLocks.remove(reference.key, reference);
+        }
+    }
+
     /**
      * 获取实例锁
      * 
@@ -39,25 +75,46 @@ public class CompareLockManager {
      * @return
      */
     public CompareLock getInstanceLock(Comparable instance) {
-        synchronized (instance) {
-            CompareLock value = instanceLocks.get(instance);
-            if (value == null) {
-                value = new CompareLock(instance, false);
-                instanceLocks.put(instance, value);
+        LockReference reference = instanceLocks.get(instance);
+        CompareLock lock = reference == null ? null : reference.get();
+        if (lock != null) {
+            return lock;
+        }
+        expunge();
+        while (true) {
+            lock = new CompareLock(instance, false);
+            LockReference instanceReference = new LockReference(instance, lock, references);
+            if (reference == null) {
+                reference = instanceLocks.putIfAbsent(instance, instanceReference);
+                if (reference == null) {
+                    return lock;
+                }
+            } else if (instanceLocks.replace(instance, reference, instanceReference)) {
+                return lock;
+            } else {
+                reference = instanceLocks.get(instance);
+            }
+            // 其它线程已经创建
+            lock = reference == null ? null : reference.get();
+            if (lock != null) {
+                return lock;
             }
-            return value;
         }
     }
 
+    /**
+     * 获取实例锁的数量(包括未清理的)
+     * 
+     * @return
+     */
+    public int getInstanceSize() {
+        return instanceLocks.size();
+    }
+
     public static CompareLockManager getManager(Class clazz) {
         CompareLockManager manager = sortLockManagers.get(clazz);
         if (manager == null) {
-            synchronized (clazz) {
-                if (manager == null) {
-                    manager = new CompareLockManager();
-                    sortLockManagers.put(clazz, manager);
-                }
-            }
+            manager = sortLockManagers.computeIfAbsent(clazz, (key) -> new CompareLockManager());
         }
         return manager;
     }
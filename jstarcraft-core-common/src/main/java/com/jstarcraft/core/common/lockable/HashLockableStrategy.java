@@ -21,7 +21,11 @@ public class HashLockableStrategy implements LockableStrategy {
 
     private static final Logger logger = LoggerFactory.getLogger(HashLockableStrategy.class);
 
-    private static final int size = 1000;
+    /** 默认哈希锁的数量 */
+    public static final int DEFAULT_SIZE = 1000;
+
+    /** 哈希锁的数量 */
+    private final int size;
 
     private HashLockable[] lockables;
 
@@ -44,6 +48,11 @@ public class HashLockableStrategy implements LockableStrategy {
                 }
             }
         }
+        LockableMethod configuration = method.getAnnotation(LockableMethod.class);
+        this.size = configuration == null ? DEFAULT_SIZE : configuration.size();
+        if (this.size <= 0) {
+            throw new IllegalArgumentException();
+        }
         this.lockables = new HashLockable[size];
         for (int index = 0; index < size; index++) {
             this.lockables[index] = new HashLockable();
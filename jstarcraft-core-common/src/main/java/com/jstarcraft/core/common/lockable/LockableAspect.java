@@ -56,12 +56,8 @@ public class LockableAspect {
         // 获取锁策略
         LockableStrategy strategy = strategies.get(method);
         if (strategy == null) {
-            synchronized (method) {
-                if (strategy == null) {
-                    strategy = ReflectionUtility.getInstance(clazz, method);
-                    strategies.put(method, strategy);
-                }
-            }
+            // 同一个方法只会构建一个策略
+            strategy = strategies.computeIfAbsent(method, (key) -> ReflectionUtility.getInstance(clazz, key));
         }
         Object[] arguments = point.getArgs();
         try (Lockable lock = strategy.getLock(arguments)) {
@@ -26,4 +26,11 @@ public @interface LockableMethod {
      */
     boolean value() default false;
 
+    /**
+     * 哈希锁的数量(仅用于HashLockableStrategy)
+     * 
+     * @return
+     */
+    int size() default HashLockableStrategy.DEFAULT_SIZE;
+
 }
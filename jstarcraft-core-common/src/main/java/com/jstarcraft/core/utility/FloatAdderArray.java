@@ -0,0 +1,376 @@
+package com.jstarcraft.core.utility;
+
+import static java.lang.Float.floatToRawIntBits;
+import static java.lang.Float.intBitsToFloat;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 条带化的float累加数组
+ * 
+ * <pre>
+ * 与{@link java.util.concurrent.atomic.DoubleAdder}相同的思路:
+ * 每个条带是一个完整的数组,线程按照探针选择条带,只在CAS失败(发生竞争)时才增加条带并且更换探针,
+ * 所以没有竞争时只有一个条带,竞争激烈时各个线程分散到不同的条带上累加.
+ * 每个条带的首尾都有填充,避免不同条带的元素共享缓存行.
+ * 
+ * 累加线程通过条带标记的一次CAS独占条带,独占期间使用有序写入(lazySet)修改元素,最后释放标记一次发布,
+ * 所以单个元素与整个向量的累加都只有一次CAS,向量累加不需要逐个元素CAS.
+ * 重置同样需要独占条带,然后整个替换条带数组,被替换的数组不会再有写入.
+ * 
+ * 读取(sum/snapshot)需要合并所有条带,适合写多读少的计数与统计.
+ * 与DoubleAdder一样,并发累加时的读取不是原子快照,浮点数累加的顺序也不固定.
+ * 线程探针与{@link DoubleAdderArray}共享.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class FloatAdderArray {
+
+    /** 填充(32个int,128字节,覆盖相邻缓存行预取) */
+    private static final int PADDING = 32;
+
+    /** 默认最大条带数量(不小于处理器数量的2的幂) */
+    public static final int DEFAULT_STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+
+    private static final AtomicIntegerFieldUpdater<FloatAdderArray> SIZE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(FloatAdderArray.class, "size");
+
+    private final int length;
+
+    /** 条带 */
+    private final AtomicReferenceArray<AtomicIntegerArray> stripes;
+
+    /** 条带标记(1为被占用) */
+    private final AtomicIntegerArray owners;
+
+    /** 当前使用的条带数量(2的幂) */
+    private volatile int size;
+
+    public FloatAdderArray(int length) {
+        this(length, DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param length
+     * @param stripes
+     *            最大条带数量(会调整为2的幂)
+     */
+    public FloatAdderArray(int length, int stripes) {
+        if (length < 0 || stripes <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.length = length;
+        this.stripes = new AtomicReferenceArray<>(Integer.highestOneBit(stripes));
+        this.stripes.set(0, new AtomicIntegerArray(length + PADDING * 2));
+        this.owners = new AtomicIntegerArray((this.stripes.length() + 1) * DoubleAdderArray.INTERVAL);
+        this.size = 1;
+    }
+
+    /**
+     * 获取条带(必须已经占用)
+     * 
+     * @param index
+     * @return
+     */
+    private AtomicIntegerArray getStripe(int index) {
+        AtomicIntegerArray stripe = stripes.get(index);
+        if (stripe == null) {
+            stripe = new AtomicIntegerArray(length + PADDING * 2);
+            stripes.set(index, stripe);
+        }
+        return stripe;
+    }
+
+    /**
+     * 按照探针占用条带(一次CAS),发生竞争时增加条带并且更换探针
+     * 
+     * @param probe
+     * @return
+     */
+    private int acquire(int[] probe) {
+        while (true) {
+            int size = this.size;
+            int index = probe[0] & (size - 1);
+            if (owners.compareAndSet((index + 1) * DoubleAdderArray.INTERVAL, 0, 1)) {
+                return index;
+            }
+            expand(size);
+            probe[0] = DoubleAdderArray.advance(probe[0]);
+        }
+    }
+
+    /**
+     * 占用指定条带(等待累加线程释放)
+     * 
+     * @param index
+     */
+    private void await(int index) {
+        while (!owners.compareAndSet((index + 1) * DoubleAdderArray.INTERVAL, 0, 1)) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * 释放条带
+     * 
+     * <pre>
+     * 有序写入保证占用期间的写入对下一个占用者可见.
+     * </pre>
+     * 
+     * @param index
+     */
+    private void release(int index) {
+        owners.lazySet((index + 1) * DoubleAdderArray.INTERVAL, 0);
+    }
+
+    /**
+     * 发生竞争,尝试增加条带
+     * 
+     * @param size
+     */
+    private void expand(int size) {
+        if (size < stripes.length()) {
+            SIZE_UPDATER.compareAndSet(this, size, size << 1);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+    }
+
+    /**
+     * 获取数组长度
+     * 
+     * @return
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 累加指定位置
+     * 
+     * @param index
+     * @param delta
+     */
+    public void add(int index, float delta) {
+        checkIndex(index);
+        int position = index + PADDING;
+        int owner = acquire(DoubleAdderArray.PROBES.get());
+        try {
+            AtomicIntegerArray stripe = getStripe(owner);
+            stripe.lazySet(position, floatToRawIntBits(intBitsToFloat(stripe.get(position)) + delta));
+        } finally {
+            release(owner);
+        }
+    }
+
+    /**
+     * 累加向量(从指定位置开始)
+     * 
+     * <pre>
+     * 整个向量在同一个条带上累加:占用条带只需要一次CAS,元素使用有序写入,释放条带时一次发布.
+     * 注意:读取(sum/snapshot)不等待占用,可能看到只累加了一部分的向量.
+     * </pre>
+     * 
+     * @param index
+     * @param deltas
+     */
+    public void add(int index, float[] deltas) {
+        add(index, deltas, 0, deltas.length);
+    }
+
+    /**
+     * 累加向量的一部分(从指定位置开始)
+     * 
+     * @param index
+     * @param deltas
+     * @param from
+     * @param to
+     */
+    public void add(int index, float[] deltas, int from, int to) {
+        if (from < 0 || to > deltas.length || from > to) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (to > from) {
+            checkIndex(index);
+            checkIndex(index + to - from - 1);
+        }
+        if (to == from) {
+            return;
+        }
+        int owner = acquire(DoubleAdderArray.PROBES.get());
+        try {
+            AtomicIntegerArray stripe = getStripe(owner);
+            int position = index + PADDING;
+            for (int cursor = from; cursor < to; cursor++, position++) {
+                float delta = deltas[cursor];
+                if (delta == 0F) {
+                    continue;
+                }
+                stripe.lazySet(position, floatToRawIntBits(intBitsToFloat(stripe.get(position)) + delta));
+            }
+        } finally {
+            release(owner);
+        }
+    }
+
+    /**
+     * 获取指定位置的总和
+     * 
+     * @param index
+     * @return
+     */
+    public float sum(int index) {
+        checkIndex(index);
+        int position = index + PADDING;
+        float sum = 0F;
+        for (int cursor = 0, size = stripes.length(); cursor < size; cursor++) {
+            AtomicIntegerArray stripe = stripes.get(cursor);
+            if (stripe != null) {
+                sum += intBitsToFloat(stripe.get(position));
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 获取范围内所有位置的总和
+     * 
+     * @param from
+     *            包含
+     * @param to
+     *            不包含
+     * @return
+     */
+    public float sum(int from, int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException();
+        }
+        float sum = 0F;
+        for (int cursor = 0, size = stripes.length(); cursor < size; cursor++) {
+            AtomicIntegerArray stripe = stripes.get(cursor);
+            if (stripe != null) {
+                for (int position = from + PADDING, end = to + PADDING; position < end; position++) {
+                    sum += intBitsToFloat(stripe.get(position));
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 获取指定位置的总和并且重置
+     * 
+     * @param index
+     * @return
+     */
+    public float sumThenReset(int index) {
+        checkIndex(index);
+        int position = index + PADDING;
+        float sum = 0F;
+        for (int cursor = 0, size = stripes.length(); cursor < size; cursor++) {
+            if (stripes.get(cursor) == null) {
+                continue;
+            }
+            await(cursor);
+            try {
+                AtomicIntegerArray stripe = stripes.get(cursor);
+                sum += intBitsToFloat(stripe.get(position));
+                stripe.lazySet(position, 0);
+            } finally {
+                release(cursor);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 获取所有位置的总和
+     * 
+     * @return
+     */
+    public float[] snapshot() {
+        float[] sums = new float[length];
+        for (int cursor = 0, size = stripes.length(); cursor < size; cursor++) {
+            AtomicIntegerArray stripe = stripes.get(cursor);
+            if (stripe != null) {
+                for (int index = 0; index < length; index++) {
+                    sums[index] += intBitsToFloat(stripe.get(index + PADDING));
+                }
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * 获取所有位置的总和并且重置
+     * 
+     * <pre>
+     * 占用每个条带并且整个替换为新的数组,被替换的数组不会再有写入,不会丢失并发的累加.
+     * </pre>
+     * 
+     * @return
+     */
+    public float[] snapshotThenReset() {
+        float[] sums = new float[length];
+        for (int cursor = 0, size = stripes.length(); cursor < size; cursor++) {
+            AtomicIntegerArray stripe = swap(cursor);
+            if (stripe != null) {
+                for (int index = 0; index < length; index++) {
+                    sums[index] += intBitsToFloat(stripe.get(index + PADDING));
+                }
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * 重置所有位置
+     */
+    public void reset() {
+        for (int cursor = 0, size = stripes.length(); cursor < size; cursor++) {
+            swap(cursor);
+        }
+    }
+
+    /**
+     * 替换指定条带
+     * 
+     * @param index
+     * @return 被替换的条带(没有条带时为null)
+     */
+    private AtomicIntegerArray swap(int index) {
+        if (stripes.get(index) == null) {
+            return null;
+        }
+        AtomicIntegerArray stripe = new AtomicIntegerArray(length + PADDING * 2);
+        await(index);
+        try {
+            return stripes.getAndSet(index, stripe);
+        } finally {
+            release(index);
+        }
+    }
+
+    /**
+     * 获取当前使用的条带数量
+     * 
+     * @return
+     */
+    public int getStripes() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(snapshot());
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.jstarcraft.core.utility;
+
+import java.util.Collection;
+
+/**
+ * 定时桶
+ * 
+ * <pre>
+ * 双向链表,仅由时间轮线程访问,所以不需要同步.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+class TimingBucket {
+
+    private TimingTask head;
+
+    private TimingTask tail;
+
+    void add(TimingTask task) {
+        task.bucket = this;
+        if (head == null) {
+            head = tail = task;
+        } else {
+            tail.next = task;
+            task.previous = tail;
+            tail = task;
+        }
+    }
+
+    TimingTask remove(TimingTask task) {
+        TimingTask next = task.next;
+        if (task.previous != null) {
+            task.previous.next = next;
+        }
+        if (task.next != null) {
+            task.next.previous = task.previous;
+        }
+        if (task == head) {
+            if (task == tail) {
+                head = tail = null;
+            } else {
+                head = next;
+            }
+        } else if (task == tail) {
+            tail = task.previous;
+        }
+        task.previous = null;
+        task.next = null;
+        task.bucket = null;
+        return next;
+    }
+
+    /**
+     * 到期任务
+     * 
+     * @param deadline
+     *            当前时间(相对时间轮开始时间的纳秒)
+     * @param tasks
+     *            到期的任务
+     */
+    void expire(long deadline, Collection<TimingTask> tasks) {
+        TimingTask task = head;
+        while (task != null) {
+            if (task.isCancelled()) {
+                task = remove(task);
+            } else if (task.rounds <= 0 && task.deadline <= deadline) {
+                TimingTask next = remove(task);
+                if (task.expire()) {
+                    tasks.add(task);
+                }
+                task = next;
+            } else {
+                if (task.rounds > 0) {
+                    task.rounds--;
+                }
+                task = task.next;
+            }
+        }
+    }
+
+    /**
+     * 清理任务
+     * 
+     * @param tasks
+     *            未到期的任务
+     */
+    void clear(Collection<TimingTask> tasks) {
+        TimingTask task = head;
+        while (task != null) {
+            TimingTask next = remove(task);
+            if (!task.isCancelled() && !task.isExpired()) {
+                tasks.add(task);
+            }
+            task = next;
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.jstarcraft.core.utility;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 定时任务
+ * 
+ * <pre>
+ * 由{@link TimingWheel}调度,取消的复杂度为O(1).
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class TimingTask {
+
+    static final int STATE_WAIT = 0;
+
+    static final int STATE_CANCEL = 1;
+
+    static final int STATE_EXPIRE = 2;
+
+    private static final AtomicIntegerFieldUpdater<TimingTask> STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(TimingTask.class, "state");
+
+    /** 时间轮 */
+    private final TimingWheel wheel;
+
+    /** 任务 */
+    private final Runnable task;
+
+    /** 到期时间(相对时间轮开始时间的纳秒) */
+    final long deadline;
+
+    /** 剩余轮数(仅由时间轮线程访问) */
+    long rounds;
+
+    /** 所在的桶(仅由时间轮线程访问) */
+    TimingBucket bucket;
+
+    /** 前一个任务(仅由时间轮线程访问) */
+    TimingTask previous;
+
+    /** 后一个任务(仅由时间轮线程访问) */
+    TimingTask next;
+
+    private volatile int state = STATE_WAIT;
+
+    TimingTask(TimingWheel wheel, Runnable task, long deadline) {
+        this.wheel = wheel;
+        this.task = task;
+        this.deadline = deadline;
+    }
+
+    boolean expire() {
+        return STATE_UPDATER.compareAndSet(this, STATE_WAIT, STATE_EXPIRE);
+    }
+
+    void remove() {
+        if (bucket != null) {
+            bucket.remove(this);
+        }
+    }
+
+    /**
+     * 取消任务
+     * 
+     * @return 是否取消成功(已经到期或者已经取消的任务无法取消)
+     */
+    public boolean cancel() {
+        if (!STATE_UPDATER.compareAndSet(this, STATE_WAIT, STATE_CANCEL)) {
+            return false;
+        }
+        wheel.cancel(this);
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return state == STATE_CANCEL;
+    }
+
+    public boolean isExpired() {
+        return state == STATE_EXPIRE;
+    }
+
+    public Runnable getTask() {
+        return task;
+    }
+
+    public TimingWheel getWheel() {
+        return wheel;
+    }
+
+}
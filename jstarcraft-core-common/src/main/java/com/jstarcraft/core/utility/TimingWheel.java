@@ -0,0 +1,371 @@
+package com.jstarcraft.core.utility;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 时间轮
+ * 
+ * <pre>
+ * 哈希时间轮:任务按照到期的刻度散列到桶,超过一圈的任务记录剩余轮数.
+ * 调度与取消只是进入并发队列,复杂度为O(1),由时间轮线程在每个刻度统一处理;
+ * 每个刻度到期的任务分批提交给执行器,避免为每个定时需求独占一个线程.
+ * 精度为一个刻度,适用于会话清理,缓存到期,超时检查等对精度不敏感的场景.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class TimingWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheel.class);
+
+    /** 默认刻度(毫秒) */
+    public static final long DEFAULT_TICK = 10L;
+
+    /** 默认桶数量 */
+    public static final int DEFAULT_SIZE = 4096;
+
+    /** 每个刻度最多转移的任务数量(避免调度风暴时饿死到期处理) */
+    private static final int TRANSFER_SIZE = 100000;
+
+    /** 每批提交给执行器的任务数量 */
+    private static final int BATCH_SIZE = 1024;
+
+    private static final int STATE_INITIAL = 0;
+
+    private static final int STATE_STARTED = 1;
+
+    private static final int STATE_STOPPED = 2;
+
+    /**
+     * 进程共享的时间轮(懒加载)
+     * 
+     * @author Birdy
+     *
+     */
+    private static class TimingHolder {
+
+        private static final TimingWheel INSTANCE = new TimingWheel("TimingWheel", DEFAULT_TICK, TimeUnit.MILLISECONDS, DEFAULT_SIZE, ForkJoinPool.commonPool(), true);
+
+    }
+
+    /** 名称 */
+    private final String name;
+
+    /** 刻度(纳秒) */
+    private final long tick;
+
+    /** 桶 */
+    private final TimingBucket[] buckets;
+
+    private final int mask;
+
+    /** 执行器(null表示在时间轮线程执行) */
+    private final Executor executor;
+
+    /** 是否共享 */
+    private final boolean share;
+
+    /** 待加入的任务 */
+    private final ConcurrentLinkedQueue<TimingTask> additions = new ConcurrentLinkedQueue<>();
+
+    /** 待移除的任务 */
+    private final ConcurrentLinkedQueue<TimingTask> cancellations = new ConcurrentLinkedQueue<>();
+
+    /** 未到期的任务数量 */
+    private final AtomicLong size = new AtomicLong();
+
+    private final AtomicInteger state = new AtomicInteger(STATE_INITIAL);
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    /** 开始时间(纳秒) */
+    private volatile long startTime;
+
+    /** 当前刻度(仅由时间轮线程访问) */
+    private long tickNumber;
+
+    private volatile Thread thread;
+
+    /** 停止时未到期的任务 */
+    private final Collection<TimingTask> remains = new LinkedList<>();
+
+    public TimingWheel(String name, long tick, TimeUnit unit, int size, Executor executor) {
+        this(name, tick, unit, size, executor, false);
+    }
+
+    private TimingWheel(String name, long tick, TimeUnit unit, int size, Executor executor, boolean share) {
+        if (tick <= 0 || size <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.name = name;
+        this.tick = Math.max(unit.toNanos(tick), TimeUnit.MILLISECONDS.toNanos(1L));
+        // 桶数量规范为2的幂,使用掩码代替取模
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        this.buckets = new TimingBucket[capacity];
+        for (int index = 0; index < capacity; index++) {
+            this.buckets[index] = new TimingBucket();
+        }
+        this.mask = capacity - 1;
+        this.executor = executor;
+        this.share = share;
+    }
+
+    private void start() {
+        switch (state.get()) {
+        case STATE_INITIAL:
+            if (state.compareAndSet(STATE_INITIAL, STATE_STARTED)) {
+                thread = new NameThreadFactory(name).newThread(this::work);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            break;
+        case STATE_STARTED:
+            break;
+        default:
+            throw new IllegalStateException(StringUtility.format("时间轮[{}]已经停止", name));
+        }
+        // 等待时间轮线程初始化开始时间
+        while (startTime == 0L) {
+            try {
+                latch.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(exception);
+            }
+        }
+    }
+
+    private void work() {
+        long now = System.nanoTime();
+        // 0作为未开始的标记
+        startTime = now == 0L ? 1L : now;
+        latch.countDown();
+        ArrayList<TimingTask> expirations = new ArrayList<>();
+        while (state.get() == STATE_STARTED) {
+            long deadline = waitTick();
+            if (deadline < 0L) {
+                break;
+            }
+            processCancellations();
+            transferAdditions();
+            buckets[(int) (tickNumber & mask)].expire(deadline, expirations);
+            tickNumber++;
+            if (!expirations.isEmpty()) {
+                size.addAndGet(-expirations.size());
+                submit(expirations);
+                expirations = new ArrayList<>();
+            }
+        }
+        for (TimingBucket bucket : buckets) {
+            bucket.clear(remains);
+        }
+        TimingTask task;
+        while ((task = additions.poll()) != null) {
+            if (!task.isCancelled()) {
+                remains.add(task);
+            }
+        }
+        processCancellations();
+    }
+
+    private long waitTick() {
+        long deadline = tick * (tickNumber + 1);
+        while (true) {
+            long current = System.nanoTime() - startTime;
+            long sleep = (deadline - current + 999999L) / 1000000L;
+            if (sleep <= 0L) {
+                return current;
+            }
+            try {
+                Thread.sleep(sleep);
+            } catch (InterruptedException exception) {
+                if (state.get() == STATE_STOPPED) {
+                    return -1L;
+                }
+            }
+        }
+    }
+
+    private void processCancellations() {
+        TimingTask task;
+        while ((task = cancellations.poll()) != null) {
+            task.remove();
+        }
+    }
+
+    private void transferAdditions() {
+        for (int index = 0; index < TRANSFER_SIZE; index++) {
+            TimingTask task = additions.poll();
+            if (task == null) {
+                break;
+            }
+            if (task.isCancelled()) {
+                continue;
+            }
+            long ticks = task.deadline / tick;
+            task.rounds = (ticks - tickNumber) / buckets.length;
+            // 已经过期的任务放到当前刻度
+            ticks = Math.max(ticks, tickNumber);
+            buckets[(int) (ticks & mask)].add(task);
+        }
+    }
+
+    private void submit(ArrayList<TimingTask> expirations) {
+        for (int from = 0; from < expirations.size(); from += BATCH_SIZE) {
+            int to = Math.min(from + BATCH_SIZE, expirations.size());
+            Collection<TimingTask> batch = expirations.subList(from, to);
+            if (executor == null) {
+                execute(batch);
+                continue;
+            }
+            try {
+                executor.execute(() -> {
+                    execute(batch);
+                });
+            } catch (Exception exception) {
+                // 执行器拒绝时在时间轮线程执行
+                logger.error(StringUtility.format("时间轮[{}]提交任务异常", name), exception);
+                execute(batch);
+            }
+        }
+    }
+
+    private void execute(Collection<TimingTask> batch) {
+        for (TimingTask task : batch) {
+            try {
+                task.getTask().run();
+            } catch (Throwable throwable) {
+                logger.error(StringUtility.format("时间轮[{}]执行任务异常", name), throwable);
+            }
+        }
+    }
+
+    void cancel(TimingTask task) {
+        size.decrementAndGet();
+        cancellations.offer(task);
+    }
+
+    /**
+     * 调度任务
+     * 
+     * @param task
+     * @param delay
+     * @param unit
+     * @return
+     */
+    public TimingTask schedule(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        start();
+        long now = System.nanoTime() - startTime;
+        long deadline = now + unit.toNanos(Math.max(delay, 0L));
+        // 防止溢出
+        if (deadline < now) {
+            deadline = Long.MAX_VALUE;
+        }
+        TimingTask timing = new TimingTask(this, task, deadline);
+        size.incrementAndGet();
+        additions.offer(timing);
+        return timing;
+    }
+
+    /**
+     * 调度任务
+     * 
+     * @param task
+     * @param delay
+     * @return
+     */
+    public TimingTask schedule(Runnable task, Duration delay) {
+        return schedule(task, delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 调度任务
+     * 
+     * @param task
+     * @param instant
+     *            到期时间
+     * @return
+     */
+    public TimingTask schedule(Runnable task, Instant instant) {
+        return schedule(task, instant.toEpochMilli() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止时间轮
+     * 
+     * @return 未到期的任务
+     */
+    public Collection<TimingTask> stop() {
+        if (share) {
+            throw new UnsupportedOperationException(StringUtility.format("共享时间轮[{}]不能停止", name));
+        }
+        if (state.getAndSet(STATE_STOPPED) != STATE_STARTED) {
+            return remains;
+        }
+        while (thread == null) {
+            Thread.yield();
+        }
+        boolean interrupt = false;
+        while (thread.isAlive()) {
+            thread.interrupt();
+            try {
+                thread.join(100L);
+            } catch (InterruptedException exception) {
+                interrupt = true;
+            }
+        }
+        if (interrupt) {
+            Thread.currentThread().interrupt();
+        }
+        size.set(0L);
+        return remains;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 获取未到期的任务数量
+     * 
+     * @return
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * 获取进程共享的时间轮
+     * 
+     * <pre>
+     * 刻度为10毫秒,到期任务由ForkJoinPool.commonPool()执行,任务不应该长时间阻塞.
+     * </pre>
+     * 
+     * @return
+     */
+    public static TimingWheel getDefault() {
+        return TimingHolder.INSTANCE;
+    }
+
+}
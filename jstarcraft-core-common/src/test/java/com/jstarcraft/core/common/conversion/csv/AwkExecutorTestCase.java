@@ -0,0 +1,140 @@
+package com.jstarcraft.core.common.conversion.csv;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jstarcraft.core.common.conversion.csv.query.AwkCommand;
+import com.jstarcraft.core.common.conversion.csv.query.AwkCondition;
+import com.jstarcraft.core.common.conversion.csv.query.AwkExecutor;
+import com.jstarcraft.core.utility.StringUtility;
+
+public class AwkExecutorTestCase {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private static final File directory = new File("target/awk");
+
+    private static final List<String> paths = new LinkedList<>();
+
+    /** CsvUtility输出的第一列是属性数量,字符串以分号结尾 */
+    private static final String[] properties = new String[] { "length", "id", "firstName", "lastName", "money" };
+
+    private static void write(File file, List<CsvObject> objects) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), StringUtility.CHARSET))) {
+            for (CsvObject object : objects) {
+                writer.write(CsvUtility.object2String(object, CsvObject.class).trim());
+                writer.write('\n');
+            }
+        }
+    }
+
+    @BeforeClass
+    public static void beforeTest() throws IOException {
+        FileUtils.deleteQuietly(directory);
+        directory.mkdirs();
+
+        List<CsvObject> objects = new LinkedList<>();
+        for (int index = 0; index < 100; index++) {
+            objects.add(CsvObject.instanceOf(index, "birdy", "hong", index % 10, Instant.now(), CsvEnumeration.TERRAN));
+        }
+        File file = new File(directory, "csv.00-00-00.log");
+        write(file, objects);
+        paths.add(file.getAbsolutePath());
+
+        objects.clear();
+        // 包含双引号,单引号,逗号,中文字符串的CSV文件.
+        String[] lastNames = new String[] { "洪", "\"洪", "洪\"", "\"洪\"", ";洪", ";\"洪", ";洪\"", ";\"洪\"", "洪;", "\"洪;", "洪\";", "\"洪\";" };
+        for (int index = 0; index < lastNames.length; index++) {
+            objects.add(CsvObject.instanceOf(index % 4 + 1, "\"mickey's,mouse\"", lastNames[index], 1, Instant.now(), CsvEnumeration.TERRAN));
+        }
+        file = new File(directory, "csv.00-05-00.log");
+        write(file, objects);
+        paths.add(file.getAbsolutePath());
+    }
+
+    @Test
+    public void testQuery() {
+        AwkCommand command = new AwkCommand(",", "\"", properties);
+        AwkExecutor executor = new AwkExecutor(',', '"');
+        String[] files = paths.toArray(new String[paths.size()]);
+
+        AwkCondition andCondition = command.and(command.in("id", 0, 1, 2, 3, 4), command.lessEqual("money", 4));
+        Assert.assertThat(executor.count(andCondition, files), CoreMatchers.equalTo(17L));
+        List<String> lines = new LinkedList<>();
+        Assert.assertThat(executor.query(andCondition, lines::add, files), CoreMatchers.equalTo(17L));
+        Assert.assertThat(lines.size(), CoreMatchers.equalTo(17));
+        for (String line : lines) {
+            Assert.assertTrue(StringUtility.isNotBlank(line));
+            Assert.assertNotNull(CsvUtility.string2Object(line, CsvObject.class));
+        }
+
+        // 字段按照RFC 4180解码以后比较
+        Assert.assertThat(executor.count(command.equal("firstName", "\"mickey's,mouse\";"), files), CoreMatchers.equalTo(12L));
+        Assert.assertThat(executor.count(command.equal("lastName", "\"洪\";;"), files), CoreMatchers.equalTo(1L));
+        Assert.assertThat(executor.count(command.or(command.greaterThan("id", 97), command.equal("lastName", "洪;")), files), CoreMatchers.equalTo(3L));
+        Assert.assertThat(executor.count(command.not("firstName", "birdy;"), files), CoreMatchers.equalTo(12L));
+    }
+
+    @Test
+    public void testPerformance() throws IOException {
+        File file = new File(directory, "performance.log");
+        int size = 1000000;
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), StringUtility.CHARSET))) {
+            for (int index = 0; index < size; index++) {
+                CsvObject object = CsvObject.instanceOf(index, "birdy", "hong", index % 10, Instant.now(), CsvEnumeration.TERRAN);
+                writer.write(CsvUtility.object2String(object, CsvObject.class).trim());
+                writer.write('\n');
+            }
+        }
+        AwkCommand command = new AwkCommand(",", "\"", properties);
+        AwkCondition condition = command.and(command.lessThan("id", size / 2), command.in("money", 0, 1, 2));
+        AwkExecutor executor = new AwkExecutor(',', '"');
+
+        // 预热
+        executor.count(condition, file.getAbsolutePath());
+        long instant = System.currentTimeMillis();
+        long count = executor.count(condition, file.getAbsolutePath());
+        logger.debug(StringUtility.format("进程内查询{}行,匹配{}行,耗时{}毫秒,文件{}字节", size, count, System.currentTimeMillis() - instant, file.length()));
+        Assert.assertThat(count, CoreMatchers.equalTo(size / 2L * 3L / 10L));
+
+        // 多个分块仍然按照行的顺序回调
+        long[] last = new long[] { -1L };
+        long number = executor.query(condition, (line) -> {
+            long id = Long.parseLong(line.split(",")[1]);
+            Assert.assertTrue(id > last[0]);
+            last[0] = id;
+        }, file.getAbsolutePath());
+        Assert.assertThat(number, CoreMatchers.equalTo(count));
+        Assert.assertTrue(file.length() > 8L * 1024L * 1024L);
+
+        // 仅在环境安装gawk时比较
+        instant = System.currentTimeMillis();
+        try {
+            Process process = Runtime.getRuntime().exec(command.count(condition, file.getAbsolutePath()));
+            try (InputStream stream = process.getInputStream(); InputStreamReader reader = new InputStreamReader(stream, StringUtility.CHARSET); BufferedReader buffer = new BufferedReader(reader)) {
+                String line = buffer.readLine();
+                logger.debug(StringUtility.format("gawk查询{}行,匹配{}行,耗时{}毫秒", size, line, System.currentTimeMillis() - instant));
+            }
+        } catch (IOException exception) {
+            logger.debug("环境没有安装gawk");
+        }
+    }
+
+}
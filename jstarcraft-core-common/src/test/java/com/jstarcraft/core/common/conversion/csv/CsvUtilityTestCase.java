@@ -1,9 +1,16 @@
 package com.jstarcraft.core.common.conversion.csv;
 
+import java.io.StringWriter;
 import java.lang.reflect.Type;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
@@ -61,6 +68,52 @@ public class CsvUtilityTestCase {
         Assert.assertThat(intance, CoreMatchers.equalTo(array));
     }
 
+    @Test
+    public void testStream() {
+        List<CsvObject> objects = new ArrayList<>();
+        for (int index = 0; index < 100; index++) {
+            objects.add(CsvObject.instanceOf(index, "birdy" + index, "\"hong,\"" + index, index % 10, Instant.now(), CsvEnumeration.TERRAN));
+        }
+        StringWriter writer = new StringWriter();
+        CsvUtility.objects2Appendable(objects, CsvObject.class, writer);
+        String[] lines = writer.toString().split("\n");
+        Assert.assertThat(lines.length, CoreMatchers.equalTo(objects.size()));
+        for (int index = 0; index < lines.length; index++) {
+            Assert.assertThat(lines[index], CoreMatchers.equalTo(CsvUtility.object2String(objects.get(index), CsvObject.class)));
+            Assert.assertThat(CsvUtility.string2Object(lines[index], CsvObject.class), CoreMatchers.equalTo(objects.get(index)));
+        }
+
+        StringBuilder buffer = new StringBuilder();
+        CsvUtility.object2Appendable(objects.get(0), CsvObject.class, buffer);
+        Assert.assertThat(buffer.toString(), CoreMatchers.equalTo(CsvUtility.object2String(objects.get(0), CsvObject.class)));
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        int threadSize = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadSize);
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < threadSize; thread++) {
+            int offset = thread;
+            futures.add(executor.submit(() -> {
+                latch.await();
+                for (int index = 0; index < 1000; index++) {
+                    Type type = TypeUtility.parameterize(KeyValue.class, Integer.class, CsvObject.class);
+                    KeyValue<Integer, CsvObject> keyValue = new KeyValue<>(index, CsvObject.instanceOf(offset, "birdy", "hong", index % 10, Instant.now(), CsvEnumeration.TERRAN));
+                    String csv = CsvUtility.object2String(keyValue, type);
+                    Assert.assertThat(CsvUtility.string2Object(csv, type), CoreMatchers.equalTo(keyValue));
+                }
+                return null;
+            }));
+        }
+        latch.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
     @Test
     public void testPerformance() {
         Instant now = null;
@@ -78,6 +131,19 @@ public class CsvUtilityTestCase {
         }
         logger.debug(StringUtility.format("CSV编码{}次一共消耗{}毫秒.", times, System.currentTimeMillis() - now.toEpochMilli()));
 
+        now = Instant.now();
+        StringBuilder buffer = new StringBuilder();
+        List<CsvObject> objects = new ArrayList<>(1000);
+        for (int index = 0; index < times; index++) {
+            objects.add(CsvObject.instanceOf(index, "birdy" + index, "hong" + index, index % 10, Instant.now(), CsvEnumeration.TERRAN));
+            if (objects.size() == 1000) {
+                CsvUtility.objects2Appendable(objects, CsvObject.class, buffer);
+                objects.clear();
+                buffer.setLength(0);
+            }
+        }
+        logger.debug(StringUtility.format("CSV流式编码{}次一共消耗{}毫秒.", times, System.currentTimeMillis() - now.toEpochMilli()));
+
         now = Instant.now();
         for (int index = 0; index < times; index++) {
             JsonUtility.object2String(CsvObject.instanceOf(index, "birdy" + index, "hong" + index, index % 10, Instant.now(), CsvEnumeration.TERRAN));
@@ -2,6 +2,8 @@ package com.jstarcraft.core.common.hash;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -90,23 +92,91 @@ public class HashUtilityTestCase {
         Assert.assertEquals(603797126L, HashUtility.tianlStringHash64(string));
     }
 
+    @Test
+    public void testBytesHash() throws Exception {
+        String string = "abcdefghijklmnopqrstuvwxyz1234567890";
+        byte[] bytes = string.getBytes(StringUtility.CHARSET);
+        // 对UTF-8编码的字节计算时与字符串一致
+        Assert.assertEquals(HashUtility.murmur3StringHash32(string), HashUtility.murmur3BytesHash32(bytes));
+
+        // 参考实现的测试向量
+        Assert.assertEquals(0xEF46DB3751D8E999L, HashUtility.xxBytesHash64(new byte[0]));
+        byte[] fox = "The quick brown fox jumps over the lazy dog".getBytes(StringUtility.CHARSET);
+        long[] hash = HashUtility.murmur3BytesHash128(0L, fox, 0, fox.length, new long[2]);
+        Assert.assertEquals(0xe34bbc7bbc071b6cL, hash[0]);
+        Assert.assertEquals(0x7a433ca9c49a9347L, hash[1]);
+        Assert.assertEquals(0x0409638ee2bde459L, HashUtility.wyBytesHash64(0L, new byte[0], 0, 0));
+        Assert.assertEquals(0xa8412d091b5fe0a9L, HashUtility.wyBytesHash64(1L, new byte[] { 'a' }, 0, 1));
+        Assert.assertEquals(0x32dd92e4b2915153L, HashUtility.wyBytesHash64(2L, new byte[] { 'a', 'b', 'c' }, 0, 3));
+
+        // 数值哈希等价于小端序的8个字节
+        long number = 1656899L;
+        ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(number);
+        Assert.assertEquals(HashUtility.xxBytesHash64(buffer.array()), HashUtility.xxNumberHash64(number));
+
+        // 字节数组,偏移与堆外缓冲的结果一致
+        for (int size = 0; size < 200; size++) {
+            byte[] data = new byte[size + 2];
+            RandomUtility.randomBytes(data);
+            long seed = RandomUtility.randomLong();
+            ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+            direct.put(data);
+            direct.position(1);
+            direct.limit(size + 1);
+            long xxHash = HashUtility.xxBytesHash64(seed, data, 1, size);
+            Assert.assertEquals(xxHash, HashUtility.xxBytesHash64(seed, direct));
+            Assert.assertEquals(HashUtility.murmur3BytesHash32((int) seed, data, 1, size), HashUtility.murmur3BytesHash32((int) seed, direct));
+            Assert.assertEquals(HashUtility.murmur3BytesHash64(seed, data, 1, size), HashUtility.murmur3BytesHash64(seed, direct));
+            Assert.assertEquals(HashUtility.wyBytesHash64(seed, data, 1, size), HashUtility.wyBytesHash64(seed, direct));
+            // 缓冲的位置不变
+            Assert.assertEquals(1, direct.position());
+
+            // 增量哈希与一次性哈希一致
+            XxHash64Hasher hasher = new XxHash64Hasher(seed);
+            for (int index = 1; index < size + 1; index += 7) {
+                int length = Math.min(7, size + 1 - index);
+                if (index % 2 == 0) {
+                    hasher.update(data, index, length);
+                } else {
+                    hasher.update(ByteBuffer.wrap(data, index, length));
+                }
+            }
+            Assert.assertEquals(xxHash, hasher.getHash());
+        }
+    }
+
     private final TreeMap<String, Method> numberHash32Methods = new TreeMap<>();
 
+    private final TreeMap<String, Method> numberHash64Methods = new TreeMap<>();
+
     private final TreeMap<String, Method> stringHash32Methods = new TreeMap<>();
 
     private final TreeMap<String, Method> stringHash64Methods = new TreeMap<>();
 
+    private final TreeMap<String, Method> bytesHash32Methods = new TreeMap<>();
+
+    private final TreeMap<String, Method> bytesHash64Methods = new TreeMap<>();
+
     {
         ReflectionUtility.doWithMethods(HashUtility.class, (method) -> {
             if (method.getName().endsWith("NumberHash32")) {
                 numberHash32Methods.put(method.getName(), method);
             }
+            if (method.getName().endsWith("NumberHash64")) {
+                numberHash64Methods.put(method.getName(), method);
+            }
             if (method.getName().endsWith("StringHash32")) {
                 stringHash32Methods.put(method.getName(), method);
             }
             if (method.getName().endsWith("StringHash64")) {
                 stringHash64Methods.put(method.getName(), method);
             }
+            if (method.getName().endsWith("BytesHash32")) {
+                bytesHash32Methods.put(method.getName(), method);
+            }
+            if (method.getName().endsWith("BytesHash64")) {
+                bytesHash64Methods.put(method.getName(), method);
+            }
         }, (method) -> {
             // 选择参数数量为1的静态方法
             return method.getParameters().length == 1 && Modifier.isStatic(method.getModifiers()) && Modifier.isPublic(method.getModifiers());
@@ -176,7 +246,7 @@ public class HashUtilityTestCase {
         long time = System.currentTimeMillis();
         int collision = 0;
         for (Object data : datas) {
-            Long hash = Long.class.cast(method.invoke(null, data.toString()));
+            Long hash = Long.class.cast(method.invoke(null, data));
             Entry<Long, Integer> term = counts.higherEntry(hash);
             counts.put(term.getKey(), term.getValue() + 1);
             if (!hashes.add(hash)) {
@@ -210,12 +280,26 @@ public class HashUtilityTestCase {
             test64Collision("UUID", method, datas, hashes, count64s);
         }
 
+        Object[] bytes = new Object[size];
+        for (int index = 0; index < size; index++) {
+            bytes[index] = datas[index].toString().getBytes(StringUtility.CHARSET);
+        }
+        for (Method method : bytesHash32Methods.values()) {
+            test32Collision("UUID", method, bytes, hashes, count32s);
+        }
+        for (Method method : bytesHash64Methods.values()) {
+            test64Collision("UUID", method, bytes, hashes, count64s);
+        }
+
         for (int index = 0; index < size; index++) {
             datas[index] = index + size;
         }
         for (Method method : numberHash32Methods.values()) {
             test32Collision("连续整数", method, datas, hashes, count32s);
         }
+        for (Method method : numberHash64Methods.values()) {
+            test64Collision("连续整数", method, datas, hashes, count64s);
+        }
     }
 
 }
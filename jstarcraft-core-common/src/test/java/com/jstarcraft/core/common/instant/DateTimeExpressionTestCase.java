@@ -0,0 +1,49 @@
+package com.jstarcraft.core.common.instant;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import org.junit.Assert;
+
+public abstract class DateTimeExpressionTestCase {
+
+    /**
+     * 检查窗口缓存的结果与直接计算一致
+     * 
+     * @param expression
+     * @param step
+     *            顺序调用的间隔
+     * @param period
+     *            边界附近的偏移
+     */
+    protected void assertWindow(DateTimeExpression expression, Duration step, Duration period) {
+        ZonedDateTime from = ZonedDateTime.of(2020, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        for (ZoneId zone : new ZoneId[] { ZoneOffset.UTC, ZoneId.of("Asia/Shanghai") }) {
+            ZonedDateTime dateTime = from.withZoneSameInstant(zone);
+            for (int index = 0; index < 1000; index++) {
+                dateTime = dateTime.plus(step);
+                Assert.assertEquals(expression.calculatePreviousDateTime(dateTime), expression.getPreviousDateTime(dateTime));
+                Assert.assertEquals(expression.calculateNextDateTime(dateTime), expression.getNextDateTime(dateTime));
+            }
+            // 只获取上一次日期时间,然后在同一个窗口以内获取下一次日期时间
+            dateTime = from.withZoneSameInstant(zone);
+            for (int index = 0; index < 1000; index++) {
+                dateTime = dateTime.plus(step);
+                Assert.assertEquals(expression.calculatePreviousDateTime(dateTime), expression.getPreviousDateTime(dateTime));
+                ZonedDateTime instant = dateTime.minusNanos(1L);
+                Assert.assertEquals(expression.calculateNextDateTime(instant), expression.getNextDateTime(instant));
+            }
+            // 边界与倒退
+            ZonedDateTime fire = expression.calculateNextDateTime(from.withZoneSameLocal(zone));
+            for (ZonedDateTime instant : new ZonedDateTime[] { fire, fire.minusNanos(1L), fire.plusNanos(1L), fire.minus(period), fire.plus(period) }) {
+                Assert.assertEquals(expression.calculatePreviousDateTime(instant), expression.getPreviousDateTime(instant));
+                Assert.assertEquals(expression.calculateNextDateTime(instant), expression.getNextDateTime(instant));
+                Assert.assertEquals(expression.calculateNextDateTime(instant), expression.getNextDateTime(instant));
+                Assert.assertEquals(expression.calculatePreviousDateTime(instant), expression.getPreviousDateTime(instant));
+            }
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.jstarcraft.core.common.instant;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -7,7 +8,7 @@ import java.util.List;
 import org.junit.Assert;
 import org.junit.Test;
 
-public class IntervalExpressionTestCase {
+public class IntervalExpressionTestCase extends DateTimeExpressionTestCase {
 
     private List<LocalDateTime> dateTimes = new ArrayList<>();
     {
@@ -82,4 +83,10 @@ public class IntervalExpressionTestCase {
         }
     }
 
+    @Test
+    public void testWindow() {
+        // 窗口缓存的结果必须与直接计算一致
+        assertWindow(new IntervalExpression("0 1 0 1 1 2020 15"), Duration.ofSeconds(7L), Duration.ofSeconds(15L));
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.jstarcraft.core.common.instant;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
@@ -8,7 +9,7 @@ import java.util.List;
 import org.junit.Assert;
 import org.junit.Test;
 
-public class IslamicExpressionTestCase {
+public class IslamicExpressionTestCase extends DateTimeExpressionTestCase {
 
     private List<LocalDateTime> dateTimes = new ArrayList<>();
     {
@@ -105,4 +106,10 @@ public class IslamicExpressionTestCase {
         Assert.assertEquals(leftExpression.getSmallDays(), rightExpression.getSmallDays());
     }
 
+    @Test
+    public void testWindow() {
+        // 窗口缓存的结果必须与直接计算一致
+        assertWindow(new IslamicExpression("0 0 12 1,L1 *"), Duration.ofHours(37L), Duration.ofDays(1L));
+    }
+
 }
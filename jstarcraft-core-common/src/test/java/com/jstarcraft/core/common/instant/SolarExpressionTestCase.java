@@ -1,6 +1,8 @@
 package com.jstarcraft.core.common.instant;
 
 import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.YearMonth;
@@ -12,6 +14,8 @@ import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.cronutils.model.CronType;
 import com.cronutils.model.definition.CronDefinition;
@@ -19,7 +23,9 @@ import com.cronutils.model.definition.CronDefinitionBuilder;
 import com.cronutils.model.time.ExecutionTime;
 import com.cronutils.parser.CronParser;
 
-public class SolarExpressionTestCase {
+public class SolarExpressionTestCase extends DateTimeExpressionTestCase {
+
+    private static final Logger logger = LoggerFactory.getLogger(SolarExpressionTestCase.class);
 
     private List<LocalDateTime> dateTimes = new ArrayList<>();
     {
@@ -189,4 +195,47 @@ public class SolarExpressionTestCase {
         }
     }
 
+    @Test
+    public void testWindow() {
+        // 窗口缓存的结果必须与直接计算一致
+        assertWindow(new SolarExpression("0 0/15 * * * ?"), Duration.ofSeconds(37L), Duration.ofMinutes(15L));
+    }
+
+    @Test
+    public void testNextDateTimes() {
+        SolarExpression expression = new SolarExpression("0 0 12 1,30 * ? 2020");
+        List<LocalDateTime> nexts = new ArrayList<>();
+        for (ZonedDateTime dateTime : expression.getNextDateTimes(ZonedDateTime.of(2020, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC), 100)) {
+            nexts.add(dateTime.toLocalDateTime());
+        }
+        // 没有更多日期时间时提前结束
+        Assert.assertEquals(dateTimes, nexts);
+        List<Instant> instants = expression.getNextDateTimes(Instant.parse("2020-01-01T00:00:00Z"), 3);
+        Assert.assertEquals(3, instants.size());
+        Assert.assertEquals(Instant.parse("2020-01-30T12:00:00Z"), instants.get(1));
+    }
+
+    @Test
+    public void testPerformance() {
+        SolarExpression expression = new SolarExpression("0 0 * * * ?");
+        Instant from = Instant.parse("2020-01-01T00:00:00Z");
+        int size = 100000;
+        // 模拟日志事件,每个事件间隔100毫秒
+        long time = System.currentTimeMillis();
+        for (int index = 0; index < size; index++) {
+            Instant instant = from.plusMillis(index * 100L);
+            expression.calculatePreviousDateTime(ZonedDateTime.ofInstant(instant, ZoneOffset.UTC));
+        }
+        logger.info("直接计算上一次日期时间:{}毫秒", System.currentTimeMillis() - time);
+        time = System.currentTimeMillis();
+        for (int index = 0; index < size; index++) {
+            Instant instant = from.plusMillis(index * 100L);
+            expression.getPreviousDateTime(instant);
+        }
+        logger.info("窗口缓存上一次日期时间:{}毫秒", System.currentTimeMillis() - time);
+        time = System.currentTimeMillis();
+        Assert.assertEquals(size, expression.getNextDateTimes(from, size).size());
+        logger.info("批量计算{}次下一次日期时间:{}毫秒", size, System.currentTimeMillis() - time);
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.jstarcraft.core.common.instant;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
@@ -8,7 +9,7 @@ import java.util.List;
 import org.junit.Assert;
 import org.junit.Test;
 
-public class TermExpressionTestCase {
+public class TermExpressionTestCase extends DateTimeExpressionTestCase {
 
     private List<LocalDateTime> dateTimes = new ArrayList<>();
     {
@@ -92,4 +93,10 @@ public class TermExpressionTestCase {
         }
     }
 
+    @Test
+    public void testWindow() {
+        // 窗口缓存的结果必须与直接计算一致
+        assertWindow(new TermExpression("0 0 0 LiChun,LiXia,LiQiu,LiDong *"), Duration.ofHours(73L), Duration.ofDays(1L));
+    }
+
 }
@@ -1,17 +1,25 @@
 package com.jstarcraft.core.common.lockable;
 
+import java.lang.reflect.Field;
+import java.lang.ref.Reference;
+import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
 
 import com.jstarcraft.core.common.lockable.ChainLockable;
 import com.jstarcraft.core.common.lockable.CompareLockManager;
@@ -19,6 +27,50 @@ import com.jstarcraft.core.utility.RandomUtility;
 
 public class CompareLockTestCase {
 
+    private static final Logger logger = LoggerFactory.getLogger(CompareLockTestCase.class);
+
+    private interface Task {
+
+        void run(int time);
+
+    }
+
+    /**
+     * 多个线程同时执行任务
+     * 
+     * @param count
+     *            线程数
+     * @param times
+     *            每个线程的任务数
+     * @param task
+     * @return 执行时间(毫秒)
+     */
+    private long execute(int count, int times, Task task) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch stop = new CountDownLatch(count);
+        for (int thread = 0; thread < count; thread++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    for (int time = 0; time < times; time++) {
+                        task.run(time);
+                    }
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    stop.countDown();
+                }
+            });
+        }
+        long instant = System.nanoTime();
+        start.countDown();
+        stop.await();
+        instant = System.nanoTime() - instant;
+        executor.shutdown();
+        return TimeUnit.NANOSECONDS.toMillis(instant);
+    }
+
     private CompareLockManager objectLockManager = CompareLockManager.getManager(MockObject.class);
     private CompareLockManager integerLockManager = CompareLockManager.getManager(Integer.class);
 
@@ -88,6 +140,33 @@ public class CompareLockTestCase {
         Assert.assertThat(count.get(), CoreMatchers.is(20));
     }
 
+    @Test
+    public void testReclaim() throws Exception {
+        CompareLockManager manager = CompareLockManager.getManager(BigDecimal.class);
+        int size = 1000;
+        Lock[] locks = new Lock[size];
+        for (int index = 0; index < size; index++) {
+            locks[index] = manager.getInstanceLock(BigDecimal.valueOf(index));
+            // 锁仍然被引用时,相同的实例获取到相同的锁
+            Assert.assertThat(manager.getInstanceLock(BigDecimal.valueOf(index)), CoreMatchers.sameInstance(locks[index]));
+        }
+        Assert.assertThat(manager.getInstanceSize(), CoreMatchers.is(size));
+
+        // 锁没有被引用时,会被回收并且清理(模拟垃圾回收清除并且入队弱引用,不依赖System.gc)
+        locks = null;
+        Field field = CompareLockManager.class.getDeclaredField("instanceLocks");
+        field.setAccessible(true);
+        for (Object reference : ((Map<?, ?>) field.get(manager)).values()) {
+            ((Reference<?>) reference).clear();
+            ((Reference<?>) reference).enqueue();
+        }
+        Assert.assertThat(manager.getInstanceSize(), CoreMatchers.is(size));
+        // 获取锁时清理已经回收的实例锁
+        Lock lock = manager.getInstanceLock(BigDecimal.ZERO);
+        Assert.assertThat(manager.getInstanceSize(), CoreMatchers.is(1));
+        Assert.assertThat(manager.getInstanceLock(BigDecimal.ZERO), CoreMatchers.sameInstance(lock));
+    }
+
     @Test(timeout = 10000)
     public void testPerformance() throws InterruptedException {
         List<Comparable> objects = new ArrayList<>(10);
@@ -102,33 +181,51 @@ public class CompareLockTestCase {
         objects.add(new MockObject<>("left"));
         objects.add(new MockObject<>("right"));
 
-        int count = 500; // 线程数
+        int count = 100; // 线程数
+        int times = 1000; // 任务数
+        long time = execute(count, times, (index) -> {
+            // 随机锁数量
+            int size = RandomUtility.randomInteger(0, objects.size()) + 1;
+            Comparable[] locks = new Comparable[size];
+            for (int cursor = 0; cursor < locks.length; cursor++) {
+                int random = RandomUtility.randomInteger(0, objects.size());
+                locks[cursor] = objects.get(random);
+            }
+            ChainLockable lock = ChainLockable.instanceOf(locks);
+            try {
+                lock.open();
+                // 转让CPU
+                Thread.yield();
+            } finally {
+                lock.close();
+            }
+        });
+        logger.info("链锁:{}线程执行{}次耗时{}毫秒", count, times, time);
+    }
+
+    /**
+     * 测试锁切面在竞争下的性能(包括代理,策略与链锁)
+     */
+    @Test(timeout = 10000)
+    public void testAspect() throws InterruptedException {
+        AspectJProxyFactory factory = new AspectJProxyFactory(new MockLockableService());
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new LockableAspect());
+        MockLockableService service = factory.getProxy();
+        MockObject<String> left = new MockObject<>("left");
+        MockObject<String> right = new MockObject<>("right");
+
+        int count = 50; // 线程数
         int times = 2000; // 任务数
-        ExecutorService executor = Executors.newFixedThreadPool(count);
-        CountDownLatch latch = new CountDownLatch(count);
-        for (int thread = 0; thread < count; thread++) {
-            executor.submit(() -> {
-                for (int time = 0; time < times; time++) {
-                    // 随机锁数量
-                    int size = RandomUtility.randomInteger(0, objects.size()) + 1;
-                    Comparable[] locks = new Comparable[size];
-                    for (int index = 0; index < locks.length; index++) {
-                        int random = RandomUtility.randomInteger(0, objects.size());
-                        locks[index] = objects.get(random);
-                    }
-                    ChainLockable lock = ChainLockable.instanceOf(locks);
-                    try {
-                        lock.open();
-                        // 转让CPU
-                        Thread.yield();
-                    } finally {
-                        lock.close();
-                    }
-                }
-                latch.countDown();
-            });
+        String[] names = new String[] { "单参数链锁", "多参数链锁", "哈希锁" };
+        Task[] tasks = new Task[] { (time) -> service.increase(left), (time) -> service.increase(left, right), (time) -> service.increaseHash(left, right) };
+        for (int index = 0; index < tasks.length; index++) {
+            service.setCount(0);
+            long time = execute(count, times, tasks[index]);
+            // 计数器只由切面的锁保护
+            Assert.assertThat(service.getCount(), CoreMatchers.is(count * times));
+            logger.info("{}切面:{}线程执行{}次耗时{}毫秒", names[index], count, times, time);
         }
-        latch.await();
     }
 
 }
@@ -0,0 +1,36 @@
+package com.jstarcraft.core.common.lockable;
+
+/**
+ * 模仿服务(计数器只由锁切面保护)
+ * 
+ * @author Birdy
+ *
+ */
+public class MockLockableService {
+
+    private int count;
+
+    @LockableMethod(strategy = ChainLockableStrategy.class)
+    public void increase(@LockableParameter MockObject<?> object) {
+        count++;
+    }
+
+    @LockableMethod(strategy = ChainLockableStrategy.class)
+    public void increase(@LockableParameter MockObject<?> left, @LockableParameter MockObject<?> right) {
+        count++;
+    }
+
+    @LockableMethod(strategy = HashLockableStrategy.class)
+    public void increaseHash(@LockableParameter MockObject<?> left, @LockableParameter MockObject<?> right) {
+        count++;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.jstarcraft.core.utility;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class DoubleAdderArrayTestCase {
+
+    private static final Logger logger = LoggerFactory.getLogger(DoubleAdderArrayTestCase.class);
+
+    private static final int THREADS = 8;
+
+    private interface Task {
+
+        void run(int thread);
+
+    }
+
+    private long execute(Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch stop = new CountDownLatch(THREADS);
+        for (int thread = 0; thread < THREADS; thread++) {
+            int index = thread;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    task.run(index);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    stop.countDown();
+                }
+            });
+        }
+        long instant = System.nanoTime();
+        start.countDown();
+        Assert.assertTrue(stop.await(60L, TimeUnit.SECONDS));
+        instant = System.nanoTime() - instant;
+        executor.shutdown();
+        return TimeUnit.NANOSECONDS.toMillis(instant);
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+        int length = 16;
+        int times = 100000;
+        {
+            DoubleAdderArray array = new DoubleAdderArray(length);
+            execute((thread) -> {
+                for (int time = 0; time < times; time++) {
+                    array.add(time % length, 1D);
+                }
+            });
+            for (int index = 0; index < length; index++) {
+                Assert.assertEquals(THREADS * times / length, array.sum(index), 0D);
+            }
+            Assert.assertEquals(THREADS * times, array.sum(0, length), 0D);
+            Assert.assertTrue(array.getStripes() <= DoubleAdderArray.DEFAULT_STRIPES);
+        }
+        {
+            FloatAdderArray array = new FloatAdderArray(length);
+            execute((thread) -> {
+                for (int time = 0; time < times; time++) {
+                    array.add(time % length, 1F);
+                }
+            });
+            for (int index = 0; index < length; index++) {
+                Assert.assertEquals(THREADS * times / length, array.sum(index), 0F);
+            }
+        }
+    }
+
+    @Test
+    public void testVector() throws Exception {
+        int length = 64;
+        int times = 10000;
+        DoubleAdderArray array = new DoubleAdderArray(length);
+        double[] vector = new double[length];
+        for (int index = 0; index < length; index++) {
+            vector[index] = index;
+        }
+        execute((thread) -> {
+            for (int time = 0; time < times; time++) {
+                array.add(0, vector);
+            }
+        });
+        double[] sums = array.snapshot();
+        for (int index = 0; index < length; index++) {
+            Assert.assertEquals(index * THREADS * times, sums[index], 0D);
+        }
+        // 部分向量
+        array.reset();
+        array.add(10, vector, 1, 4);
+        Assert.assertEquals(0D, array.sum(9), 0D);
+        Assert.assertEquals(1D, array.sum(10), 0D);
+        Assert.assertEquals(3D, array.sum(12), 0D);
+        Assert.assertEquals(0D, array.sum(13), 0D);
+        try {
+            array.add(length - 1, vector, 0, 2);
+            Assert.fail();
+        } catch (IndexOutOfBoundsException exception) {
+        }
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        int length = 8;
+        int times = 100000;
+        DoubleAdderArray array = new DoubleAdderArray(length);
+        double[] totals = new double[length];
+        CountDownLatch latch = new CountDownLatch(1);
+        Thread collector = new Thread(() -> {
+            while (latch.getCount() > 0) {
+                double[] sums = array.snapshotThenReset();
+                for (int index = 0; index < length; index++) {
+                    totals[index] += sums[index];
+                }
+            }
+        });
+        collector.start();
+        double[] vector = new double[length];
+        Arrays.fill(vector, 1D);
+        execute((thread) -> {
+            for (int time = 0; time < times; time++) {
+                // 一半线程累加元素,一半线程累加向量
+                if (thread % 2 == 0) {
+                    array.add(time % length, 1D);
+                } else if (time % length == 0) {
+                    array.add(0, vector);
+                }
+            }
+        });
+        latch.countDown();
+        collector.join();
+        // 并发的重置不能丢失累加
+        double[] sums = array.snapshotThenReset();
+        for (int index = 0; index < length; index++) {
+            Assert.assertEquals(THREADS * times / length, totals[index] + sums[index], 0D);
+            Assert.assertEquals(0D, array.sum(index), 0D);
+        }
+        array.add(3, 2D);
+        Assert.assertEquals(2D, array.sumThenReset(3), 0D);
+        Assert.assertEquals(0D, array.sum(3), 0D);
+    }
+
+    @Test
+    public void testPerformance() throws Exception {
+        // 少量热点位置,模拟高竞争的梯度/计数累加
+        int length = 4;
+        int times = 1000000;
+        {
+            AtomicDoubleArray array = new AtomicDoubleArray(length);
+            long time = execute((thread) -> {
+                for (int index = 0; index < times; index++) {
+                    array.addAndGet(index & (length - 1), 1D);
+                }
+            });
+            Assert.assertEquals(THREADS * times / length, array.get(0), 0D);
+            logger.info("AtomicDoubleArray执行时间:{}毫秒", time);
+        }
+        {
+            DoubleAdderArray array = new DoubleAdderArray(length);
+            long time = execute((thread) -> {
+                for (int index = 0; index < times; index++) {
+                    array.add(index & (length - 1), 1D);
+                }
+            });
+            Assert.assertEquals(THREADS * times / length, array.sum(0), 0D);
+            logger.info("DoubleAdderArray执行时间:{}毫秒,条带数量:{}", time, array.getStripes());
+        }
+        {
+            AtomicFloatArray array = new AtomicFloatArray(length);
+            long time = execute((thread) -> {
+                for (int index = 0; index < times; index++) {
+                    array.addAndGet(index & (length - 1), 1F);
+                }
+            });
+            logger.info("AtomicFloatArray执行时间:{}毫秒", time);
+        }
+        {
+            FloatAdderArray array = new FloatAdderArray(length);
+            long time = execute((thread) -> {
+                for (int index = 0; index < times; index++) {
+                    array.add(index & (length - 1), 1F);
+                }
+            });
+            logger.info("FloatAdderArray执行时间:{}毫秒,条带数量:{}", time, array.getStripes());
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.jstarcraft.core.utility;
+
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TimingWheelTestCase {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheelTestCase.class);
+
+    @Test
+    public void testSchedule() throws Exception {
+        TimingWheel wheel = new TimingWheel("testSchedule", 10L, TimeUnit.MILLISECONDS, 8, null);
+        try {
+            int size = 100;
+            CountDownLatch latch = new CountDownLatch(size);
+            AtomicInteger early = new AtomicInteger();
+            for (int index = 0; index < size; index++) {
+                // 延迟超过一圈(80毫秒)的任务需要等待多轮
+                long delay = index * 5L;
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+                wheel.schedule(() -> {
+                    if (System.nanoTime() < deadline) {
+                        early.incrementAndGet();
+                    }
+                    latch.countDown();
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+            Assert.assertTrue(latch.await(5000L, TimeUnit.MILLISECONDS));
+            // 任务不能提前执行
+            Assert.assertEquals(0, early.get());
+            Assert.assertEquals(0L, wheel.getSize());
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        TimingWheel wheel = new TimingWheel("testCancel", 10L, TimeUnit.MILLISECONDS, 64, null);
+        AtomicInteger count = new AtomicInteger();
+        TimingTask left = wheel.schedule(count::incrementAndGet, 100L, TimeUnit.MILLISECONDS);
+        TimingTask right = wheel.schedule(count::incrementAndGet, 100L, TimeUnit.MILLISECONDS);
+        TimingTask remain = wheel.schedule(count::incrementAndGet, 1L, TimeUnit.HOURS);
+        Assert.assertTrue(left.cancel());
+        Assert.assertFalse(left.cancel());
+        Assert.assertEquals(2L, wheel.getSize());
+        Thread.sleep(500L);
+        Assert.assertEquals(1, count.get());
+        Assert.assertTrue(left.isCancelled());
+        Assert.assertTrue(right.isExpired());
+        Assert.assertFalse(right.cancel());
+        Collection<TimingTask> remains = wheel.stop();
+        Assert.assertEquals(1, remains.size());
+        Assert.assertTrue(remains.contains(remain));
+        try {
+            wheel.schedule(count::incrementAndGet, 1L, TimeUnit.MILLISECONDS);
+            Assert.fail();
+        } catch (IllegalStateException exception) {
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testPerformance() throws Exception {
+        TimingWheel wheel = TimingWheel.getDefault();
+        int size = 1000000;
+        CountDownLatch latch = new CountDownLatch(size / 2);
+        TimingTask[] tasks = new TimingTask[size];
+        long instant = System.currentTimeMillis();
+        for (int index = 0; index < size; index++) {
+            tasks[index] = wheel.schedule(latch::countDown, 1000L + index % 1000, TimeUnit.MILLISECONDS);
+        }
+        logger.info("调度{}个任务耗时:{}毫秒", size, System.currentTimeMillis() - instant);
+        instant = System.currentTimeMillis();
+        for (int index = 1; index < size; index += 2) {
+            Assert.assertTrue(tasks[index].cancel());
+        }
+        logger.info("取消{}个任务耗时:{}毫秒", size / 2, System.currentTimeMillis() - instant);
+        latch.await();
+        Thread.sleep(100L);
+        Assert.assertEquals(0L, latch.getCount());
+        for (int index = 0; index < size; index++) {
+            Assert.assertTrue(index % 2 == 0 ? tasks[index].isExpired() : tasks[index].isCancelled());
+        }
+        try {
+            wheel.stop();
+            Assert.fail();
+        } catch (UnsupportedOperationException exception) {
+        }
+    }
+
+}
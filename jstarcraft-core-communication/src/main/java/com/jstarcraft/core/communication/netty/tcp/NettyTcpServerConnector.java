@@ -1,11 +1,11 @@
 package com.jstarcraft.core.communication.netty.tcp;
 
 import java.net.InetSocketAddress;
-import java.time.Instant;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
@@ -20,10 +20,9 @@ import com.jstarcraft.core.communication.session.CommunicationSession;
 import com.jstarcraft.core.communication.session.SessionManager;
 import com.jstarcraft.core.communication.session.SessionReceiver;
 import com.jstarcraft.core.communication.session.SessionSender;
-import com.jstarcraft.core.utility.DelayElement;
 import com.jstarcraft.core.utility.NameThreadFactory;
-import com.jstarcraft.core.utility.SensitivityQueue;
 import com.jstarcraft.core.utility.StringUtility;
+import com.jstarcraft.core.utility.TimingWheel;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
@@ -53,9 +52,6 @@ public class NettyTcpServerConnector extends ChannelInboundHandlerAdapter implem
 
     private static final Logger LOGGER = LoggerFactory.getLogger(NettyTcpServerConnector.class);
 
-    /** 修复时间间隔 */
-    private static final long FIX_TIME = 1000;
-
     /** 最大尝试次数 */
     private static final int MAXIMUM_TRY_TIMES = 10;
 
@@ -82,36 +78,6 @@ public class NettyTcpServerConnector extends ChannelInboundHandlerAdapter implem
 
     /** 状态 */
     private AtomicReference<CommunicationState> state = new AtomicReference<>(CommunicationState.STOPPED);
-    /** 定时队列 */
-    private final SensitivityQueue<DelayElement<CommunicationSession<Channel>>> queue = new SensitivityQueue<>(FIX_TIME);
-    /** 清理者线程 */
-    private final Runnable cleaner = new Runnable() {
-
-        public void run() {
-            while (true) {
-                try {
-                    DelayElement<CommunicationSession<Channel>> element = queue.take();
-                    CommunicationSession<Channel> content = element.getContent();
-                    // 会话可能已经连接
-                    if (!content.getContext().isActive()) {
-                        sessionManager.detachSession(content.getKey());
-                    }
-                } catch (InterruptedException exception) {
-                    if (state.get() == CommunicationState.STARTED) {
-                        LOGGER.error("清理者异常", exception);
-                    } else {
-                        // 中断
-                        queue.clear();
-                        return;
-                    }
-                } catch (Exception exception) {
-                    // TODO 需要考虑异常处理
-                    LOGGER.error("清理会话异常", exception);
-                }
-            }
-        }
-
-    };
     /** 发送者线程 */
     private Runnable sender = new Runnable() {
 
@@ -160,7 +126,6 @@ public class NettyTcpServerConnector extends ChannelInboundHandlerAdapter implem
 
     };
 
-    private Thread cleanThread;
     private Thread sendThread;
 
     public NettyTcpServerConnector(String address, Map<String, Object> options, NettySessionManager<Channel> sessionManager, int expired) {
@@ -187,6 +152,21 @@ public class NettyTcpServerConnector extends ChannelInboundHandlerAdapter implem
         this.expired = expired;
     }
 
+    private void clean(CommunicationSession<Channel> session) {
+        if (state.get() != CommunicationState.STARTED) {
+            return;
+        }
+        try {
+            // 会话可能已经连接
+            if (!session.getContext().isActive()) {
+                sessionManager.detachSession(session.getKey());
+            }
+        } catch (Exception exception) {
+            // TODO 需要考虑异常处理
+            LOGGER.error("清理会话异常", exception);
+        }
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext context) throws Exception {
         Channel channel = context.channel();
@@ -200,11 +180,10 @@ public class NettyTcpServerConnector extends ChannelInboundHandlerAdapter implem
         Channel channel = context.channel();
         InetSocketAddress address = InetSocketAddress.class.cast(channel.remoteAddress());
         CommunicationSession<Channel> session = sessionManager.getSession(address);
-        // 将会话放到定时队列
-        Instant now = Instant.now();
-        Instant expire = now.plusMillis(expired);
-        DelayElement<CommunicationSession<Channel>> element = new DelayElement<>(session, expire);
-        queue.offer(element);
+        // 将会话放到共享时间轮
+        TimingWheel.getDefault().schedule(() -> {
+            clean(session);
+        }, expired, TimeUnit.MILLISECONDS);
         super.channelInactive(context);
     }
 
@@ -280,10 +259,6 @@ public class NettyTcpServerConnector extends ChannelInboundHandlerAdapter implem
                 ChannelFuture bind = connector.bind();
                 channel = bind.sync().channel();
 
-                cleanThread = new Thread(cleaner);
-                cleanThread.setDaemon(true);
-                cleanThread.start();
-
                 sendThread = new Thread(sender);
                 sendThread.setDaemon(true);
                 sendThread.start();
@@ -306,9 +281,8 @@ public class NettyTcpServerConnector extends ChannelInboundHandlerAdapter implem
         }
         majorLoopGroup.shutdownGracefully();
         minorLoopGroup.shutdownGracefully();
-        cleanThread.interrupt();
         sendThread.interrupt();
-        while (cleanThread.isAlive() || sendThread.isAlive()) {
+        while (sendThread.isAlive()) {
             Thread.yield();
         }
         Collection<CommunicationSession<Channel>> sessions = sessionManager.getSessions(null);
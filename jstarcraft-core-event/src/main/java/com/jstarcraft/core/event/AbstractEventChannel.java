@@ -1,7 +1,12 @@
 package com.jstarcraft.core.event;
 
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -9,6 +14,8 @@ import java.util.concurrent.ConcurrentMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.jstarcraft.core.codec.ContentCodec;
+
 public abstract class AbstractEventChannel implements EventChannel {
 
     protected static final Logger logger = LoggerFactory.getLogger(AbstractEventChannel.class);
@@ -76,4 +83,43 @@ public abstract class AbstractEventChannel implements EventChannel {
         return manager == null ? Collections.EMPTY_SET : manager.getMonitors();
     }
 
+    /**
+     * 按照类型分组事件(保持同类事件的顺序)
+     *
+     * @param events
+     * @return
+     */
+    protected static Map<Class, List<Object>> groupEvents(Collection<?> events) {
+        Map<Class, List<Object>> groups = new LinkedHashMap<>();
+        for (Object event : events) {
+            Class type = event.getClass();
+            List<Object> group = groups.get(type);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(type, group);
+            }
+            group.add(event);
+        }
+        return groups;
+    }
+
+    /**
+     * 使用同一个缓冲编码同类事件
+     *
+     * @param codec
+     * @param type
+     * @param events
+     * @return
+     */
+    protected static List<byte[]> encodeEvents(ContentCodec codec, Class type, List<Object> events) {
+        List<byte[]> datas = new ArrayList<>(events.size());
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (Object event : events) {
+            buffer.reset();
+            codec.encode(type, event, buffer);
+            datas.add(buffer.toByteArray());
+        }
+        return datas;
+    }
+
 }
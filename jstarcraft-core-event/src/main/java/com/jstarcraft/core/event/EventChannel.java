@@ -72,4 +72,20 @@ public interface EventChannel {
      */
     void triggerEvent(Object event);
 
+    /**
+     * 批量触发事件
+     *
+     * <pre>
+     * 同类事件保持触发顺序,并且尽可能使用后端的批量通道(一次编码,一次发送).
+     * 默认逐个触发,没有批量通道的实现不需要覆盖.
+     * </pre>
+     *
+     * @param events
+     */
+    default void triggerEvents(Collection<?> events) {
+        for (Object event : events) {
+            triggerEvent(event);
+        }
+    }
+
 }
@@ -1,11 +1,15 @@
 package com.jstarcraft.core.event.amqp;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import javax.jms.BytesMessage;
 import javax.jms.Destination;
+import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageConsumer;
 import javax.jms.MessageListener;
@@ -35,6 +39,11 @@ public class AmqpEventChannel extends AbstractEventChannel {
 
     private ConcurrentMap<Class, MessageProducer> producers;
 
+    /** 批量发送的事务会话(null表示批量发送不是原子的) */
+    private Session batchSession;
+
+    private ConcurrentMap<Class, MessageProducer> batchProducers;
+
     private ConcurrentMap<Class, MessageConsumer> consumers;
 
     private class EventHandler implements MessageListener {
@@ -92,14 +101,40 @@ public class AmqpEventChannel extends AbstractEventChannel {
     };
 
     public AmqpEventChannel(EventMode mode, String name, Session session, ContentCodec codec) {
+        this(mode, name, session, codec, null);
+    }
+
+    /**
+     * 
+     * @param mode
+     * @param name
+     * @param session
+     * @param codec
+     * @param batchSession
+     *            批量发送使用的事务会话(必须是事务会话,null表示批量发送不是原子的,逐条发送)
+     */
+    public AmqpEventChannel(EventMode mode, String name, Session session, ContentCodec codec, Session batchSession) {
         super(mode, name);
+        try {
+            if (batchSession != null && !batchSession.getTransacted()) {
+                throw new IllegalArgumentException("批量发送的会话必须是事务会话");
+            }
+        } catch (JMSException exception) {
+            throw new RuntimeException(exception);
+        }
         this.session = session;
         this.codec = codec;
+        this.producers = buildProducers();
+        this.batchSession = batchSession;
+        this.batchProducers = buildProducers();
+        this.consumers = new ConcurrentHashMap<>();
+    }
+
+    private static ConcurrentMap<Class, MessageProducer> buildProducers() {
         Builder<Class, MessageProducer> builder = new Builder<>();
         builder.initialCapacity(1000);
         builder.maximumWeightedCapacity(1000);
-        this.producers = builder.build();
-        this.consumers = new ConcurrentHashMap<>();
+        return builder.build();
     }
 
     @Override
@@ -154,13 +189,14 @@ public class AmqpEventChannel extends AbstractEventChannel {
         }
     }
 
-    @Override
-    public void triggerEvent(Object event) {
-        try {
-            Class type = event.getClass();
-            MessageProducer producer = null;
-            synchronized (producers) {
-                producer = producers.get(type);
+    private MessageProducer getProducer(Class type) throws Exception {
+        return getProducer(session, producers, type);
+    }
+
+    private MessageProducer getProducer(Session session, ConcurrentMap<Class, MessageProducer> producers, Class type) throws Exception {
+        synchronized (producers) {
+            MessageProducer producer = producers.get(type);
+            if (producer == null) {
                 Destination address = null;
                 switch (mode) {
                 case QUEUE: {
@@ -177,6 +213,15 @@ public class AmqpEventChannel extends AbstractEventChannel {
                 producer = session.createProducer(address);
                 producers.put(type, producer);
             }
+            return producer;
+        }
+    }
+
+    @Override
+    public void triggerEvent(Object event) {
+        try {
+            Class type = event.getClass();
+            MessageProducer producer = getProducer(type);
             byte[] bytes = codec.encode(type, event);
             BytesMessage message = session.createBytesMessage();
             message.writeBytes(bytes);
@@ -186,4 +231,54 @@ public class AmqpEventChannel extends AbstractEventChannel {
         }
     }
 
+    /**
+     * 批量触发事件
+     * 
+     * <pre>
+     * 指定了批量事务会话时,整批事件在同一个事务中发送并且一次提交(失败时回滚);
+     * 否则使用普通会话逐条发送,批量发送不是原子的(部分事件可能已经发送).
+     * </pre>
+     */
+    @Override
+    public void triggerEvents(Collection<?> events) {
+        if (batchSession == null) {
+            try {
+                for (Entry<Class, List<Object>> term : groupEvents(events).entrySet()) {
+                    Class type = term.getKey();
+                    MessageProducer producer = getProducer(type);
+                    for (byte[] bytes : encodeEvents(codec, type, term.getValue())) {
+                        BytesMessage message = session.createBytesMessage();
+                        message.writeBytes(bytes);
+                        producer.send(message);
+                    }
+                }
+            } catch (Exception exception) {
+                throw new RuntimeException(exception);
+            }
+            return;
+        }
+        // 会话不是线程安全的,批量事务串行执行
+        synchronized (batchSession) {
+            try {
+                for (Entry<Class, List<Object>> term : groupEvents(events).entrySet()) {
+                    Class type = term.getKey();
+                    MessageProducer producer = getProducer(batchSession, batchProducers, type);
+                    for (byte[] bytes : encodeEvents(codec, type, term.getValue())) {
+                        BytesMessage message = batchSession.createBytesMessage();
+                        message.writeBytes(bytes);
+                        producer.send(message);
+                    }
+                }
+                batchSession.commit();
+            } catch (Exception exception) {
+                try {
+                    batchSession.rollback();
+                } catch (Exception throwable) {
+                    exception.addSuppressed(throwable);
+                }
+                throw new RuntimeException(exception);
+            }
+        }
+    }
+
 }
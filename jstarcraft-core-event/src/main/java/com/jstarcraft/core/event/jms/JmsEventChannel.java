@@ -1,5 +1,8 @@
 package com.jstarcraft.core.event.jms;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -36,6 +39,11 @@ public class JmsEventChannel extends AbstractEventChannel {
 
     private JMSProducer producer;
 
+    /** 批量发送的事务上下文(延迟创建,JMSContext不是线程安全的,批量发送串行执行) */
+    private JMSContext batchContext;
+
+    private JMSProducer batchProducer;
+
     private ConcurrentMap<Class, JMSConsumer> consumers;
 
     private class EventHandler implements MessageListener {
@@ -147,9 +155,7 @@ public class JmsEventChannel extends AbstractEventChannel {
         }
     }
 
-    @Override
-    public void triggerEvent(Object event) {
-        Class type = event.getClass();
+    private Destination getAddress(JMSContext context, Class type) {
         Destination address = null;
         switch (mode) {
         case QUEUE: {
@@ -163,8 +169,39 @@ public class JmsEventChannel extends AbstractEventChannel {
             break;
         }
         }
+        return address;
+    }
+
+    @Override
+    public void triggerEvent(Object event) {
+        Class type = event.getClass();
+        Destination address = getAddress(context, type);
         byte[] bytes = codec.encode(type, event);
         producer.send(address, bytes);
     }
 
+    @Override
+    public void triggerEvents(Collection<?> events) {
+        // 使用缓存的事务上下文整批发送并且一次提交
+        synchronized (this) {
+            if (batchContext == null) {
+                batchContext = factory.createContext(JMSContext.SESSION_TRANSACTED);
+                batchProducer = batchContext.createProducer();
+            }
+            try {
+                for (Entry<Class, List<Object>> term : groupEvents(events).entrySet()) {
+                    Class type = term.getKey();
+                    Destination address = getAddress(batchContext, type);
+                    for (byte[] bytes : encodeEvents(codec, type, term.getValue())) {
+                        batchProducer.send(address, bytes);
+                    }
+                }
+                batchContext.commit();
+            } catch (RuntimeException exception) {
+                batchContext.rollback();
+                throw exception;
+            }
+        }
+    }
+
 }
@@ -1,7 +1,11 @@
 package com.jstarcraft.core.event.kafka;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
@@ -12,7 +16,9 @@ import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.WakeupException;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.Deserializer;
@@ -31,6 +37,11 @@ import com.jstarcraft.core.utility.StringUtility;
 /**
  * Kafka事件管道
  * 
+ * <pre>
+ * 每次拉取的记录只解码一次并且批量分发,分发完成以后再提交偏移量(至少一次).
+ * 偏移量按照提交间隔异步提交,消费线程退出时同步提交.
+ * </pre>
+ * 
  * @author Henser
  *
  */
@@ -44,10 +55,22 @@ public class KafkaEventChannel extends AbstractEventChannel {
 
     private static final Class<? extends Deserializer<?>> valueDeserializer = ByteArrayDeserializer.class;
 
+    /** 默认批量大小(字节) */
+    public static final int DEFAULT_BATCH_SIZE = 16384;
+
+    /** 默认逗留时间(毫秒) */
+    public static final int DEFAULT_LINGER_TIME = 0;
+
+    /** 默认提交间隔(毫秒) */
+    public static final int DEFAULT_COMMIT_TIME = 0;
+
     private String connections;
 
     private ContentCodec codec;
 
+    /** 提交间隔(毫秒,0表示每次拉取以后提交) */
+    private final int commitTime;
+
     private KafkaProducer<String, byte[]> producer;
 
     private ConcurrentMap<Class, KafkaConsumer<String, byte[]>> consumers;
@@ -60,69 +83,136 @@ public class KafkaEventChannel extends AbstractEventChannel {
 
         private EventManager manager;
 
+        /** 是否运行 */
+        private volatile boolean running = true;
+
         private EventThread(Class clazz, EventManager manager) {
             this.clazz = clazz;
             this.manager = manager;
         }
 
+        private void onEvent(Object event) {
+            switch (mode) {
+            case QUEUE: {
+                int size = manager.getSize();
+                int index = RandomUtility.randomInteger(size);
+                EventMonitor monitor = manager.getMonitor(index);
+                try {
+                    monitor.onEvent(event);
+                } catch (Exception exception) {
+                    // 记录日志
+                    String message = StringUtility.format("监控器[{}]处理Kafka事件[{}]时异常", monitor.getClass(), event.getClass());
+                    logger.error(message, exception);
+                }
+                break;
+            }
+            case TOPIC: {
+                for (EventMonitor monitor : manager) {
+                    try {
+                        monitor.onEvent(event);
+                    } catch (Exception exception) {
+                        // 记录日志
+                        String message = StringUtility.format("监控器[{}]处理Kafka事件[{}]时异常", monitor.getClass(), event.getClass());
+                        logger.error(message, exception);
+                    }
+                }
+                break;
+            }
+            }
+        }
+
         @Override
         public void run() {
             KafkaConsumer<String, byte[]> consumer = consumers.get(clazz);
-            while (true) {
-                ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(1000L));
-                logger.info("records count = " + records.count());
-                for (ConsumerRecord<String, byte[]> record : records) {
-                    byte[] bytes = record.value();
-                    logger.info("topic = " + record.topic() + ", partition = " + record.partition() + ", value = " + codec.decode(clazz, bytes));
-                    try {
-                        Object event = codec.decode(clazz, bytes);
-                        switch (mode) {
-                        case QUEUE: {
-                            int size = manager.getSize();
-                            int index = RandomUtility.randomInteger(size);
-                            EventMonitor monitor = manager.getMonitor(index);
-                            try {
-                                monitor.onEvent(event);
-                            } catch (Exception exception) {
-                                // 记录日志
-                                String message = StringUtility.format("监控器[{}]处理Redis事件[{}]时异常", monitor.getClass(), bytes);
-                                logger.error(message, exception);
-                            }
-                            break;
+            List<Object> events = new ArrayList<>();
+            long commitInstant = System.currentTimeMillis();
+            boolean commitNeed = false;
+            try {
+                while (running) {
+                    ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(1000L));
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Kafka事件[{}]拉取{}条记录", clazz.getName(), records.count());
+                    }
+                    // 每条记录只解码一次
+                    for (ConsumerRecord<String, byte[]> record : records) {
+                        byte[] bytes = record.value();
+                        try {
+                            events.add(codec.decode(clazz, bytes));
+                        } catch (Exception exception) {
+                            // 记录日志
+                            String message = StringUtility.format("编解码器[{}]处理Kafka事件[{}]时异常", codec.getClass(), bytes);
+                            logger.error(message, exception);
                         }
-                        case TOPIC: {
-                            for (EventMonitor monitor : manager) {
-                                try {
-                                    monitor.onEvent(event);
-                                } catch (Exception exception) {
-                                    // 记录日志
-                                    String message = StringUtility.format("监控器[{}]处理Rocket事件[{}]时异常", monitor.getClass(), event.getClass());
-                                    logger.error(message, exception);
-                                }
+                    }
+                    // 批量分发
+                    for (Object event : events) {
+                        onEvent(event);
+                    }
+                    events.clear();
+                    commitNeed |= !records.isEmpty();
+                    long now = System.currentTimeMillis();
+                    if (commitNeed && now - commitInstant >= commitTime) {
+                        // 分发完成以后异步提交,保证至少一次
+                        consumer.commitAsync((offsets, exception) -> {
+                            if (exception != null) {
+                                String message = StringUtility.format("Kafka事件[{}]提交偏移量[{}]时异常", clazz.getName(), offsets);
+                                logger.error(message, exception);
                             }
-                            break;
-                        }
+                        });
+                        commitInstant = now;
+                        commitNeed = false;
+                    }
+                }
+            } catch (WakeupException exception) {
+                // 注销时唤醒
+            } finally {
+                try {
+                    if (commitNeed) {
+                        try {
+                            consumer.commitSync();
+                        } catch (WakeupException exception) {
+                            // 唤醒信号没有被拉取消费
+                            consumer.commitSync();
                         }
-                    } catch (Exception exception) {
-                        // 记录日志
-                        String message = StringUtility.format("编解码器[{}]处理Redis事件[{}]时异常", codec.getClass(), bytes);
-                        logger.error(message, exception);
-                    } finally {
-                        consumer.commitSync();
                     }
+                } catch (Exception exception) {
+                    String message = StringUtility.format("Kafka事件[{}]提交偏移量时异常", clazz.getName());
+                    logger.error(message, exception);
+                } finally {
+                    consumer.close();
                 }
             }
         }
     };
 
     public KafkaEventChannel(EventMode mode, String name, String connections, ContentCodec codec) {
+        this(mode, name, connections, codec, DEFAULT_BATCH_SIZE, DEFAULT_LINGER_TIME, DEFAULT_COMMIT_TIME);
+    }
+
+    /**
+     * 
+     * @param mode
+     * @param name
+     * @param connections
+     * @param codec
+     * @param batchSize
+     *            生产者批量大小(字节)
+     * @param lingerTime
+     *            生产者逗留时间(毫秒)
+     * @param commitTime
+     *            消费者提交间隔(毫秒)
+     */
+    public KafkaEventChannel(EventMode mode, String name, String connections, ContentCodec codec, int batchSize, int lingerTime, int commitTime) {
         super(mode, name);
         this.connections = connections;
         this.codec = codec;
+        this.commitTime = commitTime;
         Properties properties = new Properties();
         properties.put("bootstrap.servers", connections);
         properties.put("key.serializer", keySerializer);
         properties.put("value.serializer", valueSerializer);
+        properties.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        properties.put(ProducerConfig.LINGER_MS_CONFIG, lingerTime);
         KafkaProducer producer = new KafkaProducer(properties);
         this.producer = producer;
         this.consumers = new ConcurrentHashMap<>();
@@ -153,8 +243,8 @@ public class KafkaEventChannel extends AbstractEventChannel {
                     }
                     }
                     properties.put("auto.offset.reset", "earliest");
-                    // 把auto.commit.offset设为false，让应用程序决定何时提交偏移量
-                    properties.put("auto.commit.offset", false);
+                    // 把enable.auto.commit设为false，让应用程序决定何时提交偏移量
+                    properties.put("enable.auto.commit", false);
                     KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<>(properties);
                     consumer.subscribe(Collections.singleton(group));
                     consumers.put(type, consumer);
@@ -177,11 +267,11 @@ public class KafkaEventChannel extends AbstractEventChannel {
                 manager.detachMonitor(monitor);
                 if (manager.getSize() == 0) {
                     managers.remove(type);
+                    // 消费者不是线程安全的,由消费线程负责提交与关闭
                     KafkaConsumer<String, byte[]> consumer = consumers.remove(type);
-                    consumer.unsubscribe();
-                    consumer.close();
                     EventThread thread = threads.remove(type);
-                    thread.interrupt();
+                    thread.running = false;
+                    consumer.wakeup();
                 }
             }
         }
@@ -203,4 +293,21 @@ public class KafkaEventChannel extends AbstractEventChannel {
         }
     }
 
+    @Override
+    public void triggerEvents(Collection<?> events) {
+        try {
+            // 同类事件共享编码缓冲,记录交给生产者按照batch.size与linger.ms合并发送
+            for (Entry<Class, List<Object>> term : groupEvents(events).entrySet()) {
+                Class type = term.getKey();
+                String group = name + StringUtility.DOT + type.getName();
+                for (byte[] bytes : encodeEvents(codec, type, term.getValue())) {
+                    ProducerRecord<String, byte[]> record = new ProducerRecord<>(group, bytes);
+                    producer.send(record);
+                }
+            }
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
 }
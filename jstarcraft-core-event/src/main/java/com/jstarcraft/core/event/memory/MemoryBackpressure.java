@@ -0,0 +1,24 @@
+package com.jstarcraft.core.event.memory;
+
+/**
+ * 内存背压策略
+ * 
+ * <pre>
+ * 环形缓冲已满时触发事件的处理方式
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public enum MemoryBackpressure {
+
+    /** 阻塞调用线程直到有空位 */
+    BLOCK,
+
+    /** 丢弃最旧的事件 */
+    DROP_OLDEST,
+
+    /** 由调用线程直接处理事件(与线程池并发处理,不保证同一种事件的顺序) */
+    CALLER_RUNS;
+
+}
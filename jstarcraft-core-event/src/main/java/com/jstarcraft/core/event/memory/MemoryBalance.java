@@ -0,0 +1,24 @@
+package com.jstarcraft.core.event.memory;
+
+/**
+ * 内存负载均衡策略
+ * 
+ * <pre>
+ * 队列模式选择监控器的方式
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public enum MemoryBalance {
+
+    /** 随机 */
+    RANDOM,
+
+    /** 轮询 */
+    ROUND_ROBIN,
+
+    /** 最少负载(正在处理的事件最少) */
+    LEAST_LOADED;
+
+}
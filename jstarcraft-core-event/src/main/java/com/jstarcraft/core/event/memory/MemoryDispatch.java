@@ -0,0 +1,24 @@
+package com.jstarcraft.core.event.memory;
+
+/**
+ * 内存分发策略
+ * 
+ * <pre>
+ * 主题模式把事件分发给监控器的方式
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public enum MemoryDispatch {
+
+    /** 每个事件一个任务,串行通知所有监控器 */
+    SERIAL,
+
+    /** 每个监控器一个任务,并行通知 */
+    PARALLEL,
+
+    /** 每个监控器一个串行队列,并行通知并且保持监控器内的顺序 */
+    ORDERED;
+
+}
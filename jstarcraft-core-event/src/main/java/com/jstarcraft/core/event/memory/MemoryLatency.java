@@ -0,0 +1,97 @@
+package com.jstarcraft.core.event.memory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 内存延迟直方图
+ * 
+ * <pre>
+ * 按照纳秒的2的幂划分桶,无锁记录,百分位为所在桶的上限.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class MemoryLatency {
+
+    private static final int SIZE = Long.SIZE;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(SIZE);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder total = new LongAdder();
+
+    private final AtomicLong maximum = new AtomicLong();
+
+    /**
+     * 记录延迟
+     * 
+     * @param nanoseconds
+     */
+    public void record(long nanoseconds) {
+        if (nanoseconds < 0L) {
+            nanoseconds = 0L;
+        }
+        buckets.incrementAndGet(SIZE - Long.numberOfLeadingZeros(nanoseconds) - (nanoseconds == 0L ? 0 : 1));
+        count.increment();
+        total.add(nanoseconds);
+        long current;
+        while ((current = maximum.get()) < nanoseconds && !maximum.compareAndSet(current, nanoseconds)) {
+        }
+    }
+
+    /**
+     * 获取记录数量
+     * 
+     * @return
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 获取平均延迟(纳秒)
+     * 
+     * @return
+     */
+    public long getMean() {
+        long count = this.count.sum();
+        return count == 0L ? 0L : total.sum() / count;
+    }
+
+    /**
+     * 获取最大延迟(纳秒)
+     * 
+     * @return
+     */
+    public long getMaximum() {
+        return maximum.get();
+    }
+
+    /**
+     * 获取百分位延迟的上限(纳秒)
+     * 
+     * @param percentile
+     *            (0, 1]
+     * @return
+     */
+    public long getPercentile(double percentile) {
+        long count = 0L;
+        for (int index = 0; index < SIZE; index++) {
+            count += buckets.get(index);
+        }
+        long threshold = (long) Math.ceil(count * percentile);
+        long current = 0L;
+        for (int index = 0; index < SIZE; index++) {
+            current += buckets.get(index);
+            if (current >= threshold && current > 0L) {
+                return index == SIZE - 1 ? Long.MAX_VALUE : (1L << index + 1) - 1L;
+            }
+        }
+        return 0L;
+    }
+
+}
@@ -1,10 +1,21 @@
 package com.jstarcraft.core.event.memory;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,12 +24,20 @@ import com.jstarcraft.core.event.AbstractEventChannel;
 import com.jstarcraft.core.event.EventManager;
 import com.jstarcraft.core.event.EventMode;
 import com.jstarcraft.core.event.EventMonitor;
+import com.jstarcraft.core.utility.NameThreadFactory;
 import com.jstarcraft.core.utility.RandomUtility;
 import com.jstarcraft.core.utility.StringUtility;
 
 /**
  * 内存队列事件管道
  * 
+ * <pre>
+ * 每种事件使用预先分配的环形缓冲,所有事件类型共享同一个线程池.
+ * 环形缓冲有事件时作为任务提交到线程池,同一时刻只有一个线程处理同一种事件,保持原有的顺序语义.
+ * 环形缓冲已满时按照背压策略处理(默认阻塞),监控器按照负载均衡策略选择.
+ * 注意:{@link MemoryBackpressure#CALLER_RUNS}由调用线程处理事件,与线程池并发执行,放弃了同一种事件的顺序.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
@@ -26,61 +45,320 @@ public class MemoryQueueEventChannel extends AbstractEventChannel {
 
     private static final Logger logger = LoggerFactory.getLogger(MemoryQueueEventChannel.class);
 
+    /** 阻塞时的等待时间(纳秒) */
+    private static final long BLOCK_WAIT = TimeUnit.MICROSECONDS.toNanos(100L);
+
+    /** 当前线程正在处理的环形缓冲 */
+    private static final ThreadLocal<EventRing> currentRings = new ThreadLocal<>();
+
     private int size;
 
-    private ConcurrentMap<Class, BlockingQueue<Object>> queues;
+    private ExecutorService pool;
+
+    /** 线程池是否由管道创建 */
+    private boolean owned;
+
+    private MemoryBackpressure backpressure;
+
+    private MemoryBalance balance;
+
+    private ConcurrentMap<Class, EventRing> rings;
+
+    /** 监控器负载(最少负载策略使用) */
+    private ConcurrentMap<EventMonitor, AtomicInteger> loads;
+
+    /** 丢弃数量 */
+    private LongAdder drops;
+
+    /**
+     * 事件环形缓冲(多生产者多消费者,基于序列的无锁实现)
+     * 
+     * @author Birdy
+     *
+     */
+    private class EventRing implements Runnable {
+
+        private final Class type;
+
+        private final int mask;
 
-    private ConcurrentMap<Class, EventThread> threads;
+        private final AtomicReferenceArray<Object> events;
+
+        private final AtomicLongArray sequences;
+
+        private final AtomicLong head = new AtomicLong();
+
+        private final AtomicLong tail = new AtomicLong();
+
+        /** 是否已经提交到线程池 */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /** 轮询游标 */
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        /** 丢弃数量 */
+        private final LongAdder drops = new LongAdder();
+
+        private EventRing(Class type, int size) {
+            int capacity = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+            this.type = type;
+            this.mask = capacity - 1;
+            this.events = new AtomicReferenceArray<>(capacity);
+            this.sequences = new AtomicLongArray(capacity);
+            for (int index = 0; index < capacity; index++) {
+                this.sequences.set(index, index);
+            }
+        }
+
+        private boolean offer(Object event) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) (position & mask);
+                long difference = sequences.get(index) - position;
+                if (difference == 0L) {
+                    if (tail.compareAndSet(position, position + 1L)) {
+                        events.set(index, event);
+                        sequences.set(index, position + 1L);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0L) {
+                    // 已满
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
 
-    private class EventThread extends Thread {
+        /**
+         * 批量入队(一次CAS占用连续的空闲槽位)
+         * 
+         * @param events
+         * @param from
+         * @return 入队的数量,0表示已满
+         */
+        private int offer(List<Object> events, int from) {
+            int count = events.size() - from;
+            long position = tail.get();
+            while (true) {
+                int free = 0;
+                while (free < count && sequences.get((int) ((position + free) & mask)) == position + free) {
+                    free++;
+                }
+                if (free == 0) {
+                    long difference = sequences.get((int) (position & mask)) - position;
+                    if (difference < 0L) {
+                        // 已满
+                        return 0;
+                    }
+                    position = tail.get();
+                    continue;
+                }
+                if (tail.compareAndSet(position, position + free)) {
+                    for (int index = 0; index < free; index++) {
+                        long sequence = position + index;
+                        this.events.set((int) (sequence & mask), events.get(from + index));
+                        sequences.set((int) (sequence & mask), sequence + 1L);
+                    }
+                    return free;
+                }
+                position = tail.get();
+            }
+        }
 
-        private EventManager manager;
+        private Object poll() {
+            long position = head.get();
+            while (true) {
+                int index = (int) (position & mask);
+                long difference = sequences.get(index) - (position + 1L);
+                if (difference == 0L) {
+                    if (head.compareAndSet(position, position + 1L)) {
+                        Object event = events.getAndSet(index, null);
+                        sequences.set(index, position + mask + 1L);
+                        return event;
+                    }
+                    position = head.get();
+                } else if (difference < 0L) {
+                    // 为空
+                    return null;
+                } else {
+                    position = head.get();
+                }
+            }
+        }
 
-        private BlockingQueue<?> events;
+        private int getDepth() {
+            return (int) Math.max(tail.get() - head.get(), 0L);
+        }
 
-        private EventThread(EventManager manager, BlockingQueue<?> events) {
-            this.manager = manager;
-            this.events = events;
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                pool.execute(this);
+            }
         }
 
         @Override
         public void run() {
+            currentRings.set(this);
             try {
-                while (true) {
-                    Object event = events.take();
-                    int size = manager.getSize();
-                    if (size == 0) {
-                        continue;
+                // 每次最多处理一轮缓冲,避免长期占用线程
+                for (int count = 0; count <= mask; count++) {
+                    EventManager manager = managers.get(type);
+                    if (manager == null || manager.getSize() == 0) {
+                        // 没有监控器时保留事件,注册监控器时重新提交
+                        break;
                     }
-                    int index = RandomUtility.randomInteger(size);
-                    EventMonitor monitor = manager.getMonitor(index);
-                    try {
-                        monitor.onEvent(event);
-                    } catch (Exception exception) {
-                        // 记录日志
-                        String message = StringUtility.format("监控器[{}]处理内存事件[{}]时异常", monitor.getClass(), event);
-                        logger.error(message, exception);
+                    Object event = poll();
+                    if (event == null) {
+                        break;
+                    }
+                    if (!onEvent(this, manager, event)) {
+                        // 监控器被并发注销,放回缓冲等待重新注册(缓冲已满时丢弃)
+                        if (!offer(event)) {
+                            drops.increment();
+                            MemoryQueueEventChannel.this.drops.increment();
+                        }
+                        break;
                     }
                 }
-            } catch (InterruptedException exception) {
+            } finally {
+                currentRings.remove();
+                scheduled.set(false);
+            }
+            EventManager manager = managers.get(type);
+            if (getDepth() > 0 && manager != null && manager.getSize() > 0) {
+                schedule();
             }
         }
-    };
+
+    }
 
     public MemoryQueueEventChannel(String name, int size) {
+        this(name, size, Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new NameThreadFactory(name)), MemoryBackpressure.BLOCK, MemoryBalance.ROUND_ROBIN);
+        this.owned = true;
+    }
+
+    /**
+     * 
+     * @param name
+     * @param size
+     *            每种事件的环形缓冲大小(向上取整为2的幂)
+     * @param pool
+     *            所有事件类型共享的线程池
+     * @param backpressure
+     *            背压策略
+     * @param balance
+     *            负载均衡策略
+     */
+    public MemoryQueueEventChannel(String name, int size, ExecutorService pool, MemoryBackpressure backpressure, MemoryBalance balance) {
         super(EventMode.QUEUE, name);
         this.size = size;
-        this.queues = new ConcurrentHashMap<>();
-        this.threads = new ConcurrentHashMap<>();
+        this.pool = pool;
+        this.backpressure = backpressure;
+        this.balance = balance;
+        this.rings = new ConcurrentHashMap<>();
+        this.loads = new ConcurrentHashMap<>();
+        this.drops = new LongAdder();
+    }
+
+    private EventRing getRing(Class type) {
+        EventRing ring = rings.get(type);
+        if (ring == null) {
+            ring = new EventRing(type, size);
+            EventRing instance = rings.putIfAbsent(type, ring);
+            if (instance != null) {
+                ring = instance;
+            }
+        }
+        return ring;
+    }
+
+    /**
+     * 选择监控器
+     * 
+     * @param ring
+     * @param manager
+     * @return 没有监控器(并发注销)时返回null
+     */
+    private EventMonitor getMonitor(EventRing ring, EventManager manager) {
+        int size = manager.getSize();
+        if (size == 0) {
+            return null;
+        }
+        try {
+            return getMonitor(ring, manager, size);
+        } catch (ArrayIndexOutOfBoundsException exception) {
+            // 并发注销时监控器数组可能缩小
+            return null;
+        }
+    }
+
+    private EventMonitor getMonitor(EventRing ring, EventManager manager, int size) {
+        switch (balance) {
+        case ROUND_ROBIN: {
+            int index = (ring.cursor.getAndIncrement() & Integer.MAX_VALUE) % size;
+            return manager.getMonitor(index);
+        }
+        case LEAST_LOADED: {
+            EventMonitor minimum = null;
+            int load = Integer.MAX_VALUE;
+            for (EventMonitor monitor : manager) {
+                AtomicInteger count = loads.get(monitor);
+                int current = count == null ? 0 : count.get();
+                if (current < load) {
+                    minimum = monitor;
+                    load = current;
+                }
+            }
+            return minimum;
+        }
+        default: {
+            int index = RandomUtility.randomInteger(size);
+            return manager.getMonitor(index);
+        }
+        }
+    }
+
+    /**
+     * 处理事件
+     * 
+     * @param ring
+     * @param manager
+     * @param event
+     * @return 没有监控器时返回false
+     */
+    private boolean onEvent(EventRing ring, EventManager manager, Object event) {
+        EventMonitor monitor = getMonitor(ring, manager);
+        if (monitor == null) {
+            return false;
+        }
+        AtomicInteger load = loads.get(monitor);
+        if (load == null) {
+            load = new AtomicInteger();
+            AtomicInteger instance = loads.putIfAbsent(monitor, load);
+            if (instance != null) {
+                load = instance;
+            }
+        }
+        load.incrementAndGet();
+        try {
+            monitor.onEvent(event);
+        } catch (Exception exception) {
+            // 记录日志
+            String message = StringUtility.format("监控器[{}]处理内存事件[{}]时异常", monitor.getClass(), event);
+            logger.error(message, exception);
+        } finally {
+            load.decrementAndGet();
+        }
+        return true;
     }
 
-    private BlockingQueue<Object> getEvents(Class type) {
-        BlockingQueue<Object> events = queues.get(type);
-        if (events == null) {
-            events = new ArrayBlockingQueue<>(size);
-            queues.put(type, events);
+    @Override
+    public void stop() {
+        if (owned) {
+            pool.shutdown();
         }
-        return events;
     }
 
     @Override
@@ -90,12 +368,13 @@ public class MemoryQueueEventChannel extends AbstractEventChannel {
             if (manager == null) {
                 manager = new EventManager();
                 managers.put(type, manager);
-                BlockingQueue<Object> events = getEvents(type);
-                EventThread thread = new EventThread(manager, events);
-                thread.start();
-                threads.put(type, thread);
             }
             manager.attachMonitor(monitor);
+            // 处理注册之前积压的事件
+            EventRing ring = getRing(type);
+            if (ring.getDepth() > 0) {
+                ring.schedule();
+            }
         }
     }
 
@@ -107,18 +386,118 @@ public class MemoryQueueEventChannel extends AbstractEventChannel {
                 manager.detachMonitor(monitor);
                 if (manager.getSize() == 0) {
                     managers.remove(type);
-                    EventThread thread = threads.remove(type);
-                    thread.interrupt();
                 }
             }
         }
+        loads.remove(monitor);
+    }
+
+    /**
+     * 入队单个事件(缓冲已满时执行背压策略)
+     * 
+     * @param ring
+     * @param type
+     * @param event
+     */
+    private void offerEvent(EventRing ring, Class type, Object event) {
+        while (!ring.offer(event)) {
+            switch (backpressure) {
+            case BLOCK: {
+                if (currentRings.get() == ring || !managers.containsKey(type)) {
+                    // 处理线程向自身触发事件或者没有监控器时不能阻塞
+                    break;
+                }
+                ring.schedule();
+                LockSupport.parkNanos(BLOCK_WAIT);
+                continue;
+            }
+            case DROP_OLDEST: {
+                if (ring.poll() != null) {
+                    ring.drops.increment();
+                    drops.increment();
+                }
+                continue;
+            }
+            default: {
+                break;
+            }
+            }
+            // 由调用线程直接处理事件
+            EventManager manager = managers.get(type);
+            if (manager != null && onEvent(ring, manager, event)) {
+                return;
+            }
+            // 没有监控器时只能丢弃
+            ring.drops.increment();
+            drops.increment();
+            return;
+        }
     }
 
     @Override
     public void triggerEvent(Object event) {
         Class type = event.getClass();
-        BlockingQueue<Object> events = getEvents(type);
-        events.offer(event);
+        EventRing ring = getRing(type);
+        offerEvent(ring, type, event);
+        EventManager manager = managers.get(type);
+        if (manager != null && manager.getSize() > 0) {
+            ring.schedule();
+        }
+    }
+
+    @Override
+    public void triggerEvents(Collection<?> events) {
+        for (Entry<Class, List<Object>> term : groupEvents(events).entrySet()) {
+            Class type = term.getKey();
+            List<Object> group = term.getValue();
+            EventRing ring = getRing(type);
+            int index = 0;
+            while (index < group.size()) {
+                int count = ring.offer(group, index);
+                if (count > 0) {
+                    index += count;
+                } else {
+                    // 缓冲已满,逐个执行背压策略
+                    offerEvent(ring, type, group.get(index++));
+                }
+            }
+            // 每种事件只调度一次
+            EventManager manager = managers.get(type);
+            if (manager != null && manager.getSize() > 0) {
+                ring.schedule();
+            }
+        }
+    }
+
+    /**
+     * 获取指定事件的队列深度
+     * 
+     * @param type
+     * @return
+     */
+    public int getDepth(Class type) {
+        EventRing ring = rings.get(type);
+        return ring == null ? 0 : ring.getDepth();
+    }
+
+    /**
+     * 获取指定事件的丢弃数量
+     * 
+     * @param type
+     * @return
+     */
+    public long getDrops(Class type) {
+        EventRing ring = rings.get(type);
+        return ring == null ? 0L : ring.drops.sum();
+    }
+
+    /**
+     * 获取丢弃总数
+     * 
+     * @return
+     */
+    public long getDrops() {
+        return drops.sum();
     }
 
 }
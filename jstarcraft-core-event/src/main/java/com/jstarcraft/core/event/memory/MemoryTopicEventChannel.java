@@ -1,6 +1,17 @@
 package com.jstarcraft.core.event.memory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.jstarcraft.core.event.AbstractEventChannel;
 import com.jstarcraft.core.event.EventManager;
@@ -11,6 +22,12 @@ import com.jstarcraft.core.utility.StringUtility;
 /**
  * 内存主题事件管道
  * 
+ * <pre>
+ * 监控器列表是写时复制的,分发时不需要加锁.
+ * 并行分发时每个监控器独立执行,慢监控器不会拖慢其它监控器;有序分发时每个监控器使用串行队列保持事件顺序.
+ * 每个监控器的处理延迟记录在直方图中.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
@@ -18,32 +35,62 @@ public class MemoryTopicEventChannel extends AbstractEventChannel {
 
     private ExecutorService pool;
 
+    private MemoryDispatch dispatch;
+
+    /** 监控器延迟 */
+    private ConcurrentMap<EventMonitor, MemoryLatency> latencies;
+
+    /** 监控器串行队列(有序分发使用) */
+    private ConcurrentMap<EventMonitor, MonitorQueue> queues;
+
     public MemoryTopicEventChannel(String name, ExecutorService pool) {
+        this(name, pool, MemoryDispatch.SERIAL);
+    }
+
+    public MemoryTopicEventChannel(String name, ExecutorService pool, MemoryDispatch dispatch) {
         super(EventMode.TOPIC, name);
         this.pool = pool;
+        this.dispatch = dispatch;
+        this.latencies = new ConcurrentHashMap<>();
+        this.queues = new ConcurrentHashMap<>();
+    }
+
+    private void record(EventMonitor monitor, long nanoseconds) {
+        // 延迟在注册时创建,注销以后仍在执行的事件不再记录
+        MemoryLatency latency = latencies.get(monitor);
+        if (latency != null) {
+            latency.record(nanoseconds);
+        }
+    }
+
+    private void onEvent(EventMonitor monitor, Object event) {
+        long begin = System.nanoTime();
+        try {
+            monitor.onEvent(event);
+        } catch (Exception exception) {
+            // 记录日志
+            String message = StringUtility.format("监控器[{}]处理内存事件[{}]时异常", monitor.getClass(), event.getClass());
+            logger.error(message, exception);
+        } finally {
+            record(monitor, System.nanoTime() - begin);
+        }
     }
 
     private class EventTask implements Runnable {
 
-        private Object event;
+        private Collection<?> events;
 
-        private EventTask(Object event) {
-            this.event = event;
+        private EventTask(Collection<?> events) {
+            this.events = events;
         }
 
         @Override
         public void run() {
-            EventManager manager = managers.get(event.getClass());
-            if (manager != null) {
-                synchronized (manager) {
+            for (Object event : events) {
+                EventManager manager = managers.get(event.getClass());
+                if (manager != null) {
                     for (EventMonitor monitor : manager) {
-                        try {
-                            monitor.onEvent(event);
-                        } catch (Exception exception) {
-                            // 记录日志
-                            String message = StringUtility.format("监控器[{}]处理内存事件[{}]时异常", monitor.getClass(), event.getClass());
-                            logger.error(message, exception);
-                        }
+                        onEvent(monitor, event);
                     }
                 }
             }
@@ -51,10 +98,169 @@ public class MemoryTopicEventChannel extends AbstractEventChannel {
 
     };
 
+    /**
+     * 监控器串行队列
+     * 
+     * @author Birdy
+     *
+     */
+    private class MonitorQueue implements Runnable {
+
+        private final EventMonitor monitor;
+
+        private final ConcurrentLinkedQueue<Object> events = new ConcurrentLinkedQueue<>();
+
+        /** 是否已经提交到线程池 */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private MonitorQueue(EventMonitor monitor) {
+            this.monitor = monitor;
+        }
+
+        private void offer(Object event) {
+            events.offer(event);
+            if (scheduled.compareAndSet(false, true)) {
+                pool.execute(this);
+            }
+        }
+
+        private void offer(Collection<?> events) {
+            this.events.addAll(events);
+            if (scheduled.compareAndSet(false, true)) {
+                pool.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            Object event;
+            while ((event = events.poll()) != null) {
+                onEvent(monitor, event);
+            }
+            scheduled.set(false);
+            if (!events.isEmpty() && scheduled.compareAndSet(false, true)) {
+                pool.execute(this);
+            }
+        }
+
+    }
+
+    private MonitorQueue getQueue(EventMonitor monitor) {
+        MonitorQueue queue = queues.get(monitor);
+        if (queue == null) {
+            queue = new MonitorQueue(monitor);
+            MonitorQueue instance = queues.putIfAbsent(monitor, queue);
+            if (instance != null) {
+                queue = instance;
+            }
+        }
+        return queue;
+    }
+
+    @Override
+    public void registerMonitor(Set<Class> types, EventMonitor monitor) {
+        super.registerMonitor(types, monitor);
+        latencies.putIfAbsent(monitor, new MemoryLatency());
+    }
+
+    @Override
+    public void unregisterMonitor(Set<Class> types, EventMonitor monitor) {
+        super.unregisterMonitor(types, monitor);
+        for (EventManager manager : managers.values()) {
+            if (manager.getMonitors().contains(monitor)) {
+                return;
+            }
+        }
+        queues.remove(monitor);
+        latencies.remove(monitor);
+    }
+
     @Override
     public void triggerEvent(Object event) {
         // 执行监控器
-        pool.submit(new EventTask(event));
+        switch (dispatch) {
+        case PARALLEL: {
+            EventManager manager = managers.get(event.getClass());
+            if (manager != null) {
+                for (EventMonitor monitor : manager) {
+                    pool.execute(() -> {
+                        onEvent(monitor, event);
+                    });
+                }
+            }
+            break;
+        }
+        case ORDERED: {
+            EventManager manager = managers.get(event.getClass());
+            if (manager != null) {
+                for (EventMonitor monitor : manager) {
+                    getQueue(monitor).offer(event);
+                }
+            }
+            break;
+        }
+        default: {
+            pool.submit(new EventTask(Collections.singletonList(event)));
+            break;
+        }
+        }
+    }
+
+    @Override
+    public void triggerEvents(Collection<?> events) {
+        // 每批事件只提交一次任务
+        switch (dispatch) {
+        case PARALLEL: {
+            for (Entry<Class, List<Object>> term : groupEvents(events).entrySet()) {
+                EventManager manager = managers.get(term.getKey());
+                if (manager != null) {
+                    List<Object> group = term.getValue();
+                    for (EventMonitor monitor : manager) {
+                        pool.execute(() -> {
+                            for (Object event : group) {
+                                onEvent(monitor, event);
+                            }
+                        });
+                    }
+                }
+            }
+            break;
+        }
+        case ORDERED: {
+            for (Entry<Class, List<Object>> term : groupEvents(events).entrySet()) {
+                EventManager manager = managers.get(term.getKey());
+                if (manager != null) {
+                    for (EventMonitor monitor : manager) {
+                        getQueue(monitor).offer(term.getValue());
+                    }
+                }
+            }
+            break;
+        }
+        default: {
+            pool.submit(new EventTask(new ArrayList<>(events)));
+            break;
+        }
+        }
+    }
+
+    /**
+     * 获取所有监控器的延迟直方图
+     * 
+     * @return
+     */
+    public Map<EventMonitor, MemoryLatency> getLatencies() {
+        return Collections.unmodifiableMap(latencies);
+    }
+
+    /**
+     * 获取指定监控器的延迟直方图
+     * 
+     * @param monitor
+     * @return
+     */
+    public MemoryLatency getLatency(EventMonitor monitor) {
+        return latencies.get(monitor);
     }
 
 }
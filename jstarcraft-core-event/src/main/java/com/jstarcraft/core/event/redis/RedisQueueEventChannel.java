@@ -1,11 +1,21 @@
 package com.jstarcraft.core.event.redis;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 
 import org.redisson.Redisson;
 import org.redisson.api.RBlockingQueue;
+import org.redisson.api.RScript.Mode;
+import org.redisson.api.RScript.ReturnType;
 
 import com.jstarcraft.core.codec.ContentCodec;
 import com.jstarcraft.core.event.EventManager;
@@ -17,15 +27,39 @@ import com.jstarcraft.core.utility.StringUtility;
 /**
  * Redis队列事件管道
  * 
+ * <pre>
+ * 事件线程阻塞等待第一个事件,再通过drainTo(LRANGE与LTRIM脚本)一次往返拉取整个批次;
+ * 配置线程池时,批次的解码与分发在线程池执行,同时事件线程拉取下一个批次.
+ * 有序模式下批次按照拉取顺序串行处理.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
 public class RedisQueueEventChannel extends RedisEventChannel {
 
+    /** 默认每次拉取的事件数量 */
+    public static final int DEFAULT_BATCH_SIZE = 1;
+
+    /** 每个事件线程同时处理中的批次数量 */
+    private static final int INFLIGHT_BATCHES = 2;
+
+    /** 将事件放回队列头部(参数按照逆序传入,LPUSH以后保持原来的顺序) */
+    private static final String REQUEUE_SCRIPT = "return redis.call('lpush', KEYS[1], unpack(ARGV))";
+
     private ConcurrentMap<Class, EventThread> threads;
 
     private ConcurrentMap<Class, RBlockingQueue<byte[]>> queues;
 
+    /** 每次拉取的事件数量 */
+    private final int batchSize;
+
+    /** 解码与分发的线程池(null表示由事件线程处理) */
+    private final ExecutorService pool;
+
+    /** 是否保持事件顺序 */
+    private final boolean ordered;
+
     private class EventThread extends Thread {
 
         private Class clazz;
@@ -34,33 +68,105 @@ public class RedisQueueEventChannel extends RedisEventChannel {
 
         private RBlockingQueue<byte[]> events;
 
+        /** 限制处理中的批次,避免拉取速度超过处理速度 */
+        private Semaphore permits;
+
+        /** 有序模式下的上一个批次 */
+        private CompletableFuture<Void> previous;
+
         private EventThread(Class clazz, EventManager manager, RBlockingQueue<byte[]> events) {
             this.clazz = clazz;
             this.manager = manager;
             this.events = events;
+            this.permits = new Semaphore(INFLIGHT_BATCHES);
+            this.previous = CompletableFuture.completedFuture(null);
+        }
+
+        /**
+         * 将未处理的事件按照原来的顺序一次放回队列头部
+         * 
+         * @param datas
+         */
+        private void requeue(List<byte[]> datas) {
+            int size = datas.size();
+            if (size == 0) {
+                return;
+            }
+            Object[] values = new Object[size];
+            for (int index = 0; index < size; index++) {
+                values[index] = datas.get(size - 1 - index);
+            }
+            redisson.getScript(byteCodec).eval(Mode.READ_WRITE, REQUEUE_SCRIPT, ReturnType.INTEGER, Collections.singletonList(events.getName()), values);
+        }
+
+        private void handle(List<byte[]> datas) {
+            for (int cursor = 0, length = datas.size(); cursor < length; cursor++) {
+                byte[] bytes = datas.get(cursor);
+                int size = manager.getSize();
+                if (size == 0) {
+                    // 监控器已经注销,剩余的事件放回队列
+                    requeue(datas.subList(cursor, length));
+                    return;
+                }
+                try {
+                    Object event = codec.decode(clazz, bytes);
+                    int index = RandomUtility.randomInteger(size);
+                    EventMonitor monitor = manager.getMonitor(index);
+                    try {
+                        monitor.onEvent(event);
+                    } catch (Exception exception) {
+                        // 记录日志
+                        String message = StringUtility.format("监控器[{}]处理Redis事件[{}]时异常", monitor.getClass(), bytes);
+                        logger.error(message, exception);
+                    }
+                } catch (Exception exception) {
+                    // 记录日志
+                    String message = StringUtility.format("编解码器[{}]处理Redis事件[{}]时异常", codec.getClass(), bytes);
+                    logger.error(message, exception);
+                }
+            }
         }
 
         @Override
         public void run() {
             try {
                 while (true) {
-                    byte[] bytes = events.take();
+                    // 阻塞等待第一个事件,再通过一次往返拉取剩余的事件
+                    List<byte[]> datas = new ArrayList<>(batchSize);
+                    datas.add(events.take());
+                    if (batchSize > 1) {
+                        events.drainTo(datas, batchSize - 1);
+                    }
+                    if (pool == null) {
+                        handle(datas);
+                        continue;
+                    }
+                    // 当前批次交给线程池处理,同时拉取下一个批次
                     try {
-                        Object event = codec.decode(clazz, bytes);
-                        int size = manager.getSize();
-                        int index = RandomUtility.randomInteger(size);
-                        EventMonitor monitor = manager.getMonitor(index);
+                        permits.acquire();
+                    } catch (InterruptedException exception) {
+                        // 已经拉取的事件放回队列
+                        requeue(datas);
+                        throw exception;
+                    }
+                    Runnable task = () -> {
                         try {
-                            monitor.onEvent(event);
-                        } catch (Exception exception) {
-                            // 记录日志
-                            String message = StringUtility.format("监控器[{}]处理Redis事件[{}]时异常", monitor.getClass(), bytes);
-                            logger.error(message, exception);
+                            handle(datas);
+                        } catch (Throwable throwable) {
+                            String message = StringUtility.format("处理Redis事件批次[{}]时异常", clazz);
+                            logger.error(message, throwable);
+                        } finally {
+                            permits.release();
                         }
-                    } catch (Exception exception) {
-                        // 记录日志
-                        String message = StringUtility.format("编解码器[{}]处理Redis事件[{}]时异常", codec.getClass(), bytes);
-                        logger.error(message, exception);
+                    };
+                    if (ordered) {
+                        // 无论上一个批次是否异常都执行当前批次,保证许可总是释放
+                        previous = previous.handleAsync((value, throwable) -> {
+                            task.run();
+                            return null;
+                        }, pool);
+                    } else {
+                        pool.execute(task);
                     }
                 }
             } catch (InterruptedException exception) {
@@ -69,9 +175,31 @@ public class RedisQueueEventChannel extends RedisEventChannel {
     };
 
     public RedisQueueEventChannel(String name, Redisson redisson, ContentCodec codec) {
+        this(name, redisson, codec, DEFAULT_BATCH_SIZE, null, true);
+    }
+
+    /**
+     * 
+     * @param name
+     * @param redisson
+     * @param codec
+     * @param batchSize
+     *            每次拉取的事件数量
+     * @param pool
+     *            解码与分发的线程池(null表示由事件线程处理)
+     * @param ordered
+     *            是否保持事件顺序(按照批次串行处理)
+     */
+    public RedisQueueEventChannel(String name, Redisson redisson, ContentCodec codec, int batchSize, ExecutorService pool, boolean ordered) {
         super(EventMode.QUEUE, name, redisson, codec);
+        if (batchSize < 1) {
+            throw new IllegalArgumentException();
+        }
         this.threads = new ConcurrentHashMap<>();
         this.queues = new ConcurrentHashMap<>();
+        this.batchSize = batchSize;
+        this.pool = pool;
+        this.ordered = ordered;
     }
 
     protected RBlockingQueue<byte[]> getQueue(Class type) {
@@ -124,4 +252,15 @@ public class RedisQueueEventChannel extends RedisEventChannel {
         events.add(bytes);
     }
 
+    @Override
+    public void triggerEvents(Collection<?> events) {
+        for (Entry<Class, List<Object>> term : groupEvents(events).entrySet()) {
+            Class type = term.getKey();
+            // TODO 需要防止路径冲突
+            RBlockingQueue<byte[]> queue = getQueue(type);
+            // 同类事件合并为一次RPUSH
+            queue.addAll(encodeEvents(codec, type, term.getValue()));
+        }
+    }
+
 }
@@ -1,11 +1,16 @@
 package com.jstarcraft.core.event.redis;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.redisson.Redisson;
+import org.redisson.api.RBatch;
 import org.redisson.api.RTopic;
+import org.redisson.api.RTopicAsync;
 import org.redisson.api.listener.MessageListener;
 
 import com.jstarcraft.core.codec.ContentCodec;
@@ -117,4 +122,19 @@ public class RedisTopicEventChannel extends RedisEventChannel {
         topic.publish(bytes);
     }
 
+    @Override
+    public void triggerEvents(Collection<?> events) {
+        // 通过管道批量发布,只需要一次往返
+        RBatch batch = redisson.createBatch();
+        for (Entry<Class, List<Object>> term : groupEvents(events).entrySet()) {
+            Class type = term.getKey();
+            // TODO 需要防止路径冲突
+            RTopicAsync topic = batch.getTopic(name + StringUtility.DOT + type.getName(), byteCodec);
+            for (byte[] bytes : encodeEvents(codec, type, term.getValue())) {
+                topic.publishAsync(bytes);
+            }
+        }
+        batch.execute();
+    }
+
 }
@@ -1,6 +1,9 @@
 package com.jstarcraft.core.event.rocket;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -33,6 +36,12 @@ import com.jstarcraft.core.utility.StringUtility;
  */
 public class RocketEventChannel extends AbstractEventChannel {
 
+    /** 批量消息的大小上限(Broker默认限制为4MB) */
+    private static final int BATCH_SIZE = 1024 * 1024;
+
+    /** 单条消息的额外开销(日志与属性) */
+    private static final int MESSAGE_OVERHEAD = 64;
+
     private String addresses;
 
     private ContentCodec codec;
@@ -182,6 +191,35 @@ public class RocketEventChannel extends AbstractEventChannel {
         }
     }
 
+    @Override
+    public void triggerEvents(Collection<?> events) {
+        try {
+            for (Entry<Class, List<Object>> term : groupEvents(events).entrySet()) {
+                Class type = term.getKey();
+                String address = name + StringUtility.DOT + type.getName();
+                address = address.replace(StringUtility.DOT, StringUtility.DASH);
+                // 批量消息必须属于同一个主题,并且总大小不能超过Broker的限制
+                List<Message> messages = new ArrayList<>();
+                int size = 0;
+                for (byte[] bytes : encodeEvents(codec, type, term.getValue())) {
+                    int length = address.length() * 2 + bytes.length + MESSAGE_OVERHEAD;
+                    if (!messages.isEmpty() && size + length > BATCH_SIZE) {
+                        producer.send(messages);
+                        messages = new ArrayList<>();
+                        size = 0;
+                    }
+                    messages.add(new Message(address, address, bytes));
+                    size += length;
+                }
+                if (!messages.isEmpty()) {
+                    producer.send(messages);
+                }
+            }
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
     @Override
     public void start() {
 
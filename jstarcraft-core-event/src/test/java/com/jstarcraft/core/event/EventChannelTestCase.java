@@ -1,6 +1,8 @@
 package com.jstarcraft.core.event;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
 
@@ -133,4 +135,38 @@ public abstract class EventChannelTestCase {
         }
     }
 
+    @Test
+    public void testTriggerEvents() throws Exception {
+        int size = 10;
+        Set<Class> addresses = new HashSet<>();
+        addresses.add(MockEvent.class);
+        EventChannel channel = getEventChannel(EventMode.TOPIC);
+        Semaphore semaphore = new Semaphore(0);
+        MockMonitor[] monitors = new MockMonitor[size];
+        for (int index = 0; index < size; index++) {
+            monitors[index] = new MockMonitor(index, semaphore);
+        }
+
+        try {
+            channel.start();
+            for (int index = 0; index < size; index++) {
+                channel.registerMonitor(addresses, monitors[index]);
+            }
+            // 批量触发事件
+            List<MockEvent> events = new ArrayList<>(size);
+            for (int index = 0; index < size; index++) {
+                events.add(new MockEvent(index));
+            }
+            channel.triggerEvents(events);
+            semaphore.acquire(100);
+            // 持久化的主题可能重放之前的事件
+            for (int index = 0; index < size; index++) {
+                MockMonitor monitor = monitors[index];
+                Assert.assertTrue(monitor.getCount() >= size);
+            }
+        } finally {
+            channel.stop();
+        }
+    }
+
 }
@@ -52,7 +52,12 @@ public class AmqpEventBusTestCase extends EventChannelTestCase {
             Session session = connection.createSession();
             CodecDefinition definition = CodecDefinition.instanceOf(MockEvent.class);
             ContentCodec codec = new JsonContentCodec(definition);
-            return new AmqpEventChannel(mode, "AMQP" + mode, session, codec);
+            if (mode == EventMode.QUEUE) {
+                return new AmqpEventChannel(mode, "AMQP" + mode, session, codec);
+            }
+            // 批量发送使用事务会话
+            Session batchSession = connection.createSession(true, Session.SESSION_TRANSACTED);
+            return new AmqpEventChannel(mode, "AMQP" + mode, session, codec, batchSession);
         } catch (Exception exception) {
             return null;
         }
@@ -41,7 +41,12 @@ public class KafkaEventChannelTestCase extends EventChannelTestCase {
     protected EventChannel getEventChannel(EventMode mode) {
         CodecDefinition definition = CodecDefinition.instanceOf(MockEvent.class);
         ContentCodec codec = new JsonContentCodec(definition);
-        return new KafkaEventChannel(mode, "Kafka" + mode, server.getKafkaConnectString(), codec);
+        if (mode == EventMode.QUEUE) {
+            // 默认配置
+            return new KafkaEventChannel(mode, "Kafka" + mode, server.getKafkaConnectString(), codec);
+        }
+        // 批量发送并且定期提交偏移量
+        return new KafkaEventChannel(mode, "Kafka" + mode, server.getKafkaConnectString(), codec, 16384, 5, 100);
     }
 
 }
@@ -1,18 +1,31 @@
 package com.jstarcraft.core.event.memory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.jstarcraft.core.event.EventChannel;
 import com.jstarcraft.core.event.EventChannelTestCase;
 import com.jstarcraft.core.event.EventMode;
+import com.jstarcraft.core.event.EventMonitor;
+import com.jstarcraft.core.event.MockEvent;
 import com.jstarcraft.core.utility.NameThreadFactory;
+import com.jstarcraft.core.utility.StringUtility;
 
 public class MemoryEventChannelTestCase extends EventChannelTestCase {
 
@@ -60,4 +73,165 @@ public class MemoryEventChannelTestCase extends EventChannelTestCase {
         }
         }
     }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        Set<Class> addresses = Collections.singleton(MockEvent.class);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch latch = new CountDownLatch(1);
+        Semaphore semaphore = new Semaphore(0);
+        EventMonitor<MockEvent> monitor = (event) -> {
+            if (event.getData() == 0) {
+                // 阻塞线程池
+                try {
+                    latch.await();
+                } catch (InterruptedException exception) {
+                }
+            }
+            semaphore.release();
+        };
+
+        // 丢弃最旧的事件
+        MemoryQueueEventChannel channel = new MemoryQueueEventChannel("MEMORY", 4, executor, MemoryBackpressure.DROP_OLDEST, MemoryBalance.LEAST_LOADED);
+        channel.registerMonitor(addresses, monitor);
+        channel.triggerEvent(new MockEvent(0));
+        while (channel.getDepth(MockEvent.class) > 0) {
+            Thread.sleep(1L);
+        }
+        for (int index = 1; index <= 10; index++) {
+            channel.triggerEvent(new MockEvent(index));
+        }
+        Assert.assertEquals(4, channel.getDepth(MockEvent.class));
+        Assert.assertEquals(6L, channel.getDrops(MockEvent.class));
+        Assert.assertEquals(6L, channel.getDrops());
+        latch.countDown();
+        semaphore.acquire(5);
+        channel.unregisterMonitor(addresses, monitor);
+
+        // 由调用线程处理
+        CountDownLatch block = new CountDownLatch(1);
+        monitor = (event) -> {
+            if (event.getData() == 0) {
+                try {
+                    block.await();
+                } catch (InterruptedException exception) {
+                }
+            }
+            semaphore.release();
+        };
+        channel = new MemoryQueueEventChannel("MEMORY", 4, executor, MemoryBackpressure.CALLER_RUNS, MemoryBalance.ROUND_ROBIN);
+        channel.registerMonitor(addresses, monitor);
+        channel.triggerEvent(new MockEvent(0));
+        while (channel.getDepth(MockEvent.class) > 0) {
+            Thread.sleep(1L);
+        }
+        for (int index = 1; index <= 10; index++) {
+            channel.triggerEvent(new MockEvent(index));
+        }
+        // 超出缓冲的事件已经在调用线程处理
+        Assert.assertTrue(semaphore.tryAcquire(6));
+        Assert.assertEquals(4, channel.getDepth(MockEvent.class));
+        Assert.assertEquals(0L, channel.getDrops());
+        block.countDown();
+        semaphore.acquire(5);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testDispatch() throws Exception {
+        Set<Class> addresses = Collections.singleton(MockEvent.class);
+        for (MemoryDispatch dispatch : new MemoryDispatch[] { MemoryDispatch.PARALLEL, MemoryDispatch.ORDERED }) {
+            MemoryTopicEventChannel channel = new MemoryTopicEventChannel("MEMORY", pool, dispatch);
+            CountDownLatch latch = new CountDownLatch(1);
+            Semaphore semaphore = new Semaphore(0);
+            List<Integer> orders = Collections.synchronizedList(new ArrayList<>());
+            // 慢监控器
+            EventMonitor<MockEvent> slow = (event) -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException exception) {
+                }
+                semaphore.release();
+            };
+            // 快监控器
+            EventMonitor<MockEvent> fast = (event) -> {
+                orders.add(event.getData());
+                semaphore.release();
+            };
+            channel.registerMonitor(addresses, slow);
+            channel.registerMonitor(addresses, fast);
+            int size = 5;
+            for (int index = 0; index < size; index++) {
+                channel.triggerEvent(new MockEvent(index));
+            }
+            // 慢监控器不会阻塞快监控器
+            semaphore.acquire(size);
+            Assert.assertEquals(size, orders.size());
+            if (dispatch == MemoryDispatch.ORDERED) {
+                for (int index = 0; index < size; index++) {
+                    Assert.assertEquals(index, orders.get(index).intValue());
+                }
+            }
+            latch.countDown();
+            semaphore.acquire(size);
+            // 延迟在监控器返回以后记录
+            while (channel.getLatency(fast).getCount() < size || channel.getLatency(slow).getCount() < size) {
+                Thread.sleep(1L);
+            }
+            Assert.assertTrue(channel.getLatency(slow).getPercentile(1D) >= channel.getLatency(fast).getPercentile(0.5D));
+            Assert.assertTrue(channel.getLatency(slow).getMaximum() > 0L);
+            // 注销以后不再保留延迟
+            channel.unregisterMonitor(addresses, slow);
+            Assert.assertNull(channel.getLatency(slow));
+            Assert.assertEquals(1, channel.getLatencies().size());
+            channel.unregisterMonitor(addresses, fast);
+            Assert.assertTrue(channel.getLatencies().isEmpty());
+        }
+    }
+
+    /**
+     * 比较逐个触发与批量触发的吞吐量
+     */
+    @Test
+    public void testPerformance() throws Exception {
+        Set<Class> addresses = Collections.singleton(MockEvent.class);
+        int size = 100000;
+        int batch = 100;
+        List<MockEvent> events = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            events.add(new MockEvent(index));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4, new NameThreadFactory("EventPerformance"));
+        EventChannel[] channels = new EventChannel[] { new MemoryQueueEventChannel("MEMORY", 1024, executor, MemoryBackpressure.BLOCK, MemoryBalance.ROUND_ROBIN), new MemoryTopicEventChannel("MEMORY", executor) };
+        for (EventChannel channel : channels) {
+            Semaphore semaphore = new Semaphore(0);
+            EventMonitor<MockEvent> monitor = (event) -> {
+                semaphore.release();
+            };
+            channel.registerMonitor(addresses, monitor);
+            try {
+                // 逐个触发
+                long begin = System.nanoTime();
+                for (MockEvent event : events) {
+                    channel.triggerEvent(event);
+                }
+                semaphore.acquire(size);
+                long single = System.nanoTime() - begin;
+                // 批量触发
+                begin = System.nanoTime();
+                for (int index = 0; index < size; index += batch) {
+                    channel.triggerEvents(events.subList(index, index + batch));
+                }
+                semaphore.acquire(size);
+                long multiple = System.nanoTime() - begin;
+                String message = StringUtility.format("{}模式触发{}个事件,逐个触发耗时{}毫秒,批量({})触发耗时{}毫秒", channel.getMode(), size, TimeUnit.NANOSECONDS.toMillis(single), batch, TimeUnit.NANOSECONDS.toMillis(multiple));
+                logger.info(message);
+            } finally {
+                channel.unregisterMonitor(addresses, monitor);
+                channel.stop();
+            }
+        }
+        executor.shutdown();
+    }
+
 }
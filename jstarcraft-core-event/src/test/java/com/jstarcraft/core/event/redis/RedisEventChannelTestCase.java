@@ -1,7 +1,17 @@
 package com.jstarcraft.core.event.redis;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Test;
 import org.redisson.Redisson;
 import org.redisson.api.RKeys;
 import org.redisson.client.codec.ByteArrayCodec;
@@ -14,6 +24,7 @@ import com.jstarcraft.core.codec.specification.CodecDefinition;
 import com.jstarcraft.core.event.EventChannel;
 import com.jstarcraft.core.event.EventChannelTestCase;
 import com.jstarcraft.core.event.EventMode;
+import com.jstarcraft.core.event.EventMonitor;
 import com.jstarcraft.core.event.MockEvent;
 
 public class RedisEventChannelTestCase extends EventChannelTestCase {
@@ -59,4 +70,38 @@ public class RedisEventChannelTestCase extends EventChannelTestCase {
         }
     }
 
+    @Test
+    public void testBatch() throws Exception {
+        CodecDefinition definition = CodecDefinition.instanceOf(MockEvent.class);
+        ContentCodec codec = new JsonContentCodec(definition);
+        Set<Class> addresses = Collections.singleton(MockEvent.class);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        int size = 1000;
+        List<MockEvent> events = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            events.add(new MockEvent(index));
+        }
+        for (boolean ordered : new boolean[] { true, false }) {
+            RedisQueueEventChannel channel = new RedisQueueEventChannel("redis", redisson, codec, 100, pool, ordered);
+            List<Integer> orders = Collections.synchronizedList(new ArrayList<>(size));
+            Semaphore semaphore = new Semaphore(0);
+            EventMonitor<MockEvent> monitor = (event) -> {
+                orders.add(event.getData());
+                semaphore.release();
+            };
+            channel.registerMonitor(addresses, monitor);
+            channel.triggerEvents(events);
+            semaphore.acquire(size);
+            Assert.assertEquals(size, orders.size());
+            if (ordered) {
+                // 有序模式保持触发顺序
+                for (int index = 0; index < size; index++) {
+                    Assert.assertEquals(index, orders.get(index).intValue());
+                }
+            }
+            channel.unregisterMonitor(addresses, monitor);
+        }
+        pool.shutdown();
+    }
+
 }
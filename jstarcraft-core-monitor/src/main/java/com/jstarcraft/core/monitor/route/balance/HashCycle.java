@@ -1,31 +1,163 @@
 package com.jstarcraft.core.monitor.route.balance;
 
-import java.util.HashMap;
-import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.function.ToIntFunction;
 
 import com.jstarcraft.core.common.hash.StringHashFunction;
 import com.jstarcraft.core.monitor.route.exception.RouteException;
+import com.jstarcraft.core.utility.StringUtility;
 
 /**
  * 哈希环
  * 
+ * <pre>
+ * 每个实际节点按照权重映射为多个虚拟节点,使节点较少时负载仍然均匀.
+ * 第1个虚拟节点使用实际节点的键,其它虚拟节点使用"键#序号".
+ * 
+ * 修改时复制:创建/删除节点会构建新的不可变快照(已排序的int[]),
+ * 选择节点只读取快照并二分查找,不需要锁.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
 public class HashCycle<T> {
 
+    /** 默认每个权重的虚拟节点数量 */
+    public static final int DEFAULT_VIRTUAL = 1;
+
+    /**
+     * 节点
+     * 
+     * @author Birdy
+     *
+     */
+    private static class HashNode<T> {
+
+        private final String key;
+
+        private final T value;
+
+        private final int weight;
+
+        private HashNode(String key, T value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+
+    }
+
+    /**
+     * 快照
+     * 
+     * @author Birdy
+     *
+     */
+    private static class HashSnapshot<T> {
+
+        /** 虚拟节点的哈希(升序) */
+        private final int[] hashes;
+
+        /** 虚拟节点对应的实际节点 */
+        private final HashNode<T>[] nodes;
+
+        /** 实际节点 */
+        private final HashNode<T>[] members;
+
+        /** 总权重 */
+        private final long weight;
+
+        private HashSnapshot(int[] hashes, HashNode<T>[] nodes, HashNode<T>[] members, long weight) {
+            this.hashes = hashes;
+            this.nodes = nodes;
+            this.members = members;
+            this.weight = weight;
+        }
+
+        /**
+         * 查找第一个哈希大于指定哈希的虚拟节点(方向:顺时针)
+         * 
+         * @param hash
+         * @return
+         */
+        private int higher(int hash) {
+            int low = 0;
+            int high = hashes.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (hashes[middle] <= hash) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low == hashes.length ? 0 : low;
+        }
+
+    }
+
     /** 哈希函数 */
-    private StringHashFunction function;
+    private final StringHashFunction function;
 
-    /** 从实际到虚拟节点的映射 */
-    private HashMap<String, Integer> actual2Virtual = new HashMap<>();
+    /** 每个权重的虚拟节点数量 */
+    private final int virtual;
 
-    /** 从虚拟到实际节点的映射 */
-    private TreeMap<Integer, T> virtual2Actual = new TreeMap<>();
+    /** 实际节点(仅在修改时访问) */
+    private final LinkedHashMap<String, HashNode<T>> actuals = new LinkedHashMap<>();
+
+    /** 快照 */
+    private volatile HashSnapshot<T> snapshot;
 
     public HashCycle(StringHashFunction hashFunction) {
+        this(hashFunction, DEFAULT_VIRTUAL);
+    }
+
+    public HashCycle(StringHashFunction hashFunction, int virtual) {
+        if (virtual <= 0) {
+            throw new IllegalArgumentException();
+        }
         this.function = hashFunction;
+        this.virtual = virtual;
+        this.snapshot = build();
+    }
+
+    private int hash(String key, int index) {
+        return function.hash(index == 0 ? key : key + "#" + index);
+    }
+
+    @SuppressWarnings("unchecked")
+    private HashSnapshot<T> build() {
+        int length = 0;
+        long weight = 0L;
+        for (HashNode<T> node : actuals.values()) {
+            length += node.weight * virtual;
+            weight += node.weight;
+        }
+        int[] hashes = new int[length];
+        HashNode<T>[] nodes = new HashNode[length];
+        Integer[] orders = new Integer[length];
+        int cursor = 0;
+        for (HashNode<T> node : actuals.values()) {
+            for (int index = 0, size = node.weight * virtual; index < size; index++) {
+                hashes[cursor] = hash(node.key, index);
+                nodes[cursor] = node;
+                orders[cursor] = cursor;
+                cursor++;
+            }
+        }
+        // 虚拟节点的哈希冲突按照键排序,保证与创建顺序无关
+        Arrays.sort(orders, Comparator.<Integer>comparingInt((order) -> hashes[order]).thenComparing((order) -> nodes[order].key));
+        int[] sortHashes = new int[length];
+        HashNode<T>[] sortNodes = new HashNode[length];
+        for (int index = 0; index < length; index++) {
+            sortHashes[index] = hashes[orders[index]];
+            sortNodes[index] = nodes[orders[index]];
+        }
+        HashNode<T>[] members = actuals.values().toArray(new HashNode[actuals.size()]);
+        return new HashSnapshot<>(sortHashes, sortNodes, members, weight);
     }
 
     /**
@@ -33,14 +165,32 @@ public class HashCycle<T> {
      * 
      * @param key
      */
-    public synchronized void createNode(String key, T value) {
-        int hash = function.hash(key);
-        if (virtual2Actual.containsKey(hash)) {
-            // 节点已存在或者哈希冲突
+    public void createNode(String key, T value) {
+        createNode(key, value, 1);
+    }
+
+    /**
+     * 使用指定键与权重创建哈希节点
+     * 
+     * @param key
+     * @param value
+     * @param weight
+     *            虚拟节点数量为权重与每个权重的虚拟节点数量的乘积
+     */
+    public synchronized void createNode(String key, T value, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (actuals.containsKey(key)) {
+            throw new RouteException("哈希环节点已存在或者哈希冲突");
+        }
+        // 实际节点的哈希不能与已有的虚拟节点冲突
+        int hash = hash(key, 0);
+        if (Arrays.binarySearch(snapshot.hashes, hash) >= 0) {
             throw new RouteException("哈希环节点已存在或者哈希冲突");
         }
-        actual2Virtual.put(key, hash);
-        virtual2Actual.put(hash, value);
+        actuals.put(key, new HashNode<>(key, value, weight));
+        snapshot = build();
     }
 
     /**
@@ -49,12 +199,11 @@ public class HashCycle<T> {
      * @param key
      */
     public synchronized void deleteNode(String key) {
-        Integer hash = actual2Virtual.remove(key);
-        if (hash == null) {
+        if (actuals.remove(key) == null) {
             // 节点不存在
             throw new RouteException("哈希环节点不存在");
         }
-        virtual2Actual.remove(hash);
+        snapshot = build();
     }
 
     /**
@@ -63,17 +212,60 @@ public class HashCycle<T> {
      * @param key
      * @return
      */
-    public synchronized T selectNode(String key) {
-        Integer hash = function.hash(key);
-        Entry<Integer, T> keyValue = virtual2Actual.higherEntry(hash);
-        if (keyValue == null) {
-            keyValue = virtual2Actual.firstEntry();
+    public T selectNode(String key) {
+        HashSnapshot<T> snapshot = this.snapshot;
+        if (snapshot.members.length == 0) {
+            return null;
         }
-        return keyValue.getValue();
+        return snapshot.nodes[snapshot.higher(function.hash(key))].value;
     }
 
-    public synchronized int getSize() {
-        return virtual2Actual.size();
+    /**
+     * 使用指定键选择负载有界的哈希节点(方向:顺时针)
+     * 
+     * <pre>
+     * 有界负载的一致性哈希:每个节点的容量为ceil(factor * (总负载 + 1) * 权重 / 总权重),
+     * 顺时针跳过负载已经达到容量的节点.
+     * factor大于等于1时一定能找到节点,越接近1负载越均匀,但是键的迁移越多.
+     * </pre>
+     * 
+     * @param key
+     * @param loads
+     *            节点的当前负载
+     * @param factor
+     * @return
+     */
+    public T selectNode(String key, ToIntFunction<T> loads, double factor) {
+        if (factor < 1D) {
+            throw new IllegalArgumentException(StringUtility.format("负载因子[{}]不能小于1", factor));
+        }
+        HashSnapshot<T> snapshot = this.snapshot;
+        if (snapshot.members.length == 0) {
+            return null;
+        }
+        long total = 0L;
+        for (HashNode<T> node : snapshot.members) {
+            total += loads.applyAsInt(node.value);
+        }
+        double capacity = factor * (total + 1L) / snapshot.weight;
+        int length = snapshot.hashes.length;
+        int from = snapshot.higher(function.hash(key));
+        for (int index = 0; index < length; index++) {
+            HashNode<T> node = snapshot.nodes[(from + index) % length];
+            if (loads.applyAsInt(node.value) < Math.ceil(capacity * node.weight)) {
+                return node.value;
+            }
+        }
+        return snapshot.nodes[from].value;
+    }
+
+    /**
+     * 获取实际节点数量
+     * 
+     * @return
+     */
+    public int getSize() {
+        return snapshot.members.length;
     }
 
 }
@@ -0,0 +1,46 @@
+package com.jstarcraft.core.monitor.route.database;
+
+import java.util.List;
+import java.util.Map;
+
+import com.jstarcraft.core.utility.RandomUtility;
+
+/**
+ * 延迟路由策略
+ * 
+ * <pre>
+ * 随机选择两个数据源(Power of Two Choices),选择延迟(指数加权移动平均)乘以(并发数 + 1)较小的一个.
+ * 还没有延迟样本的数据源优先,便于新加入或者重新接纳的数据源获得样本.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class LatencyRouteStrategy implements RouteStrategy {
+
+    @Override
+    public String chooseDataSource(List<String> keys) {
+        return keys.get(RandomUtility.randomInteger(keys.size()));
+    }
+
+    private long score(RouteStatistic statistic) {
+        return statistic.getLatency() * (statistic.getOutstanding() + 1L);
+    }
+
+    @Override
+    public String chooseDataSource(List<String> keys, Map<String, RouteStatistic> statistics) {
+        int size = keys.size();
+        if (size == 1) {
+            return keys.get(0);
+        }
+        int left = RandomUtility.randomInteger(size);
+        int right = RandomUtility.randomInteger(size - 1);
+        if (right >= left) {
+            right++;
+        }
+        String leftKey = keys.get(left);
+        String rightKey = keys.get(right);
+        return score(statistics.get(leftKey)) <= score(statistics.get(rightKey)) ? leftKey : rightKey;
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.jstarcraft.core.monitor.route.database;
+
+import java.util.List;
+import java.util.Map;
+
+import com.jstarcraft.core.utility.RandomUtility;
+
+/**
+ * 最少并发路由策略
+ * 
+ * <pre>
+ * 选择正在使用连接数量最少的数据源(借出的连接关闭以后才释放),数量相同时从随机位置开始以避免集中.
+ * 慢的数据源会积压更多的并发,从而自动分到更少的连接.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class LeastRouteStrategy implements RouteStrategy {
+
+    @Override
+    public String chooseDataSource(List<String> keys) {
+        return keys.get(RandomUtility.randomInteger(keys.size()));
+    }
+
+    @Override
+    public String chooseDataSource(List<String> keys, Map<String, RouteStatistic> statistics) {
+        int size = keys.size();
+        int from = RandomUtility.randomInteger(size);
+        String choose = null;
+        int minimum = Integer.MAX_VALUE;
+        for (int index = 0; index < size; index++) {
+            String key = keys.get((from + index) % size);
+            int outstanding = statistics.get(key).getOutstanding();
+            if (outstanding < minimum) {
+                minimum = outstanding;
+                choose = key;
+            }
+        }
+        return choose;
+    }
+
+}
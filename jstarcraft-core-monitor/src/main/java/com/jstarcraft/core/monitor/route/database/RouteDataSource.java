@@ -1,43 +1,209 @@
 package com.jstarcraft.core.monitor.route.database;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Map.Entry;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.sql.DataSource;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+
+import com.jstarcraft.core.utility.TimingWheel;
 
 /**
  * 路由数据源
  * 
+ * <pre>
+ * 路由状态(策略,数据源,可用的数据键)保存在不可变快照中,修改时复制,获取连接不需要锁.
+ * 每个数据源记录正在使用的连接数,获取连接的延迟与连续错误数({@link RouteStatistic}),供路由策略使用.
+ * 返回的连接是代理,关闭时释放负载(没有关闭的连接会一直计入负载).
+ * 连续错误达到阈值的数据源会被剔除,剔除以后按照退避时间探测,探测成功以后重新接纳.
+ * 时间轮只负责调度,阻塞的探测在独立的探测线程池执行.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
 public class RouteDataSource extends AbstractDataSource {
 
-    /** 路由策略 */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteDataSource.class);
+
+    /** 默认连续错误的阈值 */
+    public static final int DEFAULT_THRESHOLD = 3;
+
+    /** 默认剔除时间(毫秒) */
+    public static final long DEFAULT_EJECT_TIME = 1000L;
+
+    /** 默认最大剔除时间(毫秒) */
+    public static final long DEFAULT_MAXIMUM_EJECT_TIME = 30000L;
+
+    /** 默认探测超时(秒) */
+    public static final int DEFAULT_PROBE_TIMEOUT = 1;
+
+    /** 探测线程数量 */
+    private static final int PROBE_THREADS = 2;
+
+    /** 探测线程池(所有路由数据源共享,空闲时回收线程) */
+    private static final ThreadPoolExecutor PROBE_EXECUTOR = new ThreadPoolExecutor(PROBE_THREADS, PROBE_THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (runnable) -> {
+        Thread thread = new Thread(runnable, "RouteProbe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        PROBE_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 路由连接(关闭时释放数据源的负载)
+     * 
+     * @author Birdy
+     *
+     */
+    private static class RouteConnection implements InvocationHandler {
+
+        private final Connection connection;
+
+        private final RouteStatistic statistic;
+
+        /** 是否已经释放(重复关闭只释放一次) */
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private RouteConnection(Connection connection, RouteStatistic statistic) {
+            this.connection = connection;
+            this.statistic = statistic;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
+            switch (method.getName()) {
+            case "equals":
+                return proxy == arguments[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "getTargetConnection":
+                return connection;
+            case "close":
+                if (released.compareAndSet(false, true)) {
+                    statistic.release();
+                }
+                break;
+            default:
+                break;
+            }
+            try {
+                return method.invoke(connection, arguments);
+            } catch (InvocationTargetException exception) {
+                throw exception.getTargetException();
+            }
+        }
+
+    }
+
+    /**
+     * 路由快照
+     * 
+     * @author Birdy
+     *
+     */
+    private static class RouteSnapshot {
+
+        /** 路由策略 */
+        private final RouteStrategy strategy;
+
+        /** 可用的数据键(全部剔除时为所有数据键) */
+        private final List<String> keys;
+
+        /** 所有数据源 */
+        private final Map<String, DataSource> dataSources;
+
+        /** 所有统计 */
+        private final Map<String, RouteStatistic> statistics;
+
+        private RouteSnapshot(RouteStrategy strategy, List<String> keys, Map<String, DataSource> dataSources, Map<String, RouteStatistic> statistics) {
+            this.strategy = strategy;
+            this.keys = keys;
+            this.dataSources = dataSources;
+            this.statistics = statistics;
+        }
+
+    }
+
+    /**
+     * 连接器
+     * 
+     * @author Birdy
+     *
+     */
+    @FunctionalInterface
+    private interface RouteConnector {
+
+        Connection connect(DataSource dataSource) throws SQLException;
+
+    }
+
+    /** 路由策略(仅在修改时访问) */
     private RouteStrategy strategy;
 
-    /** 所有数据键 */
-    private List<String> keys;
+    /** 所有数据源(仅在修改时访问) */
+    private final Map<String, DataSource> dataSources;
+
+    /** 所有统计(仅在修改时访问) */
+    private final Map<String, RouteStatistic> statistics;
+
+    /** 快照 */
+    private volatile RouteSnapshot snapshot;
 
-    /** 所有数据源 */
-    private Map<String, DataSource> dataSources;
+    /** 连续错误的阈值 */
+    private volatile int threshold = DEFAULT_THRESHOLD;
 
-    /** 读写锁 */
-    private ReadWriteLock lock = new ReentrantReadWriteLock();
+    /** 剔除时间(毫秒) */
+    private volatile long ejectTime = DEFAULT_EJECT_TIME;
+
+    /** 最大剔除时间(毫秒) */
+    private volatile long maximumEjectTime = DEFAULT_MAXIMUM_EJECT_TIME;
+
+    /** 探测超时(秒) */
+    private volatile int probeTimeout = DEFAULT_PROBE_TIMEOUT;
 
     public RouteDataSource(RouteStrategy strategy, HashMap<String, DataSource> dataSources) {
         this.strategy = strategy;
-        this.keys = Arrays.asList(dataSources.keySet().toArray(new String[dataSources.size()]));
         this.dataSources = new HashMap<>(dataSources);
+        this.statistics = new HashMap<>();
+        for (String key : dataSources.keySet()) {
+            this.statistics.put(key, new RouteStatistic());
+        }
+        this.snapshot = build();
+    }
+
+    private RouteSnapshot build() {
+        List<String> keys = new ArrayList<>(dataSources.size());
+        for (Entry<String, RouteStatistic> keyValue : statistics.entrySet()) {
+            if (keyValue.getValue().isAvailable()) {
+                keys.add(keyValue.getKey());
+            }
+        }
+        if (keys.isEmpty()) {
+            // 全部剔除时不再区分,避免没有数据源可用
+            keys.addAll(dataSources.keySet());
+        }
+        return new RouteSnapshot(strategy, Collections.unmodifiableList(keys), new HashMap<>(dataSources), new HashMap<>(statistics));
     }
 
     /**
@@ -45,15 +211,53 @@ public class RouteDataSource extends AbstractDataSource {
      * 
      * @param strategy
      */
-    public void setStrategy(RouteStrategy strategy) {
+    public synchronized void setStrategy(RouteStrategy strategy) {
         assert strategy != null;
-        Lock write = lock.writeLock();
-        try {
-            write.lock();
-            this.strategy = strategy;
-        } finally {
-            write.unlock();
-        }
+        this.strategy = strategy;
+        this.snapshot = build();
+    }
+
+    /**
+     * 设置连续错误的阈值
+     * 
+     * @param threshold
+     */
+    public void setThreshold(int threshold) {
+        assert threshold > 0;
+        this.threshold = threshold;
+    }
+
+    /**
+     * 设置剔除时间(第一次探测的等待时间,以后每次加倍)
+     * 
+     * @param ejectTime
+     *            毫秒
+     */
+    public void setEjectTime(long ejectTime) {
+        assert ejectTime > 0L;
+        this.ejectTime = ejectTime;
+    }
+
+    /**
+     * 设置最大剔除时间
+     * 
+     * @param maximumEjectTime
+     *            毫秒
+     */
+    public void setMaximumEjectTime(long maximumEjectTime) {
+        assert maximumEjectTime > 0L;
+        this.maximumEjectTime = maximumEjectTime;
+    }
+
+    /**
+     * 设置探测超时
+     * 
+     * @param probeTimeout
+     *            秒
+     */
+    public void setProbeTimeout(int probeTimeout) {
+        assert probeTimeout >= 0;
+        this.probeTimeout = probeTimeout;
     }
 
     /**
@@ -63,20 +267,15 @@ public class RouteDataSource extends AbstractDataSource {
      * @param dataSource
      * @return
      */
-    public boolean attachDataSource(String key, DataSource dataSource) {
+    public synchronized boolean attachDataSource(String key, DataSource dataSource) {
         assert key != null;
-        Lock write = lock.writeLock();
-        try {
-            write.lock();
-            if (dataSources.containsKey(key)) {
-                return false;
-            } else {
-                dataSources.put(key, dataSource);
-                this.keys = Arrays.asList(dataSources.keySet().toArray(new String[dataSources.size()]));
-                return true;
-            }
-        } finally {
-            write.unlock();
+        if (dataSources.containsKey(key)) {
+            return false;
+        } else {
+            dataSources.put(key, dataSource);
+            statistics.put(key, new RouteStatistic());
+            this.snapshot = build();
+            return true;
         }
     }
 
@@ -86,21 +285,88 @@ public class RouteDataSource extends AbstractDataSource {
      * @param key
      * @return
      */
-    public boolean detachDataSource(String key) {
+    public synchronized boolean detachDataSource(String key) {
         assert key != null;
-        Lock write = lock.writeLock();
-        try {
-            write.lock();
-            if (dataSources.containsKey(key)) {
-                dataSources.remove(key);
-                this.keys = Arrays.asList(dataSources.keySet().toArray(new String[dataSources.size()]));
-                return true;
-            } else {
-                return false;
+        if (dataSources.containsKey(key)) {
+            dataSources.remove(key);
+            statistics.remove(key);
+            this.snapshot = build();
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * 获取数据源的统计
+     * 
+     * @param key
+     * @return
+     */
+    public RouteStatistic getStatistic(String key) {
+        return snapshot.statistics.get(key);
+    }
+
+    /**
+     * 剔除数据源
+     * 
+     * @param key
+     * @param statistic
+     */
+    private void eject(String key, RouteStatistic statistic) {
+        synchronized (this) {
+            if (statistics.get(key) != statistic) {
+                return;
+            }
+            this.snapshot = build();
+        }
+        LOGGER.warn("数据源[{}]连续错误[{}]次,剔除", key, statistic.getErrors());
+        schedule(key, statistic, ejectTime);
+    }
+
+    /**
+     * 调度探测(时间轮的回调线程不能阻塞,所以探测交给探测线程池)
+     * 
+     * @param key
+     * @param statistic
+     * @param delay
+     *            本次剔除时间
+     */
+    private void schedule(String key, RouteStatistic statistic, long delay) {
+        TimingWheel.getDefault().schedule(() -> PROBE_EXECUTOR.execute(() -> probe(key, statistic, delay)), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 探测剔除的数据源
+     * 
+     * @param key
+     * @param statistic
+     * @param delay
+     *            本次剔除时间
+     */
+    private void probe(String key, RouteStatistic statistic, long delay) {
+        RouteSnapshot snapshot = this.snapshot;
+        DataSource dataSource = snapshot.dataSources.get(key);
+        if (snapshot.statistics.get(key) != statistic) {
+            // 数据源已经移除
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            if (connection.isValid(probeTimeout)) {
+                synchronized (this) {
+                    if (statistics.get(key) != statistic) {
+                        return;
+                    }
+                    statistic.admit();
+                    this.snapshot = build();
+                }
+                LOGGER.info("数据源[{}]探测成功,重新接纳", key);
+                return;
             }
-        } finally {
-            write.unlock();
+        } catch (Exception exception) {
+            LOGGER.debug("数据源[{}]探测失败", key, exception);
         }
+        schedule(key, statistic, Math.min(delay * 2L, maximumEjectTime));
     }
 
     /**
@@ -109,24 +375,38 @@ public class RouteDataSource extends AbstractDataSource {
      * @return
      */
     protected DataSource switchDataSource() {
-        Lock read = lock.readLock();
+        RouteSnapshot snapshot = this.snapshot;
+        String key = snapshot.strategy.chooseDataSource(snapshot.keys, snapshot.statistics);
+        return snapshot.dataSources.get(key);
+    }
+
+    private Connection getConnection(RouteConnector connector) throws SQLException {
+        RouteSnapshot snapshot = this.snapshot;
+        String key = snapshot.strategy.chooseDataSource(snapshot.keys, snapshot.statistics);
+        DataSource dataSource = snapshot.dataSources.get(key);
+        RouteStatistic statistic = snapshot.statistics.get(key);
+        statistic.begin();
+        long instant = System.nanoTime();
         try {
-            read.lock();
-            String key = strategy.chooseDataSource(keys);
-            return dataSources.get(key);
-        } finally {
-            read.unlock();
+            Connection connection = connector.connect(dataSource);
+            statistic.success(System.nanoTime() - instant);
+            return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(), new Class<?>[] { ConnectionProxy.class }, new RouteConnection(connection, statistic));
+        } catch (SQLException | RuntimeException exception) {
+            if (statistic.failure(threshold)) {
+                eject(key, statistic);
+            }
+            throw exception;
         }
     }
 
     @Override
     public Connection getConnection() throws SQLException {
-        return switchDataSource().getConnection();
+        return getConnection((dataSource) -> dataSource.getConnection());
     }
 
     @Override
     public Connection getConnection(String username, String password) throws SQLException {
-        return switchDataSource().getConnection(username, password);
+        return getConnection((dataSource) -> dataSource.getConnection(username, password));
     }
 
     @Override
@@ -141,4 +421,4 @@ public class RouteDataSource extends AbstractDataSource {
     public boolean isWrapperFor(Class<?> clazz) throws SQLException {
         return (clazz.isInstance(this) || switchDataSource().isWrapperFor(clazz));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,114 @@
+package com.jstarcraft.core.monitor.route.database;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 路由统计
+ * 
+ * <pre>
+ * 记录数据源正在使用的连接数(获取中以及已经借出但是还没有关闭),获取连接的延迟(指数加权移动平均)与连续错误数,用于路由策略与剔除.
+ * 负载与延迟分开统计:连接池的获取几乎是立即返回的,负载需要统计到连接关闭为止.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class RouteStatistic {
+
+    /** 移动平均的权重(1/8,与TCP的RTT估计一致) */
+    private static final int SHIFT = 3;
+
+    /** 正在使用的连接数量(获取中或者已经借出) */
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    /** 获取连接的延迟(纳秒,0表示还没有样本) */
+    private final AtomicLong latency = new AtomicLong();
+
+    /** 连续错误数量 */
+    private final AtomicInteger errors = new AtomicInteger();
+
+    /** 是否已经剔除 */
+    private final AtomicBoolean ejected = new AtomicBoolean();
+
+    void begin() {
+        outstanding.incrementAndGet();
+    }
+
+    /**
+     * 记录获取成功(连接借出,负载在关闭时释放)
+     * 
+     * @param nanoseconds
+     */
+    void success(long nanoseconds) {
+        latency.accumulateAndGet(nanoseconds, (average, sample) -> average == 0L ? sample : average + ((sample - average) >> SHIFT));
+        errors.set(0);
+    }
+
+    /**
+     * 记录失败
+     * 
+     * @param threshold
+     *            连续错误的阈值
+     * @return 是否由此次失败触发剔除
+     */
+    boolean failure(int threshold) {
+        outstanding.decrementAndGet();
+        return errors.incrementAndGet() >= threshold && ejected.compareAndSet(false, true);
+    }
+
+    /**
+     * 记录连接关闭
+     */
+    void release() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * 重新接纳
+     */
+    void admit() {
+        errors.set(0);
+        // 丢弃剔除以前的延迟
+        latency.set(0L);
+        ejected.set(false);
+    }
+
+    /**
+     * 获取正在使用的连接数量(获取中或者已经借出)
+     * 
+     * @return
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * 获取获取连接的延迟
+     * 
+     * @return 纳秒
+     */
+    public long getLatency() {
+        return latency.get();
+    }
+
+    /**
+     * 获取连续错误数量
+     * 
+     * @return
+     */
+    public int getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * 是否可用(未剔除)
+     * 
+     * @return
+     */
+    public boolean isAvailable() {
+        return !ejected.get();
+    }
+
+}
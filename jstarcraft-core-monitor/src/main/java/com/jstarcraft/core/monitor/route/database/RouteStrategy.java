@@ -1,6 +1,7 @@
 package com.jstarcraft.core.monitor.route.database;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 路由策略
@@ -18,4 +19,19 @@ public interface RouteStrategy {
      */
     String chooseDataSource(List<String> keys);
 
+    /**
+     * 根据统计选择数据源
+     * 
+     * <pre>
+     * keys只包含可用(未剔除)的数据源,默认忽略统计.
+     * </pre>
+     * 
+     * @param keys
+     * @param statistics
+     * @return
+     */
+    default String chooseDataSource(List<String> keys, Map<String, RouteStatistic> statistics) {
+        return chooseDataSource(keys);
+    }
+
 }
@@ -4,14 +4,9 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.time.Instant;
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.WeakHashMap;
 
-import org.apache.commons.text.StringSubstitutor;
-import org.apache.commons.text.lookup.StringLookup;
 import org.apache.log4j.FileAppender;
 import org.apache.log4j.spi.LoggingEvent;
 
@@ -39,10 +34,6 @@ public class Log4Java1Storage extends FileAppender {
 
     private static final String comma = ",";
 
-    private static final String prefix = "{";
-
-    private static final String suffix = "}";
-
     private static final Field MESSAGE_FIELD;
 
     static {
@@ -69,11 +60,15 @@ public class Log4Java1Storage extends FileAppender {
     /** 时区 */
     private ZoneId zone = ZoneId.systemDefault();
 
+    /** 预编译的路径(属性变化时重建) */
+    private StoragePath template;
+
     /** 记录器缓存 */
     private WeakHashMap<String, FileAppender> cache = new WeakHashMap<>();
 
     public void setCron(String cron) {
         this.expression = new SolarExpression(cron);
+        this.template = null;
     }
 
     public void setFormat(String format) {
@@ -85,14 +80,17 @@ public class Log4Java1Storage extends FileAppender {
             throw new LogException(names);
         }
         this.names = names.split(comma);
+        this.template = null;
     }
 
     public void setPath(String path) {
         this.path = path;
+        this.template = null;
     }
 
     public void setZone(String zone) {
         this.zone = zone == null ? ZoneId.systemDefault() : ZoneId.of(zone);
+        this.template = null;
     }
 
     /**
@@ -103,38 +101,10 @@ public class Log4Java1Storage extends FileAppender {
      * @return
      */
     private String getPath(Instant instant, Object object, Object... parameters) {
-        instant = expression.getPreviousDateTime(instant);
-        Map<String, Object> context = new HashMap<>();
-        context.put(String.valueOf($), instant);
-        for (int index = 0; index < parameters.length; index++) {
-            context.put(names[index], parameters[index]);
+        if (template == null) {
+            template = new StoragePath(expression, zone, names, path);
         }
-
-        StringSubstitutor substitutor = new StringSubstitutor(new StringLookup() {
-
-            @Override
-            public String lookup(String key) {
-                try {
-                    int index = key.indexOf($);
-                    if (index > -1) {
-                        String name = String.valueOf($);
-                        Object instant = context.get(name);
-                        String pattern = key.substring(index + 1, key.length());
-                        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern).withZone(zone);
-                        return formatter.format(Instant.class.cast(instant));
-                    } else {
-                        String name = key;
-                        Object instance = context.get(name);
-                        return instance.toString();
-                    }
-                } catch (Exception exception) {
-                    throw new LogException(exception);
-                }
-            }
-
-        }, prefix, suffix, $);
-
-        return substitutor.replace(path);
+        return template.getPath(instant, parameters);
     }
 
     private FileAppender log(Instant instant, Object object, Object... parameters) {
@@ -1,20 +1,21 @@
 package com.jstarcraft.core.monitor.trace;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.time.Instant;
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
-import org.apache.commons.text.StringSubstitutor;
-import org.apache.commons.text.lookup.StringLookup;
 import org.apache.logging.log4j.core.Appender;
 import org.apache.logging.log4j.core.Core;
 import org.apache.logging.log4j.core.Filter;
@@ -38,6 +39,13 @@ import com.jstarcraft.core.utility.StringUtility;
 /**
  * Log4J2日志器
  * 
+ * <pre>
+ * 同步模式:在日志线程写入文件,每条日志一次系统调用;
+ * 异步模式(asynchronous="true"):日志线程只负责序列化与解析路径,通过无锁队列交给写入线程,
+ * 写入线程按照路径维护缓冲流,每批日志写完以后统一刷新.
+ * 队列超过容量(capacity)时日志线程阻塞在信号量上,由写入线程写完以后释放;写入线程空闲时挂起,由日志线程唤醒.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
@@ -75,9 +83,17 @@ public class Log4Java2Storage extends AbstractAppender {
         @Required
         private String period;
 
+        /** 是否异步 */
+        @PluginBuilderAttribute
+        private boolean asynchronous;
+
+        /** 异步队列容量 */
+        @PluginBuilderAttribute
+        private int capacity = DEFAULT_CAPACITY;
+
         @Override
         public Log4Java2Storage build() {
-            return new Log4Java2Storage(getName(), getFilter(), getOrCreateLayout(), isIgnoreExceptions(), cron, format, names, path, zone, period);
+            return new Log4Java2Storage(getName(), getFilter(), getOrCreateLayout(), isIgnoreExceptions(), cron, format, names, path, zone, period, asynchronous, capacity);
         }
 
     }
@@ -88,16 +104,51 @@ public class Log4Java2Storage extends AbstractAppender {
         JSON;
     }
 
+    /**
+     * 异步记录
+     * 
+     * @author Birdy
+     *
+     */
+    private static class StorageRecord {
+
+        /** 路径 */
+        private final String path;
+
+        /** 内容 */
+        private final String content;
+
+        /** 过期时间 */
+        private final long expire;
+
+        private StorageRecord(String path, String content, long expire) {
+            this.path = path;
+            this.content = content;
+            this.expire = expire;
+        }
+
+    }
+
     private static final char $ = '$';
 
     private static final String comma = ",";
 
-    private static final String prefix = "{";
+    /** 默认异步队列容量 */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    /** 缓冲大小 */
+    private static final int BUFFER_SIZE = 64 * 1024;
 
-    private static final String suffix = "}";
+    /** 每批写入的最大数量 */
+    private static final int BATCH_SIZE = 1024;
 
-    /** CRON表达式 */
-    private SolarExpression expression;
+    /** 等待超时(毫秒),只用于检查关闭或者写入线程意外终止,避免永久等待 */
+    private static final long WAIT_TIME = 100L;
+
+    private static final byte[] LINE = System.lineSeparator().getBytes(StringUtility.CHARSET);
+
+    /** 路径 */
+    private final StoragePath path;
 
     /** 格式 */
     private final Format format;
@@ -105,32 +156,47 @@ public class Log4Java2Storage extends AbstractAppender {
     /** 名称 */
     private final String[] names;
 
-    /** 路径 */
-    private final String path;
-
-    /** 时区 */
-    private final ZoneId zone;
-
     /** 检测周期 */
     private final long period;
 
-    /** 记录器缓存 */
-    private final HashMap<String, KeyValue<FileOutputStream, Long>> cache = new HashMap<>();
+    /** 记录器缓存(值为缓冲流与过期时间) */
+    private final HashMap<String, KeyValue<OutputStream, Long>> cache = new HashMap<>();
+
+    /** 是否异步 */
+    private final boolean asynchronous;
+
+    /** 异步队列容量 */
+    private final int capacity;
+
+    /** 异步队列 */
+    private final ConcurrentLinkedQueue<StorageRecord> queue = new ConcurrentLinkedQueue<>();
+
+    /** 异步队列空位 */
+    private final Semaphore permits;
+
+    /** 写入线程 */
+    private final Thread writer;
+
+    /** 写入线程是否在等待 */
+    private volatile boolean waiting;
+
+    /** 是否关闭 */
+    private volatile boolean closed;
 
     /** 清理线程 */
     private final Thread cleaner = new Thread(new Runnable() {
 
         private void clean() {
             synchronized (cache) {
-                Iterator<Entry<String, KeyValue<FileOutputStream, Long>>> iterator = cache.entrySet().iterator();
+                Iterator<Entry<String, KeyValue<OutputStream, Long>>> iterator = cache.entrySet().iterator();
                 while (iterator.hasNext()) {
-                    Entry<String, KeyValue<FileOutputStream, Long>> term = iterator.next();
-                    KeyValue<FileOutputStream, Long> keyValue = term.getValue();
+                    Entry<String, KeyValue<OutputStream, Long>> term = iterator.next();
+                    KeyValue<OutputStream, Long> keyValue = term.getValue();
                     long now = System.currentTimeMillis();
                     long instant = keyValue.getValue();
                     if (now - instant > period) {
                         iterator.remove();
-                        FileOutputStream stream = keyValue.getKey();
+                        OutputStream stream = keyValue.getKey();
                         try {
                             stream.close();
                         } catch (Exception exception) {
@@ -156,102 +222,202 @@ public class Log4Java2Storage extends AbstractAppender {
 
     });
 
-    private String getPath(Instant instant, Object... parameters) {
-        instant = expression.getPreviousDateTime(instant);
-        Map<String, Object> context = new HashMap<>();
-        context.put(String.valueOf($), instant);
-        for (int index = 0; index < parameters.length; index++) {
-            context.put(names[index], parameters[index]);
+    /**
+     * 写入内容(调用者需要持有cache锁)
+     * 
+     * @param path
+     * @param content
+     * @param expire
+     */
+    private void write(String path, String content, long expire) throws Exception {
+        KeyValue<OutputStream, Long> keyValue = cache.get(path);
+        OutputStream stream;
+        if (keyValue == null) {
+            File file = new File(path);
+            if (!file.exists()) {
+                File directory = file.getParentFile();
+                directory.mkdirs();
+            }
+            stream = new BufferedOutputStream(new FileOutputStream(path, true), BUFFER_SIZE);
+            keyValue = new KeyValue<OutputStream, Long>(stream, expire);
+            cache.put(path, keyValue);
+        } else {
+            stream = keyValue.getKey();
+        }
+        stream.write(content.getBytes(StringUtility.CHARSET));
+        stream.write(LINE);
+        if (!asynchronous) {
+            stream.flush();
         }
-        StringSubstitutor substitutor = new StringSubstitutor(new StringLookup() {
+        keyValue.setValue(expire);
+    }
 
-            @Override
-            public String lookup(String key) {
-                try {
-                    int index = key.indexOf($);
-                    if (index > -1) {
-                        String name = String.valueOf($);
-                        Object instant = context.get(name);
-                        String pattern = key.substring(index + 1, key.length());
-                        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern).withZone(zone);
-                        return formatter.format(Instant.class.cast(instant));
-                    } else {
-                        String name = key;
-                        Object instance = context.get(name);
-                        return instance.toString();
-                    }
-                } catch (Exception exception) {
-                    throw new LogException(exception);
-                }
+    /**
+     * 刷新所有缓冲流(调用者需要持有cache锁)
+     */
+    private void flushAll() {
+        for (KeyValue<OutputStream, Long> keyValue : cache.values()) {
+            try {
+                keyValue.getKey().flush();
+            } catch (Exception exception) {
+                getHandler().error("日志刷新异常", exception);
             }
-
-        }, prefix, suffix, $);
-
-        return substitutor.replace(path);
+        }
     }
 
     private void log(String content, Instant instant, Object object, Object... parameters) {
-        String path = getPath(instant, parameters);
-        synchronized (cache) {
+        String path = this.path.getPath(instant, parameters);
+        long expire = instant.toEpochMilli() + period;
+        if (asynchronous) {
+            if (closed) {
+                throw new LogException("日志已经关闭");
+            }
+            // 超过容量时阻塞,写入线程写完以后释放空位
             try {
-                KeyValue<FileOutputStream, Long> keyValue = cache.get(path);
-                FileOutputStream stream;
-                if (keyValue == null) {
-                    File file = new File(path);
-                    if (!file.exists()) {
-                        File directory = file.getParentFile();
-                        directory.mkdirs();
+                while (!permits.tryAcquire(WAIT_TIME, TimeUnit.MILLISECONDS)) {
+                    if (closed || !writer.isAlive()) {
+                        throw new LogException("日志已经关闭");
                     }
-                    stream = new FileOutputStream(path, true);
-                    keyValue = new KeyValue<FileOutputStream, Long>(stream, instant.toEpochMilli());
-                    cache.put(path, keyValue);
-                } else {
-                    stream = keyValue.getKey();
                 }
-                stream.write(content.getBytes(StringUtility.CHARSET));
-                stream.write(System.lineSeparator().getBytes(StringUtility.CHARSET));
-                keyValue.setValue(instant.toEpochMilli() + period);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new LogException(exception);
+            }
+            queue.offer(new StorageRecord(path, content, expire));
+            if (waiting) {
+                LockSupport.unpark(writer);
+            }
+            return;
+        }
+        synchronized (cache) {
+            try {
+                write(path, content, expire);
             } catch (Exception exception) {
                 throw new LogException(exception);
             }
         }
     }
 
+    /**
+     * 写入线程:批量取出日志,写完一批以后统一刷新
+     */
+    private void drain() {
+        while (true) {
+            StorageRecord record = queue.poll();
+            if (record == null) {
+                if (closed && queue.isEmpty()) {
+                    break;
+                }
+                // 先声明等待再检查队列,日志线程入队以后检查到等待会唤醒
+                waiting = true;
+                if (queue.isEmpty() && !closed) {
+                    LockSupport.park(this);
+                }
+                waiting = false;
+                continue;
+            }
+            synchronized (cache) {
+                int count = 0;
+                do {
+                    try {
+                        write(record.path, record.content, record.expire);
+                    } catch (Exception exception) {
+                        getHandler().error("日志写入异常", exception);
+                    }
+                } while (++count < BATCH_SIZE && (record = queue.poll()) != null);
+                flushAll();
+                permits.release(count);
+                // 通知等待刷新的线程
+                cache.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 等待异步队列写完并且刷新所有缓冲流
+     */
+    public void flush() {
+        synchronized (cache) {
+            if (asynchronous) {
+                // 每批写完以后写入线程会通知
+                while (permits.availablePermits() < capacity && writer.isAlive()) {
+                    try {
+                        cache.wait(WAIT_TIME);
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            flushAll();
+        }
+    }
+
+    /**
+     * 关闭(写完异步队列并且关闭所有流)
+     */
+    private void close() {
+        closed = true;
+        if (asynchronous && Thread.currentThread() != writer) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (cache) {
+            // TODO 需要想办法等待Spring,防止日志丢失.
+            Iterator<Entry<String, KeyValue<OutputStream, Long>>> iterator = cache.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Entry<String, KeyValue<OutputStream, Long>> term = iterator.next();
+                KeyValue<OutputStream, Long> keyValue = term.getValue();
+                OutputStream stream = keyValue.getKey();
+                iterator.remove();
+                try {
+                    stream.close();
+                } catch (Exception exception) {
+                    throw new LogException(exception);
+                }
+            }
+        }
+    }
+
     Log4Java2Storage(final String name, final Filter filter, final Layout<? extends Serializable> layout, boolean ignores, String cron, String format, String names, String path, String zone, String period) {
+        this(name, filter, layout, ignores, cron, format, names, path, zone, period, false, DEFAULT_CAPACITY);
+    }
+
+    Log4Java2Storage(final String name, final Filter filter, final Layout<? extends Serializable> layout, boolean ignores, String cron, String format, String names, String path, String zone, String period, boolean asynchronous, int capacity) {
         super(name, filter, layout, ignores, Property.EMPTY_ARRAY);
-        this.expression = new SolarExpression(cron);
         this.format = Format.valueOf(format);
         if (names.indexOf($) != -1) {
             throw new LogException(names);
         }
         this.names = names.split(comma);
-        this.path = path;
-        this.zone = zone == null ? ZoneId.systemDefault() : ZoneId.of(zone);
+        this.path = new StoragePath(new SolarExpression(cron), zone == null ? ZoneId.systemDefault() : ZoneId.of(zone), this.names, path);
         this.period = TimeUnit.MILLISECONDS.convert(Long.valueOf(period), TimeUnit.SECONDS);
+        this.asynchronous = asynchronous;
+        this.capacity = capacity;
+        this.permits = new Semaphore(capacity);
         setHandler(new StorageErrorHandler());
 
         cleaner.setDaemon(true);
         cleaner.start();
 
+        if (asynchronous) {
+            writer = new Thread(this::drain, "Log4Java2Storage-" + name);
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+
         Runtime.getRuntime().addShutdownHook(new Thread() {
 
             @Override
             public void run() {
                 try {
-                    synchronized (cache) {
-                        // TODO 需要想办法等待Spring,防止日志丢失.
-                        Iterator<Entry<String, KeyValue<FileOutputStream, Long>>> iterator = cache.entrySet().iterator();
-                        while (iterator.hasNext()) {
-                            Entry<String, KeyValue<FileOutputStream, Long>> term = iterator.next();
-                            KeyValue<FileOutputStream, Long> keyValue = term.getValue();
-                            FileOutputStream stream = keyValue.getKey();
-                            try {
-                                stream.close();
-                            } catch (Exception exception) {
-                                throw new LogException(exception);
-                            }
-                        }
-                    }
+                    close();
                 } catch (Exception exception) {
                     throw new LogException(exception);
                 }
@@ -260,6 +426,13 @@ public class Log4Java2Storage extends AbstractAppender {
         });
     }
 
+    @Override
+    public boolean stop(long timeout, TimeUnit timeUnit) {
+        boolean stopped = super.stop(timeout, timeUnit);
+        close();
+        return stopped;
+    }
+
     @Override
     public void append(LogEvent event) {
         Object[] parameters = event.getMessage().getParameters();
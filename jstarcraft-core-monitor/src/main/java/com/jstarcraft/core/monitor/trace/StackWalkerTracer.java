@@ -0,0 +1,436 @@
+package com.jstarcraft.core.monitor.trace;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 基于StackWalker的调用追踪器
+ * 
+ * <pre>
+ * 只访问需要的调用层,不构造整个调用栈:
+ * Java 9以上使用StackWalker,只遍历到需要的层为止;
+ * Java 8使用JavaLangAccess按需读取Throwable中的调用层(与Guava的Throwables.lazyStackTrace相同);
+ * 都不可用时退化为Throwable.getStackTrace().
+ * StackWalker与JavaLangAccess通过MethodHandle访问,所以同一份字节码可以运行在Java 8与Java 9以上.
+ * 
+ * 每层的类型与方法最多解析一次.
+ * 调用层数量最多为构造时指定的层数.
+ * 调用者固定的调用点可以使用{@link Site}缓存追踪结果,只在第一次访问调用栈.
+ * 与StackWalker的默认行为一致,Java 9以上不包含反射的调用层.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class StackWalkerTracer implements Tracer {
+
+    public static final int DEFAULT_OFFSET = 1;
+
+    /** 默认层数(被叫者与呼叫者) */
+    public static final int DEFAULT_LEVELS = 2;
+
+    private static final String NAME = StackWalkerTracer.class.getName();
+
+    private static final String CONSTRUCTOR = "<init>";
+
+    /**
+     * 调用栈访问器
+     * 
+     * @author Birdy
+     *
+     */
+    private interface StackAccessor {
+
+        /**
+         * 捕获调用栈
+         * 
+         * @param offset
+         *            相对于{@link StackWalkerTracer#StackWalkerTracer(int, int)}的偏移
+         * @param levels
+         *            层数
+         * @return
+         */
+        StackFrames capture(int offset, int levels);
+
+    }
+
+    /**
+     * 调用层
+     * 
+     * @author Birdy
+     *
+     */
+    private interface StackFrames {
+
+        int getLevels();
+
+        String getClass(int level);
+
+        String getMethod(int level);
+
+    }
+
+    /**
+     * 已经解析的调用层
+     * 
+     * @author Birdy
+     *
+     */
+    private static class ArrayFrames implements StackFrames {
+
+        private final String[] classes;
+
+        private final String[] methods;
+
+        private final int size;
+
+        private ArrayFrames(String[] classes, String[] methods, int size) {
+            this.classes = classes;
+            this.methods = methods;
+            this.size = size;
+        }
+
+        @Override
+        public int getLevels() {
+            return size;
+        }
+
+        @Override
+        public String getClass(int level) {
+            return classes[level];
+        }
+
+        @Override
+        public String getMethod(int level) {
+            return methods[level];
+        }
+
+    }
+
+    /**
+     * 基于StackWalker的访问器(Java 9以上)
+     * 
+     * @author Birdy
+     *
+     */
+    private static class WalkerAccessor implements StackAccessor {
+
+        private final Object walker;
+
+        private final MethodHandle walk;
+
+        private final MethodHandle getClassName;
+
+        private final MethodHandle getMethodName;
+
+        private WalkerAccessor() throws Throwable {
+            Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+            Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+            // walk是调用者敏感的方法,不能使用publicLookup
+            Lookup lookup = MethodHandles.lookup();
+            this.walker = lookup.findStatic(walkerClass, "getInstance", MethodType.methodType(walkerClass)).invoke();
+            this.walk = lookup.findVirtual(walkerClass, "walk", MethodType.methodType(Object.class, Function.class)).asType(MethodType.methodType(Object.class, Object.class, Function.class));
+            this.getClassName = lookup.findVirtual(frameClass, "getClassName", MethodType.methodType(String.class)).asType(MethodType.methodType(String.class, Object.class));
+            this.getMethodName = lookup.findVirtual(frameClass, "getMethodName", MethodType.methodType(String.class)).asType(MethodType.methodType(String.class, Object.class));
+        }
+
+        private StackFrames walk(Stream<?> stream, int offset, int levels) throws Throwable {
+            // 层数可能是Integer.MAX_VALUE(所有层)
+            String[] classes = new String[Math.min(levels, 16)];
+            String[] methods = new String[classes.length];
+            int size = 0;
+            // 从追踪器构造方法开始计算的位置(-1表示还没有遇到构造方法)
+            int position = -1;
+            Iterator<?> iterator = stream.iterator();
+            while (size < levels && iterator.hasNext()) {
+                Object frame = iterator.next();
+                String clazz = (String) getClassName.invokeExact(frame);
+                if (position < 0) {
+                    if (!NAME.equals(clazz) || !CONSTRUCTOR.equals((String) getMethodName.invokeExact(frame))) {
+                        continue;
+                    }
+                }
+                if (++position >= offset) {
+                    if (size == classes.length) {
+                        classes = Arrays.copyOf(classes, size * 2);
+                        methods = Arrays.copyOf(methods, size * 2);
+                    }
+                    classes[size] = clazz;
+                    methods[size] = (String) getMethodName.invokeExact(frame);
+                    size++;
+                }
+            }
+            return new ArrayFrames(classes, methods, size);
+        }
+
+        @Override
+        public StackFrames capture(int offset, int levels) {
+            Function<Stream<?>, StackFrames> function = (stream) -> {
+                try {
+                    return walk(stream, offset, levels);
+                } catch (RuntimeException | Error exception) {
+                    throw exception;
+                } catch (Throwable throwable) {
+                    throw new IllegalStateException(throwable);
+                }
+            };
+            try {
+                Object frames = walk.invokeExact(walker, function);
+                return (StackFrames) frames;
+            } catch (RuntimeException | Error exception) {
+                throw exception;
+            } catch (Throwable throwable) {
+                throw new IllegalStateException(throwable);
+            }
+        }
+
+    }
+
+    /**
+     * 基于JavaLangAccess的访问器(Java 8)
+     * 
+     * @author Birdy
+     *
+     */
+    private static class AccessAccessor implements StackAccessor {
+
+        private final Object access;
+
+        private final MethodHandle getStackTraceDepth;
+
+        private final MethodHandle getStackTraceElement;
+
+        private AccessAccessor() throws Throwable {
+            Class<?> secretsClass = Class.forName("sun.misc.SharedSecrets");
+            Class<?> accessClass = Class.forName("sun.misc.JavaLangAccess");
+            Lookup lookup = MethodHandles.publicLookup();
+            this.access = lookup.findStatic(secretsClass, "getJavaLangAccess", MethodType.methodType(accessClass)).invoke();
+            this.getStackTraceDepth = lookup.findVirtual(accessClass, "getStackTraceDepth", MethodType.methodType(int.class, Throwable.class)).asType(MethodType.methodType(int.class, Object.class, Throwable.class));
+            this.getStackTraceElement = lookup.findVirtual(accessClass, "getStackTraceElement", MethodType.methodType(StackTraceElement.class, Throwable.class, int.class)).asType(MethodType.methodType(StackTraceElement.class, Object.class, Throwable.class, int.class));
+            // 验证可以访问
+            getStackTraceDepth(new Throwable());
+        }
+
+        private int getStackTraceDepth(Throwable throwable) {
+            try {
+                return (int) getStackTraceDepth.invokeExact(access, throwable);
+            } catch (RuntimeException | Error exception) {
+                throw exception;
+            } catch (Throwable exception) {
+                throw new IllegalStateException(exception);
+            }
+        }
+
+        private StackTraceElement getStackTraceElement(Throwable throwable, int index) {
+            try {
+                return (StackTraceElement) getStackTraceElement.invokeExact(access, throwable, index);
+            } catch (RuntimeException | Error exception) {
+                throw exception;
+            } catch (Throwable exception) {
+                throw new IllegalStateException(exception);
+            }
+        }
+
+        @Override
+        public StackFrames capture(int offset, int levels) {
+            Throwable throwable = new Throwable();
+            int depth = getStackTraceDepth(throwable);
+            int from = 0;
+            while (from < depth) {
+                StackTraceElement element = getStackTraceElement(throwable, from);
+                if (NAME.equals(element.getClassName()) && CONSTRUCTOR.equals(element.getMethodName())) {
+                    break;
+                }
+                from++;
+            }
+            int base = from + offset;
+            int size = Math.max(0, Math.min(levels, depth - base));
+            StackTraceElement[] elements = new StackTraceElement[size];
+            return new StackFrames() {
+
+                private StackTraceElement getElement(int level) {
+                    StackTraceElement element = elements[level];
+                    if (element == null) {
+                        element = getStackTraceElement(throwable, base + level);
+                        elements[level] = element;
+                    }
+                    return element;
+                }
+
+                @Override
+                public int getLevels() {
+                    return size;
+                }
+
+                @Override
+                public String getClass(int level) {
+                    return getElement(level).getClassName();
+                }
+
+                @Override
+                public String getMethod(int level) {
+                    return getElement(level).getMethodName();
+                }
+
+            };
+        }
+
+    }
+
+    /**
+     * 基于Throwable的访问器
+     * 
+     * @author Birdy
+     *
+     */
+    private static class ThrowableAccessor implements StackAccessor {
+
+        @Override
+        public StackFrames capture(int offset, int levels) {
+            StackTraceElement[] elements = new Throwable().getStackTrace();
+            int from = 0;
+            while (from < elements.length && !(NAME.equals(elements[from].getClassName()) && CONSTRUCTOR.equals(elements[from].getMethodName()))) {
+                from++;
+            }
+            int base = from + offset;
+            int size = Math.max(0, Math.min(levels, elements.length - base));
+            String[] classes = new String[size];
+            String[] methods = new String[size];
+            for (int level = 0; level < size; level++) {
+                classes[level] = elements[base + level].getClassName();
+                methods[level] = elements[base + level].getMethodName();
+            }
+            return new ArrayFrames(classes, methods, size);
+        }
+
+    }
+
+    /**
+     * 调用点
+     * 
+     * <pre>
+     * 调用者固定的调用点(例如只在一个位置调用的方法)保存为常量,第一次获取时访问调用栈并且解析所有层,
+     * 以后直接返回相同的追踪器.
+     * 调用者不固定的调用点不能使用,否则总是得到第一次调用的结果.
+     * </pre>
+     * 
+     * @author Birdy
+     *
+     */
+    public static final class Site {
+
+        private final int offset;
+
+        private final int levels;
+
+        private volatile StackWalkerTracer tracer;
+
+        public Site() {
+            this(DEFAULT_OFFSET, DEFAULT_LEVELS);
+        }
+
+        /**
+         * @param offset
+         *            相对于{@link #getTracer()}的偏移
+         * @param levels
+         *            需要的层数
+         */
+        public Site(int offset, int levels) {
+            this.offset = offset;
+            this.levels = levels;
+        }
+
+        public StackWalkerTracer getTracer() {
+            StackWalkerTracer tracer = this.tracer;
+            if (tracer == null) {
+                // 并发初始化的结果相同,所以不需要加锁
+                tracer = new StackWalkerTracer(offset + 1, levels);
+                StackFrames context = tracer.context;
+                String[] classes = new String[context.getLevels()];
+                String[] methods = new String[classes.length];
+                for (int level = 0; level < classes.length; level++) {
+                    classes[level] = context.getClass(level);
+                    methods[level] = context.getMethod(level);
+                }
+                // 缓存已经解析的调用层,不再持有调用栈
+                tracer = new StackWalkerTracer(new ArrayFrames(classes, methods, classes.length));
+                this.tracer = tracer;
+            }
+            return tracer;
+        }
+
+    }
+
+    private static final StackAccessor ACCESSOR;
+
+    static {
+        StackAccessor accessor;
+        try {
+            accessor = new WalkerAccessor();
+        } catch (Throwable walkerThrowable) {
+            try {
+                accessor = new AccessAccessor();
+            } catch (Throwable accessThrowable) {
+                accessor = new ThrowableAccessor();
+            }
+        }
+        ACCESSOR = accessor;
+    }
+
+    private final StackFrames context;
+
+    public StackWalkerTracer() {
+        this(DEFAULT_OFFSET + 1, DEFAULT_LEVELS);
+    }
+
+    /**
+     * @param offset
+     *            相对于此构造方法的偏移
+     * @param levels
+     *            需要的层数
+     */
+    public StackWalkerTracer(int offset, int levels) {
+        this.context = ACCESSOR.capture(offset, levels);
+    }
+
+    private StackWalkerTracer(StackFrames context) {
+        this.context = context;
+    }
+
+    @Override
+    public int getCallLevels() {
+        return context.getLevels();
+    }
+
+    @Override
+    public String getCallClass(int level) {
+        if (level < context.getLevels()) {
+            return context.getClass(level);
+        }
+        return null;
+    }
+
+    @Override
+    public String getCallMethod(int level) {
+        if (level < context.getLevels()) {
+            return context.getMethod(level);
+        }
+        return null;
+    }
+
+    /**
+     * 获取当前使用的访问器名称(用于诊断)
+     * 
+     * @return
+     */
+    static String getAccessor() {
+        return ACCESSOR.getClass().getSimpleName();
+    }
+
+}
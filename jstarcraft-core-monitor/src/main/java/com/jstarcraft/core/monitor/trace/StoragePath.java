@@ -0,0 +1,148 @@
+package com.jstarcraft.core.monitor.trace;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.jstarcraft.core.common.instant.SolarExpression;
+import com.jstarcraft.core.monitor.trace.exception.LogException;
+
+/**
+ * 日志路径
+ * 
+ * <pre>
+ * 路径模板在构造时预编译为片段(字面量,日期格式,名称索引),日期格式只编译一次;
+ * 上一次日期时间由CRON表达式的窗口缓存计算,格式化以后的日期按照上一次日期时间缓存,同一个周期内的日志不需要重新格式化.
+ * 模板语法与StringSubstitutor保持一致:{name}为名称,{$pattern}为日期格式,${为转义的{.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+class StoragePath {
+
+    private static final char $ = '$';
+
+    private static final char prefix = '{';
+
+    private static final char suffix = '}';
+
+    /**
+     * 格式化以后的日期
+     * 
+     * @author Birdy
+     *
+     */
+    private static class StorageDates {
+
+        /** 上一次日期时间 */
+        private final Instant previous;
+
+        /** 与片段对应的日期(非日期片段为null) */
+        private final String[] dates;
+
+        private StorageDates(Instant previous, String[] dates) {
+            this.previous = previous;
+            this.dates = dates;
+        }
+
+    }
+
+    /** CRON表达式 */
+    private final SolarExpression expression;
+
+    /** 片段(字面量为String,日期为DateTimeFormatter,名称为Integer) */
+    private final Object[] segments;
+
+    /** 当前日期 */
+    private volatile StorageDates current;
+
+    StoragePath(SolarExpression expression, ZoneId zone, String[] names, String path) {
+        this.expression = expression;
+        List<Object> segments = new ArrayList<>();
+        List<String> keys = Arrays.asList(names);
+        StringBuilder buffer = new StringBuilder();
+        int cursor = 0;
+        while (cursor < path.length()) {
+            char character = path.charAt(cursor);
+            if (character == $ && cursor + 1 < path.length() && path.charAt(cursor + 1) == prefix) {
+                // 转义
+                buffer.append(prefix);
+                cursor += 2;
+                continue;
+            }
+            int end = character == prefix ? path.indexOf(suffix, cursor + 1) : -1;
+            if (end == -1) {
+                buffer.append(character);
+                cursor++;
+                continue;
+            }
+            if (buffer.length() > 0) {
+                segments.add(buffer.toString());
+                buffer.setLength(0);
+            }
+            String key = path.substring(cursor + 1, end);
+            int index = key.indexOf($);
+            if (index > -1) {
+                segments.add(DateTimeFormatter.ofPattern(key.substring(index + 1)).withZone(zone));
+            } else {
+                index = keys.indexOf(key);
+                if (index == -1) {
+                    throw new LogException(key);
+                }
+                segments.add(index);
+            }
+            cursor = end + 1;
+        }
+        if (buffer.length() > 0) {
+            segments.add(buffer.toString());
+        }
+        this.segments = segments.toArray();
+    }
+
+    private String[] getDates(Instant instant) {
+        Instant previous = expression.getPreviousDateTime(instant);
+        if (previous == null) {
+            throw new LogException(instant.toString());
+        }
+        StorageDates current = this.current;
+        if (current != null && current.previous.equals(previous)) {
+            return current.dates;
+        }
+        String[] dates = new String[segments.length];
+        for (int index = 0; index < segments.length; index++) {
+            if (segments[index] instanceof DateTimeFormatter) {
+                dates[index] = DateTimeFormatter.class.cast(segments[index]).format(previous);
+            }
+        }
+        this.current = new StorageDates(previous, dates);
+        return dates;
+    }
+
+    /**
+     * 获取路径
+     * 
+     * @param instant
+     * @param parameters
+     * @return
+     */
+    String getPath(Instant instant, Object... parameters) {
+        String[] dates = getDates(instant);
+        StringBuilder buffer = new StringBuilder();
+        for (int index = 0; index < segments.length; index++) {
+            Object segment = segments[index];
+            if (segment instanceof String) {
+                buffer.append((String) segment);
+            } else if (segment instanceof Integer) {
+                buffer.append(parameters[(Integer) segment].toString());
+            } else {
+                buffer.append(dates[index]);
+            }
+        }
+        return buffer.toString();
+    }
+
+}
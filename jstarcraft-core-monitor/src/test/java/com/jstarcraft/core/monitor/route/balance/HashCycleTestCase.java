@@ -1,14 +1,26 @@
 package com.jstarcraft.core.monitor.route.balance;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.jstarcraft.core.common.hash.HashUtility;
 import com.jstarcraft.core.monitor.route.exception.RouteException;
+import com.jstarcraft.core.utility.StringUtility;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 
 public class HashCycleTestCase {
 
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
     @Test
     public void test() {
         // 此处故意使用叠加哈希函数便于实现控制
@@ -51,4 +63,116 @@ public class HashCycleTestCase {
         Assert.assertThat(cycle.getSize(), CoreMatchers.equalTo(0));
     }
 
+    /**
+     * 统计每个节点分配的键数量,返回最大值与平均值的比例
+     * 
+     * @param cycle
+     * @param size
+     * @return
+     */
+    private double distribute(HashCycle<String> cycle, Object2IntOpenHashMap<String> counts, int size) {
+        for (int index = 0; index < size; index++) {
+            counts.addTo(cycle.selectNode("key" + index), 1);
+        }
+        int maximum = 0;
+        for (int count : counts.values()) {
+            maximum = Math.max(maximum, count);
+        }
+        return maximum * (double) cycle.getSize() / size;
+    }
+
+    @Test
+    public void testVirtual() {
+        int size = 100000;
+        HashCycle<String> actual = new HashCycle<>(HashUtility::murmur3StringHash32);
+        HashCycle<String> virtual = new HashCycle<>(HashUtility::murmur3StringHash32, 160);
+        for (int index = 0; index < 8; index++) {
+            actual.createNode("node" + index, "node" + index);
+            virtual.createNode("node" + index, "node" + index);
+        }
+        double actualRatio = distribute(actual, new Object2IntOpenHashMap<>(), size);
+        double virtualRatio = distribute(virtual, new Object2IntOpenHashMap<>(), size);
+        logger.debug(StringUtility.format("最大负载/平均负载:实际节点{},虚拟节点{}", actualRatio, virtualRatio));
+        Assert.assertTrue(virtualRatio < 1.2D);
+        Assert.assertTrue(virtualRatio < actualRatio);
+
+        // 删除节点只影响被删除节点的键
+        String[] befores = new String[size];
+        for (int index = 0; index < size; index++) {
+            befores[index] = virtual.selectNode("key" + index);
+        }
+        virtual.deleteNode("node0");
+        for (int index = 0; index < size; index++) {
+            String after = virtual.selectNode("key" + index);
+            Assert.assertNotEquals("node0", after);
+            if (!befores[index].equals("node0")) {
+                Assert.assertEquals(befores[index], after);
+            }
+        }
+        Assert.assertThat(virtual.getSize(), CoreMatchers.equalTo(7));
+    }
+
+    @Test
+    public void testWeight() {
+        int size = 100000;
+        HashCycle<String> cycle = new HashCycle<>(HashUtility::murmur3StringHash32, 160);
+        cycle.createNode("light", "light", 1);
+        cycle.createNode("heavy", "heavy", 3);
+        Object2IntOpenHashMap<String> counts = new Object2IntOpenHashMap<>();
+        distribute(cycle, counts, size);
+        double ratio = counts.getInt("heavy") / (double) counts.getInt("light");
+        Assert.assertTrue(ratio > 2.5D && ratio < 3.5D);
+    }
+
+    @Test
+    public void testBound() {
+        int size = 100000;
+        double factor = 1.25D;
+        HashCycle<String> cycle = new HashCycle<>(HashUtility::murmur3StringHash32, 10);
+        for (int index = 0; index < 8; index++) {
+            cycle.createNode("node" + index, "node" + index);
+        }
+        Object2IntOpenHashMap<String> loads = new Object2IntOpenHashMap<>();
+        for (int index = 0; index < size; index++) {
+            loads.addTo(cycle.selectNode("key" + index, loads::getInt, factor), 1);
+        }
+        // 每个节点的负载不超过平均负载乘以负载因子
+        for (int load : loads.values()) {
+            Assert.assertTrue(load <= Math.ceil(factor * size / cycle.getSize()));
+        }
+    }
+
+    @Test
+    public void testPerformance() throws Exception {
+        int threadSize = Runtime.getRuntime().availableProcessors();
+        int size = 1000000;
+        for (int virtual : new int[] { 1, 160 }) {
+            HashCycle<String> cycle = new HashCycle<>(HashUtility::murmur3StringHash32, virtual);
+            for (int index = 0; index < 16; index++) {
+                cycle.createNode("node" + index, "node" + index);
+            }
+            String[] keys = new String[size];
+            for (int index = 0; index < size; index++) {
+                keys[index] = "key" + index;
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(threadSize);
+            CountDownLatch latch = new CountDownLatch(threadSize);
+            long instant = System.currentTimeMillis();
+            for (int thread = 0; thread < threadSize; thread++) {
+                executor.submit(() -> {
+                    for (String key : keys) {
+                        cycle.selectNode(key);
+                    }
+                    latch.countDown();
+                });
+            }
+            latch.await();
+            long time = System.currentTimeMillis() - instant;
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            double ratio = distribute(cycle, new Object2IntOpenHashMap<>(), size);
+            logger.debug(StringUtility.format("虚拟节点{},线程{},选择{}次,耗时{}毫秒,最大负载/平均负载{}", virtual, threadSize, size * threadSize, time, ratio));
+        }
+    }
+
 }
@@ -1,11 +1,18 @@
 package com.jstarcraft.core.monitor.route.database;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
@@ -13,6 +20,43 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 @ContextConfiguration
 public class RouteDataSourceTestCase {
 
+    /**
+     * 可以注入延迟与错误的H2数据源
+     */
+    private static class MockDataSource extends DelegatingDataSource {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private volatile long delay;
+
+        private volatile boolean error;
+
+        private MockDataSource(String name, long delay) {
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+            dataSource.setUser("sa");
+            setTargetDataSource(dataSource);
+            this.delay = delay;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            count.incrementAndGet();
+            if (error) {
+                throw new SQLException("mock");
+            }
+            if (delay > 0L) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException exception) {
+                    throw new SQLException(exception);
+                }
+            }
+            return super.getConnection();
+        }
+
+    }
+
     @Autowired
     private NestRouteStrategy strategy;
 
@@ -35,4 +79,105 @@ public class RouteDataSourceTestCase {
         strategy.pullKey();
     }
 
+    /**
+     * 测试延迟路由
+     * 
+     * @throws SQLException
+     */
+    @Test
+    public void testLatency() throws SQLException {
+        MockDataSource fast = new MockDataSource("fast", 0L);
+        MockDataSource slow = new MockDataSource("slow", 20L);
+        HashMap<String, DataSource> dataSources = new HashMap<>();
+        dataSources.put("fast", fast);
+        dataSources.put("slow", slow);
+        RouteDataSource dataSource = new RouteDataSource(new LatencyRouteStrategy(), dataSources);
+        for (int index = 0; index < 200; index++) {
+            try (Connection connection = dataSource.getConnection()) {
+            }
+        }
+        // 慢的数据源只会得到少量的连接
+        Assert.assertTrue(slow.count.get() < 20);
+        Assert.assertTrue(dataSource.getStatistic("slow").getLatency() > dataSource.getStatistic("fast").getLatency());
+    }
+
+    /**
+     * 测试最少并发路由(负载统计到连接关闭为止)
+     * 
+     * @throws SQLException
+     */
+    @Test
+    public void testLeast() throws SQLException {
+        MockDataSource left = new MockDataSource("least-left", 0L);
+        MockDataSource right = new MockDataSource("least-right", 0L);
+        HashMap<String, DataSource> dataSources = new HashMap<>();
+        dataSources.put("left", left);
+        dataSources.put("right", right);
+        RouteDataSource dataSource = new RouteDataSource(new LeastRouteStrategy(), dataSources);
+        Connection first = dataSource.getConnection();
+        String key = left.count.get() == 1 ? "left" : "right";
+        Assert.assertEquals(1, dataSource.getStatistic(key).getOutstanding());
+        // 借出的连接计入负载,下一个连接分到另一个数据源
+        Connection second = dataSource.getConnection();
+        Assert.assertEquals(1, left.count.get());
+        Assert.assertEquals(1, right.count.get());
+        // 重复关闭只释放一次
+        first.close();
+        first.close();
+        Assert.assertEquals(0, dataSource.getStatistic(key).getOutstanding());
+        second.close();
+        Assert.assertEquals(0, dataSource.getStatistic("left").getOutstanding());
+        Assert.assertEquals(0, dataSource.getStatistic("right").getOutstanding());
+        Assert.assertTrue(first.isClosed());
+    }
+
+    /**
+     * 测试剔除与重新接纳
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testEject() throws Exception {
+        MockDataSource left = new MockDataSource("left", 0L);
+        MockDataSource right = new MockDataSource("right", 0L);
+        HashMap<String, DataSource> dataSources = new HashMap<>();
+        dataSources.put("left", left);
+        dataSources.put("right", right);
+        RouteDataSource dataSource = new RouteDataSource(new RollRouteStrategy(), dataSources);
+        dataSource.setThreshold(3);
+        dataSource.setEjectTime(100L);
+
+        right.error = true;
+        int errors = 0;
+        for (int index = 0; index < 20; index++) {
+            try (Connection connection = dataSource.getConnection()) {
+            } catch (SQLException exception) {
+                errors++;
+            }
+        }
+        // 连续错误3次以后剔除
+        Assert.assertEquals(3, errors);
+        Assert.assertEquals(3, right.count.get());
+        Assert.assertFalse(dataSource.getStatistic("right").isAvailable());
+
+        // 探测失败以后继续剔除
+        Thread.sleep(200L);
+        Assert.assertFalse(dataSource.getStatistic("right").isAvailable());
+        Assert.assertTrue(right.count.get() > 3);
+
+        // 恢复以后探测成功并重新接纳
+        right.error = false;
+        long instant = System.currentTimeMillis();
+        while (!dataSource.getStatistic("right").isAvailable() && System.currentTimeMillis() - instant < 5000L) {
+            Thread.sleep(10L);
+        }
+        Assert.assertTrue(dataSource.getStatistic("right").isAvailable());
+        int count = right.count.get();
+        for (int index = 0; index < 10; index++) {
+            try (Connection connection = dataSource.getConnection()) {
+            }
+        }
+        Assert.assertEquals(count + 5, right.count.get());
+    }
+
 }
@@ -2,14 +2,21 @@ package com.jstarcraft.core.monitor.trace;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.message.ParameterizedMessage;
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
 import org.junit.Test;
@@ -25,9 +32,15 @@ import com.jstarcraft.core.utility.StringUtility;
  */
 public class Log4Java2StorageTestCase {
 
+    private static final Logger logger = LogManager.getLogger(Log4Java2StorageTestCase.class);
+
     private void checkContent(File file, String csv) throws Exception {
+        checkContent(file, csv, 2);
+    }
+
+    private void checkContent(File file, String csv, int size) throws Exception {
         List<String> lines = FileUtils.readLines(file, Charset.defaultCharset());
-        Assert.assertThat(lines.size(), CoreMatchers.is(2));
+        Assert.assertThat(lines.size(), CoreMatchers.is(size));
         for (String line : lines) {
             Assert.assertThat(line, CoreMatchers.is(csv));
         }
@@ -69,4 +82,76 @@ public class Log4Java2StorageTestCase {
         checkContent(newLog, csv);
     }
 
+    private Log4Java2Storage getStorage(String name) {
+        LoggerContext context = (LoggerContext) LogManager.getContext(false);
+        return context.getConfiguration().getAppender(name);
+    }
+
+    @Test
+    public void testAsynchronous() throws Exception {
+        String type = "asynchronous";
+        String file = "test";
+        File oldLog = new File("logs2/" + type + "/2017-01-01/" + file + ".00-00-00.log");
+        File newLog = new File("logs2/" + type + "/2017-01-01/" + file + ".00-05-00.log");
+        FileUtils.deleteQuietly(oldLog);
+        FileUtils.deleteQuietly(newLog);
+
+        CsvObject log = CsvObject.instanceOf(0, "birdy", "hong", 1, Instant.now(), CsvEnumeration.TERRAN);
+        String csv = CsvUtility.object2String(log, CsvObject.class);
+
+        Logger logger = LogManager.getLogger("AsynchronousStorage");
+        ZonedDateTime dateTime = ZonedDateTime.of(2017, 1, 1, 0, 4, 0, 0, ZoneId.of("UTC"));
+        logger.info(StringUtility.EMPTY, Instant.from(dateTime), log, type, file);
+        logger.info(StringUtility.EMPTY, Instant.from(dateTime), log, type, file);
+        dateTime = dateTime.plusMinutes(2);
+        logger.info(StringUtility.EMPTY, Instant.from(dateTime), log, type, file);
+        logger.info(StringUtility.EMPTY, Instant.from(dateTime), log, type, file);
+
+        // 参数异常仍然在日志线程抛出
+        try {
+            logger.info(StringUtility.EMPTY, Instant.from(dateTime), log, type);
+            Assert.fail();
+        } catch (LogException exception) {
+        }
+
+        getStorage("AsynchronousStorage").flush();
+        checkContent(oldLog, csv);
+        checkContent(newLog, csv);
+    }
+
+    @Test
+    public void testPerformance() throws Exception {
+        int size = 100000;
+        CsvObject log = CsvObject.instanceOf(0, "birdy", "hong", 1, Instant.now(), CsvEnumeration.TERRAN);
+        String csv = CsvUtility.object2String(log, CsvObject.class);
+        Instant instant = Instant.from(ZonedDateTime.of(2017, 1, 1, 0, 4, 0, 0, ZoneId.of("UTC")));
+
+        // 性能测试的日志写到临时目录
+        File directory = Files.createTempDirectory("storage").toFile();
+        String path = directory.getAbsolutePath() + "/{type}/{$yyyy}-{$MM}-{$dd}/{file}.{$HH}-{$mm}-{$ss}.log";
+        try {
+            for (boolean asynchronous : new boolean[] { false, true }) {
+                String name = asynchronous ? "AsynchronousStorage" : "SynchronousStorage";
+                String type = "performance";
+                Log4Java2Storage storage = new Log4Java2Storage(name, null, PatternLayout.createDefaultLayout(), false, "0 0/5 * ? * *", "CSV", "type,file", path, "UTC", "10", asynchronous, 1024);
+                storage.start();
+                try {
+                    long begin = System.currentTimeMillis();
+                    for (int index = 0; index < size; index++) {
+                        storage.append(Log4jLogEvent.newBuilder().setLoggerName(name).setLevel(Level.INFO).setMessage(new ParameterizedMessage(StringUtility.EMPTY, instant, log, type, name)).build());
+                    }
+                    long end = System.currentTimeMillis();
+                    storage.flush();
+                    long flush = System.currentTimeMillis();
+                    logger.info("{}:日志线程耗时[{}]毫秒,刷新耗时[{}]毫秒,吞吐[{}]条/秒", name, end - begin, flush - begin, size * 1000L / Math.max(end - begin, 1L));
+                    checkContent(new File(directory, type + "/2017-01-01/" + name + ".00-00-00.log"), csv, size);
+                } finally {
+                    storage.stop(1L, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
 }
@@ -0,0 +1,86 @@
+package com.jstarcraft.core.monitor.trace;
+
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jstarcraft.core.utility.StringUtility;
+
+public class StackWalkerTracerTestCase extends TracerTestCase {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    protected Tracer getTracer() {
+        StackWalkerTracer tracer = new StackWalkerTracer();
+        return tracer;
+    }
+
+    @Test
+    public void testLevels() {
+        StackWalkerTracer tracer = new StackWalkerTracer(StackWalkerTracer.DEFAULT_OFFSET, Integer.MAX_VALUE);
+        ThreadStackTracer context = new ThreadStackTracer(ThreadStackTracer.DEFAULT_OFFSET);
+        Assert.assertEquals("testLevels", tracer.getCalleeMethod());
+        // StackWalker会跳过反射的调用层,所以只要求是子序列
+        int position = 0;
+        for (int level = 0; level < tracer.getCallLevels(); level++) {
+            while (position < context.getCallLevels() && !(context.getCallClass(position).equals(tracer.getCallClass(level)) && context.getCallMethod(position).equals(tracer.getCallMethod(level)))) {
+                position++;
+            }
+            Assert.assertTrue(position < context.getCallLevels());
+            position++;
+        }
+        Assert.assertNull(tracer.getCallClass(tracer.getCallLevels()));
+    }
+
+    private static final StackWalkerTracer.Site SITE = new StackWalkerTracer.Site();
+
+    private Tracer site() {
+        return SITE.getTracer();
+    }
+
+    @Test
+    public void testSite() {
+        Tracer tracer = site();
+        Assert.assertEquals(StackWalkerTracerTestCase.class.getName(), tracer.getCalleeClass());
+        Assert.assertEquals("site", tracer.getCalleeMethod());
+        Assert.assertEquals(StackWalkerTracerTestCase.class.getName(), tracer.getCallerClass());
+        Assert.assertEquals("testSite", tracer.getCallerMethod());
+        // 相同的调用点直接返回缓存的结果
+        Assert.assertSame(tracer, site());
+    }
+
+    private String trace(int depth, Supplier<Tracer> supplier) {
+        if (depth == 0) {
+            return supplier.get().getCallerClass();
+        }
+        return trace(depth - 1, supplier);
+    }
+
+    @Test
+    public void testPerformance() {
+        int times = 100000;
+        // 模拟较深的调用栈
+        int depth = 100;
+        String[] names = new String[] { "StackWalkerTracer", "StackWalkerTracer.Site", "ThreadStackTracer", "ThrowableStackTracer", "SecurityManagerTracer" };
+        StackWalkerTracer.Site site = new StackWalkerTracer.Site();
+        @SuppressWarnings("unchecked")
+        Supplier<Tracer>[] suppliers = new Supplier[] { (Supplier<Tracer>) StackWalkerTracer::new, (Supplier<Tracer>) site::getTracer, (Supplier<Tracer>) ThreadStackTracer::new, (Supplier<Tracer>) ThrowableStackTracer::new, (Supplier<Tracer>) SecurityManagerTracer::new };
+        for (int index = 0; index < suppliers.length; index++) {
+            Supplier<Tracer> supplier = suppliers[index];
+            // 预热
+            for (int time = 0; time < times / 10; time++) {
+                trace(depth, supplier);
+            }
+            long instant = System.currentTimeMillis();
+            for (int time = 0; time < times; time++) {
+                trace(depth, supplier);
+            }
+            logger.info(StringUtility.format("{}在{}层调用栈追踪{}次,耗时{}毫秒", names[index], depth, times, System.currentTimeMillis() - instant));
+        }
+        logger.info(StringUtility.format("StackWalkerTracer使用{}", StackWalkerTracer.getAccessor()));
+    }
+
+}
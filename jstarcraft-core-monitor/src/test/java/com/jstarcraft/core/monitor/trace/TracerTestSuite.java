@@ -9,6 +9,8 @@ import org.junit.runners.Suite.SuiteClasses;
 
         SecurityManagerTracerTestCase.class,
 
+        StackWalkerTracerTestCase.class,
+
         ThreadStackTracerTestCase.class,
 
         ThrowableStackTracerTestCase.class })
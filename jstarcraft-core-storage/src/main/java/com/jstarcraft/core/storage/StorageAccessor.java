@@ -9,6 +9,10 @@ import com.jstarcraft.core.common.identification.IdentityObject;
 /**
  * ORM访问器
  * 
+ * <pre>
+ * 所有分页参数都支持键集分页({@link StoragePagination#instanceOf}),由各个访问器按照主键原生实现.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
@@ -2,7 +2,13 @@ package com.jstarcraft.core.storage;
 
 /**
  * ORM分页
- * 
+ *
+ * <pre>
+ * 支持两种模式:
+ * 偏移分页(page + size),深分页的代价与偏移量成正比;
+ * 键集分页(after + size),按照主键升序返回大于after的记录,代价与偏移量无关.
+ * </pre>
+ *
  * @author Birdy
  *
  */
@@ -12,6 +18,10 @@ public class StoragePagination {
     private final int page;
     /** 大小(至少为1) */
     private final int size;
+    /** 是否为键集分页 */
+    private final boolean keyset;
+    /** 上一页最后的主键(键集分页时使用,null表示第一页) */
+    private final Comparable after;
 
     public StoragePagination(int page, int size) {
         if (page < 1 || size < 1) {
@@ -19,11 +29,23 @@ public class StoragePagination {
         }
         this.page = page;
         this.size = size;
+        this.keyset = false;
+        this.after = null;
+    }
+
+    private StoragePagination(Comparable after, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("分页的大小至少为1");
+        }
+        this.page = 1;
+        this.size = size;
+        this.keyset = true;
+        this.after = after;
     }
 
     /**
      * 获取第一条记录的位置
-     * 
+     *
      * @return
      */
     public int getFirst() {
@@ -32,7 +54,7 @@ public class StoragePagination {
 
     /**
      * 获取最后一条记录的位置
-     * 
+     *
      * @return
      */
     public int getLast() {
@@ -41,7 +63,7 @@ public class StoragePagination {
 
     /**
      * 获取分页页码
-     * 
+     *
      * @return
      */
     public int getPage() {
@@ -50,11 +72,41 @@ public class StoragePagination {
 
     /**
      * 获取分页大小
-     * 
+     *
      * @return
      */
     public int getSize() {
         return size;
     }
 
+    /**
+     * 是否为键集分页
+     *
+     * @return
+     */
+    public boolean isKeyset() {
+        return keyset;
+    }
+
+    /**
+     * 获取上一页最后的主键
+     *
+     * @return
+     */
+    public <K extends Comparable> K getAfter() {
+        return (K) after;
+    }
+
+    /**
+     * 构建键集分页
+     *
+     * @param after
+     *            上一页最后的主键,null表示第一页
+     * @param size
+     * @return
+     */
+    public static StoragePagination instanceOf(Comparable after, int size) {
+        return new StoragePagination(after, size);
+    }
+
 }
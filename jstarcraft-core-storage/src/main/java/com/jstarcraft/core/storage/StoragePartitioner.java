@@ -0,0 +1,114 @@
+package com.jstarcraft.core.storage;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.jstarcraft.core.storage.exception.StorageQueryException;
+
+/**
+ * ORM分区器
+ *
+ * <pre>
+ * 按照主键边界将遍历切分为多个区间[from, to),并且使用线程池并行遍历.
+ * 第一个区间的下限与最后一个区间的上限为null,表示无界.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class StoragePartitioner {
+
+    /**
+     * 区间任务
+     *
+     * @author Birdy
+     *
+     * @param <K>
+     */
+    public interface StorageRange<K> {
+
+        /**
+         * 遍历指定的区间[from, to)
+         *
+         * @param from
+         *            下限(包含),null表示无界
+         * @param to
+         *            上限(不包含),null表示无界
+         */
+        void iterate(K from, K to);
+
+    }
+
+    private StoragePartitioner() {
+    }
+
+    /**
+     * 按照边界分区并行遍历
+     *
+     * <pre>
+     * 迭代器会被多个线程并发调用,需要保证线程安全.
+     * </pre>
+     *
+     * @param executor
+     * @param range
+     * @param boundaries
+     */
+    @SafeVarargs
+    public static <K extends Comparable> void iterate(ExecutorService executor, StorageRange<K> range, K... boundaries) {
+        iterate(executor, range, null, boundaries);
+    }
+
+    /**
+     * 按照边界分区并行遍历
+     *
+     * <pre>
+     * 迭代器会被多个线程并发调用,需要保证线程安全.
+     * 存储的键顺序与自然顺序不同时(例如按照编码以后的字节比较),需要指定比较器.
+     * </pre>
+     *
+     * @param executor
+     * @param range
+     * @param comparator
+     *            边界比较器(null表示自然顺序)
+     * @param boundaries
+     */
+    @SafeVarargs
+    public static <K> void iterate(ExecutorService executor, StorageRange<K> range, Comparator<? super K> comparator, K... boundaries) {
+        K[] sorts = Arrays.copyOf(boundaries, boundaries.length);
+        Arrays.sort(sorts, comparator);
+        LinkedList<Future<?>> futures = new LinkedList<>();
+        K from = null;
+        for (K to : sorts) {
+            final K left = from;
+            futures.add(executor.submit(() -> {
+                range.iterate(left, to);
+            }));
+            from = to;
+        }
+        final K left = from;
+        futures.add(executor.submit(() -> {
+            range.iterate(left, null);
+        }));
+        StorageQueryException exception = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException throwable) {
+                Thread.currentThread().interrupt();
+                exception = new StorageQueryException(throwable);
+            } catch (ExecutionException throwable) {
+                if (exception == null) {
+                    exception = new StorageQueryException(throwable.getCause());
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+}
@@ -1,8 +1,7 @@
 package com.jstarcraft.core.storage.berkeley;
 
 import java.io.File;
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -11,9 +10,13 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,14 +28,16 @@ import com.jstarcraft.core.storage.StorageCondition;
 import com.jstarcraft.core.storage.StorageIterator;
 import com.jstarcraft.core.storage.StorageMetadata;
 import com.jstarcraft.core.storage.StoragePagination;
+import com.jstarcraft.core.storage.berkeley.exception.BerkeleyOperationException;
 import com.jstarcraft.core.storage.berkeley.exception.BerkeleyStateException;
 import com.jstarcraft.core.storage.berkeley.exception.BerkeleyVersionException;
-import com.jstarcraft.core.utility.DelayElement;
-import com.jstarcraft.core.utility.SensitivityQueue;
+import com.jstarcraft.core.utility.KeyValue;
 import com.jstarcraft.core.utility.StringUtility;
+import com.sleepycat.je.Durability;
 import com.sleepycat.je.Environment;
 import com.sleepycat.je.EnvironmentConfig;
 import com.sleepycat.je.Transaction;
+import com.sleepycat.je.TransactionConfig;
 import com.sleepycat.persist.EntityStore;
 import com.sleepycat.persist.StoreConfig;
 import com.sleepycat.persist.model.AnnotationModel;
@@ -44,6 +49,11 @@ import com.sleepycat.persist.model.PersistentProxy;
 /**
  * Berkeley访问器
  * 
+ * <pre>
+ * 异步写操作(createInstanceAsynchronous/updateInstanceAsynchronous/deleteInstanceAsynchronous)通过有界队列分组提交,
+ * 每组最多commitSize个写操作或者等待commitTime微秒,共享同一个事务.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
@@ -54,6 +64,12 @@ public class BerkeleyAccessor implements StorageAccessor {
     /** 修复时间间隔 */
     private static final long FIX_TIME = 1000;
 
+    /** 默认每组提交的写操作数量 */
+    public static final int DEFAULT_COMMIT_SIZE = 100;
+
+    /** 默认每组提交的等待时间(单位:微秒) */
+    public static final long DEFAULT_COMMIT_TIME = 1000L;
+
     /** 目录 */
     private final File directory;
     /** 配置 */
@@ -66,6 +82,10 @@ public class BerkeleyAccessor implements StorageAccessor {
     private final boolean temporary;
     /** 版本保持时间(单位:毫秒) */
     private final long versionKeep;
+    /** 每组提交的写操作数量 */
+    private final int commitSize;
+    /** 每组提交的等待时间(单位:微秒) */
+    private final long commitTime;
 
     private final HashSet<Class<?>> entityClasses;
     private final HashSet<Class<?>> persistentClasses;
@@ -84,32 +104,115 @@ public class BerkeleyAccessor implements StorageAccessor {
     /** 事务集合 */
     private ThreadLocal<BerkeleyTransactor> transactors = new ThreadLocal<>();
 
+    /** 分组提交的事务模型 */
+    private TransactionConfig commitModel;
+
     /** 状态 */
     private AtomicReference<BerkeleyState> state = new AtomicReference<>(BerkeleyState.STOPPED);
 
     /** 版本缓存 */
-    private HashMap<BerkeleyIdentification, BerkeleyVersion> versionCache = new HashMap<>();
-    /** 版本锁 */
-    private ReentrantReadWriteLock versionLock = new ReentrantReadWriteLock();
-    /** 版本队列 */
-    private SensitivityQueue<DelayElement<BerkeleyVersion>> versionQueue = new SensitivityQueue<>(FIX_TIME);
+    private BerkeleyVersionCache versionCache = new BerkeleyVersionCache(Runtime.getRuntime().availableProcessors() * 4);
     /** 版本线程 */
     private Thread versionThread;
-    /** 版本任务 */
+    /** 版本任务(定时批量清扫过期的版本) */
     private final Runnable versionTask = new Runnable() {
         public void run() {
             try {
                 while (true) {
-                    DelayElement<BerkeleyVersion> element = versionQueue.take();
-                    BerkeleyVersion content = element.getContent();
-                    versionCache.remove(content.getIdentification(), content);
+                    Thread.sleep(FIX_TIME);
+                    versionCache.expire(System.currentTimeMillis());
                 }
             } catch (InterruptedException exception) {
             }
         }
     };
 
+    /** 提交命令 */
+    private static class CommitCommand {
+
+        /** 写操作 */
+        private final Function<BerkeleyTransactor, Boolean> operation;
+
+        /** 写操作结果(在分组提交以后完成) */
+        private final CompletableFuture<Boolean> future;
+
+        private CommitCommand(Function<BerkeleyTransactor, Boolean> operation) {
+            this.operation = operation;
+            this.future = new CompletableFuture<>();
+        }
+
+    }
+
+    /** 停止命令(提交线程处理完之前的写操作以后退出,不中断线程以免影响环境) */
+    private static final CommitCommand STOP_COMMAND = new CommitCommand(null);
+
+    /** 提交队列 */
+    private ArrayBlockingQueue<CommitCommand> commitQueue;
+    /** 提交锁(入队与停止互斥,保证停止命令之后没有写操作入队) */
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+    /** 提交线程 */
+    private Thread commitThread;
+    /** 提交任务 */
+    private final Runnable commitTask = new Runnable() {
+        public void run() {
+            ArrayList<CommitCommand> commands = new ArrayList<>(commitSize);
+            try {
+                while (true) {
+                    commands.add(commitQueue.take());
+                    // 收集写操作,直到数量或者时间达到限制
+                    long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(commitTime);
+                    commitQueue.drainTo(commands, commitSize - commands.size());
+                    while (commands.size() < commitSize && !commands.contains(STOP_COMMAND)) {
+                        long wait = deadline - System.nanoTime();
+                        if (wait <= 0L) {
+                            break;
+                        }
+                        CommitCommand command = commitQueue.poll(wait, TimeUnit.NANOSECONDS);
+                        if (command == null) {
+                            break;
+                        }
+                        commands.add(command);
+                        commitQueue.drainTo(commands, commitSize - commands.size());
+                    }
+                    int index = commands.indexOf(STOP_COMMAND);
+                    if (index >= 0) {
+                        // 停止命令是最后一个入队的命令
+                        commitCommands(commands.subList(0, index));
+                        return;
+                    }
+                    commitCommands(commands);
+                    commands.clear();
+                }
+            } catch (InterruptedException exception) {
+                // 意外中断时提交已经收集的写操作
+                commands.remove(STOP_COMMAND);
+                commitCommands(commands);
+            }
+        }
+    };
+
     public BerkeleyAccessor(Collection<Class<?>> classes, File directory, Properties properties, boolean readOnly, boolean writeDelay, boolean temporary, long versionKeep) {
+        this(classes, directory, properties, readOnly, writeDelay, temporary, versionKeep, DEFAULT_COMMIT_SIZE, DEFAULT_COMMIT_TIME);
+    }
+
+    /**
+     * 
+     * @param classes
+     * @param directory
+     * @param properties
+     * @param readOnly
+     * @param writeDelay
+     * @param temporary
+     * @param versionKeep
+     * @param commitSize
+     *            每组提交的写操作数量
+     * @param commitTime
+     *            每组提交的等待时间(单位:微秒)
+     */
+    public BerkeleyAccessor(Collection<Class<?>> classes, File directory, Properties properties, boolean readOnly, boolean writeDelay, boolean temporary, long versionKeep, int commitSize, long commitTime) {
+        if (commitSize < 1 || commitTime < 0L) {
+            throw new IllegalArgumentException();
+        }
         this.entityClasses = new HashSet<>();
         this.persistentClasses = new HashSet<>();
         this.proxyClasses = new HashSet<>();
@@ -142,6 +245,8 @@ public class BerkeleyAccessor implements StorageAccessor {
         this.temporary = temporary;
         this.versionKeep = versionKeep;
         this.writeDelay = writeDelay;
+        this.commitSize = commitSize;
+        this.commitTime = commitTime;
     }
 
     public BerkeleyState getState() {
@@ -162,6 +267,12 @@ public class BerkeleyAccessor implements StorageAccessor {
         environmentConfiguration.setAllowCreate(true);
         environmentConfiguration.setTransactional(true);
         environment = new Environment(directory, environmentConfiguration);
+        // 延迟写不需要在提交时同步磁盘
+        commitModel = new TransactionConfig();
+        commitModel.setReadCommitted(true);
+        if (writeDelay) {
+            commitModel.setDurability(Durability.COMMIT_WRITE_NO_SYNC);
+        }
 
         // 分类贮存与排序实体
         HashMap<String, TreeSet<BerkeleyMetadata>> store2Matadatas = new HashMap<>();
@@ -212,6 +323,14 @@ public class BerkeleyAccessor implements StorageAccessor {
                 metadatas.add(metadata);
             }
         }
+
+        // 设置提交线程(只读时不需要分组提交)
+        if (!readOnly) {
+            commitQueue = new ArrayBlockingQueue<>(commitSize * 10);
+            commitThread = new Thread(commitTask);
+            commitThread.setDaemon(true);
+            commitThread.start();
+        }
     }
 
     public void stop() {
@@ -220,9 +339,34 @@ public class BerkeleyAccessor implements StorageAccessor {
         }
         // 中断线程
         versionCache.clear();
-        versionQueue.clear();
         versionThread.interrupt();
 
+        if (!readOnly) {
+            // 等待正在入队的写操作,之后的写操作会检查到停止状态
+            commitLock.writeLock().lock();
+            commitLock.writeLock().unlock();
+            // 提交剩余的写操作
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    commitQueue.put(STOP_COMMAND);
+                    break;
+                } catch (InterruptedException exception) {
+                    interrupted = true;
+                }
+            }
+            while (commitThread.isAlive()) {
+                try {
+                    commitThread.join();
+                } catch (InterruptedException exception) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
         // 停止贮存
         for (EntityStore store : stores.values()) {
             try {
@@ -290,6 +434,142 @@ public class BerkeleyAccessor implements StorageAccessor {
         return manager.updateInstance(transactor, object);
     }
 
+    /**
+     * 提交一组写操作
+     * 
+     * <pre>
+     * 所有写操作共享同一个事务,只需要一次日志写入;
+     * 任意写操作失败时回滚整个事务,再逐个自动提交,保证只有失败的写操作受到影响.
+     * 临时模式没有事务,失败之前的写操作已经生效,只有失败之后的写操作需要重新提交.
+     * </pre>
+     * 
+     * @param commands
+     */
+    private void commitCommands(List<CommitCommand> commands) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        int size = commands.size();
+        boolean[] results = new boolean[size];
+        BerkeleyTransactor transactor = null;
+        int index = 0;
+        try {
+            if (!temporary) {
+                Transaction transaction = environment.beginTransaction(null, commitModel);
+                transactor = new BerkeleyTransactor(BerkeleyIsolation.READ_COMMITTED, transaction);
+            }
+            for (; index < size; index++) {
+                results[index] = commands.get(index).operation.apply(transactor);
+            }
+            if (transactor != null) {
+                transactor.commit();
+            }
+        } catch (Exception exception) {
+            if (transactor != null) {
+                // 失败的事务(包括必须回滚的事务)需要回滚以释放锁
+                transactor.abort();
+                for (CommitCommand command : commands) {
+                    try {
+                        command.future.complete(command.operation.apply(null));
+                    } catch (Exception throwable) {
+                        command.future.completeExceptionally(throwable);
+                    }
+                }
+            } else {
+                // 没有事务,失败之前的写操作已经生效
+                for (int cursor = 0; cursor < index; cursor++) {
+                    commands.get(cursor).future.complete(results[cursor]);
+                }
+                commands.get(index).future.completeExceptionally(exception);
+                commitCommands(commands.subList(index + 1, size));
+            }
+            return;
+        }
+        for (index = 0; index < size; index++) {
+            commands.get(index).future.complete(results[index]);
+        }
+    }
+
+    /**
+     * 检查是否可以分组提交(只读时没有提交线程,直接失败)
+     */
+    private void checkWritable() {
+        if (readOnly) {
+            throw new BerkeleyOperationException("只读模式不能分组提交");
+        }
+    }
+
+    private CompletableFuture<Boolean> commitCommand(Function<BerkeleyTransactor, Boolean> operation) {
+        CommitCommand command = new CommitCommand(operation);
+        // 在读锁内检查状态并且入队,避免写操作排在停止命令之后
+        commitLock.readLock().lock();
+        try {
+            if (state.get() != BerkeleyState.STARTED) {
+                throw new BerkeleyStateException();
+            }
+            commitQueue.put(command);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            command.future.completeExceptionally(exception);
+        } finally {
+            commitLock.readLock().unlock();
+        }
+        return command.future;
+    }
+
+    /**
+     * 分组提交创建实例
+     * 
+     * <pre>
+     * 多个线程的写操作合并到同一个事务,结果在分组提交以后完成.
+     * </pre>
+     * 
+     * @param clazz
+     * @param object
+     * @return
+     */
+    public <K extends Comparable, T extends IdentityObject<K>> CompletableFuture<Boolean> createInstanceAsynchronous(Class<T> clazz, T object) {
+        checkWritable();
+        BerkeleyManager<K, T> manager = managers.get(clazz);
+        return commitCommand((transactor) -> manager.createInstance(transactor, object));
+    }
+
+    /**
+     * 分组提交删除实例
+     * 
+     * @param clazz
+     * @param id
+     * @return
+     */
+    public <K extends Comparable, T extends IdentityObject<K>> CompletableFuture<Boolean> deleteInstanceAsynchronous(Class<T> clazz, K id) {
+        checkWritable();
+        BerkeleyManager<K, T> manager = managers.get(clazz);
+        return commitCommand((transactor) -> manager.deleteInstance(transactor, id));
+    }
+
+    /**
+     * 分组提交修改实例
+     * 
+     * <pre>
+     * 版本在调用线程检查.
+     * </pre>
+     * 
+     * @param clazz
+     * @param object
+     * @return
+     */
+    public <K extends Comparable, T extends IdentityObject<K>> CompletableFuture<Boolean> updateInstanceAsynchronous(Class<T> clazz, T object) {
+        checkWritable();
+        BerkeleyManager<K, T> manager = managers.get(clazz);
+        BerkeleyMetadata metadata = manager.getMetadata();
+        // 判断是否检查版本
+        if (metadata.getVersionName() != null) {
+            BerkeleyVersion version = new BerkeleyVersion(metadata, object);
+            checkVersions(true, null, version);
+        }
+        return commitCommand((transactor) -> manager.updateInstance(transactor, object));
+    }
+
     @Override
     public <K extends Comparable, T extends IdentityObject<K>> K maximumIdentity(Class<T> clazz, K from, K to) {
         BerkeleyManager<K, T> manager = managers.get(clazz);
@@ -311,6 +591,36 @@ public class BerkeleyAccessor implements StorageAccessor {
         return manager.queryIdentities(transactor, name, condition);
     }
 
+    /**
+     * 按照二级键顺序流式遍历(主键,二级键)对
+     * 
+     * @param iterator
+     * @param clazz
+     * @param name
+     * @param condition
+     */
+    public <K extends Comparable, I, T extends IdentityObject<K>> void iterateIdentities(StorageIterator<KeyValue<K, I>> iterator, Class<T> clazz, String name, StorageCondition<I> condition) {
+        BerkeleyManager<K, T> manager = managers.get(clazz);
+        BerkeleyTransactor transactor = transactors.get();
+        manager.iterateIdentities(iterator, transactor, name, condition);
+    }
+
+    /**
+     * 按照二级键边界分区并行遍历(主键,二级键)对
+     * 
+     * @param iterator
+     * @param clazz
+     * @param name
+     * @param condition
+     * @param executor
+     * @param boundaries
+     */
+    public <K extends Comparable, I extends Comparable, T extends IdentityObject<K>> void iterateIdentities(StorageIterator<KeyValue<K, I>> iterator, Class<T> clazz, String name, StorageCondition<I> condition, ExecutorService executor, I... boundaries) {
+        BerkeleyManager<K, T> manager = managers.get(clazz);
+        BerkeleyTransactor transactor = transactors.get();
+        manager.iterateIdentities(iterator, transactor, name, condition, executor, boundaries);
+    }
+
     @Override
     public <K extends Comparable, I, T extends IdentityObject<K>> List<T> queryInstances(Class<T> clazz, String name, StorageCondition<I> condition) {
         BerkeleyManager<K, T> manager = managers.get(clazz);
@@ -429,48 +739,74 @@ public class BerkeleyAccessor implements StorageAccessor {
     }
 
     private void checkVersions(boolean modify, BerkeleyTransactor transactor, BerkeleyVersion... versions) {
-        Lock lock = modify ? versionLock.writeLock() : versionLock.readLock();
-        try {
-            lock.lock();
-            for (BerkeleyVersion version : versions) {
-                BerkeleyVersion value = versionCache.get(version.getIdentification());
-                if (value != null && !value.equals(version)) {
-                    if (modify && transactor != null) {
-                        transactor.abort();
-                        // 事务回滚
-                        for (BerkeleyMonitor monitor : monitors) {
-                            monitor.notifyFailure(transactor);
-                        }
-                    }
-                    throw new BerkeleyVersionException("版本冲突");
-                }
+        if (!modify) {
+            // 只读检查不需要加锁
+            if (!versionCache.check(versions)) {
+                throw new BerkeleyVersionException("版本冲突");
+            }
+            if (transactor != null) {
+                // 缓存版本信息
+                transactor.setVersions(versions);
             }
-            if (modify) {
+            return;
+        }
+        int[] stripes = versionCache.lock(versions);
+        try {
+            if (!versionCache.check(versions)) {
                 if (transactor != null) {
-                    transactor.commit();
-                    // 事务提交
+                    transactor.abort();
+                    // 事务回滚
                     for (BerkeleyMonitor monitor : monitors) {
-                        monitor.notifySuccess(transactor);
+                        monitor.notifyFailure(transactor);
                     }
                 }
-                Instant instant = Instant.now();
-                instant = instant.plus(versionKeep, ChronoUnit.MILLIS);
-                for (BerkeleyVersion version : versions) {
-                    // 修改与设置版本信息
-                    version.modify();
-                    DelayElement element = new DelayElement(version, instant);
-                    versionQueue.put(element);
-                    versionCache.put(version.getIdentification(), version);
+                throw new BerkeleyVersionException("版本冲突");
+            }
+            if (transactor != null) {
+                transactor.commit();
+                // 事务提交
+                for (BerkeleyMonitor monitor : monitors) {
+                    monitor.notifySuccess(transactor);
                 }
-            } else if (transactor != null) {
-                // 缓存版本信息
-                transactor.setVersions(versions);
+            }
+            long expire = System.currentTimeMillis() + versionKeep;
+            for (BerkeleyVersion version : versions) {
+                // 修改与设置版本信息
+                version.modify();
+                versionCache.put(version, expire);
             }
         } finally {
-            lock.unlock();
+            versionCache.unlock(stripes);
         }
     }
 
+    /**
+     * 获取版本缓存大小
+     * 
+     * @return
+     */
+    public int getVersionSize() {
+        return versionCache.getSize();
+    }
+
+    /**
+     * 获取版本冲突数量
+     * 
+     * @return
+     */
+    public long getVersionConflicts() {
+        return versionCache.getConflicts();
+    }
+
+    /**
+     * 获取版本过期数量
+     * 
+     * @return
+     */
+    public long getVersionExpirations() {
+        return versionCache.getExpirations();
+    }
+
     /**
      * 添加事务监控器
      * 
@@ -3,10 +3,12 @@ package com.jstarcraft.core.storage.berkeley;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,13 +18,21 @@ import com.jstarcraft.core.storage.ConditionType;
 import com.jstarcraft.core.storage.StorageCondition;
 import com.jstarcraft.core.storage.StorageIterator;
 import com.jstarcraft.core.storage.StoragePagination;
+import com.jstarcraft.core.storage.StoragePartitioner;
 import com.jstarcraft.core.utility.ClassUtility;
+import com.jstarcraft.core.utility.KeyValue;
 import com.jstarcraft.core.utility.StringUtility;
+import com.sleepycat.bind.EntryBinding;
 import com.sleepycat.collections.StoredSortedMap;
+import com.sleepycat.je.Cursor;
 import com.sleepycat.je.CursorConfig;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseEntry;
 import com.sleepycat.je.LockMode;
+import com.sleepycat.je.OperationStatus;
 import com.sleepycat.je.Transaction;
 import com.sleepycat.persist.EntityCursor;
+import com.sleepycat.persist.EntityIndex;
 import com.sleepycat.persist.EntityJoin;
 import com.sleepycat.persist.EntityStore;
 import com.sleepycat.persist.ForwardCursor;
@@ -157,77 +167,235 @@ public class BerkeleyManager<K extends Comparable, T extends IdentityObject<K>>
 		}
 	}
 
-	public <I> Map<K, I> queryIdentities(BerkeleyTransactor transactor, String name, StorageCondition<I> condition) {
-		SecondaryIndex secondaryIndex = secondaryIndexes.get(name);
-		StoredSortedMap storeMap = (StoredSortedMap) secondaryIndex.keysIndex().sortedMap();
-		HashMap<K, I> identities = new HashMap<>();
+	/**
+	 * 二级键区间(null表示无界)
+	 * 
+	 * <pre>
+	 * 边界按照编码以后的键比较,与JE的键顺序一致.
+	 * </pre>
+	 * 
+	 * @author Birdy
+	 *
+	 */
+	private static class BerkeleyRange {
+
+		private final Comparable from;
+
+		private final boolean fromInclusive;
+
+		private final Comparable to;
+
+		private final boolean toInclusive;
+
+		private BerkeleyRange(Comparable from, boolean fromInclusive, Comparable to, boolean toInclusive) {
+			this.from = from;
+			this.fromInclusive = fromInclusive;
+			this.to = to;
+			this.toInclusive = toInclusive;
+		}
+
+		/**
+		 * 与分区[left, right)求交集
+		 * 
+		 * @param left
+		 * @param right
+		 * @param comparator
+		 *            编码键比较器
+		 * @return 没有交集时返回null
+		 */
+		private BerkeleyRange intersect(Comparable left, Comparable right, Comparator<Object> comparator) {
+			Comparable from = this.from;
+			boolean fromInclusive = this.fromInclusive;
+			if (left != null && (from == null || comparator.compare(left, from) > 0)) {
+				from = left;
+				fromInclusive = true;
+			}
+			Comparable to = this.to;
+			boolean toInclusive = this.toInclusive;
+			if (right != null && (to == null || comparator.compare(right, to) <= 0)) {
+				to = right;
+				toInclusive = false;
+			}
+			if (from != null && to != null) {
+				int compare = comparator.compare(from, to);
+				if (compare > 0 || (compare == 0 && !(fromInclusive && toInclusive))) {
+					return null;
+				}
+			}
+			return new BerkeleyRange(from, fromInclusive, to, toInclusive);
+		}
+
+	}
+
+	/**
+	 * 获取二级键的比较器(按照编码以后的键比较)
+	 * 
+	 * @param secondaryIndex
+	 * @return
+	 */
+	private Comparator<Object> getComparator(SecondaryIndex secondaryIndex) {
+		// 键数据库由keysIndex()延迟打开
+		secondaryIndex.keysIndex();
+		Database database = secondaryIndex.getKeysDatabase();
+		EntryBinding valueBinding = secondaryIndex.getKeyBinding();
+		return (left, right) -> {
+			DatabaseEntry leftEntry = new DatabaseEntry();
+			DatabaseEntry rightEntry = new DatabaseEntry();
+			valueBinding.objectToEntry(left, leftEntry);
+			valueBinding.objectToEntry(right, rightEntry);
+			return database.compareKeys(leftEntry, rightEntry);
+		};
+	}
+
+	private <I> List<BerkeleyRange> getRanges(StorageCondition<I> condition) {
 		ConditionType type = condition.getType();
 		I[] values = condition.getValues();
+		List<BerkeleyRange> ranges = new ArrayList<>();
 		switch (type) {
 		case All: {
-			for (Object value : storeMap.keySet()) {
-				for (Object identity : storeMap.duplicates(value)) {
-					identities.put((K) identity, (I) value);
-				}
-			}
+			ranges.add(new BerkeleyRange(null, true, null, true));
 			break;
 		}
 		case Between: {
-			storeMap = (StoredSortedMap) storeMap.subMap(values[0], true, values[1], true);
-			for (Object value : storeMap.keySet()) {
-				for (Object identity : storeMap.duplicates(value)) {
-					identities.put((K) identity, (I) value);
-				}
-			}
+			ranges.add(new BerkeleyRange((Comparable) values[0], true, (Comparable) values[1], true));
 			break;
 		}
 		case Equal: {
-			I value = values[0];
-			for (Object identity : storeMap.duplicates(value)) {
-				identities.put((K) identity, value);
-			}
+			ranges.add(new BerkeleyRange((Comparable) values[0], true, (Comparable) values[0], true));
 			break;
 		}
 		case Higher: {
-			storeMap = (StoredSortedMap) storeMap.subMap(values[0], false, null, true);
-			for (Object value : storeMap.keySet()) {
-				for (Object identity : storeMap.duplicates(value)) {
-					identities.put((K) identity, (I) value);
-				}
-			}
+			ranges.add(new BerkeleyRange((Comparable) values[0], false, null, true));
 			break;
 		}
 		case In: {
 			for (I value : values) {
-				for (Object identity : storeMap.duplicates(value)) {
-					identities.put((K) identity, value);
-				}
+				ranges.add(new BerkeleyRange((Comparable) value, true, (Comparable) value, true));
 			}
 			break;
 		}
 		case Lower: {
-			storeMap = (StoredSortedMap) storeMap.subMap(null, true, values[0], false);
-			for (Object value : storeMap.keySet()) {
-				for (Object identity : storeMap.duplicates(value)) {
-					identities.put((K) identity, (I) value);
-				}
-			}
+			ranges.add(new BerkeleyRange(null, true, (Comparable) values[0], false));
 			break;
 		}
 		case Unequal: {
-			for (Object value : storeMap.keySet()) {
-				if (!values[0].equals(value)) {
-					for (Object identity : storeMap.duplicates(value)) {
-						identities.put((K) identity, (I) value);
+			ranges.add(new BerkeleyRange(null, true, (Comparable) values[0], false));
+			ranges.add(new BerkeleyRange((Comparable) values[0], false, null, true));
+			break;
+		}
+		}
+		return ranges;
+	}
+
+	/**
+	 * 通过游标直接读取二级索引的(二级键,主键)对
+	 * 
+	 * @param iterator
+	 * @param transactor
+	 * @param secondaryIndex
+	 * @param range
+	 */
+	private <I> void scanIdentities(StorageIterator<KeyValue<K, I>> iterator, BerkeleyTransactor transactor, SecondaryIndex secondaryIndex, BerkeleyRange range) {
+		CursorConfig cursorModel = transactor == null ? null : transactor.getIsolation().getCursorModel();
+		LockMode lockMode = transactor == null ? null : transactor.getIsolation().getLockMode();
+		Transaction transaction = transactor == null ? null : transactor.getTransaction();
+		// 键数据库由keysIndex()延迟打开
+		secondaryIndex.keysIndex();
+		Database database = secondaryIndex.getKeysDatabase();
+		EntryBinding valueBinding = secondaryIndex.getKeyBinding();
+		EntryBinding identityBinding = primaryIndex.getKeyBinding();
+		// 边界按照编码以后的键比较(JE的键顺序),不使用Comparable
+		DatabaseEntry from = null;
+		if (range.from != null) {
+			from = new DatabaseEntry();
+			valueBinding.objectToEntry(range.from, from);
+		}
+		DatabaseEntry to = null;
+		if (range.to != null) {
+			to = new DatabaseEntry();
+			valueBinding.objectToEntry(range.to, to);
+		}
+		DatabaseEntry key = new DatabaseEntry();
+		DatabaseEntry data = new DatabaseEntry();
+		try (Cursor cursor = database.openCursor(transaction, cursorModel)) {
+			OperationStatus status;
+			if (from == null) {
+				status = cursor.getFirst(key, data, lockMode);
+			} else {
+				key.setData(from.getData(), from.getOffset(), from.getSize());
+				status = cursor.getSearchKeyRange(key, data, lockMode);
+			}
+			while (status == OperationStatus.SUCCESS) {
+				if (!range.fromInclusive && database.compareKeys(key, from) == 0) {
+					status = cursor.getNextNoDup(key, data, lockMode);
+					continue;
+				}
+				if (to != null) {
+					int compare = database.compareKeys(key, to);
+					if (compare > 0 || (compare == 0 && !range.toInclusive)) {
+						break;
 					}
 				}
+				Comparable value = (Comparable) valueBinding.entryToObject(key);
+				K identity = (K) identityBinding.entryToObject(data);
+				iterator.iterate(new KeyValue<>(identity, (I) value));
+				status = cursor.getNext(key, data, lockMode);
 			}
-			break;
-		}
 		}
+	}
+
+	public <I> Map<K, I> queryIdentities(BerkeleyTransactor transactor, String name, StorageCondition<I> condition) {
+		HashMap<K, I> identities = new HashMap<>();
+		iterateIdentities((keyValue) -> {
+			identities.put(keyValue.getKey(), keyValue.getValue());
+		}, transactor, name, condition);
 		return identities;
 	}
 
+	/**
+	 * 按照二级键顺序流式遍历(主键,二级键)对
+	 * 
+	 * @param iterator
+	 * @param transactor
+	 * @param name
+	 * @param condition
+	 */
+	public <I> void iterateIdentities(StorageIterator<KeyValue<K, I>> iterator, BerkeleyTransactor transactor, String name, StorageCondition<I> condition) {
+		SecondaryIndex secondaryIndex = secondaryIndexes.get(name);
+		for (BerkeleyRange range : getRanges(condition)) {
+			scanIdentities(iterator, transactor, secondaryIndex, range);
+		}
+	}
+
+	/**
+	 * 按照二级键边界分区并行遍历(主键,二级键)对
+	 * 
+	 * <pre>
+	 * 迭代器会被多个线程并发调用,需要保证线程安全.
+	 * </pre>
+	 * 
+	 * @param iterator
+	 * @param transactor
+	 * @param name
+	 * @param condition
+	 * @param executor
+	 * @param boundaries
+	 */
+	public <I extends Comparable> void iterateIdentities(StorageIterator<KeyValue<K, I>> iterator, BerkeleyTransactor transactor, String name, StorageCondition<I> condition, ExecutorService executor, I... boundaries) {
+		SecondaryIndex secondaryIndex = secondaryIndexes.get(name);
+		List<BerkeleyRange> ranges = getRanges(condition);
+		Comparator<Object> comparator = getComparator(secondaryIndex);
+		// 分区边界同样按照编码以后的键排序
+		StoragePartitioner.iterate(executor, (I left, I right) -> {
+			for (BerkeleyRange range : ranges) {
+				range = range.intersect(left, right, comparator);
+				if (range != null) {
+					scanIdentities(iterator, transactor, secondaryIndex, range);
+				}
+			}
+		}, comparator, boundaries);
+	}
+
 	public <I> List<T> queryInstances(BerkeleyTransactor transactor, String name, StorageCondition<I> condition) {
 		SecondaryIndex secondaryIndex = secondaryIndexes.get(name);
 		StoredSortedMap storeMap = (StoredSortedMap) secondaryIndex.sortedMap();
@@ -325,9 +493,136 @@ public class BerkeleyManager<K extends Comparable, T extends IdentityObject<K>>
 		return count;
 	}
 
+	/**
+	 * 键集分页遍历所有实例(主键索引直接定位到after之后)
+	 * 
+	 * @param iterator
+	 * @param transactor
+	 * @param pagination
+	 */
+	private void seekInstances(StorageIterator<T> iterator, BerkeleyTransactor transactor, StoragePagination pagination) {
+		CursorConfig cursorModel = transactor == null ? null : transactor.getIsolation().getCursorModel();
+		Transaction transaction = transactor == null ? null : transactor.getTransaction();
+		K after = pagination.getAfter();
+		long size = pagination.getSize();
+		try (ForwardCursor<T> cursor = primaryIndex.entities(transaction, after, false, null, false, cursorModel)) {
+			T element;
+			while (size > 0 && (element = cursor.next()) != null) {
+				iterator.iterate(element);
+				size--;
+			}
+		}
+	}
+
+	/**
+	 * 键集分页遍历交集实例
+	 * 
+	 * <pre>
+	 * 次键的重复值按照主键排序,所以第一个条件的子索引可以直接定位到after之后,其余条件通过子索引判断.
+	 * </pre>
+	 * 
+	 * @param iterator
+	 * @param transactor
+	 * @param condition
+	 * @param pagination
+	 */
+	private void seekIntersection(StorageIterator<T> iterator, BerkeleyTransactor transactor, Map<String, Object> condition, StoragePagination pagination) {
+		CursorConfig cursorModel = transactor == null ? null : transactor.getIsolation().getCursorModel();
+		LockMode lockMode = transactor == null ? null : transactor.getIsolation().getLockMode();
+		Transaction transaction = transactor == null ? null : transactor.getTransaction();
+		K after = pagination.getAfter();
+		long size = pagination.getSize();
+		EntityIndex<K, T> index = null;
+		ArrayList<EntityIndex<K, T>> filters = new ArrayList<>(condition.size());
+		for (Entry<String, Object> keyValue : condition.entrySet()) {
+			SecondaryIndex<Object, K, T> secondaryIndex = secondaryIndexes.get(keyValue.getKey());
+			if (index == null) {
+				index = secondaryIndex.subIndex(keyValue.getValue());
+			} else {
+				filters.add(secondaryIndex.subIndex(keyValue.getValue()));
+			}
+		}
+		if (index == null) {
+			return;
+		}
+		try (ForwardCursor<T> cursor = index.entities(transaction, after, false, null, false, cursorModel)) {
+			T element;
+			elements: while (size > 0 && (element = cursor.next()) != null) {
+				for (EntityIndex<K, T> filter : filters) {
+					if (!filter.contains(transaction, element.getId(), lockMode)) {
+						continue elements;
+					}
+				}
+				iterator.iterate(element);
+				size--;
+			}
+		}
+	}
+
+	/**
+	 * 键集分页遍历并集实例
+	 * 
+	 * <pre>
+	 * 每个条件的子索引都按照主键排序,多路归并并且去除重复的实例.
+	 * </pre>
+	 * 
+	 * @param iterator
+	 * @param transactor
+	 * @param condition
+	 * @param pagination
+	 */
+	private void seekUnion(StorageIterator<T> iterator, BerkeleyTransactor transactor, Map<String, Object> condition, StoragePagination pagination) {
+		CursorConfig cursorModel = transactor == null ? null : transactor.getIsolation().getCursorModel();
+		Transaction transaction = transactor == null ? null : transactor.getTransaction();
+		K after = pagination.getAfter();
+		long size = pagination.getSize();
+		int length = condition.size();
+		ForwardCursor<T>[] cursors = new ForwardCursor[length];
+		IdentityObject<K>[] elements = new IdentityObject[length];
+		try {
+			int index = 0;
+			for (Entry<String, Object> keyValue : condition.entrySet()) {
+				SecondaryIndex<Object, K, T> secondaryIndex = secondaryIndexes.get(keyValue.getKey());
+				cursors[index] = secondaryIndex.subIndex(keyValue.getValue()).entities(transaction, after, false, null, false, cursorModel);
+				elements[index] = cursors[index].next();
+				index++;
+			}
+			while (size > 0) {
+				T minimum = null;
+				for (index = 0; index < length; index++) {
+					T element = (T) elements[index];
+					if (element != null && (minimum == null || element.getId().compareTo(minimum.getId()) < 0)) {
+						minimum = element;
+					}
+				}
+				if (minimum == null) {
+					break;
+				}
+				K id = minimum.getId();
+				for (index = 0; index < length; index++) {
+					if (elements[index] != null && elements[index].getId().compareTo(id) == 0) {
+						elements[index] = cursors[index].next();
+					}
+				}
+				iterator.iterate(minimum);
+				size--;
+			}
+		} finally {
+			for (ForwardCursor<T> cursor : cursors) {
+				if (cursor != null) {
+					cursor.close();
+				}
+			}
+		}
+	}
+
 	public List<T> queryInstances(BerkeleyTransactor transactor, StoragePagination pagination) {
 		Transaction transaction = transactor == null ? null : transactor.getTransaction();
 		ArrayList<T> instances = new ArrayList<>();
+		if (pagination.isKeyset()) {
+			seekInstances(instances::add, transactor, pagination);
+			return instances;
+		}
 		long ignore = pagination.getFirst();
 		long size = pagination.getSize();
 		try (EntityCursor<T> cursor = primaryIndex.entities(transaction, transactor.getIsolation().getCursorModel())) {
@@ -347,6 +642,10 @@ public class BerkeleyManager<K extends Comparable, T extends IdentityObject<K>>
 			join.addCondition(secondaryIndex, keyValue.getValue());
 		}
 		ArrayList<T> instances = new ArrayList<>();
+		if (pagination.isKeyset()) {
+			seekIntersection(instances::add, transactor, condition, pagination);
+			return instances;
+		}
 		long ignore = pagination.getFirst();
 		long size = pagination.getSize();
 		try (ForwardCursor<T> cursor = join.entities(transaction, transactor.getIsolation().getCursorModel())) {
@@ -362,6 +661,10 @@ public class BerkeleyManager<K extends Comparable, T extends IdentityObject<K>>
 		long ignore = pagination.getFirst();
 		long size = pagination.getSize();
 		ArrayList<T> instances = new ArrayList<>();
+		if (pagination.isKeyset()) {
+			seekUnion(instances::add, transactor, condition, pagination);
+			return instances;
+		}
 		// TODO 应该考虑实例重复计算的情况.
 		for (Entry<String, Object> keyValue : condition.entrySet()) {
 			SecondaryIndex<Object, K, T> secondaryIndex = secondaryIndexes.get(keyValue.getKey());
@@ -413,6 +716,10 @@ public class BerkeleyManager<K extends Comparable, T extends IdentityObject<K>>
 
 	public void iterateInstances(StorageIterator<T> iterator, BerkeleyTransactor transactor, StoragePagination pagination) {
 		Transaction transaction = transactor == null ? null : transactor.getTransaction();
+		if (pagination.isKeyset()) {
+			seekInstances(iterator, transactor, pagination);
+			return;
+		}
 		long first = pagination.getFirst();
 		long last = pagination.getLast();
 		long count = 0;
@@ -432,6 +739,10 @@ public class BerkeleyManager<K extends Comparable, T extends IdentityObject<K>>
 
 	public void iterateIntersection(StorageIterator<T> iterator, BerkeleyTransactor transactor, Map<String, Object> condition, StoragePagination pagination) {
 		Transaction transaction = transactor == null ? null : transactor.getTransaction();
+		if (pagination.isKeyset()) {
+			seekIntersection(iterator, transactor, condition, pagination);
+			return;
+		}
 		EntityJoin<K, T> join = new EntityJoin<K, T>(primaryIndex);
 		for (Entry<String, Object> keyValue : condition.entrySet()) {
 			SecondaryIndex<Object, K, T> secondaryIndex = secondaryIndexes.get(keyValue.getKey());
@@ -456,6 +767,10 @@ public class BerkeleyManager<K extends Comparable, T extends IdentityObject<K>>
 
 	public void iterateUnion(StorageIterator<T> iterator, BerkeleyTransactor transactor, Map<String, Object> condition, StoragePagination pagination) {
 		Transaction transaction = transactor == null ? null : transactor.getTransaction();
+		if (pagination.isKeyset()) {
+			seekUnion(iterator, transactor, condition, pagination);
+			return;
+		}
 		long first = pagination.getFirst();
 		long last = pagination.getLast();
 		long count = 0;
@@ -480,4 +795,4 @@ public class BerkeleyManager<K extends Comparable, T extends IdentityObject<K>>
 		}
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,180 @@
+package com.jstarcraft.core.storage.berkeley;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Berkeley版本缓存
+ * 
+ * <pre>
+ * 版本保存在并发哈希表中,检查版本不需要加锁;
+ * 修改版本只锁定涉及的分段(按照分段顺序加锁避免死锁),不同实例的修改可以并行;
+ * 过期通过定时清扫批量完成,不需要为每个版本维护延迟元素.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+class BerkeleyVersionCache {
+
+    /**
+     * 版本元素
+     * 
+     * @author Birdy
+     *
+     */
+    private static class VersionElement {
+
+        private final BerkeleyVersion version;
+
+        /** 过期时间(单位:毫秒) */
+        private final long expire;
+
+        private VersionElement(BerkeleyVersion version, long expire) {
+            this.version = version;
+            this.expire = expire;
+        }
+
+    }
+
+    private final ConcurrentHashMap<BerkeleyIdentification, VersionElement> elements;
+
+    /** 分段锁 */
+    private final ReentrantLock[] stripes;
+
+    private final int mask;
+
+    /** 冲突数量 */
+    private final LongAdder conflicts = new LongAdder();
+
+    /** 过期数量 */
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * 
+     * @param concurrency
+     *            分段数量(向上取整为2的幂)
+     */
+    BerkeleyVersionCache(int concurrency) {
+        int size = 1;
+        while (size < concurrency) {
+            size <<= 1;
+        }
+        this.elements = new ConcurrentHashMap<>();
+        this.stripes = new ReentrantLock[size];
+        for (int index = 0; index < size; index++) {
+            this.stripes[index] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    private int getStripe(BerkeleyIdentification identification) {
+        int hash = identification.hashCode();
+        hash ^= (hash >>> 16);
+        return hash & mask;
+    }
+
+    /**
+     * 检查版本是否一致
+     * 
+     * @param versions
+     * @return
+     */
+    boolean check(BerkeleyVersion... versions) {
+        for (BerkeleyVersion version : versions) {
+            VersionElement element = elements.get(version.getIdentification());
+            if (element != null && !element.version.equals(version)) {
+                conflicts.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 锁定版本涉及的分段
+     * 
+     * @param versions
+     * @return 已经锁定的分段(需要传递给unlock)
+     */
+    int[] lock(BerkeleyVersion... versions) {
+        int[] indexes = new int[versions.length];
+        for (int index = 0; index < versions.length; index++) {
+            indexes[index] = getStripe(versions[index].getIdentification());
+        }
+        // 按照分段顺序加锁
+        indexes = Arrays.stream(indexes).sorted().distinct().toArray();
+        for (int index : indexes) {
+            stripes[index].lock();
+        }
+        return indexes;
+    }
+
+    void unlock(int[] indexes) {
+        for (int index = indexes.length - 1; index >= 0; index--) {
+            stripes[indexes[index]].unlock();
+        }
+    }
+
+    /**
+     * 设置版本(调用者必须已经锁定版本涉及的分段)
+     * 
+     * @param version
+     * @param expire
+     */
+    void put(BerkeleyVersion version, long expire) {
+        elements.put(version.getIdentification(), new VersionElement(version, expire));
+    }
+
+    /**
+     * 批量清扫过期的版本
+     * 
+     * @param now
+     * @return
+     */
+    int expire(long now) {
+        int count = 0;
+        for (VersionElement element : elements.values()) {
+            // 只移除仍然是当前值的元素,不影响并发设置的新版本
+            if (element.expire <= now && elements.remove(element.version.getIdentification(), element)) {
+                count++;
+            }
+        }
+        expirations.add(count);
+        return count;
+    }
+
+    void clear() {
+        elements.clear();
+    }
+
+    /**
+     * 获取缓存大小
+     * 
+     * @return
+     */
+    int getSize() {
+        return elements.size();
+    }
+
+    /**
+     * 获取冲突数量
+     * 
+     * @return
+     */
+    long getConflicts() {
+        return conflicts.sum();
+    }
+
+    /**
+     * 获取过期数量
+     * 
+     * @return
+     */
+    long getExpirations() {
+        return expirations.sum();
+    }
+
+}
@@ -8,6 +8,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.nio.file.Files;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
@@ -16,6 +17,15 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
@@ -29,6 +39,19 @@ import com.sleepycat.je.util.DbBackup;
 import com.sleepycat.je.util.LogVerificationInputStream;
 
 // 备份数据目录要做层多层，例如:[年-月]/[日]/[时间]
+/**
+ * 文件备忘录
+ * 
+ * <pre>
+ * 增量备份:只处理上次标记以后的日志文件,标记保存在标记文件中.
+ * 未压缩时优先使用硬链接(Berkeley已经完成的日志文件不会再修改),不支持硬链接时复制.
+ * 所有日志文件都会校验:压缩与复制时在读取的同时校验,硬链接成功以后单独校验,多个文件可以在线程池中并行处理.
+ * 复制与压缩受到限流器约束,备份可以在线程池中异步执行.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
 public class FileMemorandum implements Memorandum {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(FileMemorandum.class);
@@ -38,8 +61,61 @@ public class FileMemorandum implements Memorandum {
 
     public static final String MEMORANDUM_FILE = "memorandum.txt";
 
+    public static final String COMPRESS_SUFFIX = ".gz";
+
+    /**
+     * 限流器(按照字节数计算许可时间)
+     * 
+     * @author Birdy
+     *
+     */
+    private static class Throttle {
+
+        /** 每秒字节数(小于等于0表示不限制) */
+        private final long rate;
+
+        /** 下一次许可的时间(纳秒) */
+        private long next;
+
+        private Throttle(long rate) {
+            this.rate = rate;
+            this.next = System.nanoTime();
+        }
+
+        private void acquire(long bytes) throws InterruptedException {
+            if (rate <= 0L) {
+                return;
+            }
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (next < now) {
+                    next = now;
+                }
+                wait = next - now;
+                next += TimeUnit.SECONDS.toNanos(bytes) / rate;
+            }
+            if (wait > 0L) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+
+    }
+
     private final int cacheSize;
 
+    /** 备份线程池(null表示在调用线程执行) */
+    private final ExecutorService executor;
+
+    /** 并行度 */
+    private final int parallel;
+
+    /** 限流器 */
+    private final Throttle throttle;
+
+    /** 是否压缩 */
+    private final boolean compress;
+
     /** 环境目录 */
     private final File environmentDirectory;
     /** 备忘目录 */
@@ -49,8 +125,51 @@ public class FileMemorandum implements Memorandum {
     /** 标记数字 */
     private long markNumber;
 
+    /** 正在执行的备份 */
+    private final AtomicReference<CompletableFuture<Void>> backup = new AtomicReference<>();
+
+    /** 最近一次备份的耗时(毫秒) */
+    private volatile long lastDuration;
+
+    /** 最近一次备份的字节数 */
+    private volatile long lastBytes;
+
+    /** 最近一次备份的文件数 */
+    private volatile int lastFiles;
+
+    /** 备份总次数 */
+    private final AtomicLong totalTimes = new AtomicLong();
+
+    /** 备份总字节数 */
+    private final AtomicLong totalBytes = new AtomicLong();
+
     public FileMemorandum(int cacheSize, File environmentDirectory, File memorandumDirectory) {
+        this(cacheSize, environmentDirectory, memorandumDirectory, null, 1, 0L, false);
+    }
+
+    /**
+     * 
+     * @param cacheSize
+     * @param environmentDirectory
+     * @param memorandumDirectory
+     * @param executor
+     *            备份线程池(null表示在调用线程执行)
+     * @param parallel
+     *            并行处理文件的数量
+     * @param throttle
+     *            每秒复制的字节数(小于等于0表示不限制)
+     * @param compress
+     *            是否压缩
+     */
+    public FileMemorandum(int cacheSize, File environmentDirectory, File memorandumDirectory, ExecutorService executor, int parallel, long throttle, boolean compress) {
+        if (parallel < 1 || (executor == null && parallel != 1)) {
+            throw new IllegalArgumentException();
+        }
         this.cacheSize = cacheSize;
+        this.executor = executor;
+        this.parallel = parallel;
+        this.throttle = new Throttle(throttle);
+        this.compress = compress;
         this.environmentDirectory = environmentDirectory;
         this.memorandumDirectory = memorandumDirectory;
         this.markFile = new File(memorandumDirectory, MARK_FILE);
@@ -60,7 +179,9 @@ public class FileMemorandum implements Memorandum {
                 markNumber = -1L;
             } else {
                 try (FileInputStream input = new FileInputStream(markFile); InputStreamReader reader = new InputStreamReader(input, StringUtility.CHARSET); BufferedReader buffer = new BufferedReader(reader)) {
-                    markNumber = Long.valueOf(buffer.readLine());
+                    String line = buffer.readLine();
+                    // 标记文件为空表示尚未备份
+                    markNumber = line == null ? -1L : Long.valueOf(line);
                 }
             }
         } catch (Exception exception) {
@@ -69,21 +190,136 @@ public class FileMemorandum implements Memorandum {
 
     }
 
-    private void copyFile(Environment environment, File from, File to) throws IOException {
+    /**
+     * 校验日志文件(与压缩时相同,通过LogVerificationInputStream读取整个文件)
+     * 
+     * @param environment
+     * @param from
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void verifyFile(Environment environment, File from) throws IOException, InterruptedException {
         final byte[] cache = new byte[cacheSize];
+        try (FileInputStream input = new FileInputStream(from); LogVerificationInputStream log = new LogVerificationInputStream(environment, input, from.getName())) {
+            while (true) {
+                final int length = log.read(cache);
+                if (length < 0) {
+                    break;
+                }
+                throttle.acquire(length);
+            }
+        }
+    }
+
+    private long linkFile(Environment environment, File from, File to) throws IOException, InterruptedException {
+        try {
+            // 已经完成的日志文件不会再修改,硬链接不需要复制数据
+            Files.createLink(to.toPath(), from.toPath());
+        } catch (UnsupportedOperationException | IOException exception) {
+            // 不支持硬链接时复制文件,复制的同时校验,源文件只读取一次
+            Files.deleteIfExists(to.toPath());
+            return copyFile(environment, from, to);
+        }
+        // 硬链接不经过校验流,所以单独校验源文件
+        try {
+            verifyFile(environment, from);
+        } catch (IOException | RuntimeException exception) {
+            Files.deleteIfExists(to.toPath());
+            throw exception;
+        }
+        return 0L;
+    }
+
+    private long copyFile(Environment environment, File from, File to) throws IOException, InterruptedException {
+        final byte[] cache = new byte[cacheSize];
+        long size = 0L;
         try (FileInputStream input = new FileInputStream(from); LogVerificationInputStream log = new LogVerificationInputStream(environment, input, from.getName()); FileOutputStream output = new FileOutputStream(to)) {
             while (true) {
                 final int length = log.read(cache);
                 if (length < 0) {
                     break;
                 }
+                throttle.acquire(length);
                 output.write(cache, 0, length);
+                size += length;
             }
         }
+        return size;
     }
 
-    @Override
-    public void checkIn(Environment environment, Instant now) {
+    private long compressFile(Environment environment, File from, File to) throws IOException, InterruptedException {
+        final byte[] cache = new byte[cacheSize];
+        long size = 0L;
+        try (FileInputStream input = new FileInputStream(from); LogVerificationInputStream log = new LogVerificationInputStream(environment, input, from.getName()); FileOutputStream output = new FileOutputStream(to); GZIPOutputStream gzip = new GZIPOutputStream(output, cacheSize)) {
+            while (true) {
+                final int length = log.read(cache);
+                if (length < 0) {
+                    break;
+                }
+                throttle.acquire(length);
+                gzip.write(cache, 0, length);
+                size += length;
+            }
+        }
+        return size;
+    }
+
+    private long backupFile(Environment environment, File from, File directory) throws IOException, InterruptedException {
+        if (compress) {
+            return compressFile(environment, from, new File(directory, from.getName() + COMPRESS_SUFFIX));
+        } else {
+            return linkFile(environment, from, new File(directory, from.getName()));
+        }
+    }
+
+    /**
+     * 备份文件集合(当前线程与线程池共同处理文件队列,线程池繁忙时不会死锁)
+     * 
+     * @param environment
+     * @param files
+     * @param directory
+     * @return
+     * @throws Exception
+     */
+    private long backupFiles(Environment environment, Collection<File> files, File directory) throws Exception {
+        ConcurrentLinkedQueue<File> queue = new ConcurrentLinkedQueue<>(files);
+        CountDownLatch latch = new CountDownLatch(files.size());
+        AtomicLong bytes = new AtomicLong();
+        AtomicReference<Exception> exception = new AtomicReference<>();
+        Runnable task = () -> {
+            File file;
+            while ((file = queue.poll()) != null) {
+                try {
+                    if (exception.get() == null) {
+                        bytes.addAndGet(backupFile(environment, file, directory));
+                    }
+                } catch (Exception throwable) {
+                    exception.compareAndSet(null, throwable);
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+        for (int index = 1; index < parallel; index++) {
+            executor.execute(task);
+        }
+        task.run();
+        latch.await();
+        if (exception.get() != null) {
+            throw exception.get();
+        }
+        return bytes.get();
+    }
+
+    private void writeMark(long mark) throws IOException {
+        try (FileOutputStream output = new FileOutputStream(markFile); OutputStreamWriter writer = new OutputStreamWriter(output, StringUtility.CHARSET); BufferedWriter buffer = new BufferedWriter(writer);) {
+            buffer.write(String.valueOf(mark));
+            buffer.newLine();
+        }
+    }
+
+    private synchronized void backup(Environment environment, Instant now) {
+        long begin = System.currentTimeMillis();
         // 了解CheckpointConfig对checkpoint()的影响
         // 此处执行checkpoint()是为了减少恢复时间
         CheckpointConfig configuration = new CheckpointConfig();
@@ -94,17 +330,16 @@ public class FileMemorandum implements Memorandum {
             berkeley.startBackup();
             final String[] memorandumNames = berkeley.getLogFilesInBackupSet();
             Collection<File> memorandumFiles = new ArrayList<File>(memorandumNames.length);
+            long bytes = 0L;
             for (String name : memorandumNames) {
                 File file = new File(environmentDirectory, name);
                 memorandumFiles.add(file);
+                bytes += file.length();
             }
             if (!directory.mkdirs()) {
                 throw new BerkeleyMemorandumException();
             }
-            for (File from : memorandumFiles) {
-                final File to = new File(directory, from.getName());
-                copyFile(environment, from, to);
-            }
+            backupFiles(environment, memorandumFiles, directory);
 
             File memorandumFile = new File(directory, MEMORANDUM_FILE);
             memorandumFile.createNewFile();
@@ -115,7 +350,14 @@ public class FileMemorandum implements Memorandum {
                     buffer.newLine();
                 }
             }
-            markNumber = berkeley.getLastFileInBackupSet();
+            long mark = berkeley.getLastFileInBackupSet();
+            writeMark(mark);
+            markNumber = mark;
+            lastDuration = System.currentTimeMillis() - begin;
+            lastBytes = bytes;
+            lastFiles = memorandumNames.length;
+            totalTimes.incrementAndGet();
+            totalBytes.addAndGet(bytes);
         } catch (Exception exception) {
             String message = StringUtility.format("备份异常");
             LOGGER.error(message, exception);
@@ -127,7 +369,98 @@ public class FileMemorandum implements Memorandum {
         } finally {
             berkeley.endBackup();
         }
+    }
+
+    @Override
+    public void checkIn(Environment environment, Instant now) {
+        backup(environment, now);
+    }
+
+    /**
+     * 在线程池中异步备份(同时只能执行一个备份)
+     * 
+     * @param environment
+     * @param now
+     * @return
+     */
+    public CompletableFuture<Void> checkInAsynchronous(Environment environment, Instant now) {
+        if (executor == null) {
+            throw new BerkeleyMemorandumException("异步备份需要线程池");
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!backup.compareAndSet(null, future)) {
+            throw new BerkeleyMemorandumException("备份正在执行");
+        }
+        executor.execute(() -> {
+            try {
+                backup(environment, now);
+                backup.set(null);
+                future.complete(null);
+            } catch (Throwable throwable) {
+                backup.set(null);
+                future.completeExceptionally(throwable);
+            }
+        });
+        return future;
+    }
 
+    /**
+     * 获取最近一次备份的耗时(毫秒)
+     * 
+     * @return
+     */
+    public long getLastDuration() {
+        return lastDuration;
+    }
+
+    /**
+     * 获取最近一次备份的字节数
+     * 
+     * @return
+     */
+    public long getLastBytes() {
+        return lastBytes;
+    }
+
+    /**
+     * 获取最近一次备份的文件数
+     * 
+     * @return
+     */
+    public int getLastFiles() {
+        return lastFiles;
+    }
+
+    /**
+     * 获取备份总次数
+     * 
+     * @return
+     */
+    public long getTotalTimes() {
+        return totalTimes.get();
+    }
+
+    /**
+     * 获取备份总字节数
+     * 
+     * @return
+     */
+    public long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    /**
+     * 获取备份文件对应的日志文件名称
+     * 
+     * @param file
+     * @return
+     */
+    private String getName(File file) {
+        String name = file.getName();
+        if (name.endsWith(COMPRESS_SUFFIX)) {
+            name = name.substring(0, name.length() - COMPRESS_SUFFIX.length());
+        }
+        return name;
     }
 
     @Override
@@ -179,9 +512,16 @@ public class FileMemorandum implements Memorandum {
             for (Entry<Instant, File> keyValue : restoreDirectoryMap.entrySet()) {
                 final File restoreDirectory = keyValue.getValue();
                 for (File fromFile : restoreDirectory.listFiles()) {
-                    if (names.contains(fromFile.getName()) && fromFile.isFile()) {
-                        final File toFile = new File(environmentDirectory, fromFile.getName());
-                        FileUtils.copyFile(fromFile, toFile);
+                    String name = getName(fromFile);
+                    if (names.contains(name) && fromFile.isFile()) {
+                        final File toFile = new File(environmentDirectory, name);
+                        if (name.equals(fromFile.getName())) {
+                            FileUtils.copyFile(fromFile, toFile);
+                        } else {
+                            try (FileInputStream input = new FileInputStream(fromFile); GZIPInputStream gzip = new GZIPInputStream(input, cacheSize)) {
+                                FileUtils.copyInputStreamToFile(gzip, toFile);
+                            }
+                        }
                     }
                 }
             }
@@ -235,7 +575,7 @@ public class FileMemorandum implements Memorandum {
             final File cleanDirectory = keyValue.getValue();
             for (File cleanFile : cleanDirectory.listFiles()) {
                 if (cleanFile.isFile()) {
-                    if (!listFile.equals(cleanFile) && !saveList.contains(cleanFile.getName())) {
+                    if (!listFile.equals(cleanFile) && !saveList.contains(getName(cleanFile))) {
                         cleanFile.delete();
                     }
                 }
@@ -0,0 +1,164 @@
+package com.jstarcraft.core.storage.berkeley.migration;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import com.jstarcraft.core.storage.berkeley.exception.BerkeleyMigrationException;
+import com.sleepycat.je.Environment;
+
+/**
+ * 迁移检查点
+ * 
+ * <pre>
+ * 按照实体记录已经写出的最后一个主键(原始字节),迁移中断以后可以从检查点继续.
+ * 写任务可能乱序完成,所以只有连续完成的批次才会推进检查点.
+ * 保存检查点之前会先刷新新环境的日志,保证检查点不会超前于数据.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class MigrationCheckpoint {
+
+    public static final String CHECKPOINT_FILE = "migration.checkpoint";
+
+    /** 实体已经完成的标记 */
+    private static final String FINISH = "finish";
+
+    /**
+     * 实体进度
+     * 
+     * @author Birdy
+     *
+     */
+    private static class MigrationProgress {
+
+        /** 下一个需要完成的批次 */
+        private long next;
+
+        /** 已经完成但是未连续的批次 */
+        private final TreeMap<Long, byte[]> finishes = new TreeMap<>();
+
+    }
+
+    /** 检查点文件(null表示不持久化) */
+    private final File file;
+
+    /** 实体名称与检查点的映射 */
+    private final Properties properties = new Properties();
+
+    private final Map<String, MigrationProgress> progresses = new HashMap<>();
+
+    /** 是否有未保存的变更 */
+    private boolean change;
+
+    public MigrationCheckpoint(File file) {
+        this.file = file;
+        if (file != null && file.exists()) {
+            try (InputStream stream = new FileInputStream(file)) {
+                properties.load(stream);
+            } catch (IOException exception) {
+                throw new BerkeleyMigrationException("加载检查点失败", exception);
+            }
+        }
+    }
+
+    /**
+     * 指定实体是否已经完成迁移
+     * 
+     * @param entityName
+     * @return
+     */
+    public synchronized boolean isFinished(String entityName) {
+        return FINISH.equals(properties.getProperty(entityName));
+    }
+
+    /**
+     * 获取指定实体最后写出的主键
+     * 
+     * @param entityName
+     * @return 主键的原始字节,null表示从头开始
+     */
+    public synchronized byte[] getKey(String entityName) {
+        String value = properties.getProperty(entityName);
+        if (value == null || FINISH.equals(value)) {
+            return null;
+        }
+        return Base64.getDecoder().decode(value);
+    }
+
+    /**
+     * 完成批次(批次序号从0开始连续分配)
+     * 
+     * @param entityName
+     * @param sequence
+     * @param key
+     *            批次最后的主键
+     */
+    public synchronized void finishBatch(String entityName, long sequence, byte[] key) {
+        MigrationProgress progress = progresses.get(entityName);
+        if (progress == null) {
+            progress = new MigrationProgress();
+            progresses.put(entityName, progress);
+        }
+        progress.finishes.put(sequence, key);
+        byte[] last = null;
+        while (!progress.finishes.isEmpty() && progress.finishes.firstKey() == progress.next) {
+            last = progress.finishes.pollFirstEntry().getValue();
+            progress.next++;
+        }
+        if (last != null) {
+            properties.setProperty(entityName, Base64.getEncoder().encodeToString(last));
+            change = true;
+        }
+    }
+
+    /**
+     * 完成实体
+     * 
+     * @param entityName
+     */
+    public synchronized void finishEntity(String entityName) {
+        progresses.remove(entityName);
+        properties.setProperty(entityName, FINISH);
+        change = true;
+    }
+
+    /**
+     * 保存检查点
+     * 
+     * @param environment
+     *            新环境
+     */
+    public synchronized void save(Environment environment) {
+        if (file == null || !change) {
+            return;
+        }
+        // 先保证数据持久化
+        environment.flushLog(true);
+        File temporary = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (OutputStream stream = new FileOutputStream(temporary)) {
+            properties.store(stream, null);
+        } catch (IOException exception) {
+            throw new BerkeleyMigrationException("保存检查点失败", exception);
+        }
+        try {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            throw new BerkeleyMigrationException("保存检查点失败", exception);
+        }
+        change = false;
+    }
+
+}
@@ -1,18 +1,22 @@
 package com.jstarcraft.core.storage.berkeley.migration;
 
 import java.util.Collection;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.jstarcraft.core.utility.KeyValue;
+import com.jstarcraft.core.utility.NameThreadFactory;
 import com.sleepycat.je.Environment;
 import com.sleepycat.persist.raw.RawObject;
 import com.sleepycat.persist.raw.RawStore;
@@ -20,6 +24,12 @@ import com.sleepycat.persist.raw.RawStore;
 /**
  * 迁移上下文对象
  * 
+ * <pre>
+ * 流水线:
+ * 读任务按照依赖关系调度,没有依赖关系的实体并行迁移;
+ * 写任务通过信号量限制在途批次的数量,读任务在写任务积压时阻塞,保证内存有界.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
@@ -39,15 +49,21 @@ public class MigrationContext {
     /** 设置批量数据大小(TODO 考虑配置项) */
     public static final int BATCH_SIZE = 1000;
 
-    /** 警戒数量(当出现拒绝任务异常以后,会停止任务提交,直到任务队列低于警戒数量)(TODO 考虑配置项) */
+    /** 警戒数量(TODO 考虑配置项) */
     public static final int ALERT_SIZE = MigrationContext.QUEUE_SIZE / 2;
 
     private final ThreadPoolExecutor readeExecutor;
 
     private final ThreadPoolExecutor writeExecutor;
 
+    /** 在途写任务的许可(每个许可对应一个批次) */
+    private final Semaphore writePermits = new Semaphore(QUEUE_SIZE);
+
+    /** 迁移检查点 */
+    private final MigrationCheckpoint checkpoint;
+
     /** 所有迁移任务的映射集合 */
-    private final ConcurrentMap<String, Future<MigrationReadTask>> migrationTaskMap = new ConcurrentHashMap<String, Future<MigrationReadTask>>();
+    private final ConcurrentMap<String, CompletableFuture<MigrationReadTask>> migrationTaskMap = new ConcurrentHashMap<String, CompletableFuture<MigrationReadTask>>();
 
     /** 所有迁移计数器的映射集合 */
     private final ConcurrentMap<String, MigrationCounter> counterMap = new ConcurrentHashMap<String, MigrationCounter>();
@@ -68,13 +84,21 @@ public class MigrationContext {
     private final Map<String, RawStore> oldEntityStoreMap, newEntityStoreMap;
 
     public MigrationContext(Map<String, String> classNameMap, Map<String, MigrationConverter> entityConverterMap, Map<String, Collection<String>> entityDependencyMap, Environment oldDatabaseEnvironment, Environment newDatabaseEnvironment, Map<String, RawStore> oldEntityStoreMap, Map<String, RawStore> newEntityStoreMap) {
+        this(classNameMap, entityConverterMap, entityDependencyMap, oldDatabaseEnvironment, newDatabaseEnvironment, oldEntityStoreMap, newEntityStoreMap, new MigrationCheckpoint(null));
+    }
+
+    public MigrationContext(Map<String, String> classNameMap, Map<String, MigrationConverter> entityConverterMap, Map<String, Collection<String>> entityDependencyMap, Environment oldDatabaseEnvironment, Environment newDatabaseEnvironment, Map<String, RawStore> oldEntityStoreMap, Map<String, RawStore> newEntityStoreMap, MigrationCheckpoint checkpoint) {
         this.classNameMap = classNameMap;
         for (String entityName : this.classNameMap.keySet()) {
             this.counterMap.put(entityName, new MigrationCounter());
         }
 
-        this.readeExecutor = new ThreadPoolExecutor(0, classNameMap.size(), 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(1));
-        this.writeExecutor = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(), 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(QUEUE_SIZE));
+        // 读任务只在依赖完成以后才会提交,所以不会占用线程等待
+        int readSize = Math.max(1, Math.min(classNameMap.size(), Runtime.getRuntime().availableProcessors()));
+        this.readeExecutor = new ThreadPoolExecutor(readSize, readSize, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NameThreadFactory("MigrationRead"));
+        // 写任务的数量由信号量限制,所以队列不会拒绝任务
+        this.writeExecutor = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(), 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(QUEUE_SIZE), new NameThreadFactory("MigrationWrite"));
+        this.checkpoint = checkpoint;
         this.entityConverterMap = entityConverterMap;
         this.entityDependencyMap = entityDependencyMap;
         this.oldDatabaseEnvironment = oldDatabaseEnvironment;
@@ -115,7 +139,25 @@ public class MigrationContext {
         return newEntityStoreMap;
     }
 
-    public Future<MigrationReadTask> getMigrationReadTask(String entityName) {
+    public MigrationCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public Map<String, MigrationCounter> getCounterMap() {
+        return counterMap;
+    }
+
+    /**
+     * 获取迁移读任务
+     * 
+     * <pre>
+     * 读任务在所有依赖的读任务完成以后才会提交到读执行器.
+     * </pre>
+     * 
+     * @param entityName
+     * @return
+     */
+    public CompletableFuture<MigrationReadTask> getMigrationReadTask(String entityName) {
         if (!this.classNameMap.containsKey(entityName)) {
             return null;
         }
@@ -124,8 +166,34 @@ public class MigrationContext {
         synchronized (migrationTaskMap) {
             if (!migrationTaskMap.containsKey(entityName)) {
                 final MigrationReadTask task = new MigrationReadTask(oldEntityName, newEntityName, this, this.counterMap.get(entityName), BATCH_SIZE);
-                final Future<MigrationReadTask> future = this.readeExecutor.submit(task);
+                final CompletableFuture<MigrationReadTask> future = new CompletableFuture<>();
+                // 先登记再解析依赖,防止循环依赖导致无限递归
                 migrationTaskMap.put(entityName, future);
+                final Collection<CompletableFuture<MigrationReadTask>> dependencies = new LinkedList<>();
+                for (String dependencyName : task.getDependencies()) {
+                    final CompletableFuture<MigrationReadTask> dependency = this.getMigrationReadTask(dependencyName);
+                    if (dependency != null) {
+                        dependencies.add(dependency);
+                    }
+                }
+                CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[dependencies.size()])).whenComplete((value, throwable) -> {
+                    if (throwable != null) {
+                        future.completeExceptionally(throwable);
+                        return;
+                    }
+                    try {
+                        this.readeExecutor.execute(() -> {
+                            try {
+                                future.complete(task.call());
+                            } catch (Throwable exception) {
+                                logger.error("迁移实体[" + newEntityName + "]异常", exception);
+                                future.completeExceptionally(exception);
+                            }
+                        });
+                    } catch (Throwable exception) {
+                        future.completeExceptionally(exception);
+                    }
+                });
             }
         }
         return migrationTaskMap.get(entityName);
@@ -135,24 +203,66 @@ public class MigrationContext {
         return entityDependencyMap;
     }
 
-    public Future<MigrationWriteTask> getMigrationWriteTask(String entityName, Collection<RawObject> dataCollection) {
+    public Future<MigrationWriteTask> getMigrationWriteTask(String entityName, Collection<RawObject> dataCollection) throws InterruptedException {
+        return getMigrationWriteTask(entityName, dataCollection, -1L, null);
+    }
+
+    /**
+     * 获取迁移写任务
+     * 
+     * <pre>
+     * 在途批次达到队列大小时阻塞,直到有写任务完成.
+     * </pre>
+     * 
+     * @param entityName
+     * @param dataCollection
+     * @param sequence
+     *            批次序号(负数表示不记录检查点)
+     * @param key
+     *            批次最后的主键
+     * @return
+     * @throws InterruptedException
+     */
+    public Future<MigrationWriteTask> getMigrationWriteTask(String entityName, Collection<RawObject> dataCollection, long sequence, byte[] key) throws InterruptedException {
         final String oldEntityName = this.classNameMap.get(entityName);
         final String newEntityName = entityName;
         final MigrationConverter converter = this.entityConverterMap.get(entityName);
-        while (true) {
-            try {
-                return this.writeExecutor.submit(new MigrationWriteTask(oldEntityName, newEntityName, this, this.counterMap.get(entityName), converter, dataCollection));
-            } catch (RejectedExecutionException exception) {
-                logger.debug("迁移实体[{}]拒绝任务异常", newEntityName);
-                // 任务队列超过警戒数量,停止提交任务,防止RejectedExecutionException
-                while (this.writeExecutor.getQueue().size() >= ALERT_SIZE) {
-                    // TODO 比较yield与sleep的区别
-                    Thread.yield();
-                    // Thread.sleep(TimeUnit.MILLISECONDS.convert(1, TimeUnit.SECONDS));
-                }
-                logger.debug("迁移实体[{}]任务恢复,队列[{}]", newEntityName, this.writeExecutor.getQueue().size());
-            }
+        this.writePermits.acquire();
+        try {
+            return this.writeExecutor.submit(new MigrationWriteTask(oldEntityName, newEntityName, this, this.counterMap.get(entityName), converter, dataCollection, sequence, key));
+        } catch (RuntimeException exception) {
+            this.writePermits.release();
+            throw exception;
         }
     }
 
+    /**
+     * 获取迁移拷贝任务(与写任务共享在途批次的许可)
+     * 
+     * @param entityName
+     * @param dataCollection
+     * @param sequence
+     *            批次序号(负数表示不记录检查点)
+     * @param key
+     *            批次最后的主键
+     * @return
+     * @throws InterruptedException
+     */
+    public Future<MigrationCopyTask> getMigrationCopyTask(String entityName, Collection<KeyValue<byte[], byte[]>> dataCollection, long sequence, byte[] key) throws InterruptedException {
+        this.writePermits.acquire();
+        try {
+            return this.writeExecutor.submit(new MigrationCopyTask(entityName, this, this.counterMap.get(entityName), dataCollection, sequence, key));
+        } catch (RuntimeException exception) {
+            this.writePermits.release();
+            throw exception;
+        }
+    }
+
+    /**
+     * 释放写任务许可
+     */
+    void releaseWritePermit() {
+        this.writePermits.release();
+    }
+
 }
@@ -0,0 +1,113 @@
+package com.jstarcraft.core.storage.berkeley.migration;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jstarcraft.core.storage.berkeley.exception.BerkeleyMigrationException;
+import com.jstarcraft.core.utility.KeyValue;
+import com.jstarcraft.core.utility.StringUtility;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.LockConflictException;
+import com.sleepycat.je.Transaction;
+import com.sleepycat.persist.raw.RawStore;
+
+/**
+ * 迁移拷贝任务
+ * 
+ * <pre>
+ * 实体格式一致时,直接将原始键值对写入新仓储的主数据库,不经过转换器.
+ * 次级数据库与主数据库关联,所以次级键会同步维护.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public class MigrationCopyTask implements Callable<MigrationCopyTask> {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigrationCopyTask.class);
+
+    private final MigrationCounter counter;
+
+    private final MigrationContext context;
+
+    private final String newEntityName;
+
+    private final Collection<KeyValue<byte[], byte[]>> dataCollection;
+
+    /** 批次序号(负数表示不记录检查点) */
+    private final long sequence;
+
+    /** 批次最后的主键 */
+    private final byte[] key;
+
+    public MigrationCopyTask(String newEntityName, MigrationContext context, MigrationCounter counter, Collection<KeyValue<byte[], byte[]>> dataCollection, long sequence, byte[] key) {
+        this.newEntityName = newEntityName;
+        this.context = context;
+        this.counter = counter;
+        this.dataCollection = dataCollection;
+        this.sequence = sequence;
+        this.key = key;
+    }
+
+    @Override
+    public MigrationCopyTask call() throws Exception {
+        try {
+            final RawStore newRawStore = context.getNewEntityStoreMap().get(newEntityName);
+            final Database database = newRawStore.getPrimaryIndex(newEntityName).getDatabase();
+            final Environment environment = newRawStore.getEnvironment();
+            final boolean transactional = environment.getConfig().getTransactional();
+            int tryTimes = 10;
+            while (true) {
+                // 事务环境下整个批次使用一个事务
+                final Transaction transaction = transactional ? environment.beginTransaction(null, null) : null;
+                try {
+                    final DatabaseEntry keyEntry = new DatabaseEntry();
+                    final DatabaseEntry dataEntry = new DatabaseEntry();
+                    for (KeyValue<byte[], byte[]> keyValue : dataCollection) {
+                        keyEntry.setData(keyValue.getKey());
+                        dataEntry.setData(keyValue.getValue());
+                        database.put(transaction, keyEntry, dataEntry);
+                    }
+                    if (transaction != null) {
+                        transaction.commit();
+                    }
+                    counter.getWriteRecordNumber().addAndGet(dataCollection.size());
+                    break;
+                } catch (LockConflictException exception) {
+                    if (transaction != null) {
+                        transaction.abort();
+                    }
+                    // 拷贝是幂等的,所以可以整个批次重试
+                    if (--tryTimes < 0) {
+                        String message = StringUtility.format("拷贝实体[{}]批次[{}]尝试次数到达限制", newEntityName, sequence);
+                        throw new BerkeleyMigrationException(message, exception);
+                    }
+                    Thread.sleep(100);
+                } catch (Throwable exception) {
+                    if (transaction != null) {
+                        transaction.abort();
+                    }
+                    throw exception;
+                }
+            }
+            if (sequence >= 0) {
+                context.getCheckpoint().finishBatch(newEntityName, sequence, key);
+            }
+        } catch (Throwable exception) {
+            counter.getFailTaskNumber().incrementAndGet();
+            String message = StringUtility.format("拷贝实体[{}]批次[{}]异常", newEntityName, sequence);
+            logger.error(message, exception);
+            throw exception;
+        } finally {
+            this.context.releaseWritePermit();
+            this.counter.finishTask();
+        }
+        return this;
+    }
+
+}
@@ -19,6 +19,15 @@ public class MigrationCounter {
     /** 当前任务数量 */
     private final AtomicLong currentTaskNumber = new AtomicLong();
 
+    /** 失败记录数量 */
+    private final AtomicLong failRecordNumber = new AtomicLong();
+
+    /** 失败任务数量 */
+    private final AtomicLong failTaskNumber = new AtomicLong();
+
+    /** 开始时间(0表示未开始) */
+    private volatile long startTime;
+
     public AtomicLong getReadRecordNumber() {
         return readRecordNumber;
     }
@@ -31,4 +40,80 @@ public class MigrationCounter {
         return currentTaskNumber;
     }
 
+    public AtomicLong getFailRecordNumber() {
+        return failRecordNumber;
+    }
+
+    public AtomicLong getFailTaskNumber() {
+        return failTaskNumber;
+    }
+
+    /**
+     * 是否存在失败的记录或者任务
+     * 
+     * @return
+     */
+    public boolean isFailed() {
+        return failRecordNumber.get() != 0L || failTaskNumber.get() != 0L;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    void start() {
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 获取读入速率
+     * 
+     * @return 每秒记录数量
+     */
+    public double getReadRate() {
+        return getRate(readRecordNumber.get());
+    }
+
+    /**
+     * 获取写出速率
+     * 
+     * @return 每秒记录数量
+     */
+    public double getWriteRate() {
+        return getRate(writeRecordNumber.get());
+    }
+
+    private double getRate(long number) {
+        long start = startTime;
+        if (start == 0) {
+            return 0D;
+        }
+        long duration = Math.max(System.currentTimeMillis() - start, 1L);
+        return number * 1000D / duration;
+    }
+
+    /**
+     * 完成任务
+     */
+    void finishTask() {
+        if (currentTaskNumber.decrementAndGet() == 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 等待所有任务完成
+     * 
+     * @throws InterruptedException
+     */
+    void awaitTasks() throws InterruptedException {
+        synchronized (this) {
+            while (currentTaskNumber.get() != 0) {
+                wait(1000L);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,197 @@
+package com.jstarcraft.core.storage.berkeley.migration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+import com.sleepycat.persist.model.ClassMetadata;
+import com.sleepycat.persist.model.EntityModel;
+import com.sleepycat.persist.model.SecondaryKeyMetadata;
+import com.sleepycat.persist.raw.RawField;
+import com.sleepycat.persist.raw.RawType;
+
+/**
+ * 迁移格式
+ * 
+ * <pre>
+ * 比较新旧仓储目录(formats)中实体格式是否一致.
+ * 原始记录只保存格式标识,所以当实体可以到达的所有类型(字段,父类,数组元素与子类)
+ * 在新旧目录中的标识,版本与结构都一致时,原始键值对可以直接拷贝,不需要转换.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+class MigrationFormat {
+
+    private final MigrationContext context;
+
+    private final EntityModel oldModel;
+
+    private final EntityModel newModel;
+
+    /** 旧类型与子类的映射 */
+    private final Map<String, Collection<String>> subclassMap = new HashMap<>();
+
+    MigrationFormat(MigrationContext context, EntityModel oldModel, EntityModel newModel) {
+        this.context = context;
+        this.oldModel = oldModel;
+        this.newModel = newModel;
+        for (String className : oldModel.getKnownClasses()) {
+            RawType type = oldModel.getRawType(className);
+            if (type == null) {
+                continue;
+            }
+            for (RawType superType = type.getSuperType(); superType != null; superType = superType.getSuperType()) {
+                Collection<String> subclasses = subclassMap.get(superType.getClassName());
+                if (subclasses == null) {
+                    subclasses = new LinkedList<>();
+                    subclassMap.put(superType.getClassName(), subclasses);
+                }
+                subclasses.add(className);
+            }
+        }
+    }
+
+    /**
+     * 指定实体的格式是否一致
+     * 
+     * @param oldEntityName
+     * @return
+     */
+    boolean isSame(String oldEntityName) {
+        LinkedList<String> pendings = new LinkedList<>();
+        HashSet<String> visits = new HashSet<>();
+        pendings.add(oldEntityName);
+        while (!pendings.isEmpty()) {
+            String oldName = pendings.poll();
+            if (!visits.add(oldName)) {
+                continue;
+            }
+            String newName = BerkeleyConverter.fromOldToNewName(context, oldName);
+            List<RawType> oldVersions = oldModel.getAllRawTypeVersions(oldName);
+            List<RawType> newVersions = newModel.getAllRawTypeVersions(newName);
+            if (oldVersions == null || newVersions == null) {
+                if (oldVersions != newVersions) {
+                    return false;
+                }
+                continue;
+            }
+            // 旧目录存在历史版本时,新目录也必须存在一致的历史版本
+            if (oldVersions.size() != newVersions.size()) {
+                return false;
+            }
+            for (int index = 0; index < oldVersions.size(); index++) {
+                if (!isSame(oldVersions.get(index), newVersions.get(index), pendings)) {
+                    return false;
+                }
+            }
+            Collection<String> subclasses = subclassMap.get(oldName);
+            if (subclasses != null) {
+                pendings.addAll(subclasses);
+            }
+        }
+        return true;
+    }
+
+    private boolean isSameName(RawType oldType, RawType newType) {
+        if (oldType == null || newType == null) {
+            return oldType == newType;
+        }
+        return oldType.getId() == newType.getId() && BerkeleyConverter.fromOldToNewName(context, oldType.getClassName()).equals(newType.getClassName());
+    }
+
+    private boolean isSame(RawType oldType, RawType newType, Collection<String> pendings) {
+        if (!isSameName(oldType, newType)) {
+            return false;
+        }
+        if (oldType.getVersion() != newType.getVersion() || oldType.isSimple() != newType.isSimple() || oldType.isPrimitive() != newType.isPrimitive() || oldType.isEnum() != newType.isEnum() || oldType.isArray() != newType.isArray() || oldType.isDeleted() != newType.isDeleted()) {
+            return false;
+        }
+        if (!Objects.equals(oldType.getEnumConstants(), newType.getEnumConstants())) {
+            return false;
+        }
+        if (oldType.isArray()) {
+            if (oldType.getDimensions() != newType.getDimensions() || !isSameName(oldType.getComponentType(), newType.getComponentType())) {
+                return false;
+            }
+            pendings.add(oldType.getComponentType().getClassName());
+        }
+        if (!isSameName(oldType.getSuperType(), newType.getSuperType())) {
+            return false;
+        }
+        if (oldType.getSuperType() != null) {
+            pendings.add(oldType.getSuperType().getClassName());
+        }
+        if (!isSame(oldType.getClassMetadata(), newType.getClassMetadata())) {
+            return false;
+        }
+        // 字段顺序决定了记录的布局
+        Map<String, RawField> oldFields = oldType.getFields();
+        Map<String, RawField> newFields = newType.getFields();
+        if (oldFields == null || newFields == null) {
+            return oldFields == newFields;
+        }
+        if (oldFields.size() != newFields.size()) {
+            return false;
+        }
+        Iterator<Entry<String, RawField>> oldIterator = oldFields.entrySet().iterator();
+        Iterator<Entry<String, RawField>> newIterator = newFields.entrySet().iterator();
+        while (oldIterator.hasNext()) {
+            RawField oldField = oldIterator.next().getValue();
+            RawField newField = newIterator.next().getValue();
+            if (!oldField.getName().equals(newField.getName()) || !isSameName(oldField.getType(), newField.getType())) {
+                return false;
+            }
+            pendings.add(oldField.getType().getClassName());
+        }
+        return true;
+    }
+
+    private boolean isSame(ClassMetadata oldMetadata, ClassMetadata newMetadata) {
+        if (oldMetadata == null || newMetadata == null) {
+            return oldMetadata == newMetadata;
+        }
+        String oldPrimaryKey = oldMetadata.getPrimaryKey() == null ? null : oldMetadata.getPrimaryKey().getName();
+        String newPrimaryKey = newMetadata.getPrimaryKey() == null ? null : newMetadata.getPrimaryKey().getName();
+        if (!Objects.equals(oldPrimaryKey, newPrimaryKey)) {
+            return false;
+        }
+        Map<String, SecondaryKeyMetadata> oldSecondaryKeys = oldMetadata.getSecondaryKeys();
+        Map<String, SecondaryKeyMetadata> newSecondaryKeys = newMetadata.getSecondaryKeys();
+        if (oldSecondaryKeys == null || newSecondaryKeys == null) {
+            return oldSecondaryKeys == newSecondaryKeys;
+        }
+        if (!oldSecondaryKeys.keySet().equals(newSecondaryKeys.keySet())) {
+            return false;
+        }
+        for (Entry<String, SecondaryKeyMetadata> keyValue : oldSecondaryKeys.entrySet()) {
+            SecondaryKeyMetadata oldKey = keyValue.getValue();
+            SecondaryKeyMetadata newKey = newSecondaryKeys.get(keyValue.getKey());
+            if (!Objects.equals(oldKey.getKeyName(), newKey.getKeyName()) || oldKey.getRelationship() != newKey.getRelationship()) {
+                return false;
+            }
+            String oldRelated = oldKey.getRelatedEntity() == null ? null : BerkeleyConverter.fromOldToNewName(context, oldKey.getRelatedEntity());
+            if (!Objects.equals(oldRelated, newKey.getRelatedEntity())) {
+                return false;
+            }
+        }
+        List<String> oldCompositeKeys = new ArrayList<>();
+        List<String> newCompositeKeys = new ArrayList<>();
+        if (oldMetadata.getCompositeKeyFields() != null) {
+            oldMetadata.getCompositeKeyFields().forEach((field) -> oldCompositeKeys.add(field.getName()));
+        }
+        if (newMetadata.getCompositeKeyFields() != null) {
+            newMetadata.getCompositeKeyFields().forEach((field) -> newCompositeKeys.add(field.getName()));
+        }
+        return oldCompositeKeys.equals(newCompositeKeys);
+    }
+
+}
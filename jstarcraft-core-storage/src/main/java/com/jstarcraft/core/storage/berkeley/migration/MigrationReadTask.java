@@ -1,11 +1,10 @@
 package com.jstarcraft.core.storage.berkeley.migration;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.slf4j.Logger;
@@ -14,13 +13,17 @@ import org.springframework.core.annotation.AnnotationUtils;
 
 import com.jstarcraft.core.common.reflection.ReflectionUtility;
 import com.jstarcraft.core.storage.berkeley.exception.BerkeleyMigrationException;
+import com.jstarcraft.core.utility.KeyValue;
 import com.jstarcraft.core.utility.StringUtility;
+import com.sleepycat.bind.EntityBinding;
 import com.sleepycat.bind.tuple.StringBinding;
+import com.sleepycat.je.CacheMode;
+import com.sleepycat.je.Cursor;
 import com.sleepycat.je.Database;
 import com.sleepycat.je.DatabaseConfig;
 import com.sleepycat.je.DatabaseEntry;
 import com.sleepycat.je.LockMode;
-import com.sleepycat.persist.EntityCursor;
+import com.sleepycat.je.OperationStatus;
 import com.sleepycat.persist.PrimaryIndex;
 import com.sleepycat.persist.model.Entity;
 import com.sleepycat.persist.model.SecondaryKey;
@@ -30,6 +33,13 @@ import com.sleepycat.persist.raw.RawStore;
 /**
  * 迁移读任务
  * 
+ * <pre>
+ * 通过主数据库的游标按照主键顺序读取旧数据,每个批次记录最后的主键作为检查点;
+ * 恢复时从检查点之后的主键继续读取,已经完成的实体直接跳过.
+ * 任意批次失败时实体不会标记为完成,迁移以异常结束.
+ * 使用默认转换器并且新旧格式一致的实体直接拷贝原始键值对,其它实体由写任务并行转换.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
@@ -57,99 +67,135 @@ public class MigrationReadTask implements Callable<MigrationReadTask> {
         return ReflectionToStringBuilder.toString(this);
     }
 
-    @Override
-    public MigrationReadTask call() {
-        if (this.context.getEntityConverterMap().get(this.newEntityName) instanceof IgnoreConverter) {
-            // 忽略转换器,所以无需执行迁移过程
-            return this;
-        }
-
+    /**
+     * 获取迁移任务所依赖的实体名称
+     * 
+     * <pre>
+     * 包括次级键关联的实体,实体的双亲与指定的依赖.
+     * </pre>
+     * 
+     * @return
+     */
+    public Collection<String> getDependencies() {
+        final Collection<String> dependencies = new LinkedHashSet<String>();
         try {
             // 实体的依赖
             final Class<?> entityClass = Class.forName(this.newEntityName);
-
-            // 迁移任务所依赖的迁移任务的集合
-            final Collection<Future<?>> dependencyTaskSet = new LinkedList<Future<?>>();
             ReflectionUtility.doWithLocalFields(entityClass, (field) -> {
                 SecondaryKey annotation = field.getAnnotation(SecondaryKey.class);
                 if (annotation != null && annotation.relatedEntity() != void.class && annotation.relatedEntity() != entityClass) {
-                    final Future<?> future = context.getMigrationReadTask(annotation.relatedEntity().getName());
-                    dependencyTaskSet.add(future);
+                    dependencies.add(annotation.relatedEntity().getName());
                 }
             });
 
             // 实体的双亲
             final Class<?> parentClass = AnnotationUtils.findAnnotationDeclaringClass(Entity.class, entityClass);
             if (parentClass != null && parentClass != entityClass) {
-                final Future<?> future = this.context.getMigrationReadTask(parentClass.getName());
-                if (future != null) {
-                    dependencyTaskSet.add(future);
-                }
+                dependencies.add(parentClass.getName());
             }
+        } catch (ClassNotFoundException exception) {
+            throw new BerkeleyMigrationException(exception);
+        }
 
-            // 指定的依赖
-            if (context.getEntityDependencyMap().get(this.newEntityName) != null) {
-                for (String dependencyClassName : context.getEntityDependencyMap().get(this.newEntityName)) {
-                    final Future<?> future = this.context.getMigrationReadTask(dependencyClassName);
-                    dependencyTaskSet.add(future);
-                }
-            }
+        // 指定的依赖
+        if (context.getEntityDependencyMap().get(this.newEntityName) != null) {
+            dependencies.addAll(context.getEntityDependencyMap().get(this.newEntityName));
+        }
+        dependencies.remove(this.newEntityName);
+        return dependencies;
+    }
 
-            // 等待依赖的任务完成
-            for (Future<?> dependencyTask : dependencyTaskSet) {
-                dependencyTask.get();
-            }
+    @Override
+    public MigrationReadTask call() {
+        if (this.context.getEntityConverterMap().get(this.newEntityName) instanceof IgnoreConverter) {
+            // 忽略转换器,所以无需执行迁移过程
+            return this;
+        }
+
+        final MigrationCheckpoint checkpoint = this.context.getCheckpoint();
+        if (checkpoint.isFinished(this.newEntityName)) {
+            // 已经在之前的迁移中完成
+            logger.debug("迁移实体[{}]已经完成,跳过", this.newEntityName);
+            return this;
+        }
 
+        try {
             logger.debug("迁移实体{}-{}", new Object[] { this.oldEntityName, this.newEntityName });
 
             // 开始迁移时间
             final long startTime = System.currentTimeMillis();
+            this.counter.start();
 
             final RawStore oldRawStore = context.getOldEntityStoreMap().get(this.oldEntityName);
             final RawStore newRawStore = context.getNewEntityStoreMap().get(this.newEntityName);
 
             final PrimaryIndex<Object, RawObject> oldIndex = oldRawStore.getPrimaryIndex(this.oldEntityName);
-            final EntityCursor<RawObject> cursor = oldIndex.entities();
-
-            while (true) {
-                final Collection<RawObject> dataCollection = new ArrayList<RawObject>(this.batchSize);
-                while (true) {
-                    final RawObject oldData = cursor.next();
-                    if ((oldData != null)) {
-                        dataCollection.add(oldData);
-                        counter.getReadRecordNumber().incrementAndGet();
+            final EntityBinding<RawObject> binding = oldIndex.getEntityBinding();
+            final Cursor cursor = oldIndex.getDatabase().openCursor(null, null);
+            // 顺序扫描的数据不会再次访问,避免占用缓存
+            cursor.setCacheMode(CacheMode.EVICT_LN);
+
+            // 默认转换器并且格式一致时直接拷贝
+            final boolean copy = this.context.getEntityConverterMap().get(this.newEntityName).getClass() == BerkeleyConverter.class && new MigrationFormat(this.context, oldRawStore.getModel(), newRawStore.getModel()).isSame(this.oldEntityName);
+            logger.debug("迁移实体[{}],拷贝模式[{}]", this.newEntityName, copy);
+
+            final DatabaseEntry key = new DatabaseEntry();
+            final DatabaseEntry data = new DatabaseEntry();
+            final byte[] checkpointKey = checkpoint.getKey(this.newEntityName);
+            OperationStatus status;
+            if (checkpointKey == null) {
+                status = cursor.getFirst(key, data, LockMode.READ_UNCOMMITTED);
+            } else {
+                // 从检查点之后继续
+                logger.debug("迁移实体[{}]从检查点恢复", this.newEntityName);
+                key.setData(checkpointKey);
+                status = cursor.getSearchKeyRange(key, data, LockMode.READ_UNCOMMITTED);
+                if (status == OperationStatus.SUCCESS && Arrays.equals(checkpointKey, getBytes(key))) {
+                    status = cursor.getNext(key, data, LockMode.READ_UNCOMMITTED);
+                }
+            }
+
+            long sequence = 0L;
+            while (status == OperationStatus.SUCCESS) {
+                final Collection<RawObject> dataCollection = copy ? null : new ArrayList<RawObject>(this.batchSize);
+                final Collection<KeyValue<byte[], byte[]>> copyCollection = copy ? new ArrayList<KeyValue<byte[], byte[]>>(this.batchSize) : null;
+                byte[] last = null;
+                for (int index = 0; status == OperationStatus.SUCCESS && index < this.batchSize; index++) {
+                    last = getBytes(key);
+                    if (copy) {
+                        copyCollection.add(new KeyValue<>(last, getBytes(data)));
                     } else {
-                        break;
-                    }
-                    if (dataCollection.size() == this.batchSize) {
-                        break;
+                        dataCollection.add(binding.entryToObject(key, data));
                     }
+                    counter.getReadRecordNumber().incrementAndGet();
+                    status = cursor.getNext(key, data, LockMode.READ_UNCOMMITTED);
                 }
 
                 this.counter.getCurrentTaskNumber().incrementAndGet();
-                this.context.getMigrationWriteTask(newEntityName, dataCollection);
-
-                if (counter.getReadRecordNumber().get() % 10000 == 0) {
-                    final Object[] parameters = new Object[] { newEntityName, this.counter.getReadRecordNumber().get(), context.getWriteExecutor().getQueue().size(), context.getWriteExecutor().getActiveCount() };
-                    logger.debug("迁移实体[{}],数量[{}],队列[{}],线程[{}]", parameters);
-                }
-
-                if (dataCollection.size() < this.batchSize) {
-                    break;
+                try {
+                    if (copy) {
+                        this.context.getMigrationCopyTask(newEntityName, copyCollection, sequence++, last);
+                    } else {
+                        this.context.getMigrationWriteTask(newEntityName, dataCollection, sequence++, last);
+                    }
+                } catch (Throwable exception) {
+                    this.counter.getCurrentTaskNumber().decrementAndGet();
+                    cursor.close();
+                    throw exception;
                 }
             }
 
             try {
-                while (this.counter.getCurrentTaskNumber().get() != 0) {
-                    Thread.yield();
-                    if (logger.isDebugEnabled()) {
-                        Thread.sleep(TimeUnit.MILLISECONDS.convert(1, TimeUnit.SECONDS));
-                        logger.debug("迁移实体[{}],剩余任务[{}],线程[{}]", new Object[] { newEntityName, this.counter.getCurrentTaskNumber().get(), context.getWriteExecutor().getActiveCount() });
-                    }
-                }
+                cursor.close();
+                this.counter.awaitTasks();
                 // 结束迁移时间
                 long endTime = System.currentTimeMillis();
                 logger.debug("迁移实体:旧实体名称[{}],新实体名称[{}],旧数量[{}],新数量[{}],消耗时间[{}]", new Object[] { oldEntityName, newEntityName, this.counter.getReadRecordNumber().get(), this.counter.getWriteRecordNumber().get(), (endTime - startTime) });
+                if (this.counter.isFailed()) {
+                    // 存在失败的批次,不能标记实体完成
+                    String message = StringUtility.format("迁移实体[{}]失败:失败任务[{}],失败记录[{}]", newEntityName, this.counter.getFailTaskNumber().get(), this.counter.getFailRecordNumber().get());
+                    throw new BerkeleyMigrationException(message);
+                }
 
                 // 迁移序列
                 final String oldSequenceName = oldRawStore.getModel().getEntityMetadata(oldEntityName).getPrimaryKey().getSequenceName();
@@ -177,16 +223,24 @@ public class MigrationReadTask implements Callable<MigrationReadTask> {
                     newSequenceDatabase.close();
                 }
 
+                checkpoint.finishEntity(this.newEntityName);
+                checkpoint.save(context.getNewDatabaseEnvironment());
             } catch (InterruptedException exception) {
                 String message = StringUtility.format("警告!等待被中断");
                 logger.error(message, exception);
-            } finally {
-                cursor.close();
+                Thread.currentThread().interrupt();
+                throw new BerkeleyMigrationException(message, exception);
             }
+        } catch (BerkeleyMigrationException exception) {
+            throw exception;
         } catch (Exception exception) {
             throw new BerkeleyMigrationException(exception);
         }
         return this;
     }
 
+    private static byte[] getBytes(DatabaseEntry entry) {
+        return Arrays.copyOfRange(entry.getData(), entry.getOffset(), entry.getOffset() + entry.getSize());
+    }
+
 }
@@ -10,7 +10,9 @@ import org.slf4j.LoggerFactory;
 
 import com.jstarcraft.core.storage.berkeley.exception.BerkeleyMigrationException;
 import com.jstarcraft.core.utility.StringUtility;
+import com.sleepycat.je.Environment;
 import com.sleepycat.je.LockConflictException;
+import com.sleepycat.je.Transaction;
 import com.sleepycat.persist.PrimaryIndex;
 import com.sleepycat.persist.raw.RawObject;
 import com.sleepycat.persist.raw.RawStore;
@@ -19,6 +21,11 @@ import com.sleepycat.persist.raw.RawType;
 /**
  * 迁移写任务
  * 
+ * <pre>
+ * 事务环境下每个批次使用一个事务提交,非事务环境下直接写入;
+ * 批次完成以后推进检查点,存在失败记录或者异常的批次记录到计数器,不推进检查点.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
@@ -38,6 +45,15 @@ public class MigrationWriteTask implements Callable<MigrationWriteTask> {
 
     private final Collection<RawObject> dataCollection;
 
+    /** 批次序号(负数表示不记录检查点) */
+    private final long sequence;
+
+    /** 批次最后的主键 */
+    private final byte[] key;
+
+    /** 批次失败的记录数量(每次写入重新计算) */
+    private int failures;
+
     private RawObject buildRawObject(RawType rawType) {
         final RawType superType = rawType.getSuperType();
         final RawObject superObject = superType != null ? this.buildRawObject(superType) : null;
@@ -45,12 +61,18 @@ public class MigrationWriteTask implements Callable<MigrationWriteTask> {
     }
 
     public MigrationWriteTask(String oldEntityName, String newEntityName, MigrationContext context, MigrationCounter counter, MigrationConverter converter, Collection<RawObject> dataCollection) {
+        this(oldEntityName, newEntityName, context, counter, converter, dataCollection, -1L, null);
+    }
+
+    public MigrationWriteTask(String oldEntityName, String newEntityName, MigrationContext context, MigrationCounter counter, MigrationConverter converter, Collection<RawObject> dataCollection, long sequence, byte[] key) {
         this.oldEntityName = oldEntityName;
         this.newEntityName = newEntityName;
         this.context = context;
         this.counter = counter;
         this.converter = converter;
         this.dataCollection = dataCollection;
+        this.sequence = sequence;
+        this.key = key;
     }
 
     @Override
@@ -60,38 +82,94 @@ public class MigrationWriteTask implements Callable<MigrationWriteTask> {
             final RawStore newRawStore = context.getNewEntityStoreMap().get(newEntityName);
             final PrimaryIndex<Object, RawObject> newIndex = newRawStore.getPrimaryIndex(newEntityName);
             final RawType rawType = newRawStore.getModel().getRawType(newEntityName);
-            for (RawObject oldData : dataCollection) {
-                final AtomicInteger tryTimes = new AtomicInteger(10);
-                final RawObject newData = this.buildRawObject(rawType);
-                try {
-                    boolean migrate = converter.convert(context, oldRawStore, newRawStore, oldData, newData);
-                    if (migrate) {
-                        do {
-                            try {
-                                newIndex.putNoReturn(newData);
-                                counter.getWriteRecordNumber().incrementAndGet();
-                                break;
-                            } catch (LockConflictException exception) {
-                                // TODO 可能存在次级键原因导致锁冲突,等待100毫秒进行重试
-                                Thread.sleep(100);
-                                if (tryTimes.decrementAndGet() < 0) {
-                                    String message = StringUtility.format("迁移数据[{}]尝试次数到达限制", oldData);
-                                    throw new BerkeleyMigrationException(message);
-                                }
-                            }
-                        } while (true);
-                    } else {
-                        logger.debug("忽略数据[{}]", new Object[] { oldData });
+            final Environment environment = newRawStore.getEnvironment();
+            if (environment.getConfig().getTransactional()) {
+                // 事务环境下整个批次使用一个事务,锁冲突时整个批次重试
+                int tryTimes = 10;
+                while (true) {
+                    final Transaction transaction = environment.beginTransaction(null, null);
+                    try {
+                        int count = this.write(oldRawStore, newRawStore, newIndex, rawType, transaction);
+                        transaction.commit();
+                        counter.getWriteRecordNumber().addAndGet(count);
+                        break;
+                    } catch (LockConflictException exception) {
+                        transaction.abort();
+                        if (--tryTimes < 0) {
+                            String message = StringUtility.format("迁移实体[{}]批次[{}]尝试次数到达限制", newEntityName, sequence);
+                            throw new BerkeleyMigrationException(message, exception);
+                        }
+                        Thread.sleep(100);
+                    } catch (Throwable exception) {
+                        transaction.abort();
+                        throw exception;
                     }
-                } catch (Throwable exception) {
-                    String message = StringUtility.format("迁移异常:旧数据[{}],新数据[{}]", oldData, newData);
-                    logger.error(message, exception);
                 }
+            } else {
+                counter.getWriteRecordNumber().addAndGet(this.write(oldRawStore, newRawStore, newIndex, rawType, null));
+            }
+            counter.getFailRecordNumber().addAndGet(failures);
+            if (sequence >= 0 && failures == 0) {
+                // 存在失败记录的批次不推进检查点
+                context.getCheckpoint().finishBatch(newEntityName, sequence, key);
             }
+        } catch (Throwable exception) {
+            counter.getFailTaskNumber().incrementAndGet();
+            String message = StringUtility.format("迁移实体[{}]批次[{}]异常", newEntityName, sequence);
+            logger.error(message, exception);
+            throw exception;
         } finally {
-            this.counter.getCurrentTaskNumber().decrementAndGet();
+            this.context.releaseWritePermit();
+            this.counter.finishTask();
         }
         return this;
     }
 
+    /**
+     * 转换并写入批次
+     * 
+     * @return 写入的记录数量
+     */
+    private int write(RawStore oldRawStore, RawStore newRawStore, PrimaryIndex<Object, RawObject> newIndex, RawType rawType, Transaction transaction) throws InterruptedException {
+        int count = 0;
+        failures = 0;
+        for (RawObject oldData : dataCollection) {
+            final AtomicInteger tryTimes = new AtomicInteger(10);
+            final RawObject newData = this.buildRawObject(rawType);
+            try {
+                boolean migrate = converter.convert(context, oldRawStore, newRawStore, oldData, newData);
+                if (migrate) {
+                    do {
+                        try {
+                            newIndex.putNoReturn(transaction, newData);
+                            count++;
+                            break;
+                        } catch (LockConflictException exception) {
+                            if (transaction != null) {
+                                // 事务内的锁冲突需要整个批次回滚
+                                throw exception;
+                            }
+                            // TODO 可能存在次级键原因导致锁冲突,等待100毫秒进行重试
+                            Thread.sleep(100);
+                            if (tryTimes.decrementAndGet() < 0) {
+                                String message = StringUtility.format("迁移数据[{}]尝试次数到达限制", oldData);
+                                throw new BerkeleyMigrationException(message);
+                            }
+                        }
+                    } while (true);
+                } else {
+                    logger.debug("忽略数据[{}]", new Object[] { oldData });
+                }
+            } catch (Throwable exception) {
+                if (transaction != null && exception instanceof LockConflictException) {
+                    throw (LockConflictException) exception;
+                }
+                String message = StringUtility.format("迁移异常:旧数据[{}],新数据[{}]", oldData, newData);
+                logger.error(message, exception);
+                failures++;
+            }
+        }
+        return count;
+    }
+
 }
@@ -4,11 +4,17 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
@@ -17,6 +23,7 @@ import org.slf4j.LoggerFactory;
 
 import com.jstarcraft.core.storage.berkeley.BerkeleyAccessor;
 import com.jstarcraft.core.storage.berkeley.exception.BerkeleyMigrationException;
+import com.jstarcraft.core.utility.NameThreadFactory;
 import com.sleepycat.je.Environment;
 import com.sleepycat.je.EnvironmentConfig;
 import com.sleepycat.persist.StoreConfig;
@@ -31,6 +38,10 @@ import com.sleepycat.persist.raw.RawStore;
  * 2.构建新环境,通常是在旧环境基础,以仓储(Stroe)为单位重构建,重构建的仓储所包含的全部实体都要进行迁移;
  * 3.确定迁移实体以后,从旧环境获取数据,通过(Converter)转换器转换以后,将数据填充到新环境;
  * 
+ * 断点续迁:
+ * 迁移过程会定期在新数据库目录保存检查点(migration.checkpoint),
+ * 中断以后不需要重新拷贝与构建,直接再次执行migrate即可从检查点继续,已经完成的实体会被跳过.
+ * 
  * 注意:在迁移过程将缓存设置到最低是为了提高迁移的效率
  * 原因在于缓存的数据,在缓存填充满以后,要通过LRU算法交换出去,缓存的数据越多,开销越大,反而导致插入的性能下降.
  * 在迁移过程主要操作是插入,所以要将缓存设置到最小.
@@ -48,6 +59,12 @@ public class Migrator {
 
     public static final String PERSIST_PREFIX = "persist";
 
+    /** 检查点保存间隔(毫秒) */
+    public static final long CHECKPOINT_INTERVAL = 1000L;
+
+    /** 进度报告间隔(毫秒) */
+    public static final long REPORT_INTERVAL = 10000L;
+
     /** 环境配置文件 */
     private final Properties environmentProperties = new Properties();
 
@@ -71,6 +88,9 @@ public class Migrator {
 
     private final String berkeleyConverter;
 
+    /** 当前(或者最后一次)迁移的计数器 */
+    private volatile Map<String, MigrationCounter> counterMap = Collections.emptyMap();
+
     /**
      * 获取环境所有的实体名称
      * 
@@ -168,6 +188,9 @@ public class Migrator {
 
         environment.close();
 
+        // 重新构建意味着重新迁移,删除之前的检查点
+        FileUtils.deleteQuietly(new File(this.newDatabaseDirectory, MigrationCheckpoint.CHECKPOINT_FILE));
+
         // 让环境自动构建迁移的实体数据表
         // final ClassPathXmlApplicationContext applicationContext = new
         // ClassPathXmlApplicationContext(new String[] { databaseConfiguration });
@@ -215,6 +238,7 @@ public class Migrator {
      */
     private Map<String, RawStore> bulidRawStoreMap(Environment environment, Map<String, String> entityStoreNameMap) {
         final StoreConfig storeConfiguration = new StoreConfig();
+        storeConfiguration.setTransactional(environment.getConfig().getTransactional());
         final Map<String, RawStore> rawStoreMap = new HashMap<String, RawStore>();
         for (String storeName : entityStoreNameMap.values()) {
             if (!rawStoreMap.containsKey(storeName)) {
@@ -307,24 +331,58 @@ public class Migrator {
 
         logger.debug("迁移实体列表[{}]", this.classNameMap);
 
-        final MigrationContext context = new MigrationContext(this.classNameMap, entityConverterMap, this.entityDependencyMap, oldDatabaseEnvironment, newDatabaseEnvironment, oldEntityStoreMap, newEntityStoreMap);
+        final MigrationCheckpoint checkpoint = new MigrationCheckpoint(new File(this.newDatabaseDirectory, MigrationCheckpoint.CHECKPOINT_FILE));
+        final MigrationContext context = new MigrationContext(this.classNameMap, entityConverterMap, this.entityDependencyMap, oldDatabaseEnvironment, newDatabaseEnvironment, oldEntityStoreMap, newEntityStoreMap, checkpoint);
+        this.counterMap = context.getCounterMap();
+
+        // 定期保存检查点与报告进度
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new NameThreadFactory("MigrationMonitor"));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint.save(newDatabaseEnvironment);
+            } catch (Throwable exception) {
+                logger.error("保存检查点异常", exception);
+            }
+        }, CHECKPOINT_INTERVAL, CHECKPOINT_INTERVAL, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::report, REPORT_INTERVAL, REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+
         // 迁移实体
+        final Collection<CompletableFuture<MigrationReadTask>> futures = new LinkedList<CompletableFuture<MigrationReadTask>>();
         for (String entityName : this.classNameMap.keySet()) {
-            context.getMigrationReadTask(entityName);
+            futures.add(context.getMigrationReadTask(entityName));
         }
 
-        context.getReadeExecutor().shutdown();
-
+        boolean success = true;
         try {
-            if (context.getReadeExecutor().awaitTermination(60, TimeUnit.MINUTES)) {
+            for (CompletableFuture<MigrationReadTask> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException exception) {
+                    logger.error("迁移异常", exception.getCause());
+                    success = false;
+                }
+            }
+            if (success) {
                 logger.debug("迁移成功");
             } else {
                 logger.debug("迁移失败");
             }
         } catch (InterruptedException exception) {
             logger.error("迁移异常", exception);
+            Thread.currentThread().interrupt();
+            success = false;
         } finally {
+            context.getReadeExecutor().shutdownNow();
             context.getWriteExecutor().shutdown();
+            try {
+                context.getWriteExecutor().awaitTermination(60, TimeUnit.MINUTES);
+            } catch (InterruptedException exception) {
+                logger.error("迁移异常", exception);
+            }
+            scheduler.shutdownNow();
+            report();
+            // 保存最终的检查点
+            checkpoint.save(newDatabaseEnvironment);
 
             for (RawStore store : oldEntityStoreMap.values()) {
                 store.close();
@@ -337,7 +395,32 @@ public class Migrator {
             oldDatabaseEnvironment.close();
             newDatabaseEnvironment.close();
         }
+        if (!success) {
+            // 失败的实体没有标记完成,修复以后可以从检查点继续迁移
+            throw new BerkeleyMigrationException("迁移失败");
+        }
+    }
+
+    /**
+     * 报告迁移进度
+     */
+    private void report() {
+        for (Entry<String, MigrationCounter> keyValue : this.counterMap.entrySet()) {
+            MigrationCounter counter = keyValue.getValue();
+            if (counter.getStartTime() == 0) {
+                continue;
+            }
+            logger.info("迁移实体[{}],读取[{}]({}条/秒),写出[{}]({}条/秒),剩余任务[{}],失败任务[{}],失败记录[{}]", keyValue.getKey(), counter.getReadRecordNumber().get(), (long) counter.getReadRate(), counter.getWriteRecordNumber().get(), (long) counter.getWriteRate(), counter.getCurrentTaskNumber().get(), counter.getFailTaskNumber().get(), counter.getFailRecordNumber().get());
+        }
+    }
 
+    /**
+     * 获取当前(或者最后一次)迁移的计数器
+     * 
+     * @return 实体名称与计数器的映射
+     */
+    public Map<String, MigrationCounter> getCounters() {
+        return Collections.unmodifiableMap(counterMap);
     }
 
     public File getNewDatabaseDirectory() {
@@ -40,6 +40,8 @@ public class BerkeleyAccessorFactory implements FactoryBean<BerkeleyAccessor>, A
     private boolean temporary;
     private long versionKeep;
     private boolean writeDelay;
+    private int commitSize = BerkeleyAccessor.DEFAULT_COMMIT_SIZE;
+    private long commitTime = BerkeleyAccessor.DEFAULT_COMMIT_TIME;
 
     private ApplicationContext applicationContext;
 
@@ -77,7 +79,7 @@ public class BerkeleyAccessorFactory implements FactoryBean<BerkeleyAccessor>, A
             } catch (IOException exception) {
                 throw new IllegalArgumentException("无法获取配置文件[" + properties + "]");
             }
-            accessor = new BerkeleyAccessor(classes, directory, properties, readOnly, writeDelay, temporary, versionKeep);
+            accessor = new BerkeleyAccessor(classes, directory, properties, readOnly, writeDelay, temporary, versionKeep, commitSize, commitTime);
         }
         return accessor;
     }
@@ -120,4 +122,12 @@ public class BerkeleyAccessorFactory implements FactoryBean<BerkeleyAccessor>, A
         this.writeDelay = writeDelay;
     }
 
+    public void setCommitSize(int commitSize) {
+        this.commitSize = commitSize;
+    }
+
+    public void setCommitTime(long commitTime) {
+        this.commitTime = commitTime;
+    }
+
 }
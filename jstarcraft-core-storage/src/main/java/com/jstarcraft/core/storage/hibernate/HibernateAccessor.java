@@ -9,19 +9,24 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.LockModeType;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
 import org.hibernate.HibernateException;
+import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
 import org.hibernate.metamodel.spi.MetamodelImplementor;
 import org.hibernate.persister.entity.EntityPersister;
 import org.hibernate.query.Query;
@@ -36,6 +41,7 @@ import com.jstarcraft.core.storage.StorageCondition;
 import com.jstarcraft.core.storage.StorageIterator;
 import com.jstarcraft.core.storage.StorageMetadata;
 import com.jstarcraft.core.storage.StoragePagination;
+import com.jstarcraft.core.storage.StoragePartitioner;
 import com.jstarcraft.core.storage.exception.StorageException;
 import com.jstarcraft.core.storage.exception.StorageQueryException;
 import com.jstarcraft.core.utility.StringUtility;
@@ -82,6 +88,12 @@ public class HibernateAccessor extends HibernateDaoSupport implements StorageAcc
 
 	private final static String UNEQUAL_CONDITION = " WHERE clazz.{} <> ?0";
 
+	/** 主键区间下限(包含) */
+	private final static String FROM_CONDITION = "clazz.{} >= ?{}";
+
+	/** 主键区间上限(不包含) */
+	private final static String TO_CONDITION = "clazz.{} < ?{}";
+
 	/** HQL删除语句 */
 	private Map<Class, String> deleteHqls = new ConcurrentHashMap<>();
 
@@ -340,6 +352,30 @@ public class HibernateAccessor extends HibernateDaoSupport implements StorageAcc
 		});
 	}
 
+	/**
+	 * 键集分页(按照主键升序,从after之后开始)
+	 * 
+	 * @param builder
+	 * @param query
+	 * @param root
+	 * @param clazz
+	 * @param pagination
+	 */
+	private <T> void keyset(CriteriaBuilder builder, CriteriaQuery<T> query, Root<T> root, Class<T> clazz, StoragePagination pagination) {
+		if (pagination == null || !pagination.isKeyset()) {
+			return;
+		}
+		HibernateMetadata metadata = metadatas.get(clazz.getName());
+		Path<Comparable> path = root.get(metadata.getPrimaryName());
+		Comparable after = pagination.getAfter();
+		if (after != null) {
+			Predicate predicate = builder.greaterThan(path, after);
+			Predicate restriction = query.getRestriction();
+			query.where(restriction == null ? predicate : builder.and(restriction, predicate));
+		}
+		query.orderBy(builder.asc(path));
+	}
+
 	private <K extends Comparable, T extends IdentityObject<K>> List<T> query(Class<T> clazz, Operation operation, Map<String, Object> condition, StoragePagination pagination) {
 		return getHibernateTemplate().executeWithNativeSession(new HibernateCallback<List<T>>() {
 
@@ -373,6 +409,7 @@ public class HibernateAccessor extends HibernateDaoSupport implements StorageAcc
 						criteriaQuery.where(left);
 					}
 				}
+				keyset(criteriaBuilder, criteriaQuery, root, clazz, pagination);
 				TypedQuery<T> typedQuery = session.createQuery(criteriaQuery);
 				if (pagination != null) {
 					typedQuery.setFirstResult(pagination.getFirst());
@@ -490,6 +527,7 @@ public class HibernateAccessor extends HibernateDaoSupport implements StorageAcc
 						criteriaQuery.where(left);
 					}
 				}
+				keyset(criteriaBuilder, criteriaQuery, root, clazz, pagination);
 				TypedQuery<T> typedQuery = session.createQuery(criteriaQuery);
 				if (pagination != null) {
 					typedQuery.setFirstResult(pagination.getFirst());
@@ -532,6 +570,80 @@ public class HibernateAccessor extends HibernateDaoSupport implements StorageAcc
 		iterate(iterator, clazz, Operation.OR, condition, pagination);
 	}
 
+	/**
+	 * 使用迭代器流式遍历指定主键区间[from, to)的对象
+	 * 
+	 * <pre>
+	 * 使用独立的无状态会话与只进游标,对象不会进入持久化上下文,内存占用与数据量无关.
+	 * 注意:独立会话看不到当前事务中未提交的修改.
+	 * </pre>
+	 * 
+	 * @param iterator
+	 * @param clazz
+	 * @param from
+	 *            下限(包含),null表示无界
+	 * @param to
+	 *            上限(不包含),null表示无界
+	 */
+	public <K extends Comparable, T extends IdentityObject<K>> void iterateRange(StorageIterator<T> iterator, Class<T> clazz, K from, K to) {
+		HibernateMetadata metadata = metadatas.get(clazz.getName());
+		StringBuilder buffer = new StringBuilder(StringUtility.format(INDEX_2_OBJECT_SET, clazz.getSimpleName()));
+		int index = 0;
+		if (from != null) {
+			buffer.append(" WHERE ");
+			buffer.append(StringUtility.format(FROM_CONDITION, metadata.getPrimaryName(), index++));
+		}
+		if (to != null) {
+			buffer.append(index == 0 ? " WHERE " : " AND ");
+			buffer.append(StringUtility.format(TO_CONDITION, metadata.getPrimaryName(), index++));
+		}
+		String hql = buffer.toString();
+		try (StatelessSession session = getSessionFactory().openStatelessSession()) {
+			Transaction transaction = session.beginTransaction();
+			try {
+				Query<T> query = session.createQuery(hql);
+				index = 0;
+				if (from != null) {
+					query.setParameter(index++, from);
+				}
+				if (to != null) {
+					query.setParameter(index++, to);
+				}
+				query.setFetchSize(BATCH_SIZE);
+				query.setReadOnly(true);
+				try (ScrollableResults scrollableResults = query.scroll(ScrollMode.FORWARD_ONLY)) {
+					while (scrollableResults.next()) {
+						try {
+							final T object = clazz.cast(scrollableResults.get(0));
+							iterator.iterate(object);
+						} catch (Throwable throwable) {
+							throw new StorageQueryException(throwable);
+						}
+					}
+				}
+			} finally {
+				// 只读遍历无需提交
+				transaction.rollback();
+			}
+		}
+	}
+
+	/**
+	 * 按照主键边界分区并行流式遍历对象
+	 * 
+	 * @param iterator
+	 *            会被多个线程并发调用
+	 * @param clazz
+	 * @param executor
+	 * @param boundaries
+	 *            主键边界,N个边界切分为N+1个区间
+	 */
+	public <K extends Comparable, T extends IdentityObject<K>> void iterateRanges(StorageIterator<T> iterator, Class<T> clazz, ExecutorService executor, K... boundaries) {
+		StoragePartitioner.iterate(executor, (K from, K to) -> {
+			iterateRange(iterator, clazz, from, to);
+		}, boundaries);
+	}
+
 	public <R> List<R> queryDatas(String name, Class<R> queryType, StoragePagination pagination, Map<String, Object> parameters) {
 		return getHibernateTemplate().executeWithNativeSession(new HibernateCallback<List<R>>() {
 			@Override
@@ -2,6 +2,7 @@ package com.jstarcraft.core.storage.identification;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.jstarcraft.core.utility.StringUtility;
 
@@ -18,16 +19,32 @@ import com.jstarcraft.core.utility.StringUtility;
  * 12位序列,毫秒内的计数,12位的计数顺序号支持每个节点每毫秒(同一机器,同一时间截)产生4096个ID序号
  * SnowFlake的优点是,整体上按照时间自增排序,并且整个分布式系统内不会产生ID碰撞(由中心ID和机器ID作区分),并且效率较高,经测试,SnowFlake每秒能够产生26万ID左右.
  * </pre>
+ * 
+ * <pre>
+ * 实现不加锁也不自旋等待:
+ * 时间截与序列打包在一个原子长整数中,通过CAS推进;毫秒内的序列耗尽时直接借用下一个毫秒,时钟倒退时沿用已借用的时间截,保证单调递增.
+ * 借用的时间截最多领先当前时钟borrow毫秒,超过时(时钟倒退过多或者序列长期耗尽)抛出异常.
+ * 可以将序列段的低位划分为条带,不同线程使用不同条带的状态,降低CAS竞争.
+ * </pre>
  */
 public class InstantIdentityFactory implements IdentityFactory {
 
+    /** 默认最多借用的毫秒数 */
+    public static final long DEFAULT_BORROW = 1000L;
+
     /** 标识定义 */
     private final IdentityDefinition definition;
 
-    /** 时间截 */
-    private long current = -1L;
+    /** 条带位数 */
+    private final int stripeBit;
+
+    /** 条带掩码 */
+    private final int stripeMask;
+
+    /** 条带内序列位数 */
+    private final int sequenceBit;
 
-    /** 掩码 */
+    /** 条带内序列掩码 */
     private final long mask;
 
     /** 偏移 */
@@ -36,31 +53,53 @@ public class InstantIdentityFactory implements IdentityFactory {
     /** 分区 */
     private final int partition;
 
-    /** 序列 */
-    private long sequence;
+    /** 最多借用的毫秒数 */
+    private final long borrow;
+
+    /** 条带状态(时间截 << sequenceBit | 序列) */
+    private final AtomicLong[] states;
 
     public InstantIdentityFactory(IdentityDefinition definition, int partition, Instant offsetInstant) {
+        this(definition, partition, offsetInstant, 0, DEFAULT_BORROW);
+    }
+
+    public InstantIdentityFactory(IdentityDefinition definition, int partition, Instant offsetInstant, int stripeBit) {
+        this(definition, partition, offsetInstant, stripeBit, DEFAULT_BORROW);
+    }
+
+    /**
+     * 
+     * @param definition
+     * @param partition
+     * @param offsetInstant
+     *            偏移(不能晚于当前时间,否则时间截为负数)
+     * @param stripeBit
+     *            条带位数(0表示不划分条带,此时同一毫秒内的标识严格连续)
+     * @param borrow
+     *            最多借用的毫秒数
+     */
+    public InstantIdentityFactory(IdentityDefinition definition, int partition, Instant offsetInstant, int stripeBit, long borrow) {
         List<IdentitySection> sections = definition.getSections();
         assert sections.size() == 3;
+        int bit = sections.get(2).getBit();
+        if (stripeBit < 0 || stripeBit >= bit || borrow < 0L) {
+            throw new IllegalArgumentException();
+        }
+        if (offsetInstant.toEpochMilli() > System.currentTimeMillis()) {
+            throw new IllegalArgumentException(StringUtility.format("偏移[{}]晚于当前时间", offsetInstant));
+        }
         this.definition = definition;
         this.partition = partition;
-        int sequenceBit = sections.get(2).getBit();
+        this.stripeBit = stripeBit;
+        this.borrow = borrow;
+        this.stripeMask = (1 << stripeBit) - 1;
+        this.sequenceBit = bit - stripeBit;
         this.mask = -1L ^ (-1L << sequenceBit);
         this.offset = offsetInstant.toEpochMilli();
-    }
-
-    /**
-     * 阻塞到下一个毫秒,直到获得时间戳
-     * 
-     * @param last
-     * @return
-     */
-    private long waitInstant(long last) {
-        long current = System.currentTimeMillis();
-        while (current <= last) {
-            current = System.currentTimeMillis();
+        this.states = new AtomicLong[1 << stripeBit];
+        for (int index = 0; index < states.length; index++) {
+            this.states[index] = new AtomicLong(-1L);
         }
-        return current;
     }
 
     @Override
@@ -74,25 +113,29 @@ public class InstantIdentityFactory implements IdentityFactory {
     }
 
     @Override
-    public synchronized long getSequence() {
-        long now = System.currentTimeMillis();
-        // 如果当前时间戳小于最近时间戳,则说明系统时钟倒退.应当抛出异常
-        if (now < current) {
-            throw new RuntimeException(StringUtility.format("序列异常,时钟倒退{}毫秒.", current - now));
-        }
-        // 如果当前时间戳与最近时间戳相等,则使用序列防止冲突.
-        if (current == now) {
-            sequence = (sequence + 1) & mask;
-            if (sequence == 0) {
-                // 阻塞到下一个时间戳
-                current = waitInstant(current);
+    public long getSequence() {
+        int stripe = (int) (Thread.currentThread().getId() & stripeMask);
+        AtomicLong state = states[stripe];
+        while (true) {
+            long now = System.currentTimeMillis() - offset;
+            long last = state.get();
+            long current;
+            if (last < 0L || now > (last >>> sequenceBit)) {
+                // 时间戳改变,重置序列
+                current = now << sequenceBit;
+            } else {
+                // 同一毫秒(或者时钟倒退)时递增序列,序列耗尽时自然进位到下一个毫秒
+                current = last + 1L;
+                long lead = (current >>> sequenceBit) - now;
+                if (lead > borrow) {
+                    throw new RuntimeException(StringUtility.format("序列异常,时钟倒退或者序列耗尽,领先{}毫秒.", lead));
+                }
+            }
+            if (state.compareAndSet(last, current)) {
+                long sequence = ((current & mask) << stripeBit) | stripe;
+                return definition.make(partition, current >>> sequenceBit, sequence);
             }
-        } else {
-            // 时间戳改变,重置序列
-            sequence = 0L;
-            current = now;
         }
-        return definition.make(partition, current - offset, sequence);
     }
 
     public long getOffset() {
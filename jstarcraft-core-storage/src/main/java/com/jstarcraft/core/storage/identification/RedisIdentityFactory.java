@@ -1,13 +1,28 @@
 package com.jstarcraft.core.storage.identification;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.jstarcraft.core.utility.NameThreadFactory;
+import com.jstarcraft.core.utility.StringUtility;
+
 /**
  * 基于Redis标识管理器
- * 
+ *
+ * <pre>
+ * 双缓冲分段:
+ * 当前分段保存在原子引用中,通过原子自增分配序列,不需要加锁;
+ * 当前分段剩余的序列达到阈值时,异步向Redis预取下一个分段,分段耗尽时直接切换,不会在Redis往返期间阻塞调用线程.
+ * </pre>
+ *
  * @author Birdy
  *
  */
@@ -15,16 +30,49 @@ public abstract class RedisIdentityFactory implements IdentityFactory {
 
     protected static final Logger LOGGER = LoggerFactory.getLogger(RedisIdentityFactory.class);
 
+    /** 默认预取线程池 */
+    private static final ExecutorService EXECUTORS = Executors.newCachedThreadPool(new NameThreadFactory("RedisIdentityFactory"));
+
     public final static long MAXIMUM_LONG_VALUE = 0x7FFFFFFFFFFFFFFFL;
 
+    /**
+     * 分段[from, limit)
+     *
+     * @author Birdy
+     *
+     */
+    private static class IdentitySegment {
+
+        /** 序列 */
+        private final AtomicLong sequence;
+
+        /** 限制 */
+        private final long limit;
+
+        private IdentitySegment(long limit, long step) {
+            this.sequence = new AtomicLong(limit - step);
+            this.limit = limit;
+        }
+
+    }
+
+    /** 空分段(第一次获取序列时触发预取) */
+    private static final IdentitySegment EMPTY = new IdentitySegment(0L, 0L);
+
     /** 步伐 */
     protected final long step;
 
-    /** 序列 */
-    protected long sequence;
+    /** 阈值(当前分段剩余序列等于阈值时预取下一个分段) */
+    protected final long threshold;
+
+    /** 预取执行器 */
+    protected final Executor executor;
+
+    /** 当前分段 */
+    private final AtomicReference<IdentitySegment> current = new AtomicReference<>(EMPTY);
 
-    /** 限制 */
-    protected long limit;
+    /** 下一个分段 */
+    private final AtomicReference<CompletableFuture<IdentitySegment>> next = new AtomicReference<>();
 
     /** 标识定义 */
     protected final IdentityDefinition definition;
@@ -39,15 +87,61 @@ public abstract class RedisIdentityFactory implements IdentityFactory {
     abstract protected long getLimit(long step);
 
     protected RedisIdentityFactory(IdentityDefinition definition, int partition, long step) {
+        this(definition, partition, step, step / 2, EXECUTORS);
+    }
+
+    protected RedisIdentityFactory(IdentityDefinition definition, int partition, long step, long threshold, Executor executor) {
         List<IdentitySection> sections = definition.getSections();
         assert sections.size() == 2;
+        if (step <= 0 || threshold < 0 || threshold >= step) {
+            throw new IllegalArgumentException();
+        }
         this.definition = definition;
         this.partition = partition;
         this.step = step;
+        this.threshold = threshold;
+        this.executor = executor;
         this.maximum = definition.make(partition, -1L);
         this.minimum = definition.make(partition, 0L);
     }
 
+    private IdentitySegment getSegment() {
+        long limit = getLimit(step);
+        long from = definition.make(partition, limit - step);
+        long to = definition.make(partition, limit - 1);
+        if (from < minimum || to > maximum || from > to) {
+            String message = StringUtility.format("序列异常,边界范围[{}, {}],当前值[{}, {}]", minimum, maximum, from, to);
+            LOGGER.error(message);
+            throw new RuntimeException(message);
+        }
+        return new IdentitySegment(limit, step);
+    }
+
+    /**
+     * 预取下一个分段(保证同时只有一个请求)
+     *
+     * @return
+     */
+    private CompletableFuture<IdentitySegment> prefetch() {
+        CompletableFuture<IdentitySegment> future = next.get();
+        if (future != null) {
+            return future;
+        }
+        CompletableFuture<IdentitySegment> instance = new CompletableFuture<>();
+        if (next.compareAndSet(null, instance)) {
+            executor.execute(() -> {
+                try {
+                    instance.complete(getSegment());
+                } catch (Throwable throwable) {
+                    instance.completeExceptionally(throwable);
+                }
+            });
+            return instance;
+        } else {
+            return next.get();
+        }
+    }
+
     @Override
     public IdentityDefinition getDefinition() {
         return definition;
@@ -59,20 +153,40 @@ public abstract class RedisIdentityFactory implements IdentityFactory {
     }
 
     @Override
-    public synchronized long getSequence() {
-        if (sequence == limit) {
-            limit = getLimit(step);
-            sequence = limit - step;
-
-            long current = definition.make(partition, sequence);
-            if (current < minimum || current > maximum) {
-                String message = String.format("序列异常,边界范围[{}, {}],当前值{}", minimum, maximum, current);
-                LOGGER.error(message);
-                new RuntimeException(message);
+    public long getSequence() {
+        while (true) {
+            IdentitySegment segment = current.get();
+            // 空分段被所有实例共享,不能自增
+            if (segment != EMPTY) {
+                long sequence = segment.sequence.getAndIncrement();
+                if (sequence < segment.limit) {
+                    if (segment.limit - sequence == threshold) {
+                        prefetch();
+                    }
+                    return definition.make(partition, sequence);
+                }
+            }
+            // 当前分段耗尽,切换到下一个分段
+            // 其它线程可能已经切换了分段并且清除了预取,此时重试而不是重新预取(避免阻塞等待一个不需要的分段)
+            if (current.get() != segment) {
+                continue;
+            }
+            CompletableFuture<IdentitySegment> future = prefetch();
+            if (current.get() != segment) {
+                continue;
+            }
+            IdentitySegment segmentNext;
+            try {
+                segmentNext = future.join();
+            } catch (RuntimeException exception) {
+                // 预取失败,允许下次重新预取
+                next.compareAndSet(future, null);
+                throw exception;
+            }
+            if (current.compareAndSet(segment, segmentNext)) {
+                next.compareAndSet(future, null);
             }
         }
-        Long current = definition.make(partition, sequence++);
-        return current;
     }
 
 }
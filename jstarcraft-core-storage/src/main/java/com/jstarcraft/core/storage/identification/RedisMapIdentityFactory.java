@@ -1,5 +1,7 @@
 package com.jstarcraft.core.storage.identification;
 
+import java.util.concurrent.Executor;
+
 import org.redisson.api.RMap;
 
 public class RedisMapIdentityFactory extends RedisIdentityFactory {
@@ -11,6 +13,11 @@ public class RedisMapIdentityFactory extends RedisIdentityFactory {
         this.redisson = redisson;
     }
 
+    public RedisMapIdentityFactory(RMap<Integer, Number> redisson, IdentityDefinition definition, int partition, long step, long threshold, Executor executor) {
+        super(definition, partition, step, threshold, executor);
+        this.redisson = redisson;
+    }
+
     @Override
     protected long getLimit(long step) {
         return redisson.addAndGet(partition, step).longValue();
@@ -76,6 +76,45 @@ public class LuceneAccessor implements StorageAccessor {
 		}
 	}
 
+	/**
+	 * 键集分页的查询(限制主键大于after)
+	 * 
+	 * @param metadata
+	 * @param query
+	 * @param pagination
+	 * @return
+	 */
+	private Query keyset(LuceneMetadata metadata, Query query, StoragePagination pagination) {
+		if (pagination == null || !pagination.isKeyset() || pagination.getAfter() == null) {
+			return query;
+		}
+		KeyValue<Field, IndexConverter> keyValue = metadata.getIndexKeyValue(metadata.getPrimaryName());
+		Field key = keyValue.getKey();
+		IndexConverter value = keyValue.getValue();
+		Query after = value.query(context, metadata.getPrimaryName(), key, key.getAnnotation(LuceneIndex.class), key.getGenericType(), ConditionType.Higher, pagination.getAfter());
+		BooleanQuery.Builder buffer = new BooleanQuery.Builder();
+		buffer.add(query, Occur.MUST);
+		buffer.add(after, Occur.FILTER);
+		return buffer.build();
+	}
+
+	/**
+	 * 键集分页的排序(按照主键升序)
+	 * 
+	 * @param metadata
+	 * @param pagination
+	 * @return
+	 */
+	private Sort sort(LuceneMetadata metadata, StoragePagination pagination) {
+		if (pagination == null || !pagination.isKeyset()) {
+			return null;
+		}
+		KeyValue<Field, SortConverter> keyValue = metadata.getSortKeyValue(metadata.getPrimaryName());
+		Field key = keyValue.getKey();
+		SortConverter value = keyValue.getValue();
+		return value.sort(context, metadata.getPrimaryName(), key, key.getAnnotation(LuceneSort.class), key.getGenericType(), true);
+	}
+
 	@Override
 	public Collection<? extends StorageMetadata> getAllMetadata() {
 		return metadatas.values();
@@ -258,9 +297,11 @@ public class LuceneAccessor implements StorageAccessor {
 	public <K extends Comparable, T extends IdentityObject<K>> List<T> queryInstances(Class<T> clazz, StoragePagination pagination) {
 		LuceneMetadata metadata = metadatas.get(clazz);
 		Query query = new MatchAllDocsQuery();
+		query = keyset(metadata, query, pagination);
+		Sort sort = sort(metadata, pagination);
 		int offset = pagination == null ? 0 : pagination.getFirst();
 		int size = pagination == null ? Integer.MAX_VALUE : pagination.getSize();
-		KeyValue<List<Document>, FloatList> retrieve = engine.retrieveDocuments(query, null, offset, size);
+		KeyValue<List<Document>, FloatList> retrieve = engine.retrieveDocuments(query, sort, offset, size);
 		List<Document> documents = retrieve.getKey();
 		List<T> list = new ArrayList<>(BATCH_SIZE);
 		for (Document document : documents) {
@@ -282,9 +323,11 @@ public class LuceneAccessor implements StorageAccessor {
 			buffer.add(query, Occur.MUST);
 		}
 		query = buffer.build();
+		query = keyset(metadata, query, pagination);
+		Sort sort = sort(metadata, pagination);
 		int offset = pagination == null ? 0 : pagination.getFirst();
 		int size = pagination == null ? Integer.MAX_VALUE : pagination.getSize();
-		KeyValue<List<Document>, FloatList> retrieve = engine.retrieveDocuments(query, null, offset, size);
+		KeyValue<List<Document>, FloatList> retrieve = engine.retrieveDocuments(query, sort, offset, size);
 		List<Document> documents = retrieve.getKey();
 		List<T> list = new ArrayList<>(BATCH_SIZE);
 		for (Document document : documents) {
@@ -306,9 +349,11 @@ public class LuceneAccessor implements StorageAccessor {
 			buffer.add(query, Occur.SHOULD);
 		}
 		query = buffer.build();
+		query = keyset(metadata, query, pagination);
+		Sort sort = sort(metadata, pagination);
 		int offset = pagination == null ? 0 : pagination.getFirst();
 		int size = pagination == null ? Integer.MAX_VALUE : pagination.getSize();
-		KeyValue<List<Document>, FloatList> retrieve = engine.retrieveDocuments(query, null, offset, size);
+		KeyValue<List<Document>, FloatList> retrieve = engine.retrieveDocuments(query, sort, offset, size);
 		List<Document> documents = retrieve.getKey();
 		List<T> list = new ArrayList<>(BATCH_SIZE);
 		for (Document document : documents) {
@@ -359,11 +404,13 @@ public class LuceneAccessor implements StorageAccessor {
 	public <K extends Comparable, T extends IdentityObject<K>> void iterate(StorageIterator<T> iterator, Class<T> clazz, StoragePagination pagination) {
 		LuceneMetadata metadata = metadatas.get(clazz);
 		Query query = new MatchAllDocsQuery();
+		query = keyset(metadata, query, pagination);
+		Sort sort = sort(metadata, pagination);
 		int offset = pagination == null ? 0 : pagination.getFirst();
 		int size = pagination == null ? Integer.MAX_VALUE : pagination.getSize();
 		engine.iterateDocuments((document) -> {
 			iterator.iterate((T) metadata.decodeDocument(document));
-		}, query, null, offset, size);
+		}, query, sort, offset, size);
 	}
 
 	@Override
@@ -379,11 +426,13 @@ public class LuceneAccessor implements StorageAccessor {
 			buffer.add(query, Occur.MUST);
 		}
 		query = buffer.build();
+		query = keyset(metadata, query, pagination);
+		Sort sort = sort(metadata, pagination);
 		int offset = pagination == null ? 0 : pagination.getFirst();
 		int size = pagination == null ? Integer.MAX_VALUE : pagination.getSize();
 		engine.iterateDocuments((document) -> {
 			iterator.iterate((T) metadata.decodeDocument(document));
-		}, query, null, offset, size);
+		}, query, sort, offset, size);
 	}
 
 	@Override
@@ -399,11 +448,13 @@ public class LuceneAccessor implements StorageAccessor {
 			buffer.add(query, Occur.SHOULD);
 		}
 		query = buffer.build();
+		query = keyset(metadata, query, pagination);
+		Sort sort = sort(metadata, pagination);
 		int offset = pagination == null ? 0 : pagination.getFirst();
 		int size = pagination == null ? Integer.MAX_VALUE : pagination.getSize();
 		engine.iterateDocuments((document) -> {
 			iterator.iterate((T) metadata.decodeDocument(document));
-		}, query, null, offset, size);
+		}, query, sort, offset, size);
 	}
 
 }
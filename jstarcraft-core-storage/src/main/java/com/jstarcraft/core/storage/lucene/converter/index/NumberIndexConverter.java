@@ -13,6 +13,7 @@ import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
 import org.apache.lucene.search.Query;
 
 import com.jstarcraft.core.common.reflection.TypeUtility;
@@ -99,14 +100,19 @@ public class NumberIndexConverter implements IndexConverter {
             }
             break;
         case Higher:
+            // 最大值以上没有数值,加一会溢出为最小值
             if (Long.class.isAssignableFrom(clazz)) {
-                query = LongPoint.newRangeQuery(path, ((Number) data[0]).longValue(), Long.MAX_VALUE);
+                long value = ((Number) data[0]).longValue();
+                query = value == Long.MAX_VALUE ? new MatchNoDocsQuery() : LongPoint.newRangeQuery(path, value + 1, Long.MAX_VALUE);
             } else if (Float.class.isAssignableFrom(clazz)) {
-                query = FloatPoint.newRangeQuery(path, ((Number) data[0]).floatValue(), Float.MAX_VALUE);
+                float value = ((Number) data[0]).floatValue();
+                query = value == Float.POSITIVE_INFINITY ? new MatchNoDocsQuery() : FloatPoint.newRangeQuery(path, Math.nextUp(value), Float.POSITIVE_INFINITY);
             } else if (Double.class.isAssignableFrom(clazz)) {
-                query = DoublePoint.newRangeQuery(path, ((Number) data[0]).doubleValue(), Double.MAX_VALUE);
+                double value = ((Number) data[0]).doubleValue();
+                query = value == Double.POSITIVE_INFINITY ? new MatchNoDocsQuery() : DoublePoint.newRangeQuery(path, Math.nextUp(value), Double.POSITIVE_INFINITY);
             } else {
-                query = IntPoint.newRangeQuery(path, ((Number) data[0]).intValue() + 1, Integer.MAX_VALUE);
+                int value = ((Number) data[0]).intValue();
+                query = value == Integer.MAX_VALUE ? new MatchNoDocsQuery() : IntPoint.newRangeQuery(path, value + 1, Integer.MAX_VALUE);
             }
             break;
         case In:
@@ -137,14 +143,19 @@ public class NumberIndexConverter implements IndexConverter {
             }
             break;
         case Lower:
+            // 最小值以下没有数值,减一会溢出为最大值
             if (Long.class.isAssignableFrom(clazz)) {
-                query = LongPoint.newRangeQuery(path, Integer.MIN_VALUE, ((Number) data[0]).longValue());
+                long value = ((Number) data[0]).longValue();
+                query = value == Long.MIN_VALUE ? new MatchNoDocsQuery() : LongPoint.newRangeQuery(path, Long.MIN_VALUE, value - 1);
             } else if (Float.class.isAssignableFrom(clazz)) {
-                query = FloatPoint.newRangeQuery(path, Integer.MIN_VALUE, ((Number) data[0]).floatValue());
+                float value = ((Number) data[0]).floatValue();
+                query = value == Float.NEGATIVE_INFINITY ? new MatchNoDocsQuery() : FloatPoint.newRangeQuery(path, Float.NEGATIVE_INFINITY, Math.nextDown(value));
             } else if (Double.class.isAssignableFrom(clazz)) {
-                query = DoublePoint.newRangeQuery(path, Integer.MIN_VALUE, ((Number) data[0]).doubleValue());
+                double value = ((Number) data[0]).doubleValue();
+                query = value == Double.NEGATIVE_INFINITY ? new MatchNoDocsQuery() : DoublePoint.newRangeQuery(path, Double.NEGATIVE_INFINITY, Math.nextDown(value));
             } else {
-                query = IntPoint.newRangeQuery(path, Integer.MIN_VALUE, ((Number) data[0]).intValue() - 1);
+                int value = ((Number) data[0]).intValue();
+                query = value == Integer.MIN_VALUE ? new MatchNoDocsQuery() : IntPoint.newRangeQuery(path, Integer.MIN_VALUE, value - 1);
             }
             break;
         case Unequal:
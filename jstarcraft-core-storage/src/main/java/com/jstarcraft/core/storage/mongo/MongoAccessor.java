@@ -6,6 +6,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
 
 import org.bson.Document;
 import org.springframework.data.domain.Sort;
@@ -23,6 +24,7 @@ import com.jstarcraft.core.storage.ConditionType;
 import com.jstarcraft.core.storage.StorageIterator;
 import com.jstarcraft.core.storage.StorageMetadata;
 import com.jstarcraft.core.storage.StoragePagination;
+import com.jstarcraft.core.storage.StoragePartitioner;
 import com.jstarcraft.core.storage.exception.StorageQueryException;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.result.DeleteResult;
@@ -36,6 +38,8 @@ import com.mongodb.client.result.UpdateResult;
  */
 public class MongoAccessor implements StorageAccessor {
 
+	private static final int BATCH_SIZE = 1000;
+
 	/** 元数据集合 */
 	private HashMap<Class<?>, MongoMetadata> metadatas = new HashMap<>();
 
@@ -55,6 +59,39 @@ public class MongoAccessor implements StorageAccessor {
 		return metadatas.values();
 	}
 
+	/**
+	 * 获取基础条件(键集分页时限制主键大于after)
+	 * 
+	 * @param pagination
+	 * @return
+	 */
+	private Criteria criteria(StoragePagination pagination) {
+		Criteria criteria = Criteria.where(MongoMetadata.mongoId).exists(true);
+		if (pagination != null && pagination.isKeyset() && pagination.getAfter() != null) {
+			criteria.gt(pagination.getAfter());
+		}
+		return criteria;
+	}
+
+	/**
+	 * 分页
+	 * 
+	 * @param query
+	 * @param pagination
+	 */
+	private void paginate(Query query, StoragePagination pagination) {
+		if (pagination == null) {
+			return;
+		}
+		if (pagination.isKeyset()) {
+			// 键集分页(按照主键升序,从after之后开始)
+			query.with(Sort.by(Direction.ASC, MongoMetadata.mongoId));
+		} else {
+			query.skip(pagination.getFirst());
+		}
+		query.limit(pagination.getSize());
+	}
+
 	@Override
 	public <K extends Comparable, T extends IdentityObject<K>> T getInstance(Class<T> clazz, K id) {
 		MongoMetadata metadata = metadatas.get(clazz);
@@ -200,11 +237,8 @@ public class MongoAccessor implements StorageAccessor {
 	@Override
 	public <K extends Comparable, T extends IdentityObject<K>> List<T> queryInstances(Class<T> clazz, StoragePagination pagination) {
 		MongoMetadata metadata = metadatas.get(clazz);
-		Query query = new Query(Criteria.where(MongoMetadata.mongoId).exists(true));
-		if (pagination != null) {
-			query.skip(pagination.getFirst());
-			query.limit(pagination.getSize());
-		}
+		Query query = new Query(criteria(pagination));
+		paginate(query, pagination);
 		return template.find(query, clazz, metadata.getOrmName());
 	}
 
@@ -212,7 +246,7 @@ public class MongoAccessor implements StorageAccessor {
 	public <K extends Comparable, T extends IdentityObject<K>> List<T> queryIntersection(Class<T> clazz, Map<String, Object> condition, StoragePagination pagination) {
 		MongoMetadata metadata = metadatas.get(clazz);
 		final Iterator<Entry<String, Object>> conditionIterator = condition.entrySet().iterator();
-		Criteria criteria = Criteria.where(MongoMetadata.mongoId).exists(true);
+		Criteria criteria = criteria(pagination);
 		Criteria[] andCriterias = new Criteria[condition.size()];
 		int index = 0;
 		while (conditionIterator.hasNext()) {
@@ -225,10 +259,7 @@ public class MongoAccessor implements StorageAccessor {
 			andCriterias[index++] = Criteria.where(key).is(value);
 		}
 		Query query = Query.query(criteria.andOperator(andCriterias));
-		if (pagination != null) {
-			query.skip(pagination.getFirst());
-			query.limit(pagination.getSize());
-		}
+		paginate(query, pagination);
 		return template.find(query, clazz, metadata.getOrmName());
 	}
 
@@ -236,7 +267,7 @@ public class MongoAccessor implements StorageAccessor {
 	public <K extends Comparable, T extends IdentityObject<K>> List<T> queryUnion(Class<T> clazz, Map<String, Object> condition, StoragePagination pagination) {
 		MongoMetadata metadata = metadatas.get(clazz);
 		final Iterator<Entry<String, Object>> conditionIterator = condition.entrySet().iterator();
-		Criteria criteria = Criteria.where(MongoMetadata.mongoId).exists(true);
+		Criteria criteria = criteria(pagination);
 		Criteria[] orCriterias = new Criteria[condition.size()];
 		int index = 0;
 		while (conditionIterator.hasNext()) {
@@ -249,10 +280,7 @@ public class MongoAccessor implements StorageAccessor {
 			orCriterias[index++] = Criteria.where(key).is(value);
 		}
 		Query query = Query.query(criteria.orOperator(orCriterias));
-		if (pagination != null) {
-			query.skip(pagination.getFirst());
-			query.limit(pagination.getSize());
-		}
+		paginate(query, pagination);
 		return template.find(query, clazz, metadata.getOrmName());
 	}
 
@@ -306,11 +334,9 @@ public class MongoAccessor implements StorageAccessor {
 	@Override
 	public <K extends Comparable, T extends IdentityObject<K>> void iterate(StorageIterator<T> iterator, Class<T> clazz, StoragePagination pagination) {
 		MongoMetadata metadata = metadatas.get(clazz);
-		Query query = new Query(Criteria.where(MongoMetadata.mongoId).exists(true));
-		if (pagination != null) {
-			query.skip(pagination.getFirst());
-			query.limit(pagination.getSize());
-		}
+		Query query = new Query(criteria(pagination));
+		paginate(query, pagination);
+		query.cursorBatchSize(BATCH_SIZE);
 		try (CloseableIterator<T> stream = template.stream(query, clazz, metadata.getOrmName())) {
 			while (stream.hasNext()) {
 				try {
@@ -328,7 +354,7 @@ public class MongoAccessor implements StorageAccessor {
 	public <K extends Comparable, T extends IdentityObject<K>> void iterateIntersection(StorageIterator<T> iterator, Class<T> clazz, Map<String, Object> condition, StoragePagination pagination) {
 		MongoMetadata metadata = metadatas.get(clazz);
 		final Iterator<Entry<String, Object>> conditionIterator = condition.entrySet().iterator();
-		Criteria criteria = Criteria.where(MongoMetadata.mongoId).exists(true);
+		Criteria criteria = criteria(pagination);
 		Criteria[] andCriterias = new Criteria[condition.size()];
 		int index = 0;
 		while (conditionIterator.hasNext()) {
@@ -341,10 +367,8 @@ public class MongoAccessor implements StorageAccessor {
 			andCriterias[index++] = Criteria.where(key).is(value);
 		}
 		Query query = Query.query(criteria.andOperator(andCriterias));
-		if (pagination != null) {
-			query.skip(pagination.getFirst());
-			query.limit(pagination.getSize());
-		}
+		paginate(query, pagination);
+		query.cursorBatchSize(BATCH_SIZE);
 		try (CloseableIterator<T> stream = template.stream(query, clazz, metadata.getOrmName())) {
 			while (stream.hasNext()) {
 				try {
@@ -362,7 +386,7 @@ public class MongoAccessor implements StorageAccessor {
 	public <K extends Comparable, T extends IdentityObject<K>> void iterateUnion(StorageIterator<T> iterator, Class<T> clazz, Map<String, Object> condition, StoragePagination pagination) {
 		MongoMetadata metadata = metadatas.get(clazz);
 		final Iterator<Entry<String, Object>> conditionIterator = condition.entrySet().iterator();
-		Criteria criteria = Criteria.where(MongoMetadata.mongoId).exists(true);
+		Criteria criteria = criteria(pagination);
 		Criteria[] orCriterias = new Criteria[condition.size()];
 		int index = 0;
 		while (conditionIterator.hasNext()) {
@@ -375,10 +399,8 @@ public class MongoAccessor implements StorageAccessor {
 			orCriterias[index++] = Criteria.where(key).is(value);
 		}
 		Query query = Query.query(criteria.orOperator(orCriterias));
-		if (pagination != null) {
-			query.skip(pagination.getFirst());
-			query.limit(pagination.getSize());
-		}
+		paginate(query, pagination);
+		query.cursorBatchSize(BATCH_SIZE);
 		try (CloseableIterator<T> stream = template.stream(query, clazz, metadata.getOrmName())) {
 			while (stream.hasNext()) {
 				try {
@@ -392,6 +414,73 @@ public class MongoAccessor implements StorageAccessor {
 		}
 	}
 
+	/**
+	 * 使用迭代器流式遍历指定主键区间[from, to)的对象
+	 * 
+	 * <pre>
+	 * 游标每批获取BATCH_SIZE条文档,内存占用与数据量无关.
+	 * 指定字段时只投影这些字段(主键总是包含),其余字段保持默认值.
+	 * </pre>
+	 * 
+	 * @param iterator
+	 * @param clazz
+	 * @param from
+	 *            下限(包含),null表示无界
+	 * @param to
+	 *            上限(不包含),null表示无界
+	 * @param fields
+	 *            投影字段,为空表示所有字段
+	 */
+	public <K extends Comparable, T extends IdentityObject<K>> void iterateRange(StorageIterator<T> iterator, Class<T> clazz, K from, K to, String... fields) {
+		MongoMetadata metadata = metadatas.get(clazz);
+		Criteria criteria = Criteria.where(MongoMetadata.mongoId);
+		if (from == null && to == null) {
+			criteria.exists(true);
+		}
+		if (from != null) {
+			criteria.gte(from);
+		}
+		if (to != null) {
+			criteria.lt(to);
+		}
+		Query query = Query.query(criteria);
+		for (String field : fields) {
+			if (metadata.getPrimaryName().equals(field)) {
+				field = MongoMetadata.mongoId;
+			}
+			query.fields().include(field);
+		}
+		query.cursorBatchSize(BATCH_SIZE);
+		try (CloseableIterator<T> stream = template.stream(query, clazz, metadata.getOrmName())) {
+			while (stream.hasNext()) {
+				try {
+					final T object = stream.next();
+					iterator.iterate(object);
+				} catch (Throwable throwable) {
+					throw new StorageQueryException(throwable);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 按照主键边界分区并行流式遍历对象
+	 * 
+	 * @param iterator
+	 *            会被多个线程并发调用
+	 * @param clazz
+	 * @param executor
+	 * @param boundaries
+	 *            主键边界,N个边界切分为N+1个区间
+	 * @param fields
+	 *            投影字段,为空表示所有字段
+	 */
+	public <K extends Comparable, T extends IdentityObject<K>> void iterateRanges(StorageIterator<T> iterator, Class<T> clazz, ExecutorService executor, K[] boundaries, String... fields) {
+		StoragePartitioner.iterate(executor, (K from, K to) -> {
+			iterateRange(iterator, clazz, from, to, fields);
+		}, boundaries);
+	}
+
 	public <K extends Comparable, T extends IdentityObject<K>> long update(Class<T> clazz, Query query, Update update) {
 		MongoMetadata metadata = metadatas.get(clazz);
 		UpdateResult count = template.updateMulti(query, update, metadata.getOrmName());
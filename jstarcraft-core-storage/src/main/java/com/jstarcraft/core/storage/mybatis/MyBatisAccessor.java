@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.ibatis.session.Configuration;
 import org.mybatis.spring.SqlSessionTemplate;
@@ -25,6 +26,7 @@ import com.jstarcraft.core.storage.ConditionType;
 import com.jstarcraft.core.storage.StorageIterator;
 import com.jstarcraft.core.storage.StorageMetadata;
 import com.jstarcraft.core.storage.StoragePagination;
+import com.jstarcraft.core.storage.StoragePartitioner;
 import com.jstarcraft.core.storage.exception.StorageException;
 import com.jstarcraft.core.storage.exception.StorageQueryException;
 import com.jstarcraft.core.utility.StringUtility;
@@ -37,6 +39,8 @@ import com.jstarcraft.core.utility.StringUtility;
 @Transactional
 public class MyBatisAccessor implements StorageAccessor {
 
+	private static final int BATCH_SIZE = 1000;
+
 	/** 查询指定范围的最大主键标识 */
 	private final static String MAXIMUM_ID = "MAX({})";
 
@@ -242,19 +246,61 @@ public class MyBatisAccessor implements StorageAccessor {
 		return list;
 	}
 
-	@Override
-	public <K extends Comparable, T extends IdentityObject<K>> List<T> queryInstances(Class<T> clazz, StoragePagination pagination) {
-		MyBatisMetadata metadata = metadatas.get(clazz);
-		BaseMapper mapper = template.getMapper(metadata.getMapperClass());
-		QueryWrapper<?> query = new QueryWrapper<>();
+	/**
+	 * 并集条件(嵌套为一个整体,保证与其它条件组合时的优先级)
+	 * 
+	 * @param query
+	 * @param metadata
+	 * @param condition
+	 */
+	private void union(QueryWrapper<?> query, MyBatisMetadata metadata, Map<String, Object> condition) {
+		query.and((wrapper) -> {
+			for (Entry<String, Object> term : condition.entrySet()) {
+				wrapper.or((nest) -> {
+					return nest.eq(metadata.getColumnName(term.getKey()), term.getValue());
+				});
+			}
+			return wrapper;
+		});
+	}
+
+	/**
+	 * 按照分页查询
+	 * 
+	 * @param mapper
+	 * @param metadata
+	 * @param query
+	 * @param pagination
+	 * @return
+	 */
+	private <T> List<T> select(BaseMapper mapper, MyBatisMetadata metadata, QueryWrapper<?> query, StoragePagination pagination) {
 		if (pagination == null) {
 			return mapper.selectList(query);
+		}
+		if (pagination.isKeyset()) {
+			// 键集分页(按照主键升序,从after之后开始)
+			String column = metadata.getColumnName(metadata.getPrimaryName());
+			Comparable after = pagination.getAfter();
+			if (after != null) {
+				query.gt(column, after);
+			}
+			query.orderByAsc(column);
+			IPage<T> page = mapper.selectPage(new Page(1, pagination.getSize(), false), query);
+			return page.getRecords();
 		} else {
 			IPage<T> page = mapper.selectPage(new Page(pagination.getPage(), pagination.getSize()), query);
 			return page.getRecords();
 		}
 	}
 
+	@Override
+	public <K extends Comparable, T extends IdentityObject<K>> List<T> queryInstances(Class<T> clazz, StoragePagination pagination) {
+		MyBatisMetadata metadata = metadatas.get(clazz);
+		BaseMapper mapper = template.getMapper(metadata.getMapperClass());
+		QueryWrapper<?> query = new QueryWrapper<>();
+		return select(mapper, metadata, query, pagination);
+	}
+
 	@Override
 	public <K extends Comparable, T extends IdentityObject<K>> List<T> queryIntersection(Class<T> clazz, Map<String, Object> condition, StoragePagination pagination) {
 		MyBatisMetadata metadata = metadatas.get(clazz);
@@ -265,12 +311,7 @@ public class MyBatisAccessor implements StorageAccessor {
 				return wrapper.eq(metadata.getColumnName(term.getKey()), term.getValue());
 			});
 		}
-		if (pagination == null) {
-			return mapper.selectList(query);
-		} else {
-			IPage<T> page = mapper.selectPage(new Page(pagination.getPage(), pagination.getSize()), query);
-			return page.getRecords();
-		}
+		return select(mapper, metadata, query, pagination);
 	}
 
 	@Override
@@ -278,17 +319,8 @@ public class MyBatisAccessor implements StorageAccessor {
 		MyBatisMetadata metadata = metadatas.get(clazz);
 		BaseMapper mapper = template.getMapper(metadata.getMapperClass());
 		QueryWrapper<?> query = new QueryWrapper<>();
-		for (Entry<String, Object> term : condition.entrySet()) {
-			query.or((wrapper) -> {
-				return wrapper.eq(metadata.getColumnName(term.getKey()), term.getValue());
-			});
-		}
-		if (pagination == null) {
-			return mapper.selectList(query);
-		} else {
-			IPage<T> page = mapper.selectPage(new Page(pagination.getPage(), pagination.getSize()), query);
-			return page.getRecords();
-		}
+		union(query, metadata, condition);
+		return select(mapper, metadata, query, pagination);
 	}
 
 	@Override
@@ -317,11 +349,7 @@ public class MyBatisAccessor implements StorageAccessor {
 		MyBatisMetadata metadata = metadatas.get(clazz);
 		BaseMapper mapper = template.getMapper(metadata.getMapperClass());
 		QueryWrapper<?> query = new QueryWrapper<>();
-		for (Entry<String, Object> term : condition.entrySet()) {
-			query.or((wrapper) -> {
-				return wrapper.eq(metadata.getColumnName(term.getKey()), term.getValue());
-			});
-		}
+		union(query, metadata, condition);
 		return mapper.selectCount(query);
 	}
 
@@ -330,8 +358,8 @@ public class MyBatisAccessor implements StorageAccessor {
 		MyBatisMetadata metadata = metadatas.get(clazz);
 		BaseMapper mapper = template.getMapper(metadata.getMapperClass());
 		QueryWrapper<?> query = new QueryWrapper<>();
-		IPage<T> page = mapper.selectPage(new Page(pagination.getPage(), pagination.getSize()), query);
-		for (T object : page.getRecords()) {
+		List<T> objects = select(mapper, metadata, query, pagination);
+		for (T object : objects) {
 			iterator.iterate(object);
 		}
 	}
@@ -346,8 +374,8 @@ public class MyBatisAccessor implements StorageAccessor {
 				return wrapper.eq(metadata.getColumnName(term.getKey()), term.getValue());
 			});
 		}
-		IPage<T> page = mapper.selectPage(new Page(pagination.getPage(), pagination.getSize()), query);
-		for (T object : page.getRecords()) {
+		List<T> objects = select(mapper, metadata, query, pagination);
+		for (T object : objects) {
 			iterator.iterate(object);
 		}
 	}
@@ -357,15 +385,73 @@ public class MyBatisAccessor implements StorageAccessor {
 		MyBatisMetadata metadata = metadatas.get(clazz);
 		BaseMapper mapper = template.getMapper(metadata.getMapperClass());
 		QueryWrapper<?> query = new QueryWrapper<>();
-		for (Entry<String, Object> term : condition.entrySet()) {
-			query.or((wrapper) -> {
-				return wrapper.eq(metadata.getColumnName(term.getKey()), term.getValue());
-			});
-		}
-		IPage<T> page = mapper.selectPage(new Page(pagination.getPage(), pagination.getSize()), query);
-		for (T object : page.getRecords()) {
+		union(query, metadata, condition);
+		List<T> objects = select(mapper, metadata, query, pagination);
+		for (T object : objects) {
 			iterator.iterate(object);
 		}
 	}
 
+	/**
+	 * 使用迭代器流式遍历指定主键区间[from, to)的对象
+	 * 
+	 * <pre>
+	 * 按照主键顺序每批查询BATCH_SIZE条记录,下一批从上一批最后的主键之后开始,内存占用与数据量无关.
+	 * </pre>
+	 * 
+	 * @param iterator
+	 * @param clazz
+	 * @param from
+	 *            下限(包含),null表示无界
+	 * @param to
+	 *            上限(不包含),null表示无界
+	 */
+	public <K extends Comparable, T extends IdentityObject<K>> void iterateRange(StorageIterator<T> iterator, Class<T> clazz, K from, K to) {
+		MyBatisMetadata metadata = metadatas.get(clazz);
+		BaseMapper mapper = template.getMapper(metadata.getMapperClass());
+		String column = metadata.getColumnName(metadata.getPrimaryName());
+		K last = null;
+		while (true) {
+			QueryWrapper<?> query = new QueryWrapper<>();
+			if (last != null) {
+				query.gt(column, last);
+			} else if (from != null) {
+				query.ge(column, from);
+			}
+			if (to != null) {
+				query.lt(column, to);
+			}
+			query.orderByAsc(column);
+			IPage<T> page = mapper.selectPage(new Page(1, BATCH_SIZE, false), query);
+			List<T> objects = page.getRecords();
+			for (T object : objects) {
+				try {
+					iterator.iterate(object);
+				} catch (Throwable throwable) {
+					throw new StorageQueryException(throwable);
+				}
+			}
+			if (objects.size() < BATCH_SIZE) {
+				break;
+			}
+			last = objects.get(objects.size() - 1).getId();
+		}
+	}
+
+	/**
+	 * 按照主键边界分区并行流式遍历对象
+	 * 
+	 * @param iterator
+	 *            会被多个线程并发调用
+	 * @param clazz
+	 * @param executor
+	 * @param boundaries
+	 *            主键边界,N个边界切分为N+1个区间
+	 */
+	public <K extends Comparable, T extends IdentityObject<K>> void iterateRanges(StorageIterator<T> iterator, Class<T> clazz, ExecutorService executor, K... boundaries) {
+		StoragePartitioner.iterate(executor, (K from, K to) -> {
+			iterateRange(iterator, clazz, from, to);
+		}, boundaries);
+	}
+
 }
@@ -80,6 +80,10 @@ public class Neo4jAccessor implements StorageAccessor {
 
 	private final static String PAGINATION_CONDITION = " SKIP {} LIMIT {}";
 
+	private final static String KEYSET_CONDITION = " WITH clazz WHERE clazz.{} > {after}";
+
+	private final static String KEYSET_PAGINATION_CONDITION = " ORDER BY clazz.{} LIMIT {}";
+
 	private final static String ITERATE_BEGIN = "MATCH (clazz:{})";
 
 	private final static String ITERATE_END = " RETURN clazz";
@@ -363,9 +367,18 @@ public class Neo4jAccessor implements StorageAccessor {
 					index++;
 				}
 			}
+			if (pagination != null && pagination.isKeyset() && pagination.getAfter() != null) {
+				// 键集分页(按照主键升序,从after之后开始)
+				buffer.append(StringUtility.format(KEYSET_CONDITION, metadata.getPrimaryName()));
+				parameters.put("after", pagination.getAfter());
+			}
 			buffer.append(ITERATE_END);
 			if (pagination != null) {
-				buffer.append(StringUtility.format(PAGINATION_CONDITION, pagination.getFirst(), pagination.getSize()));
+				if (pagination.isKeyset()) {
+					buffer.append(StringUtility.format(KEYSET_PAGINATION_CONDITION, metadata.getPrimaryName(), pagination.getSize()));
+				} else {
+					buffer.append(StringUtility.format(PAGINATION_CONDITION, pagination.getFirst(), pagination.getSize()));
+				}
 			}
 			String cql = buffer.toString();
 			Iterable<T> iterable = template.query(clazz, cql, parameters);
@@ -1,7 +1,24 @@
 package com.jstarcraft.core.storage.berkeley;
 
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.apache.commons.io.FileUtils;
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
 import org.junit.Test;
@@ -12,8 +29,10 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import com.jstarcraft.core.storage.ConditionType;
 import com.jstarcraft.core.storage.StorageCondition;
+import com.jstarcraft.core.storage.StoragePagination;
 import com.jstarcraft.core.storage.berkeley.entity.Pack;
 import com.jstarcraft.core.storage.berkeley.entity.Person;
+import com.jstarcraft.core.storage.berkeley.exception.BerkeleyOperationException;
 import com.jstarcraft.core.storage.berkeley.exception.BerkeleyVersionException;
 import com.jstarcraft.core.storage.berkeley.persistent.Item;
 import com.sleepycat.je.UniqueConstraintException;
@@ -73,6 +92,29 @@ public class BerkeleyAccessorTestCase {
 		Collection<Pack> packs = accessor.queryInstances(Pack.class, "personId", new StorageCondition<>(ConditionType.Equal, birdy.getId()));
 		Assert.assertThat(packs.size(), CoreMatchers.equalTo(size));
 
+		// 键集分页
+		Map<String, Object> condition = new HashMap<>();
+		condition.put("personId", birdy.getId());
+		int number = 0;
+		Long after = null;
+		List<Pack> objects;
+		do {
+			objects = accessor.queryIntersection(Pack.class, condition, StoragePagination.instanceOf(after, 3));
+			for (Pack object : objects) {
+				if (after != null) {
+					Assert.assertTrue(object.getId() > after);
+				}
+				after = object.getId();
+				number++;
+			}
+		} while (objects.size() == 3);
+		Assert.assertThat(number, CoreMatchers.equalTo(size));
+		objects = accessor.queryInstances(Pack.class, StoragePagination.instanceOf(4L, 3));
+		Assert.assertThat(objects.get(0).getId(), CoreMatchers.equalTo(5L));
+		Assert.assertThat(objects.size(), CoreMatchers.equalTo(3));
+		objects = accessor.queryUnion(Pack.class, condition, StoragePagination.instanceOf(8L, 3));
+		Assert.assertThat(objects.size(), CoreMatchers.equalTo(1));
+
 		accessor.deleteInstance(Person.class, 1L);
 
 		// 由于级联操作,所有Pack的personId会被重置为null
@@ -87,6 +129,215 @@ public class BerkeleyAccessorTestCase {
 		Assert.assertFalse(accessor.deleteInstance(Person.class, 1L));
 	}
 
+	/**
+	 * 测试流式遍历索引
+	 */
+	@Test
+	public void testIdentities() {
+		int size = 100;
+		for (long index = 0; index < size; index++) {
+			Person person = new Person(index, String.format("%03d", index));
+			accessor.createInstance(Person.class, person);
+		}
+
+		Map<Long, String> identities = accessor.queryIdentities(Person.class, "name", new StorageCondition<>(ConditionType.All));
+		Assert.assertThat(identities.size(), CoreMatchers.equalTo(size));
+		Assert.assertThat(identities.get(10L), CoreMatchers.equalTo("010"));
+		Assert.assertThat(accessor.queryIdentities(Person.class, "name", new StorageCondition<>(ConditionType.Between, "010", "019")).size(), CoreMatchers.equalTo(10));
+		Assert.assertThat(accessor.queryIdentities(Person.class, "name", new StorageCondition<>(ConditionType.Equal, "010")).size(), CoreMatchers.equalTo(1));
+		Assert.assertThat(accessor.queryIdentities(Person.class, "name", new StorageCondition<>(ConditionType.Higher, "089")).size(), CoreMatchers.equalTo(10));
+		Assert.assertThat(accessor.queryIdentities(Person.class, "name", new StorageCondition<>(ConditionType.In, "025", "050", "075")).size(), CoreMatchers.equalTo(3));
+		Assert.assertThat(accessor.queryIdentities(Person.class, "name", new StorageCondition<>(ConditionType.Lower, "010")).size(), CoreMatchers.equalTo(10));
+		Assert.assertThat(accessor.queryIdentities(Person.class, "name", new StorageCondition<>(ConditionType.Unequal, "050")).size(), CoreMatchers.equalTo(size - 1));
+
+		// 流式遍历按照二级键有序
+		List<String> names = new ArrayList<>(size);
+		accessor.iterateIdentities((keyValue) -> {
+			names.add(keyValue.getValue());
+		}, Person.class, "name", new StorageCondition<>(ConditionType.Higher, "049"));
+		Assert.assertThat(names.size(), CoreMatchers.equalTo(50));
+		for (int index = 1; index < names.size(); index++) {
+			Assert.assertTrue(names.get(index - 1).compareTo(names.get(index)) < 0);
+		}
+
+		// 分区并行遍历
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		Map<Long, String> parallel = new ConcurrentHashMap<>();
+		accessor.iterateIdentities((keyValue) -> {
+			parallel.put(keyValue.getKey(), keyValue.getValue());
+		}, Person.class, "name", new StorageCondition<>(ConditionType.Between, "010", "089"), executor, "075", "025", "050");
+		Assert.assertThat(parallel.size(), CoreMatchers.equalTo(80));
+		parallel.clear();
+		accessor.iterateIdentities((keyValue) -> {
+			parallel.put(keyValue.getKey(), keyValue.getValue());
+		}, Person.class, "name", new StorageCondition<>(ConditionType.Unequal, "050"), executor, "025", "050", "075");
+		Assert.assertThat(parallel.size(), CoreMatchers.equalTo(size - 1));
+		executor.shutdown();
+
+		for (long index = 0; index < size; index++) {
+			accessor.deleteInstance(Person.class, index);
+		}
+	}
+
+	/**
+	 * 测试符号不同的数值二级键(按照编码以后的键过滤)
+	 */
+	@Test
+	public void testSignedIdentities() {
+		int size = 100;
+		for (long index = -size / 2; index < size / 2; index++) {
+			accessor.createInstance(Person.class, new Person(index, String.valueOf(index)));
+			accessor.createInstance(Pack.class, new Pack(index, 0, index));
+		}
+
+		Map<Long, Long> identities = accessor.queryIdentities(Pack.class, "personId", new StorageCondition<>(ConditionType.Between, -10L, 9L));
+		Assert.assertThat(identities.size(), CoreMatchers.equalTo(20));
+		Assert.assertThat(accessor.queryIdentities(Pack.class, "personId", new StorageCondition<>(ConditionType.Lower, 0L)).size(), CoreMatchers.equalTo(size / 2));
+		Assert.assertThat(accessor.queryIdentities(Pack.class, "personId", new StorageCondition<>(ConditionType.Higher, -1L)).size(), CoreMatchers.equalTo(size / 2));
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		Map<Long, Long> parallel = new ConcurrentHashMap<>();
+		accessor.iterateIdentities((keyValue) -> {
+			Assert.assertEquals(keyValue.getKey(), keyValue.getValue());
+			parallel.put(keyValue.getKey(), keyValue.getValue());
+		}, Pack.class, "personId", new StorageCondition<>(ConditionType.Between, -30L, 29L), executor, 25L, -25L, 0L);
+		Assert.assertThat(parallel.size(), CoreMatchers.equalTo(60));
+		executor.shutdown();
+
+		for (long index = -size / 2; index < size / 2; index++) {
+			accessor.deleteInstance(Pack.class, index);
+			accessor.deleteInstance(Person.class, index);
+		}
+	}
+
+	/**
+	 * 测试分组提交
+	 */
+	@Test
+	public void testGroupCommit() throws Exception {
+		int size = 1000;
+		ExecutorService executor = Executors.newFixedThreadPool(10);
+		Queue<CompletableFuture<Boolean>> futures = new ConcurrentLinkedQueue<>();
+		CountDownLatch latch = new CountDownLatch(size);
+		for (long index = 0; index < size; index++) {
+			Person person = new Person(index, String.format("%04d", index));
+			executor.execute(() -> {
+				futures.add(accessor.createInstanceAsynchronous(Person.class, person));
+				latch.countDown();
+			});
+		}
+		latch.await();
+		for (CompletableFuture<Boolean> future : futures) {
+			Assert.assertTrue(future.get());
+		}
+		Assert.assertThat(accessor.countInstances(Person.class), CoreMatchers.equalTo((long) size));
+
+		// 标识冲突
+		Assert.assertFalse(accessor.createInstanceAsynchronous(Person.class, new Person(0L, "Birdy")).get());
+		// 索引冲突只影响自身的写操作
+		CompletableFuture<Boolean> conflict = accessor.createInstanceAsynchronous(Person.class, new Person(size, "0000"));
+		CompletableFuture<Boolean> success = accessor.createInstanceAsynchronous(Person.class, new Person(size + 1, "Birdy"));
+		try {
+			conflict.get();
+			Assert.fail();
+		} catch (ExecutionException exception) {
+			Assert.assertTrue(exception.getCause() instanceof UniqueConstraintException);
+		}
+		Assert.assertTrue(success.get());
+		Assert.assertTrue(accessor.deleteInstanceAsynchronous(Person.class, size + 1L).get());
+
+		futures.clear();
+		for (long index = 0; index < size; index++) {
+			futures.add(accessor.deleteInstanceAsynchronous(Person.class, index));
+		}
+		for (CompletableFuture<Boolean> future : futures) {
+			Assert.assertTrue(future.get());
+		}
+		Assert.assertThat(accessor.countInstances(Person.class), CoreMatchers.equalTo(0L));
+		executor.shutdown();
+	}
+
+	/**
+	 * 测试只读模式
+	 */
+	@Test
+	public void testReadOnly() throws Exception {
+		File directory = new File("target/berkeley/readOnly");
+		FileUtils.deleteQuietly(directory);
+		directory.mkdirs();
+		Properties properties = new Properties();
+		try (InputStream stream = Thread.currentThread().getContextClassLoader().getResourceAsStream("berkeley.properties")) {
+			properties.load(stream);
+		}
+		Collection<Class<?>> classes = Arrays.asList(Person.class);
+		BerkeleyAccessor writer = new BerkeleyAccessor(classes, directory, properties, false, false, false, 60000L);
+		writer.start();
+		Assert.assertTrue(writer.createInstance(Person.class, new Person(1L, "Birdy")));
+		writer.stop();
+
+		BerkeleyAccessor reader = new BerkeleyAccessor(classes, directory, properties, true, false, false, 60000L);
+		reader.start();
+		try {
+			Assert.assertThat(reader.getInstance(Person.class, 1L).getName(), CoreMatchers.equalTo("Birdy"));
+			// 只读模式没有提交线程,分组提交直接失败
+			try {
+				reader.createInstanceAsynchronous(Person.class, new Person(2L, "Mickey"));
+				Assert.fail();
+			} catch (BerkeleyOperationException exception) {
+			}
+		} finally {
+			reader.stop();
+			FileUtils.deleteQuietly(directory);
+		}
+	}
+
+	/**
+	 * 测试并发版本
+	 */
+	@Test
+	public void testVersion() throws Exception {
+		int size = 100;
+		// 避免与其它测试缓存的版本冲突
+		long offset = 1000L;
+		for (long index = offset; index < offset + size; index++) {
+			accessor.createInstance(Pack.class, new Pack(index, size, null));
+		}
+		// 不同实例的版本修改可以并行
+		ExecutorService executor = Executors.newFixedThreadPool(10);
+		CountDownLatch latch = new CountDownLatch(size);
+		for (long index = offset; index < offset + size; index++) {
+			long id = index;
+			executor.execute(() -> {
+				try {
+					Pack pack = accessor.getInstance(Pack.class, id);
+					accessor.updateInstance(Pack.class, pack);
+				} finally {
+					latch.countDown();
+				}
+			});
+		}
+		latch.await();
+		Assert.assertTrue(accessor.getVersionSize() >= size);
+
+		long conflicts = accessor.getVersionConflicts();
+		Pack newPack = accessor.getInstance(Pack.class, offset);
+		Pack oldPack = accessor.getInstance(Pack.class, offset);
+		Assert.assertThat(newPack.getVersion(), CoreMatchers.equalTo(1));
+		accessor.updateInstance(Pack.class, newPack);
+		try {
+			// 版本冲突
+			accessor.updateInstance(Pack.class, oldPack);
+			Assert.fail();
+		} catch (BerkeleyVersionException exception) {
+		}
+		Assert.assertThat(accessor.getVersionConflicts(), CoreMatchers.equalTo(conflicts + 1));
+
+		for (long index = offset; index < offset + size; index++) {
+			accessor.deleteInstance(Pack.class, index);
+		}
+		executor.shutdown();
+	}
+
 	private void testAbortTransactor(Pack pack, BerkeleyIsolation isolation) {
 		accessor.openTransactor(isolation);
 		Assert.assertNotNull(accessor.getTransactor());
@@ -6,6 +6,8 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
@@ -18,6 +20,7 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import com.jstarcraft.core.storage.berkeley.BerkeleyAccessor;
+import com.jstarcraft.core.storage.berkeley.BerkeleyState;
 import com.jstarcraft.core.storage.berkeley.entity.Pack;
 import com.jstarcraft.core.storage.berkeley.entity.Person;
 import com.jstarcraft.core.storage.berkeley.memorandum.FileMemorandum;
@@ -39,6 +42,9 @@ public class FileMemorandumTestCase {
     public void beforeTest() throws Exception {
         FileUtils.forceMkdir(environmentDirectory);
         FileUtils.forceMkdir(memorandumDirectory);
+        if (accessor.getState() == BerkeleyState.STOPPED) {
+            accessor.start();
+        }
     }
 
     @After
@@ -50,7 +56,21 @@ public class FileMemorandumTestCase {
     @Test
     public void testMemorandum() throws Exception {
         FileMemorandum fileMemorandum = new FileMemorandum(10485760, environmentDirectory, memorandumDirectory);
+        testMemorandum(fileMemorandum, false);
+    }
 
+    @Test
+    public void testAsynchronous() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        FileMemorandum fileMemorandum = new FileMemorandum(1048576, environmentDirectory, memorandumDirectory, executor, 4, 0L, true);
+        testMemorandum(fileMemorandum, true);
+        Assert.assertEquals(2L, fileMemorandum.getTotalTimes());
+        Assert.assertTrue(fileMemorandum.getTotalBytes() > 0L);
+        Assert.assertTrue(fileMemorandum.getLastBytes() > 0L);
+        executor.shutdown();
+    }
+
+    private void testMemorandum(FileMemorandum fileMemorandum, boolean asynchronous) throws Exception {
         int size = 100000;
         for (long index = 0; index < size; index++) {
             Person person = new Person(index, String.valueOf(index));
@@ -58,7 +78,11 @@ public class FileMemorandumTestCase {
         }
         Instant from = dateTime.toInstant(ZoneOffset.UTC);
         // 执行备份
-        fileMemorandum.checkIn(accessor.getEnvironment(), from);
+        if (asynchronous) {
+            fileMemorandum.checkInAsynchronous(accessor.getEnvironment(), from).get();
+        } else {
+            fileMemorandum.checkIn(accessor.getEnvironment(), from);
+        }
         int memorandum = 0;
         Iterator<File> iterator = FileUtils.iterateFiles(memorandumDirectory, null, true);
         while (iterator.hasNext()) {
@@ -75,7 +99,11 @@ public class FileMemorandumTestCase {
         }
         Instant to = from.plus(1, ChronoUnit.HOURS);
         // 执行备份
-        fileMemorandum.checkIn(accessor.getEnvironment(), to);
+        if (asynchronous) {
+            fileMemorandum.checkInAsynchronous(accessor.getEnvironment(), to).get();
+        } else {
+            fileMemorandum.checkIn(accessor.getEnvironment(), to);
+        }
         memorandum = 0;
         iterator = FileUtils.iterateFiles(memorandumDirectory, null, true);
         while (iterator.hasNext()) {
@@ -1,15 +1,20 @@
 package com.jstarcraft.core.storage.berkeley.migration;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.slf4j.Logger;
@@ -19,12 +24,18 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import com.jstarcraft.core.storage.ConditionType;
+import com.jstarcraft.core.storage.StorageCondition;
 import com.jstarcraft.core.storage.berkeley.BerkeleyAccessor;
 import com.jstarcraft.core.storage.berkeley.migration.BerkeleyConverter;
 import com.jstarcraft.core.storage.berkeley.migration.Migrator;
 import com.jstarcraft.core.storage.berkeley.migration.older.Information;
 import com.jstarcraft.core.storage.berkeley.migration.older.Item;
 import com.jstarcraft.core.storage.berkeley.migration.older.Player;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.persist.StoreConfig;
+import com.sleepycat.persist.raw.RawStore;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration
@@ -111,9 +122,111 @@ public class MigrationTestCase {
 
         // 确定迁移实体以后,从旧环境获取数据,通过(Converter)转换器转换以后,将数据填充到新环境;
         migrator.migrate();
+        long readNumber = 0L;
+        long writeNumber = 0L;
+        for (MigrationCounter counter : migrator.getCounters().values()) {
+            readNumber += counter.getReadRecordNumber().get();
+            writeNumber += counter.getWriteRecordNumber().get();
+            Assert.assertFalse(counter.isFailed());
+        }
+        Assert.assertTrue(readNumber > 0L);
+        Assert.assertEquals(readNumber, writeNumber);
+
+        // 断点续迁:所有实体已经完成,再次迁移会全部跳过
+        Assert.assertTrue(new File(migrator.getNewDatabaseDirectory(), MigrationCheckpoint.CHECKPOINT_FILE).exists());
+        migrator.migrate();
+        for (MigrationCounter counter : migrator.getCounters().values()) {
+            Assert.assertEquals(0L, counter.getReadRecordNumber().get());
+        }
 
         FileUtils.forceDelete(olderFile);
         FileUtils.forceDelete(newerFile);
     }
 
+    /**
+     * 测试格式一致时的拷贝迁移
+     */
+    @Test
+    public void testCopy() throws Exception {
+        File olderFile = new File("target/copy/older");
+        File newerFile = new File("target/copy/newer");
+        FileUtils.deleteQuietly(olderFile.getParentFile());
+        Properties properties = new Properties();
+        try (InputStream stream = Thread.currentThread().getContextClassLoader().getResourceAsStream("berkeley.properties")) {
+            properties.load(stream);
+        }
+        Collection<Class<?>> classes = Collections.singleton(Item.class);
+
+        // 准备旧数据
+        int size = 1000;
+        List<Item> items = new ArrayList<>(size);
+        BerkeleyAccessor accessor = new BerkeleyAccessor(classes, olderFile, properties, false, false, false, 60000L);
+        accessor.start();
+        for (int index = 0; index < size; index++) {
+            Item item = new Item(index);
+            accessor.createInstance(Item.class, item);
+            items.add(item);
+        }
+        accessor.stop();
+
+        Collection<String> migrateStroreNames = Collections.singleton("migration");
+        Migrator migrator = new Migrator(migrateStroreNames, new HashMap<String, String>(), new HashMap<String, String>(), new HashMap<String, Collection<String>>(), "migration.properties", olderFile.getPath(), newerFile.getPath(), BerkeleyConverter.class.getName());
+        migrator.copyOldEnvironment(olderFile, newerFile);
+
+        // 只删除实体数据库,保留拷贝的目录(formats),所以新旧格式一致
+        EnvironmentConfig configuration = new EnvironmentConfig(properties);
+        Environment environment = new Environment(newerFile, configuration);
+        String entityName = Item.class.getName();
+        for (String databaseName : environment.getDatabaseNames()) {
+            if (databaseName.startsWith(Migrator.PERSIST_PREFIX + "#migration#" + entityName)) {
+                environment.removeDatabase(null, databaseName);
+            }
+        }
+        environment.close();
+        accessor = new BerkeleyAccessor(classes, newerFile, properties, false, false, false, 60000L);
+        accessor.start();
+        Assert.assertEquals(0L, accessor.countInstances(Item.class));
+        accessor.stop();
+
+        // 确认迁移会使用拷贝模式
+        Environment olderEnvironment = new Environment(olderFile, configuration);
+        Environment newerEnvironment = new Environment(newerFile, configuration);
+        StoreConfig storeConfiguration = new StoreConfig();
+        storeConfiguration.setTransactional(true);
+        RawStore olderStore = new RawStore(olderEnvironment, "migration", storeConfiguration);
+        RawStore newerStore = new RawStore(newerEnvironment, "migration", storeConfiguration);
+        MigrationContext context = new MigrationContext(Collections.singletonMap(entityName, entityName), Collections.emptyMap(), Collections.emptyMap(), olderEnvironment, newerEnvironment, Collections.emptyMap(), Collections.emptyMap());
+        Assert.assertTrue(new MigrationFormat(context, olderStore.getModel(), newerStore.getModel()).isSame(entityName));
+        context.getReadeExecutor().shutdown();
+        context.getWriteExecutor().shutdown();
+        olderStore.close();
+        newerStore.close();
+        olderEnvironment.close();
+        newerEnvironment.close();
+
+        migrator.migrate();
+        MigrationCounter counter = migrator.getCounters().get(entityName);
+        Assert.assertEquals(size, counter.getReadRecordNumber().get());
+        Assert.assertEquals(size, counter.getWriteRecordNumber().get());
+        Assert.assertFalse(counter.isFailed());
+
+        // 拷贝的记录与次级索引都可以访问
+        accessor = new BerkeleyAccessor(classes, newerFile, properties, false, false, false, 60000L);
+        accessor.start();
+        Assert.assertEquals(size, accessor.countInstances(Item.class));
+        for (Item item : items) {
+            Item copy = accessor.getInstance(Item.class, item.getId());
+            Assert.assertEquals(item.getPlayerId(), copy.getPlayerId());
+            Assert.assertEquals(item.getArticleId(), copy.getArticleId());
+            Assert.assertEquals(item.getAmount(), copy.getAmount());
+            Assert.assertEquals(item.getDescription(), copy.getDescription());
+        }
+        Item item = items.get(size / 2);
+        List<Item> copies = accessor.queryInstances(Item.class, "articleId", new StorageCondition<>(ConditionType.Equal, item.getArticleId()));
+        Assert.assertTrue(copies.stream().anyMatch((copy) -> copy.getId().equals(item.getId())));
+        accessor.stop();
+
+        FileUtils.forceDelete(olderFile.getParentFile());
+    }
+
 }
@@ -4,6 +4,9 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 
+import org.junit.Assert;
+import org.junit.Test;
+
 import com.jstarcraft.core.storage.identification.IdentityDefinition;
 import com.jstarcraft.core.storage.identification.IdentityFactory;
 import com.jstarcraft.core.storage.identification.InstantIdentityFactory;
@@ -19,4 +22,29 @@ public class InstantIdentityFactoryTestCase extends IdentityFactoryTestCase {
         return identityFactory;
     }
 
+    @Test
+    public void testBorrow() {
+        // 每毫秒只有4个序列并且不允许借用
+        IdentityDefinition definition = new IdentityDefinition(5, 56, 2);
+        InstantIdentityFactory identityFactory = new InstantIdentityFactory(definition, 0, Instant.EPOCH, 0, 0L);
+        try {
+            for (int index = 0; index < 100000; index++) {
+                identityFactory.getSequence();
+            }
+            Assert.fail();
+        } catch (RuntimeException exception) {
+        }
+    }
+
+    @Test
+    public void testOffset() {
+        // 未来的偏移会导致时间截为负数
+        IdentityDefinition definition = new IdentityDefinition(5, 40, 18);
+        try {
+            new InstantIdentityFactory(definition, 0, Instant.now().plusSeconds(60L));
+            Assert.fail();
+        } catch (IllegalArgumentException exception) {
+        }
+    }
+
 }
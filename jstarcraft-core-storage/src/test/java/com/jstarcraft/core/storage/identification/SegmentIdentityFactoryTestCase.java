@@ -0,0 +1,92 @@
+package com.jstarcraft.core.storage.identification;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jstarcraft.core.utility.NameThreadFactory;
+
+/**
+ * 使用模拟延迟的分段标识工厂测试双缓冲预取
+ * 
+ * @author Birdy
+ *
+ */
+public class SegmentIdentityFactoryTestCase extends IdentityFactoryTestCase {
+
+    private static final ExecutorService EXECUTORS = Executors.newCachedThreadPool(new NameThreadFactory("SegmentIdentityFactoryTestCase"));
+
+    private static class MockIdentityFactory extends RedisIdentityFactory {
+
+        /** 模拟Redis */
+        private final AtomicLong redis = new AtomicLong();
+
+        /** 每完成一次获取释放一个许可 */
+        private final Semaphore fetches = new Semaphore(0);
+
+        private MockIdentityFactory(IdentityDefinition definition, int partition, long step) {
+            super(definition, partition, step, step / 2, EXECUTORS);
+        }
+
+        @Override
+        protected long getLimit(long step) {
+            try {
+                // 模拟Redis往返延迟
+                Thread.sleep(1L);
+            } catch (InterruptedException exception) {
+                throw new RuntimeException(exception);
+            }
+            long limit = redis.addAndGet(step);
+            fetches.release();
+            return limit;
+        }
+
+    }
+
+    @Override
+    protected IdentityFactory getIdentityFactory() {
+        IdentityDefinition definition = new IdentityDefinition(5, 58);
+        return new MockIdentityFactory(definition, 0, 1000L);
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        MockIdentityFactory identityFactory = (MockIdentityFactory) getIdentityFactory();
+        // 第一个分段
+        for (int index = 0; index < 400; index++) {
+            identityFactory.getSequence();
+        }
+        Assert.assertTrue(identityFactory.fetches.tryAcquire(5L, TimeUnit.SECONDS));
+        Assert.assertEquals(1000L, identityFactory.redis.get());
+        // 到达阈值以后异步预取第二个分段
+        for (int index = 0; index < 200; index++) {
+            identityFactory.getSequence();
+        }
+        Assert.assertTrue(identityFactory.fetches.tryAcquire(5L, TimeUnit.SECONDS));
+        Assert.assertEquals(2000L, identityFactory.redis.get());
+        // 切换到第二个分段时不需要再次访问Redis
+        long sequence = identityFactory.getSequence();
+        for (int index = 0; index < 500; index++) {
+            long current = identityFactory.getSequence();
+            Assert.assertEquals(sequence + 1, current);
+            sequence = current;
+        }
+        Assert.assertEquals(2000L, identityFactory.redis.get());
+        Assert.assertEquals(0, identityFactory.fetches.availablePermits());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        // 多个实例共享的空分段不能被消耗
+        for (int index = 0; index < 10; index++) {
+            IdentityFactory identityFactory = getIdentityFactory();
+            Assert.assertEquals(identityFactory.getDefinition().make(0, 0L), identityFactory.getSequence());
+        }
+    }
+
+}
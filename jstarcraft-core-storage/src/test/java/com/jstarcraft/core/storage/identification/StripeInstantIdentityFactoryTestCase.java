@@ -0,0 +1,62 @@
+package com.jstarcraft.core.storage.identification;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StripeInstantIdentityFactoryTestCase extends IdentityFactoryTestCase {
+
+    @Override
+    protected IdentityFactory getIdentityFactory() {
+        IdentityDefinition definition = new IdentityDefinition(5, 40, 18);
+        LocalDateTime dateTime = LocalDateTime.of(2017, 1, 1, 0, 0, 0);
+        Instant instant = dateTime.toInstant(ZoneOffset.UTC);
+        InstantIdentityFactory identityFactory = new InstantIdentityFactory(definition, 0, instant, 3);
+        return identityFactory;
+    }
+
+    @Override
+    @Test
+    public void testSequence() {
+        // 条带化以后同一线程的序列严格递增,但是不再连续
+        IdentityFactory identityFactory = getIdentityFactory();
+        long sequence = identityFactory.getSequence();
+        for (int index = 0; index < 100000; index++) {
+            long current = identityFactory.getSequence();
+            Assert.assertTrue(current > sequence);
+            sequence = current;
+        }
+    }
+
+    @Test
+    public void testUnique() throws Exception {
+        IdentityFactory identityFactory = getIdentityFactory();
+        int thread = 8;
+        int size = 100000;
+        Set<Long> sequences = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(thread);
+        ArrayList<Future<?>> futures = new ArrayList<>(thread);
+        for (int index = 0; index < thread; index++) {
+            futures.add(executor.submit(() -> {
+                for (int count = 0; count < size; count++) {
+                    sequences.add(identityFactory.getSequence());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        Assert.assertEquals(thread * size, sequences.size());
+    }
+
+}
@@ -83,6 +83,14 @@ public class LuceneAccessorTestCase {
 			Assert.assertThat(object.getMoney(), CoreMatchers.equalTo(id2Moneys.get(object.getId())));
 		}
 
+		// 边界值不能溢出为全部匹配
+		id2Moneys = accessor.queryIdentities(MockObject.class, "money", new StorageCondition<>(ConditionType.Higher, 49));
+		Assert.assertThat(id2Moneys.size(), CoreMatchers.equalTo(50));
+		id2Moneys = accessor.queryIdentities(MockObject.class, "money", new StorageCondition<>(ConditionType.Higher, Integer.MAX_VALUE));
+		Assert.assertThat(id2Moneys.size(), CoreMatchers.equalTo(0));
+		id2Moneys = accessor.queryIdentities(MockObject.class, "money", new StorageCondition<>(ConditionType.Lower, Integer.MIN_VALUE));
+		Assert.assertThat(id2Moneys.size(), CoreMatchers.equalTo(0));
+
 		Map<String, Object> condition = new HashMap<>();
 		condition.put("race", MockEnumeration.RANDOM);
 		condition.put("id", 3);
@@ -106,6 +114,31 @@ public class LuceneAccessorTestCase {
 		}, MockObject.class, pagination);
 		Assert.assertTrue(times.get() == 10);
 
+		// 测试键集分页
+		int number = 0;
+		Integer after = null;
+		do {
+			objects = accessor.queryInstances(MockObject.class, StoragePagination.instanceOf(after, 15));
+			for (MockObject object : objects) {
+				if (after != null) {
+					Assert.assertTrue(object.getId() > after);
+				}
+				after = object.getId();
+				number++;
+			}
+		} while (objects.size() == 15);
+		Assert.assertThat(number, CoreMatchers.equalTo(size));
+		objects = accessor.queryUnion(MockObject.class, condition, StoragePagination.instanceOf(10, 15));
+		Assert.assertThat(objects.get(0).getId(), CoreMatchers.equalTo(11));
+		Assert.assertThat(objects.size(), CoreMatchers.equalTo(15));
+		objects = accessor.queryIntersection(MockObject.class, condition, StoragePagination.instanceOf(null, 15));
+		Assert.assertThat(objects.size(), CoreMatchers.equalTo(1));
+		times.set(0);
+		accessor.iterateIntersection((object) -> {
+			times.incrementAndGet();
+		}, MockObject.class, condition, StoragePagination.instanceOf(objects.get(0).getId(), 15));
+		Assert.assertThat(times.get(), CoreMatchers.equalTo(0));
+
 		// 测试总数
 		long count = accessor.countInstances(MockObject.class);
 		Assert.assertTrue(count == size);
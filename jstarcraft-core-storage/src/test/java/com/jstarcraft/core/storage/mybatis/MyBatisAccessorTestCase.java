@@ -3,6 +3,8 @@ package com.jstarcraft.core.storage.mybatis;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hamcrest.CoreMatchers;
@@ -105,6 +107,45 @@ public class MyBatisAccessorTestCase {
 		}, MockObject.class, pagination);
 		Assert.assertTrue(times.get() == 10);
 
+		// 测试键集分页
+		int number = 0;
+		Integer after = null;
+		do {
+			objects = accessor.queryInstances(MockObject.class, StoragePagination.instanceOf(after, 15));
+			for (MockObject object : objects) {
+				if (after != null) {
+					Assert.assertTrue(object.getId() > after);
+				}
+				after = object.getId();
+				number++;
+			}
+		} while (objects.size() == 15);
+		Assert.assertThat(number, CoreMatchers.equalTo(size));
+		objects = accessor.queryUnion(MockObject.class, condition, StoragePagination.instanceOf(10, 15));
+		Assert.assertThat(objects.get(0).getId(), CoreMatchers.equalTo(11));
+		Assert.assertThat(objects.size(), CoreMatchers.equalTo(15));
+		objects = accessor.queryIntersection(MockObject.class, condition, StoragePagination.instanceOf(null, 15));
+		Assert.assertThat(objects.size(), CoreMatchers.equalTo(1));
+		times.set(0);
+		accessor.iterateIntersection((object) -> {
+			times.incrementAndGet();
+		}, MockObject.class, condition, StoragePagination.instanceOf(objects.get(0).getId(), 15));
+		Assert.assertThat(times.get(), CoreMatchers.equalTo(0));
+
+		// 测试区间遍历
+		times.set(0);
+		accessor.iterateRange((object) -> {
+			times.incrementAndGet();
+		}, MockObject.class, 10, 20);
+		Assert.assertThat(times.get(), CoreMatchers.equalTo(10));
+		times.set(0);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		accessor.iterateRanges((object) -> {
+			times.incrementAndGet();
+		}, MockObject.class, executor, 75, 25, 50);
+		executor.shutdown();
+		Assert.assertThat(times.get(), CoreMatchers.equalTo(size));
+
 		// 测试总数
 		long count = accessor.countInstances(MockObject.class);
 		Assert.assertTrue(count == size);
@@ -141,6 +141,34 @@ public class Neo4jAccessorTestCase {
 		}, MockNode.class, pagination);
 		Assert.assertTrue(times.get() == 10);
 
+		// 测试键集分页
+		int number = 0;
+		Integer after = null;
+		do {
+			objects = accessor.queryInstances(MockNode.class, StoragePagination.instanceOf(after, 15));
+			for (MockNode object : objects) {
+				if (after != null) {
+					Assert.assertTrue(object.getId() > after);
+				}
+				after = object.getId();
+				number++;
+			}
+		} while (objects.size() == 15);
+		Assert.assertThat(number, CoreMatchers.equalTo(size));
+		objects = accessor.queryUnion(MockNode.class, condition, StoragePagination.instanceOf(10, 15));
+		after = 10;
+		for (MockNode object : objects) {
+			Assert.assertTrue(object.getId() > after);
+			after = object.getId();
+		}
+		objects = accessor.queryIntersection(MockNode.class, condition, StoragePagination.instanceOf(null, 15));
+		Assert.assertThat(objects.size(), CoreMatchers.equalTo(1));
+		times.set(0);
+		accessor.iterateIntersection((object) -> {
+			times.incrementAndGet();
+		}, MockNode.class, condition, StoragePagination.instanceOf(objects.get(0).getId(), 15));
+		Assert.assertThat(times.get(), CoreMatchers.equalTo(0));
+
 		// 测试总数
 		long count = accessor.countInstances(MockNode.class);
 		Assert.assertTrue(count == size);